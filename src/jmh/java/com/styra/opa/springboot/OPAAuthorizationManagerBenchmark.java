@@ -0,0 +1,83 @@
+package com.styra.opa.springboot;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAClient;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks building the OPA input of a request and serializing it into the request body, for requests with a
+ * realistic number of headers and authorities.
+ */
+@State(Scope.Benchmark)
+public class OPAAuthorizationManagerBenchmark {
+
+    @Param({"8", "32"})
+    private int headerCount;
+    @Param({"4", "32"})
+    private int authorityCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OPAAuthorizationManager opaAuthorizationManager;
+    private Supplier<Authentication> authenticationSupplier;
+    private RequestAuthorizationContext requestAuthorizationContext;
+    private Map<String, Object> input;
+
+    @Setup
+    public void setUp() {
+        // OPAClient does not connect to OPA until a policy is evaluated
+        opaAuthorizationManager = new OPAAuthorizationManager(new OPAClient(OPAProperties.DEFAULT_URL),
+            "policy/allow");
+
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (int i = 0; i < authorityCount; i++) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + i));
+        }
+        var authentication = new UsernamePasswordAuthenticationToken("alice", null, authorities);
+        authentication.setDetails(new WebAuthenticationDetails("192.0.2.123", "session-id"));
+        authenticationSupplier = () -> authentication;
+
+        var request = new MockHttpServletRequest("GET", "/orders/123");
+        request.setServletPath("/orders/123");
+        request.setRemoteAddr("192.0.2.123");
+        request.setRemoteHost("client.example.com");
+        request.setRemotePort(50000);
+        for (int i = 0; i < headerCount; i++) {
+            request.addHeader("X-Header-" + i, "value-" + i);
+        }
+        requestAuthorizationContext = new RequestAuthorizationContext(request);
+        input = opaAuthorizationManager.makeRequestInput(authenticationSupplier.get(), authenticationSupplier,
+            requestAuthorizationContext);
+    }
+
+    @Benchmark
+    public Map<String, Object> makeRequestInput() {
+        return opaAuthorizationManager.makeRequestInput(authenticationSupplier.get(), authenticationSupplier,
+            requestAuthorizationContext);
+    }
+
+    /**
+     * Serializes the input the same way as the OPA Java SDK does, i.e. wrapped in an {@code input} object.
+     */
+    @Benchmark
+    public byte[] serializeInput() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(Map.of("input", input));
+    }
+}
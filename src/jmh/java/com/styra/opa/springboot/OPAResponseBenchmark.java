@@ -0,0 +1,71 @@
+package com.styra.opa.springboot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Benchmarks mapping OPA responses and selecting the reason of a decision.
+ */
+@State(Scope.Benchmark)
+public class OPAResponseBenchmark {
+
+    private static final String CONTEXT = """
+        {
+            "id": "0",
+            "reason_admin": {"en": "subject lacks the required role", "de": "Dem Subjekt fehlt die Rolle"},
+            "reason_user": {"en": "access denied", "de": "Zugriff verweigert", "fr": "acces refuse"},
+            "data": {"cache_ttl": 60, "roles": ["viewer", "editor"], "tenant": {"id": "t-1", "tier": "gold"}}
+        }""";
+    private static final String RESPONSE = "{\"decision\": false, \"context\": " + CONTEXT + "}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] responseBytes;
+    private byte[] contextBytes;
+    private OPAResponseContext responseContext;
+
+    @Setup
+    public void setUp() throws IOException {
+        responseBytes = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        contextBytes = CONTEXT.getBytes(StandardCharsets.UTF_8);
+        responseContext = objectMapper.readValue(contextBytes, OPAResponseContext.class);
+    }
+
+    @Benchmark
+    public OPAResponse deserializeResponse() throws IOException {
+        return objectMapper.readValue(responseBytes, OPAResponse.class);
+    }
+
+    @Benchmark
+    public OPAResponseContext deserializeResponseContext() throws IOException {
+        return objectMapper.readValue(contextBytes, OPAResponseContext.class);
+    }
+
+    /**
+     * The OPA Java SDK first reads the response into a tree, then converts its {@code result} into the target type.
+     */
+    @Benchmark
+    public OPAResponse convertResponse() throws IOException {
+        Map<?, ?> tree = objectMapper.readValue(responseBytes, Map.class);
+        return objectMapper.convertValue(tree, OPAResponse.class);
+    }
+
+    @Benchmark
+    public String getReasonForDecisionWithKey() {
+        return responseContext.getReasonForDecision("de");
+    }
+
+    /**
+     * Falls back to the lexicographically first key, which sorts the keys of {@code reason_user}.
+     */
+    @Benchmark
+    public String getReasonForDecisionWithoutKey() {
+        return responseContext.getReasonForDecision("es");
+    }
+}
@@ -0,0 +1,95 @@
+package com.styra.opa.springboot.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.styra.opa.OPAClient;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Benchmarks round trips to a local stub OPA server, which always allows, with different HTTP transport
+ * configurations. Requests are sent from several threads, so that connections are pooled and reused.
+ */
+@State(Scope.Benchmark)
+@Threads(OPAHttpClientBenchmark.THREADS)
+public class OPAHttpClientBenchmark {
+
+    static final int THREADS = 8;
+
+    private static final byte[] ALLOW = "{\"result\":{\"decision\":true}}".getBytes(StandardCharsets.UTF_8);
+    private static final Map<String, Object> INPUT = Map.of("subject", Map.of("id", "alice"),
+        "resource", Map.of("id", "/hello"), "action", Map.of("name", "GET"));
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    private HttpClient.Version version;
+
+    @Param({"0", "4"})
+    private int executorThreads;
+
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private OPAHttpClientFactory factory;
+    private OPAClient opaClient;
+    private OPAAsyncClient opaAsyncClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(THREADS);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/data/", OPAHttpClientBenchmark::allow);
+        server.setExecutor(serverExecutor);
+        server.start();
+        String opaUrl = "http://localhost:" + server.getAddress().getPort();
+
+        var properties = new OPAProperties.Http();
+        properties.setVersion(version);
+        properties.setExecutorThreads(executorThreads);
+        factory = new OPAHttpClientFactory(properties);
+        opaClient = factory.createOPAClient(opaUrl);
+        opaAsyncClient = factory.createOPAAsyncClient(opaUrl, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public OPAResponse opaClient() throws OPAException {
+        return opaClient.evaluate("policy/allow", INPUT, new TypeReference<>() {
+        });
+    }
+
+    @Benchmark
+    public OPAResponse opaAsyncClient() {
+        return opaAsyncClient.evaluate("policy/allow", INPUT).join();
+    }
+
+    private static void allow(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, ALLOW.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(ALLOW);
+        }
+    }
+}
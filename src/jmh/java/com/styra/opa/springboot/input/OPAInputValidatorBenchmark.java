@@ -0,0 +1,39 @@
+package com.styra.opa.springboot.input;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_TYPE;
+
+/**
+ * Benchmarks validating a complete OPA input.
+ */
+@State(Scope.Benchmark)
+public class OPAInputValidatorBenchmark {
+
+    private final OPAInputValidator opaInputValidator = new OPAInputValidator();
+    private final Map<String, Object> input = Map.of(
+        SUBJECT, Map.of(SUBJECT_TYPE, "java_authentication", SUBJECT_ID, "alice"),
+        RESOURCE, Map.of(RESOURCE_TYPE, "endpoint", RESOURCE_ID, "/orders/123"),
+        ACTION, Map.of(ACTION_NAME, "GET"),
+        CONTEXT, Map.of(CONTEXT_TYPE, "http")
+    );
+
+    @Benchmark
+    public Map<String, Object> validate() {
+        opaInputValidator.validate(null, null, input);
+        return input;
+    }
+}
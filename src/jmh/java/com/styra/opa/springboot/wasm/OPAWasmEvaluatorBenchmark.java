@@ -0,0 +1,58 @@
+package com.styra.opa.springboot.wasm;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares evaluating a policy in-process from a Wasm bundle with evaluating the same policy on an OPA server. The
+ * bundle is given with {@code -PjmhWasmBundle=<path>} and the server with {@code -PjmhOpaUrl=<url>}; both must provide
+ * the entrypoint {@value #PATH}.
+ */
+@State(Scope.Benchmark)
+public class OPAWasmEvaluatorBenchmark {
+
+    private static final String PATH = "policy/allow";
+    private static final Map<String, Object> INPUT = Map.of(
+        "subject", Map.of("type", "java_authentication", "id", "alice", "authorities", List.of("ROLE_USER")),
+        "resource", Map.of("type", "endpoint", "id", "/hello"),
+        "action", Map.of("name", "GET", "protocol", "HTTP/1.1", "headers", Map.of("Accept", "*/*")),
+        "context", Map.of("type", "http", "host", "localhost", "ip", "127.0.0.1", "port", 8080));
+
+    private OPAWasmEvaluator opaWasmEvaluator;
+    private OPAAsyncClient opaAsyncClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        var properties = new OPAProperties.Wasm();
+        properties.setBundle(System.getProperty("jmhWasmBundle"));
+        properties.setReloadInterval(Duration.ZERO);
+        opaWasmEvaluator = new OPAWasmEvaluator(properties);
+        opaAsyncClient = new OPAAsyncClient(System.getProperty("jmhOpaUrl", OPAProperties.DEFAULT_URL));
+    }
+
+    @TearDown
+    public void tearDown() {
+        opaWasmEvaluator.close();
+    }
+
+    @Benchmark
+    public OPAResponse wasm() {
+        return opaWasmEvaluator.evaluate(PATH, INPUT).join();
+    }
+
+    @Benchmark
+    public OPAResponse http() {
+        return opaAsyncClient.evaluate(PATH, INPUT).join();
+    }
+}
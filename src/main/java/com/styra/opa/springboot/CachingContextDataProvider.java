@@ -0,0 +1,198 @@
+package com.styra.opa.springboot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This helper class implements {@link ContextDataProvider} by caching data which is expensive to load, e.g.
+ * entitlements from a database. Data is cached per key, which {@code keyFunction} derives from the
+ * {@link Authentication} and the request (e.g. the tenant or the user name), and is loaded by {@code loader} from the
+ * key alone; requests whose key is null have no context data. Entries expire after
+ * {@link OPAProperties.ContextDataCache#getTtl()}, and once they are older than
+ * {@link OPAProperties.ContextDataCache#getRefreshAfter()}, the next access still returns the cached data, but
+ * refreshes it in the background.
+ * <br/><br/>
+ * Refreshes run after the request which triggered them was authorized, when its request and authentication could
+ * already be recycled, so they only hold on to the key. They run on
+ * {@link OPAProperties.ContextDataCache#getRefreshThreads()} threads of this instance, since loaders usually block,
+ * and refreshes over a bounded queue are rejected (and tried again on the next access).
+ * <br/><br/>
+ * It requires Caffeine on the classpath, which is an optional dependency of this SDK.
+ */
+public class CachingContextDataProvider implements ContextDataProvider, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingContextDataProvider.class);
+
+    private static final int MAX_QUEUED_REFRESHES = 1024;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final BiFunction<Authentication, RequestAuthorizationContext, Object> keyFunction;
+    private final Function<Object, Object> loader;
+    private final Ticker ticker;
+    private final Executor executor;
+    private final long refreshAfterNanos;
+    private final Cache<Object, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * Instantiates an instance which refreshes data on threads of its own, which are stopped by {@link #close()}.
+     *
+     * @param keyFunction derives the cache key from the authentication (which could be null) and the request.
+     * @param loader loads the data of a key, which is cached.
+     * @param properties provides the maximum size, the TTL, the refresh-ahead age and the refresh threads.
+     */
+    public CachingContextDataProvider(BiFunction<Authentication, RequestAuthorizationContext, Object> keyFunction,
+                                      Function<Object, Object> loader, OPAProperties.ContextDataCache properties) {
+        this(keyFunction, loader, properties, refreshExecutor(properties), Ticker.systemTicker());
+    }
+
+    CachingContextDataProvider(BiFunction<Authentication, RequestAuthorizationContext, Object> keyFunction,
+                               Function<Object, Object> loader, OPAProperties.ContextDataCache properties,
+                               Executor executor, Ticker ticker) {
+        this.keyFunction = keyFunction;
+        this.loader = loader;
+        this.ticker = ticker;
+        this.executor = executor;
+        this.refreshAfterNanos = properties.getRefreshAfter() != null ? properties.getRefreshAfter().toNanos() : 0;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getTtl())
+            .ticker(ticker)
+            .build();
+    }
+
+    @Override
+    public Object getContextData(Supplier<Authentication> authenticationSupplier, RequestAuthorizationContext object) {
+        Authentication authentication = authenticationSupplier.get();
+        Object key = keyFunction.apply(authentication, object);
+        if (key == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            misses.increment();
+            // concurrent misses of the same key wait for a single load
+            return cache.get(key, this::load).data;
+        }
+        hits.increment();
+        if (refreshAfterNanos > 0 && ticker.read() - entry.loadedAtNanos >= refreshAfterNanos
+            && entry.refreshing.compareAndSet(false, true)) {
+            refreshes.increment();
+            try {
+                executor.execute(() -> refresh(key, entry));
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("context data refresh was rejected, trying again on the next access");
+                entry.refreshing.set(false);
+            }
+        }
+        return entry.data;
+    }
+
+    /**
+     * Returns the number of requests whose data was cached.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests whose data had to be loaded by the delegate.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of background refreshes which were started.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Returns the approximate number of cached keys.
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Discards all cached data, e.g. after entitlements were changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Stops the refresh threads of this instance, if it created them.
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Entry load(Object key) {
+        return new Entry(loader.apply(key), ticker.read());
+    }
+
+    /**
+     * Replaces {@code entry}, unless it was invalidated or replaced in the meantime. If the delegate fails, the entry
+     * is kept (until it expires), and the next access tries again.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void refresh(Object key, Entry entry) {
+        try {
+            cache.asMap().replace(key, entry, load(key));
+        } catch (RuntimeException e) {
+            LOGGER.warn("failed to refresh context data, keeping the cached data:", e);
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static ExecutorService refreshExecutor(OPAProperties.ContextDataCache properties) {
+        int threads = Math.max(1, properties.getRefreshThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_REFRESHES), runnable -> {
+                Thread thread = new Thread(runnable, "opa-context-data-refresh-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class Entry {
+        private final Object data;
+        private final long loadedAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Object data, long loadedAtNanos) {
+            this.data = data;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
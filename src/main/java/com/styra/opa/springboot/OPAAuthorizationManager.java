@@ -6,11 +6,23 @@ import com.styra.opa.OPAException;
 import com.styra.opa.springboot.authorization.OPAAccessDeniedException;
 import com.styra.opa.springboot.authorization.OPAAuthorizationDecision;
 import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPAKeyedInput;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.decisionlog.OPADecisionLogWriter;
+import com.styra.opa.springboot.evaluator.OPAEvaluationExecutor;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.styra.opa.springboot.evaluator.OPAEvaluatorDecorator;
+import com.styra.opa.springboot.input.OPAInput;
 import com.styra.opa.springboot.input.OPAInputActionCustomizer;
 import com.styra.opa.springboot.input.OPAInputContextCustomizer;
 import com.styra.opa.springboot.input.OPAInputResourceCustomizer;
 import com.styra.opa.springboot.input.OPAInputSubjectCustomizer;
 import com.styra.opa.springboot.input.OPAInputValidator;
+import com.styra.opa.springboot.metrics.OPAMetricsRecorder;
+import com.styra.opa.springboot.route.OPARouteTable;
+import com.styra.opa.springboot.timeout.OPATimeouts;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.Getter;
 import org.slf4j.Logger;
@@ -22,34 +34,25 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static com.styra.opa.springboot.input.InputConstants.ACTION;
-import static com.styra.opa.springboot.input.InputConstants.ACTION_HEADERS;
-import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
-import static com.styra.opa.springboot.input.InputConstants.ACTION_PROTOCOL;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT_DATA;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT_HOST;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT_IP;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT_PORT;
-import static com.styra.opa.springboot.input.InputConstants.CONTEXT_TYPE;
-import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
-import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
-import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
-import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
-import static com.styra.opa.springboot.input.InputConstants.SUBJECT_AUTHORITIES;
-import static com.styra.opa.springboot.input.InputConstants.SUBJECT_DETAILS;
-import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
-import static com.styra.opa.springboot.input.InputConstants.SUBJECT_TYPE;
-import static java.util.Map.entry;
-
 /**
  * This class implements {@link AuthorizationManager} which wraps the
  * <a href="https://github.com/StyraInc/opa-java">OPA Java SDK</a>. Authorization will be done in
@@ -63,6 +66,14 @@ import static java.util.Map.entry;
  * </ol>
  *  OPA input (request body) and response are compliant with the
  *  <a href="https://openid.github.io/authzen">AuthZEN spec</a>.
+ * <br/><br/>
+ * If an {@link OPARouteTable} bean is defined, the first {@code opa.routes} entry matching a request could select its
+ * policy path, skip its authorization, permit or deny it without asking OPA, and limit how long to wait for OPA.
+ * <br/><br/>
+ * If an {@link OPATimeouts} bean is defined, evaluations are limited by {@code opa.timeout.*} timeouts and by the
+ * deadline carried in the request, and answered with an {@link OPATimeoutResponse} if OPA did not respond in time.
+ * While a timeout applies, evaluations of the blocking {@link OPAClient} are run on the {@link OPAEvaluationExecutor}
+ * bean (or the common pool if there is none), and answered like a timeout if all of its threads are busy.
  */
 @Component
 public class OPAAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
@@ -74,6 +85,10 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
     private String reasonKey = OPAProperties.Response.Context.DEFAULT_REASON_KEY;
     private final ContextDataProvider contextDataProvider;
     private final OPAClient opaClient;
+    private OPAEvaluator opaEvaluator;
+    private OPAEvaluator opaTransport;
+    private boolean blockingTransport;
+    private List<OPAEvaluatorDecorator> opaEvaluatorDecorators = List.of();
     @Autowired
     private OPAProperties opaProperties;
     @Autowired
@@ -88,6 +103,18 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
     private OPAInputContextCustomizer opaInputContextCustomizer;
     @Autowired
     private OPAInputValidator opaInputValidator;
+    @Autowired(required = false)
+    private OPADecisionCache opaDecisionCache;
+    @Autowired(required = false)
+    private OPAMetricsRecorder opaMetricsRecorder;
+    @Autowired(required = false)
+    private OPADecisionLogWriter opaDecisionLogWriter;
+    @Autowired(required = false)
+    private OPARouteTable opaRouteTable;
+    @Autowired(required = false)
+    private OPATimeouts opaTimeouts;
+    @Autowired(required = false)
+    private OPAEvaluationExecutor opaEvaluationExecutor;
 
     public OPAAuthorizationManager() {
         this(null, null, null);
@@ -140,6 +167,9 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
     public OPAAuthorizationManager(OPAClient opaClient, String opaPath, ContextDataProvider contextDataProvider) {
         opaProperties = new OPAProperties();
         this.opaClient = opaClient != null ? opaClient : defaultOPAClient();
+        this.opaTransport = this::evaluateWithOPAClient;
+        this.blockingTransport = true;
+        this.opaEvaluator = opaTransport;
         this.opaPath = opaPath;
         this.contextDataProvider = contextDataProvider;
     }
@@ -155,7 +185,12 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
 
     @Override
     public void verify(Supplier<Authentication> authenticationSupplier, RequestAuthorizationContext object) {
-        OPAResponse opaResponse = opaRequest(authenticationSupplier, object);
+        OPAProperties.Route route = route(object);
+        if (route != null && route.getAction() == OPAProperties.Route.Action.SKIP) {
+            LOGGER.trace("skipping authorization of route: {}", route.getPattern());
+            return;
+        }
+        OPAResponse opaResponse = opaRequest(authenticationSupplier, object, route);
         if (opaResponse == null) {
             throw new OPAAccessDeniedException("null response from policy");
         }
@@ -176,7 +211,12 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
     @Override
     public AuthorizationDecision check(Supplier<Authentication> authenticationSupplier,
                                        RequestAuthorizationContext object) {
-        OPAResponse opaResponse = opaRequest(authenticationSupplier, object);
+        OPAProperties.Route route = route(object);
+        if (route != null && route.getAction() == OPAProperties.Route.Action.SKIP) {
+            LOGGER.trace("skipping authorization of route: {}", route.getPattern());
+            return null;
+        }
+        OPAResponse opaResponse = opaRequest(authenticationSupplier, object, route);
         if (opaResponse == null) {
             LOGGER.trace("OPA provided a null response, default-denying access");
             return new OPAAuthorizationDecision(false, null);
@@ -188,122 +228,340 @@ public class OPAAuthorizationManager implements AuthorizationManager<RequestAuth
      * This method can be used to directly call OPA without generating an {@link AuthorizationDecision}, which can be
      * used to examine the OPA response. You should consider using the OPA Java SDK (which this library depends on)
      * directly rather than using this method, as it should not be needed during normal use.
+     * <br/><br/>
+     * Returns null if the request matches a route whose authorization is skipped.
      */
     public OPAResponse opaRequest(Supplier<Authentication> authenticationSupplier, RequestAuthorizationContext object) {
-        Map<String, Object> input = makeRequestInput(authenticationSupplier, object);
+        return opaRequest(authenticationSupplier, object, route(object));
+    }
+
+    private OPAResponse opaRequest(Supplier<Authentication> authenticationSupplier, RequestAuthorizationContext object,
+                                   OPAProperties.Route route) {
+        if (route != null && route.getAction() != OPAProperties.Route.Action.EVALUATE) {
+            LOGGER.trace("{} route without asking OPA: {}", route.getAction(), route.getPattern());
+            return OPARouteTable.response(route);
+        }
+        long startNanos = System.nanoTime();
+        Authentication authentication = authenticationSupplier.get();
+        Map<String, Object> input = makeRequestInput(authentication, authenticationSupplier, object);
         LOGGER.trace("OPA input (request body) is: {}", input);
+        String selectedOPAPath;
+        if (route != null && route.getPath() != null) {
+            selectedOPAPath = route.getPath();
+        } else {
+            selectedOPAPath = opaPathSelector != null
+                ? opaPathSelector.selectPath(authentication, object, input) : opaPath;
+        }
+        return evaluate(selectedOPAPath, OPAKeyedInput.of(input), route, object.getRequest(), startNanos);
+    }
+
+    /**
+     * Evaluates {@code input} like the requests authorized by this instance, i.e. using the same decision cache,
+     * {@link OPAEvaluatorDecorator}s, transport, metrics and decision log (e.g. for
+     * {@link com.styra.opa.springboot.method.OPAMethodAuthorizationManager}). Returns null if the evaluation failed.
+     * The deadline of the current request (if any) applies.
+     *
+     * @param path if null, the default path defined by the OPA configuration is used.
+     */
+    public OPAResponse opaRequest(String path, Map<String, Object> input) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = requestAttributes instanceof ServletRequestAttributes servletRequestAttributes
+            ? servletRequestAttributes.getRequest() : null;
+        return evaluate(path, OPAKeyedInput.of(input), null, request, System.nanoTime());
+    }
+
+    private OPAResponse evaluate(String selectedOPAPath, Map<String, Object> input, OPAProperties.Route route,
+                                 HttpServletRequest request, long startNanos) {
+        boolean cacheEnabled = opaDecisionCache != null && (route == null || route.getCache().isEnabled());
+        OPADecisionKey cacheKey = cacheEnabled ? opaDecisionCache.key(selectedOPAPath, input) : null;
+        if (cacheKey != null) {
+            OPAResponse cachedResponse = opaDecisionCache.get(cacheKey, () -> refresh(selectedOPAPath, input));
+            if (cachedResponse != null) {
+                LOGGER.trace("OPA response (cached) is: {}", cachedResponse);
+                recordDecision(selectedOPAPath, input, cachedResponse, null, true, startNanos);
+                return cachedResponse;
+            }
+        }
+        if (selectedOPAPath != null) {
+            LOGGER.trace("OPA path is: {}", selectedOPAPath);
+        } else {
+            LOGGER.trace("Using default OPA path");
+        }
+        Duration timeout = opaTimeouts != null ? opaTimeouts.timeout(selectedOPAPath, route, request)
+            : route != null ? route.getTimeout() : null;
+        OPAResponse opaResponse;
+        try {
+            CompletableFuture<OPAResponse> future;
+            if (timeout == null) {
+                future = opaEvaluator.evaluate(selectedOPAPath, input);
+            } else if (!timeout.isPositive()) {
+                future = CompletableFuture.failedFuture(new TimeoutException("request deadline has passed"));
+            } else {
+                // the OPAClient blocks, so it could only be timed out on another thread
+                future = blockingTransport ? evaluateOffThread(selectedOPAPath, input)
+                    : opaEvaluator.evaluate(selectedOPAPath, input);
+                // the future could be shared with other requests (e.g. when coalescing), so it is not timed out itself
+                future = future.copy().orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            opaResponse = future.join();
+        } catch (CompletionException e) {
+            boolean timedOut = e.getCause() instanceof TimeoutException
+                || e.getCause() instanceof RejectedExecutionException;
+            boolean failed = e.getCause() instanceof OPAException || timedOut;
+            OPAResponse staleResponse = failed && cacheKey != null ? opaDecisionCache.getIfError(cacheKey) : null;
+            if (e.getCause() instanceof OPAException opaException) {
+                recordDecision(selectedOPAPath, input, staleResponse, e, staleResponse != null, startNanos);
+                LOGGER.error("caught exception from OPA client:", opaException);
+                return staleResponse;
+            }
+            if (timedOut) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    LOGGER.error("no thread was available to evaluate path {} within {}", selectedOPAPath, timeout);
+                } else {
+                    LOGGER.error("OPA did not respond within {} for path: {}", timeout, selectedOPAPath);
+                }
+                // the decision which is actually returned is recorded, i.e. the timeout response (if any)
+                OPAResponse timeoutResponse = staleResponse == null && opaTimeouts != null
+                    ? opaTimeouts.timeoutResponse(selectedOPAPath, input, timeout) : staleResponse;
+                recordDecision(selectedOPAPath, input, timeoutResponse, e, staleResponse != null, startNanos);
+                return timeoutResponse;
+            }
+            recordDecision(selectedOPAPath, input, null, e, false, startNanos);
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+        LOGGER.trace("OPA response is: {}", opaResponse);
+        // fallback decisions were not made by OPA (e.g. the circuit breaker is open), so serve them like errors
+        boolean fallback = opaResponse instanceof OPAFallbackResponse;
+        OPAResponse staleResponse = fallback && cacheKey != null ? opaDecisionCache.getIfError(cacheKey) : null;
+        if (staleResponse != null) {
+            LOGGER.debug("OPA did not make the decision of path {}, serving stale decision", selectedOPAPath);
+            recordDecision(selectedOPAPath, input, staleResponse, null, true, startNanos);
+            return staleResponse;
+        }
+        recordDecision(selectedOPAPath, input, opaResponse, null, false, startNanos);
+        if (opaTimeouts != null) {
+            opaTimeouts.recordResponse(selectedOPAPath, input, opaResponse);
+        }
+        if (cacheKey != null && opaResponse != null && !fallback) {
+            opaDecisionCache.put(cacheKey, opaResponse, route != null ? route.getCache().getTtl() : null);
+        }
+        return opaResponse;
+    }
+
+    /**
+     * Evaluates {@code input} to refresh a stale decision in the background, so the blocking {@link OPAClient} is
+     * called on another thread.
+     */
+    private CompletableFuture<OPAResponse> refresh(String path, Map<String, Object> input) {
+        return blockingTransport ? evaluateOffThread(path, input) : opaEvaluator.evaluate(path, input);
+    }
+
+    /**
+     * Evaluates {@code input} on a thread of the {@link OPAEvaluationExecutor}, so that the blocking
+     * {@link OPAClient} does not hold the calling thread. The returned future fails with a
+     * {@link RejectedExecutionException} if all of its threads are busy.
+     */
+    private CompletableFuture<OPAResponse> evaluateOffThread(String path, Map<String, Object> input) {
+        if (opaEvaluationExecutor != null) {
+            return opaEvaluationExecutor.submit(() -> opaEvaluator.evaluate(path, input));
+        }
+        return CompletableFuture.supplyAsync(() -> opaEvaluator.evaluate(path, input), ForkJoinPool.commonPool())
+            .thenCompose(Function.identity());
+    }
+
+    private OPAProperties.Route route(RequestAuthorizationContext object) {
+        if (opaRouteTable == null) {
+            return null;
+        }
+        HttpServletRequest request = object.getRequest();
+        String path = request.getPathInfo() != null ? request.getServletPath() + request.getPathInfo()
+            : request.getServletPath();
+        return opaRouteTable.match(request.getMethod(), path);
+    }
+
+    private void recordDecision(String path, Map<String, Object> input, OPAResponse opaResponse, Throwable error,
+                                boolean cached, long startNanos) {
+        if (opaMetricsRecorder == null && opaDecisionLogWriter == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        if (opaMetricsRecorder != null) {
+            opaMetricsRecorder.recordDecision(path, input, opaResponse, error, cached, durationNanos);
+        }
+        if (opaDecisionLogWriter != null) {
+            opaDecisionLogWriter.log(path, input, opaResponse, error, cached, durationNanos);
+        }
+    }
+
+    /**
+     * Evaluates the policy using the (blocking) {@link OPAClient}, so the returned future is already completed.
+     */
+    private CompletableFuture<OPAResponse> evaluateWithOPAClient(String path, Map<String, Object> input) {
         try {
             OPAResponse opaResponse;
-            String selectedOPAPath = opaPathSelector != null
-                ? opaPathSelector.selectPath(authenticationSupplier.get(), object, input) : opaPath;
-            if (selectedOPAPath != null) {
-                LOGGER.trace("OPA path is: {}", selectedOPAPath);
-                opaResponse = opaClient.evaluate(selectedOPAPath, input, new TypeReference<>() {
+            if (path != null) {
+                opaResponse = opaClient.evaluate(path, input, new TypeReference<>() {
                 });
             } else {
-                LOGGER.trace("Using default OPA path");
                 opaResponse = opaClient.evaluate(input, new TypeReference<>() {
                 });
             }
-            LOGGER.trace("OPA response is: {}", opaResponse);
-            return opaResponse;
+            return CompletableFuture.completedFuture(opaResponse);
         } catch (OPAException e) {
-            LOGGER.error("caught exception from OPA client:", e);
-            return null;
+            return CompletableFuture.failedFuture(e);
         }
     }
 
-    private Map<String, Object> makeRequestInput(Supplier<Authentication> authenticationSupplier,
-                                                 RequestAuthorizationContext object) {
+    /**
+     * Builds the OPA input of a request. This method is package-private so that it could be benchmarked.
+     *
+     * @param authentication the result of {@code authenticationSupplier.get()}, which is only called once per request.
+     * @param authenticationSupplier passed to the {@link ContextDataProvider}.
+     */
+    Map<String, Object> makeRequestInput(Authentication authentication,
+                                         Supplier<Authentication> authenticationSupplier,
+                                         RequestAuthorizationContext object) {
         HttpServletRequest request = object.getRequest();
 
         Object subjectId = null;
         Object subjectDetails = null;
         Collection<? extends GrantedAuthority> subjectAuthorities = null;
-        Authentication authentication = authenticationSupplier.get();
         if (authentication != null) {
             subjectId = authentication.getPrincipal();
             subjectDetails = authentication.getDetails();
             subjectAuthorities = authentication.getAuthorities();
         }
-        Map<String, Object> subject = new HashMap<>();
-        nullablePut(subject, SUBJECT_TYPE, opaProperties.getRequest().getSubject().getType());
-        nullablePut(subject, SUBJECT_ID, subjectId);
-        nullablePut(subject, SUBJECT_DETAILS, subjectDetails);
-        nullablePut(subject, SUBJECT_AUTHORITIES, subjectAuthorities);
+        Map<String, Object> subject = new OPAInput.Subject(opaProperties.getRequest().getSubject().getType(),
+            subjectId, subjectDetails, subjectAuthorities);
         if (opaInputSubjectCustomizer != null) {
-            subject = opaInputSubjectCustomizer.customize(authentication, object, subject);
+            // customizers used to get a mutable subject, so they get a mutable copy
+            subject = opaInputSubjectCustomizer.customize(authentication, object, new HashMap<>(subject));
         }
 
-        String resourceId = request.getServletPath();
-        Map<String, Object> resource = Map.ofEntries(
-            entry(RESOURCE_TYPE, opaProperties.getRequest().getResource().getType()),
-            entry(RESOURCE_ID, resourceId)
-        );
+        Map<String, Object> resource = new OPAInput.Resource(opaProperties.getRequest().getResource().getType(),
+            request.getServletPath());
         if (opaInputResourceCustomizer != null) {
             resource = opaInputResourceCustomizer.customize(authentication, object, resource);
         }
 
-        String actionName = request.getMethod();
-        String actionProtocol = request.getProtocol();
+        OPAInput.Headers.Builder actionHeaders = OPAInput.Headers.builder();
         Enumeration<String> headerNamesEnumeration = request.getHeaderNames();
-        Map<String, String> actionHeaders = new HashMap<>();
         while (headerNamesEnumeration.hasMoreElements()) {
             String headerName = headerNamesEnumeration.nextElement();
-            String headerValue = request.getHeader(headerName);
-            if (headerValue != null) {
-                actionHeaders.put(headerName, headerValue);
-            }
+            actionHeaders.header(headerName, request.getHeader(headerName));
         }
-        Map<String, Object> action = Map.ofEntries(
-            entry(ACTION_NAME, actionName),
-            entry(ACTION_PROTOCOL, actionProtocol),
-            entry(ACTION_HEADERS, actionHeaders)
-        );
+        Map<String, Object> action;
         if (opaInputActionCustomizer != null) {
-            action = opaInputActionCustomizer.customize(authentication, object, action);
+            // customizers used to get mutable headers, so they get a mutable copy
+            action = opaInputActionCustomizer.customize(authentication, object, new OPAInput.Action(
+                request.getMethod(), request.getProtocol(), new HashMap<>(actionHeaders.build())));
+        } else {
+            action = new OPAInput.Action(request.getMethod(), request.getProtocol(), actionHeaders.build());
         }
 
-        String contextHost = request.getRemoteHost();
-        String contextIp = request.getRemoteAddr();
-        Integer contextPort = request.getRemotePort();
-        Map<String, Object> context = new HashMap<>();
-        nullablePut(context, CONTEXT_TYPE, opaProperties.getRequest().getContext().getType());
-        nullablePut(context, CONTEXT_HOST, contextHost);
-        nullablePut(context, CONTEXT_IP, contextIp);
-        nullablePut(context, CONTEXT_PORT, contextPort);
+        String contextType = opaProperties.getRequest().getContext().getType();
+        Map<String, Object> context;
         if (contextDataProvider != null) {
             Object contextData = contextDataProvider.getContextData(authenticationSupplier, object);
-            context.put(CONTEXT_DATA, contextData);
+            context = new OPAInput.Context(contextType, request.getRemoteHost(), request.getRemoteAddr(),
+                request.getRemotePort(), contextData);
+        } else {
+            context = new OPAInput.Context(contextType, request.getRemoteHost(), request.getRemoteAddr(),
+                request.getRemotePort());
         }
         if (opaInputContextCustomizer != null) {
-            context = opaInputContextCustomizer.customize(authentication, object, context);
+            // customizers used to get a mutable context, so they get a mutable copy
+            context = opaInputContextCustomizer.customize(authentication, object, new HashMap<>(context));
         }
 
-        Map<String, Object> input = context != null
-            ? Map.of(SUBJECT, subject, RESOURCE, resource, ACTION, action, CONTEXT, context)
-            : Map.of(SUBJECT, subject, RESOURCE, resource, ACTION, action);
+        Map<String, Object> input = new OPAInput(subject, resource, action, context);
 
-        Optional.ofNullable(opaInputValidator).ifPresent(
-            validator -> validator.validate(authentication, object, input));
+        if (opaInputValidator != null) {
+            opaInputValidator.validate(authentication, object, input);
+        }
 
         return input;
     }
 
-    /**
-     * If {@code nullableValue} is null, this function is a NO-OP, otherwise, it calls
-     * {@code map}.put({@code key}, {@code nullableValue}).
-     */
-    private void nullablePut(Map<String, Object> map, String key, Object nullableValue) {
-        Optional.ofNullable(nullableValue).ifPresent(value -> map.put(key, value));
-    }
-
     @Autowired
     public void setOpaProperties(OPAProperties opaProperties) {
         this.opaProperties = opaProperties;
         reasonKey = opaProperties.getResponse().getContext().getReasonKey();
     }
 
+    /**
+     * Enables caching of OPA decisions. Passing null disables caching.
+     */
+    public void setOpaDecisionCache(OPADecisionCache opaDecisionCache) {
+        this.opaDecisionCache = opaDecisionCache;
+    }
+
+    /**
+     * Records every decision made by this instance using {@code opaMetricsRecorder}. Passing null disables recording.
+     */
+    public void setOpaMetricsRecorder(OPAMetricsRecorder opaMetricsRecorder) {
+        this.opaMetricsRecorder = opaMetricsRecorder;
+    }
+
+    /**
+     * Writes every decision made by this instance using {@code opaDecisionLogWriter}. Passing null disables writing.
+     */
+    public void setOpaDecisionLogWriter(OPADecisionLogWriter opaDecisionLogWriter) {
+        this.opaDecisionLogWriter = opaDecisionLogWriter;
+    }
+
+    /**
+     * Applies {@code opa.routes} to the requests authorized by this instance. Passing null disables routes.
+     */
+    public void setOpaRouteTable(OPARouteTable opaRouteTable) {
+        this.opaRouteTable = opaRouteTable;
+    }
+
+    /**
+     * Limits how long this instance waits for OPA using {@code opaTimeouts}. Passing null only applies the timeouts of
+     * routes.
+     */
+    public void setOpaTimeouts(OPATimeouts opaTimeouts) {
+        this.opaTimeouts = opaTimeouts;
+    }
+
+    /**
+     * Runs evaluations of this instance's blocking {@link OPAClient} which are timed out (or refreshed in the
+     * background) on {@code opaEvaluationExecutor}. Passing null uses the common pool.
+     */
+    public void setOpaEvaluationExecutor(OPAEvaluationExecutor opaEvaluationExecutor) {
+        this.opaEvaluationExecutor = opaEvaluationExecutor;
+    }
+
+    /**
+     * Applies {@code opaEvaluatorDecorators} (e.g. {@link com.styra.opa.springboot.evaluator.OPARequestCoalescer})
+     * around every evaluation done by this instance's {@link OPAClient}.
+     */
+    @Autowired(required = false)
+    public void setOpaEvaluatorDecorators(List<OPAEvaluatorDecorator> opaEvaluatorDecorators) {
+        this.opaEvaluatorDecorators = opaEvaluatorDecorators != null ? opaEvaluatorDecorators : List.of();
+        this.opaEvaluator = OPAEvaluatorDecorator.decorateAll(opaTransport, this.opaEvaluatorDecorators);
+    }
+
+    /**
+     * Sends evaluations using the non-blocking {@code opaAsyncClient} (e.g. to stream request bodies from pooled
+     * buffers) instead of this instance's {@link OPAClient}. Passing null restores the {@link OPAClient}.
+     */
+    public void setOpaAsyncClient(OPAAsyncClient opaAsyncClient) {
+        setOpaTransport(opaAsyncClient != null ? opaAsyncClient::evaluate : null);
+    }
+
+    /**
+     * Evaluates policies using {@code opaTransport} (e.g. the in-process
+     * {@link com.styra.opa.springboot.wasm.OPAWasmEvaluator}) instead of this instance's {@link OPAClient}. Passing
+     * null restores the {@link OPAClient}.
+     */
+    public void setOpaTransport(OPAEvaluator opaTransport) {
+        this.opaTransport = opaTransport != null ? opaTransport : this::evaluateWithOPAClient;
+        this.blockingTransport = opaTransport == null;
+        this.opaEvaluator = OPAEvaluatorDecorator.decorateAll(this.opaTransport, opaEvaluatorDecorators);
+    }
+
     /**
      * Changes the "preferred" key where the access decision reason should be searched for in the {@link OPAResponse}.
      * A default value of {@value OPAProperties.Response.Context#DEFAULT_REASON_KEY} is used. If the selected
@@ -0,0 +1,49 @@
+package com.styra.opa.springboot;
+
+/**
+ * How current an authorization decision is, e.g. to tell apart decisions served from a stale cache entry in metrics
+ * and logs.
+ */
+public enum OPADecisionOutcome {
+    /**
+     * OPA made the decision, or it was cached and has not expired yet.
+     */
+    FRESH,
+    /**
+     * The decision expired, but was served from the cache (within {@code opa.cache.stale-while-revalidate}) while it
+     * is refreshed in the background.
+     */
+    STALE,
+    /**
+     * OPA was not asked, or did not answer, so a fallback made the decision, e.g. an open
+     * {@link com.styra.opa.springboot.evaluator.OPACircuitBreaker}, a rejection of the concurrency limit or the
+     * bulkheads, or a route which is permitted or denied without asking OPA (see {@link OPAFallbackResponse}).
+     */
+    FALLBACK,
+    /**
+     * OPA did not respond in time, or the evaluation waited too long for its bulkhead, so a fallback made the
+     * decision ({@link OPATimeoutResponse}), e.g. {@code opa.timeout.decision}.
+     */
+    TIMEOUT,
+    /**
+     * OPA failed to make the decision, so either an expired decision was served from the cache (within
+     * {@code opa.cache.stale-if-error}), or the decision is the result of the error (e.g. access is denied).
+     */
+    ERROR;
+
+    /**
+     * Returns the outcome of {@code opaResponse}, which could be null if the evaluation failed with {@code error}.
+     */
+    public static OPADecisionOutcome of(OPAResponse opaResponse, Throwable error) {
+        if (opaResponse instanceof OPAStaleResponse staleResponse) {
+            return staleResponse.getOutcome();
+        }
+        if (opaResponse instanceof OPATimeoutResponse) {
+            return TIMEOUT;
+        }
+        if (opaResponse instanceof OPAFallbackResponse) {
+            return FALLBACK;
+        }
+        return opaResponse == null || error != null ? ERROR : FRESH;
+    }
+}
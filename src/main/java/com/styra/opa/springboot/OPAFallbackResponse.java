@@ -0,0 +1,29 @@
+package com.styra.opa.springboot;
+
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * An {@link OPAResponse} which was not provided by OPA, but by a fallback while OPA could not be asked, e.g. the
+ * default decision of an open {@link com.styra.opa.springboot.evaluator.OPACircuitBreaker}, or of a route which is
+ * permitted or denied without asking OPA. Fallback responses are never cached.
+ */
+public class OPAFallbackResponse extends OPAResponse {
+
+    public OPAFallbackResponse(boolean decision, OPAResponseContext context) {
+        super(decision, context);
+    }
+
+    /**
+     * Returns a fallback response created by {@code factory}, with {@code decision} and {@code reason} (in
+     * {@code context.reason_user.en}).
+     */
+    public static <R extends OPAFallbackResponse> R withReason(boolean decision, String reason,
+                                                               BiFunction<Boolean, OPAResponseContext, R> factory) {
+        OPAResponseContext context = new OPAResponseContext();
+        context.setReasonUser(Map.of(OPAProperties.Response.Context.DEFAULT_REASON_KEY, reason));
+        return factory.apply(decision, context);
+    }
+}
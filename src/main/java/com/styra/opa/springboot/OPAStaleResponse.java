@@ -0,0 +1,21 @@
+package com.styra.opa.springboot;
+
+/**
+ * An {@link OPAFallbackResponse} with the decision of an expired
+ * {@link com.styra.opa.springboot.cache.OPADecisionCache} entry, served either while the entry is refreshed in the
+ * background ({@link OPADecisionOutcome#STALE}), or because OPA failed to make the decision
+ * ({@link OPADecisionOutcome#ERROR}).
+ */
+public class OPAStaleResponse extends OPAFallbackResponse {
+
+    private final OPADecisionOutcome outcome;
+
+    public OPAStaleResponse(OPAResponse opaResponse, OPADecisionOutcome outcome) {
+        super(opaResponse.getDecision(), opaResponse.getContext());
+        this.outcome = outcome;
+    }
+
+    public OPADecisionOutcome getOutcome() {
+        return outcome;
+    }
+}
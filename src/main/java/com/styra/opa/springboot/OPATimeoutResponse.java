@@ -0,0 +1,13 @@
+package com.styra.opa.springboot;
+
+/**
+ * An {@link OPAFallbackResponse} returned because OPA did not respond in time (or the request's deadline had already
+ * passed), whose decision was chosen by {@code opa.timeout.decision}. Callers can tell it apart from errors, which
+ * result in a null response, and from decisions OPA made.
+ */
+public class OPATimeoutResponse extends OPAFallbackResponse {
+
+    public OPATimeoutResponse(boolean decision, OPAResponseContext context) {
+        super(decision, context);
+    }
+}
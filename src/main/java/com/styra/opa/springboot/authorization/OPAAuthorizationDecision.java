@@ -1,23 +1,31 @@
 package com.styra.opa.springboot.authorization;
 
+import com.styra.opa.springboot.OPADecisionOutcome;
 import com.styra.opa.springboot.OPAResponse;
 import lombok.Getter;
 import org.springframework.security.authorization.AuthorizationDecision;
 
 /**
- * Extends {@link AuthorizationDecision} which conveys {@link OPAResponse}.
+ * Extends {@link AuthorizationDecision} which conveys {@link OPAResponse}, and whether the decision is fresh, stale,
+ * made by a fallback, or the result of an error ({@link OPADecisionOutcome}).
  */
 @Getter
 public class OPAAuthorizationDecision extends AuthorizationDecision {
     private final OPAResponse opaResponse;
+    private final OPADecisionOutcome outcome;
 
+    /**
+     * @param opaResponse null if OPA failed to make the decision.
+     */
     public OPAAuthorizationDecision(boolean granted, OPAResponse opaResponse) {
         super(granted);
         this.opaResponse = opaResponse;
+        this.outcome = OPADecisionOutcome.of(opaResponse, null);
     }
 
     @Override
     public String toString() {
-        return getClass().getSimpleName() + " [granted=" + isGranted() + ", opaResponse=" + opaResponse + "]";
+        return getClass().getSimpleName() + " [granted=" + isGranted() + ", outcome=" + outcome + ", opaResponse="
+            + opaResponse + "]";
     }
 }
@@ -1,5 +1,7 @@
 package com.styra.opa.springboot.authorization;
 
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
 import com.styra.opa.springboot.autoconfigure.OPAProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,9 +9,22 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.authorization.AuthorizationEventPublisher;
 import org.springframework.security.authorization.SpringAuthorizationEventPublisher;
+import org.springframework.security.authorization.event.AuthorizationDeniedEvent;
 import org.springframework.security.authorization.event.AuthorizationGrantedEvent;
 import org.springframework.security.core.Authentication;
 
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
@@ -22,40 +37,205 @@ import java.util.function.Supplier;
  *     <li>
  *         <code>opa.authorization-event.granted.enabled</code>
  *     </li>
+ *     <li>
+ *         <code>opa.authorization-event.[denied|granted].sample-rate</code>
+ *     </li>
+ *     <li>
+ *         <code>opa.authorization-event.async.*</code>
+ *     </li>
  * </ul>
+ * If {@code opa.authorization-event.async.enabled} is true, events are put into a bounded, lock-free queue and
+ * published by a background thread, so that listeners do not add to the latency of requests. Such events do not
+ * reference the request: their object is an {@link OPAAuthorizationEventSnapshot}, and their
+ * {@link OPAAuthorizationDecision} conveys the {@link OPAResponse} without {@link OPAResponseContext#getData()}.
+ *
  * @see <a href="https://docs.spring.io/spring-security/reference/servlet/authorization/events.html">
  *     Authorization Events</a>
  */
-public class OPAAuthorizationEventPublisher implements AuthorizationEventPublisher {
+public class OPAAuthorizationEventPublisher implements AuthorizationEventPublisher, AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(OPAAuthorizationEventPublisher.class);
 
     private final ApplicationEventPublisher publisher;
     private final AuthorizationEventPublisher delegate;
     private final OPAProperties opaProperties;
+    // null unless events are published asynchronously
+    private final Executor executor;
+    private final Queue<PendingEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Map<CoalescingKey, PendingEvent> coalescedEvents = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
 
     public OPAAuthorizationEventPublisher(ApplicationEventPublisher publisher, OPAProperties opaProperties) {
+        this(publisher, opaProperties, opaProperties.getAuthorizationEvent().getAsync().isEnabled()
+            ? Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "opa-authorization-events");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null);
+    }
+
+    OPAAuthorizationEventPublisher(ApplicationEventPublisher publisher, OPAProperties opaProperties,
+                                   Executor executor) {
         this.publisher = publisher;
         this.delegate = new SpringAuthorizationEventPublisher(publisher);
         this.opaProperties = opaProperties;
+        this.executor = executor;
     }
 
     @Override
     public <T> void publishAuthorizationEvent(Supplier<Authentication> authentication, T object,
                                               AuthorizationDecision decision) {
-        if (!(decision instanceof OPAAuthorizationDecision)) {
+        if (!(decision instanceof OPAAuthorizationDecision opaAuthorizationDecision)) {
+            return;
+        }
+        OPAProperties.AuthorizationEventType eventType = decision.isGranted()
+            ? opaProperties.getAuthorizationEvent().getGranted() : opaProperties.getAuthorizationEvent().getDenied();
+        if (!eventType.isEnabled() || !isSampled(eventType.getSampleRate())) {
+            return;
+        }
+        if (executor != null) {
+            enqueue(authentication.get(), object, opaAuthorizationDecision);
             return;
         }
 
-        if (!decision.isGranted() && opaProperties.getAuthorizationEvent().getDenied().isEnabled()) {
+        if (!decision.isGranted()) {
             // Use `delegate` (instead of directly publishing denied events) to be forward-compatible with it:
             this.delegate.publishAuthorizationEvent(authentication, object, decision);
             LOGGER.trace("OPA AuthorizationDeniedEvent published.");
             return;
         }
-        if (decision.isGranted() && opaProperties.getAuthorizationEvent().getGranted().isEnabled()) {
-            AuthorizationGrantedEvent<T> granted = new AuthorizationGrantedEvent<>(authentication, object, decision);
-            this.publisher.publishEvent(granted);
-            LOGGER.trace("OPA AuthorizationGrantedEvent published.");
+        AuthorizationGrantedEvent<T> granted = new AuthorizationGrantedEvent<>(authentication, object, decision);
+        this.publisher.publishEvent(granted);
+        LOGGER.trace("OPA AuthorizationGrantedEvent published.");
+    }
+
+    /**
+     * Returns the number of events which were discarded because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events which were merged into a pending event because the queue was full.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of queued events.
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * Stops the background thread, after it published the queued events.
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
         }
     }
+
+    private static boolean isSampled(double sampleRate) {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void enqueue(Authentication authentication, Object object, OPAAuthorizationDecision decision) {
+        OPAResponse response = decision.getOpaResponse();
+        OPAResponseContext context = response != null ? response.getContext() : null;
+        if (context != null) {
+            response = new OPAResponse(response.getDecision(), new OPAResponseContext(context.getId(),
+                context.getReasonAdmin(), context.getReasonUser(), null));
+        }
+        PendingEvent event = new PendingEvent(decision.isGranted(), authentication,
+            OPAAuthorizationEventSnapshot.of(authentication, object, context != null ? context.getId() : null),
+            response);
+
+        OPAProperties.AuthorizationEvent.Async async = opaProperties.getAuthorizationEvent().getAsync();
+        if (queueSize.incrementAndGet() <= async.getQueueCapacity()) {
+            queue.offer(event);
+        } else {
+            queueSize.decrementAndGet();
+            overflow(event, async);
+        }
+        scheduleDrain();
+    }
+
+    private void overflow(PendingEvent event, OPAProperties.AuthorizationEvent.Async async) {
+        if (async.getOverflow() == OPAProperties.AuthorizationEvent.Async.Overflow.COALESCE) {
+            CoalescingKey key = new CoalescingKey(event.granted(), event.snapshot().subject(),
+                event.snapshot().method(), event.snapshot().requestUri());
+            // the bound is approximate, since concurrent events could pass the check at the same time
+            if (coalescedEvents.size() < async.getQueueCapacity() || coalescedEvents.containsKey(key)) {
+                coalescedEvents.merge(key, event, PendingEvent::coalesce);
+                coalesced.increment();
+                return;
+            }
+        }
+        dropped.increment();
+        LOGGER.trace("OPA authorization event dropped, since the queue is full.");
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            LOGGER.debug("OPA authorization events were not published, since the publisher is closed.");
+        }
+    }
+
+    private void drain() {
+        do {
+            for (PendingEvent event = queue.poll(); event != null; event = queue.poll()) {
+                queueSize.decrementAndGet();
+                publish(event);
+            }
+            for (CoalescingKey key : coalescedEvents.keySet()) {
+                PendingEvent event = coalescedEvents.remove(key);
+                if (event != null) {
+                    publish(event);
+                }
+            }
+            draining.set(false);
+            // an event could have been added after the queue was found empty, but before `draining` was reset
+        } while ((!queue.isEmpty() || !coalescedEvents.isEmpty()) && draining.compareAndSet(false, true));
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void publish(PendingEvent event) {
+        OPAAuthorizationDecision decision = new OPAAuthorizationDecision(event.granted(), event.response());
+        try {
+            if (event.granted()) {
+                publisher.publishEvent(new AuthorizationGrantedEvent<>(event::authentication, event.snapshot(),
+                    decision));
+            } else {
+                publisher.publishEvent(new AuthorizationDeniedEvent<>(event::authentication, event.snapshot(),
+                    decision));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("OPA authorization event listener failed:", e);
+        }
+    }
+
+    private record PendingEvent(boolean granted, Authentication authentication,
+                                OPAAuthorizationEventSnapshot snapshot, OPAResponse response) {
+
+        private PendingEvent coalesce(PendingEvent other) {
+            return new PendingEvent(granted, authentication, snapshot.coalesce(other.snapshot), response);
+        }
+    }
+
+    private record CoalescingKey(boolean granted, String subject, String method, String requestUri) {
+    }
 }
@@ -0,0 +1,38 @@
+package com.styra.opa.springboot.authorization;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.time.Instant;
+
+/**
+ * The object of authorization events which are published asynchronously, instead of the {@link
+ * RequestAuthorizationContext} (and hence the request), which should not be retained after the request completed.
+ *
+ * @param subject name of the authenticated principal, or null.
+ * @param method HTTP method of the request, or null if the authorized object was not an HTTP request.
+ * @param requestUri URI of the request (without the query string), or null if the authorized object was not an HTTP
+ *                   request.
+ * @param decisionId id of the OPA decision, if the policy returned one.
+ * @param timestamp when the request was authorized, or when the first of the coalesced events was.
+ * @param count number of events which were coalesced into this one, i.e. 1 unless the queue overflowed.
+ */
+public record OPAAuthorizationEventSnapshot(String subject, String method, String requestUri, String decisionId,
+                                            Instant timestamp, long count) {
+
+    static OPAAuthorizationEventSnapshot of(Authentication authentication, Object object, String decisionId) {
+        String subject = authentication != null ? authentication.getName() : null;
+        if (object instanceof RequestAuthorizationContext context) {
+            HttpServletRequest request = context.getRequest();
+            return new OPAAuthorizationEventSnapshot(subject, request.getMethod(), request.getRequestURI(), decisionId,
+                Instant.now(), 1);
+        }
+        return new OPAAuthorizationEventSnapshot(subject, null, null, decisionId, Instant.now(), 1);
+    }
+
+    OPAAuthorizationEventSnapshot coalesce(OPAAuthorizationEventSnapshot other) {
+        return new OPAAuthorizationEventSnapshot(subject, method, requestUri, decisionId, timestamp,
+            count + other.count);
+    }
+}
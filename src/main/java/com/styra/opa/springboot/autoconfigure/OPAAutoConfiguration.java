@@ -1,36 +1,103 @@
 package com.styra.opa.springboot.autoconfigure;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.styra.opa.OPAClient;
 import com.styra.opa.springboot.OPAAuthorizationManager;
 import com.styra.opa.springboot.OPAPathSelector;
 import com.styra.opa.springboot.authorization.OPAAuthorizationEventPublisher;
+import com.styra.opa.springboot.bulk.OPABulkAuthorizer;
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.client.OPAHttpClientFactory;
+import com.styra.opa.springboot.client.OPARequestBodyWriter;
+import com.styra.opa.springboot.decisionlog.OPADecisionLogWriter;
+import com.styra.opa.springboot.evaluator.OPABatchEvaluator;
+import com.styra.opa.springboot.evaluator.OPABulkheads;
+import com.styra.opa.springboot.evaluator.OPACircuitBreaker;
+import com.styra.opa.springboot.evaluator.OPAConcurrencyLimiter;
+import com.styra.opa.springboot.evaluator.OPAEvaluationExecutor;
+import com.styra.opa.springboot.evaluator.OPAEvaluatorDecorator;
+import com.styra.opa.springboot.evaluator.OPAHedger;
+import com.styra.opa.springboot.evaluator.OPARequestCoalescer;
+import com.styra.opa.springboot.evaluator.OPARetrier;
+import com.styra.opa.springboot.input.OPAInputActionCustomizer;
+import com.styra.opa.springboot.input.OPAInputContextCustomizer;
+import com.styra.opa.springboot.input.OPAInputResourceCustomizer;
+import com.styra.opa.springboot.input.OPAInputSubjectCustomizer;
 import com.styra.opa.springboot.input.OPAInputValidator;
+import com.styra.opa.springboot.loadbalancing.OPALoadBalancer;
+import com.styra.opa.springboot.method.OPAMethodAuthorizationManager;
+import com.styra.opa.springboot.metrics.OPAMetricsRecorder;
+import com.styra.opa.springboot.partial.OPAPartialEvaluator;
+import com.styra.opa.springboot.reactive.OPAReactiveAuthorizationManager;
+import com.styra.opa.springboot.route.OPARouteTable;
+import com.styra.opa.springboot.timeout.OPATimeouts;
+import com.styra.opa.springboot.wasm.OPAWasmEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * {@link EnableAutoConfiguration Auto-configuration} for OPA authorization support.
  */
 @AutoConfiguration
 @EnableConfigurationProperties(OPAProperties.class)
-@AutoConfigureBefore(SecurityAutoConfiguration.class)
+@AutoConfigureBefore({SecurityAutoConfiguration.class, ReactiveSecurityAutoConfiguration.class})
 @ConditionalOnClass(OPAClient.class)
 public class OPAAutoConfiguration {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAAutoConfiguration.class);
+
     /**
-     * Create an {@link OPAClient} bean using {@link OPAProperties#getUrl()}.
+     * Create an {@link OPAClient} bean using {@link OPAProperties#getUrl()} and the {@link OPAHttpClientFactory}.
      */
     @Bean
     @ConditionalOnMissingBean(OPAClient.class)
-    public OPAClient opaClient(OPAProperties opaProperties) {
-        return new OPAClient(opaProperties.getUrl());
+    public OPAClient opaClient(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory) {
+        return opaHttpClientFactory.createOPAClient(opaProperties.getUrl());
+    }
+
+    /**
+     * Create an {@link OPAHttpClientFactory} to build the HTTP transport of OPA clients using
+     * {@link OPAProperties#getHttp()}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPAHttpClientFactory opaHttpClientFactory(OPAProperties opaProperties) {
+        return new OPAHttpClientFactory(opaProperties.getHttp());
     }
 
     /**
@@ -39,16 +106,121 @@ public class OPAAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean
     public OPAPathSelector opaPathSelector(OPAProperties opaProperties) {
-        return (authentication, requestAuthorizationContext, opaInput) -> opaProperties.getPath();
+        return new DefaultOPAPathSelector(opaProperties);
+    }
+
+    /**
+     * Create an {@link OPARouteTable} from {@code opa.routes}, which is applied by {@link OPAAuthorizationManager}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPARouteTable opaRouteTable(OPAProperties opaProperties) {
+        return new OPARouteTable(opaProperties.getRoutes());
+    }
+
+    /**
+     * Create an {@link OPATimeouts} to limit how long the {@link OPAAuthorizationManager} and the
+     * {@link OPAReactiveAuthorizationManager} wait for OPA, using {@code opa.timeout.*} properties.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPATimeouts opaTimeouts(OPAProperties opaProperties,
+                                   ObjectProvider<OPALastKnownDecisions> opaLastKnownDecisions) {
+        return new OPATimeouts(opaProperties.getTimeout(), opaLastKnownDecisions.getIfAvailable());
+    }
+
+    /**
+     * Create an {@link OPAEvaluationExecutor} to run evaluations off the calling thread, using {@code opa.executor.*}
+     * properties, which is shared by timeouts, retries, hedges and bulkheads.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPAEvaluationExecutor opaEvaluationExecutor(OPAProperties opaProperties) {
+        return new OPAEvaluationExecutor(opaProperties.getExecutor());
+    }
+
+    /**
+     * Create an {@link OPADecisionKeyGenerator} using {@code opa.cache.excluded-*} properties, which is shared by the
+     * decision cache and every component which remembers or compares decisions (e.g. the {@link OPACircuitBreaker}).
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPADecisionKeyGenerator opaDecisionKeyGenerator(OPAProperties opaProperties) {
+        return new OPADecisionKeyGenerator(opaProperties.getCache());
+    }
+
+    /**
+     * Create an {@link OPALastKnownDecisions} using {@code opa.cache.last-known-maximum-size}, which is shared by every
+     * component whose fallback could be the last known decision (e.g. the {@link OPACircuitBreaker}), if Caffeine is on
+     * the classpath. Otherwise, those components fall back to deny instead of the last known decision.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+    public OPALastKnownDecisions opaLastKnownDecisions(OPAProperties opaProperties,
+                                                      OPADecisionKeyGenerator opaDecisionKeyGenerator) {
+        return new OPALastKnownDecisions(opaProperties.getCache(), opaDecisionKeyGenerator);
     }
 
     /**
      * Create an {@link OPAAuthorizationManager} bean using {@link OPAClient} bean and {@link OPAProperties#getPath()}.
+     * A warning is logged if a custom {@link OPAClient} bean is defined while features are enabled which send their
+     * requests with {@link OPAAsyncClient}s of the {@link OPAHttpClientFactory}, since those only apply
+     * {@link OPAProperties#getUrl()} and {@link OPAProperties#getHttp()} (e.g. {@code opa.http.headers}).
      */
     @Bean
     @ConditionalOnMissingBean(OPAAuthorizationManager.class)
-    public OPAAuthorizationManager opaAuthorizationManager(OPAClient opaClient, OPAProperties opaProperties) {
-        return new OPAAuthorizationManager(opaClient, opaProperties.getPath());
+    public OPAAuthorizationManager opaAuthorizationManager(OPAClient opaClient, OPAProperties opaProperties,
+                                                           OPAHttpClientFactory opaHttpClientFactory,
+                                                           ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter,
+                                                           ObjectProvider<OPAWasmEvaluator> opaWasmEvaluator,
+                                                           ObjectProvider<OPALoadBalancer> opaLoadBalancer) {
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, opaProperties.getPath());
+        OPARequestBodyWriter requestBodyWriter = opaRequestBodyWriter.getIfAvailable();
+        OPAWasmEvaluator wasmEvaluator = opaWasmEvaluator.getIfAvailable();
+        OPALoadBalancer loadBalancer = opaLoadBalancer.getIfAvailable();
+        if (!opaHttpClientFactory.isCreatedClient(opaClient) && (requestBodyWriter != null || loadBalancer != null
+            || opaProperties.getBatch().isEnabled() || opaProperties.getBulk().isEnabled()
+            || opaProperties.getBulkheads().isEnabled() || opaProperties.getPartialEvaluation().isEnabled())) {
+            LOGGER.warn("a custom OPAClient bean is defined, but streaming, load balancing, batching, bulk "
+                + "authorization, bulkheads and partial evaluation send requests to opa.url (or opa.urls) with "
+                + "opa.http.* settings only; set opa.http.headers to send custom headers with them");
+        }
+        if (wasmEvaluator != null) {
+            opaAuthorizationManager.setOpaTransport(wasmEvaluator);
+        } else if (loadBalancer != null) {
+            opaAuthorizationManager.setOpaTransport(loadBalancer);
+        } else if (requestBodyWriter != null) {
+            opaAuthorizationManager.setOpaAsyncClient(opaHttpClientFactory.createOPAAsyncClient(opaProperties.getUrl(),
+                requestBodyWriter));
+        }
+        return opaAuthorizationManager;
+    }
+
+    /**
+     * Create an {@link OPAMethodAuthorizationManager} to authorize method invocations using the
+     * {@link OPAAuthorizationManager} bean, if {@code opa.method-security.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.method-security", name = "enabled", havingValue = "true")
+    public OPAMethodAuthorizationManager opaMethodAuthorizationManager(
+        OPAAuthorizationManager opaAuthorizationManager) {
+        return new OPAMethodAuthorizationManager(opaAuthorizationManager);
+    }
+
+    /**
+     * Create an interceptor which authorizes the methods annotated with
+     * {@link com.styra.opa.springboot.method.OPAAuthorize} using the {@link OPAMethodAuthorizationManager} bean, if
+     * {@code opa.method-security.enabled} is true. It is applied once method security is enabled.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @ConditionalOnMissingBean(name = "opaMethodAuthorizationInterceptor")
+    @ConditionalOnProperty(prefix = "opa.method-security", name = "enabled", havingValue = "true")
+    public AuthorizationManagerBeforeMethodInterceptor opaMethodAuthorizationInterceptor(
+        OPAMethodAuthorizationManager opaMethodAuthorizationManager) {
+        return opaMethodAuthorizationManager.createInterceptor();
     }
 
     /**
@@ -68,4 +240,298 @@ public class OPAAutoConfiguration {
                                                                          OPAProperties opaProperties) {
         return new OPAAuthorizationEventPublisher(publisher, opaProperties);
     }
+
+    /**
+     * Create an {@link OPADecisionLogWriter} to write every decision to local NDJSON files, if
+     * {@code opa.decision-log.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.decision-log", name = "enabled", havingValue = "true")
+    public OPADecisionLogWriter opaDecisionLogWriter(OPAProperties opaProperties) throws IOException {
+        return new OPADecisionLogWriter(opaProperties.getDecisionLog());
+    }
+
+    /**
+     * Create an {@link OPADecisionCache} to cache OPA decisions in-process, if {@code opa.cache.enabled} is true and
+     * Caffeine is on the classpath.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+    @ConditionalOnProperty(prefix = "opa.cache", name = "enabled", havingValue = "true")
+    public OPADecisionCache opaDecisionCache(OPAProperties opaProperties,
+                                             OPADecisionKeyGenerator opaDecisionKeyGenerator) {
+        return new OPADecisionCache(opaProperties.getCache(), opaDecisionKeyGenerator);
+    }
+
+    /**
+     * Create an {@link OPARequestCoalescer} to coalesce identical, concurrent OPA evaluations, if
+     * {@code opa.coalescing.enabled} is true. Requests are considered identical if they have the same
+     * {@link com.styra.opa.springboot.cache.OPADecisionKey}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.coalescing", name = "enabled", havingValue = "true")
+    public OPARequestCoalescer opaRequestCoalescer(OPADecisionKeyGenerator opaDecisionKeyGenerator) {
+        return new OPARequestCoalescer(opaDecisionKeyGenerator);
+    }
+
+    /**
+     * Create an {@link OPABatchEvaluator} to send concurrent OPA evaluations in batches, if {@code opa.batch.enabled}
+     * is true.
+     *
+     * @throws IllegalStateException if {@code opa.wasm.enabled} is true or {@code opa.urls} is set, since batches are
+     * always sent to {@link OPAProperties#getUrl()}, and would silently bypass the in-process or load-balanced
+     * transport.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.batch", name = "enabled", havingValue = "true")
+    public OPABatchEvaluator opaBatchEvaluator(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory,
+                                               ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter) {
+        if (opaProperties.getWasm().isEnabled()) {
+            throw new IllegalStateException("opa.batch could not be enabled together with opa.wasm, since batches are "
+                + "sent to " + opaProperties.getUrl());
+        }
+        if (!opaProperties.getUrls().isEmpty()) {
+            throw new IllegalStateException("opa.batch could not be enabled together with opa.urls, since batches are "
+                + "sent to " + opaProperties.getUrl());
+        }
+        return new OPABatchEvaluator(opaHttpClientFactory.createOPAAsyncClient(opaProperties.getUrl(),
+            opaRequestBodyWriter.getIfAvailable()), opaProperties.getBatch());
+    }
+
+    /**
+     * Create an {@link OPABulkAuthorizer} to authorize lists of resources using AuthZEN multi-evaluations of
+     * {@code opa.bulk.path}, if {@code opa.bulk.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.bulk", name = "enabled", havingValue = "true")
+    public OPABulkAuthorizer opaBulkAuthorizer(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory,
+                                               ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter) {
+        return new OPABulkAuthorizer(opaHttpClientFactory.createOPAAsyncClient(opaProperties.getUrl(),
+            opaRequestBodyWriter.getIfAvailable()), opaProperties);
+    }
+
+    /**
+     * Create an {@link OPACircuitBreaker} to fail fast with default decisions while OPA is slow or unavailable, if
+     * {@code opa.circuit-breaker.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.circuit-breaker", name = "enabled", havingValue = "true")
+    public OPACircuitBreaker opaCircuitBreaker(OPAProperties opaProperties,
+                                               ObjectProvider<OPALastKnownDecisions> opaLastKnownDecisions) {
+        return new OPACircuitBreaker(opaProperties.getCircuitBreaker(), opaLastKnownDecisions.getIfAvailable());
+    }
+
+    /**
+     * Create an {@link OPAConcurrencyLimiter} to adapt the number of concurrent OPA evaluations to OPA's latency, if
+     * {@code opa.concurrency-limit.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.concurrency-limit", name = "enabled", havingValue = "true")
+    public OPAConcurrencyLimiter opaConcurrencyLimiter(OPAProperties opaProperties,
+                                                       ObjectProvider<OPALastKnownDecisions> opaLastKnownDecisions) {
+        return new OPAConcurrencyLimiter(opaProperties.getConcurrencyLimit(), opaLastKnownDecisions.getIfAvailable());
+    }
+
+    /**
+     * Create {@link OPABulkheads} to isolate the evaluations of the policy paths configured in
+     * {@code opa.bulkheads.paths}, if {@code opa.bulkheads.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.bulkheads", name = "enabled", havingValue = "true")
+    public OPABulkheads opaBulkheads(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory,
+                                     ObjectProvider<OPALastKnownDecisions> opaLastKnownDecisions,
+                                     OPAEvaluationExecutor opaEvaluationExecutor,
+                                     ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter) {
+        return new OPABulkheads(opaProperties.getBulkheads(), opaLastKnownDecisions.getIfAvailable(),
+            opaEvaluationExecutor, path -> opaHttpClientFactory.createDedicatedOPAAsyncClient(opaProperties.getUrl(),
+                opaRequestBodyWriter.getIfAvailable())::evaluate);
+    }
+
+    /**
+     * Create an {@link OPARetrier} to retry OPA evaluations which failed with a transient error, if
+     * {@code opa.retry.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.retry", name = "enabled", havingValue = "true")
+    public OPARetrier opaRetrier(OPAProperties opaProperties, OPAEvaluationExecutor opaEvaluationExecutor) {
+        return new OPARetrier(opaProperties.getRetry(), opaEvaluationExecutor);
+    }
+
+    /**
+     * Create an {@link OPAHedger} to send a duplicate of OPA evaluations which did not respond within the latency
+     * percentile of their policy path, if {@code opa.hedging.enabled} is true. A warning is logged if evaluations are
+     * sent by the blocking {@link OPAClient} (or evaluated in-process), since they could then never be hedged.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.hedging", name = "enabled", havingValue = "true")
+    public OPAHedger opaHedger(OPAProperties opaProperties, OPAEvaluationExecutor opaEvaluationExecutor,
+                               ObjectProvider<OPAAsyncClient> opaAsyncClient) {
+        boolean nonBlocking = opaProperties.getStreaming().isEnabled() || !opaProperties.getUrls().isEmpty()
+            || opaProperties.getBatch().isEnabled() || opaAsyncClient.getIfAvailable() != null;
+        if (opaProperties.getWasm().isEnabled() || !nonBlocking) {
+            LOGGER.warn("opa.hedging is enabled, but evaluations complete before they could be hedged, since they are "
+                + "not sent by a non-blocking OPAAsyncClient; enable opa.streaming or set opa.urls to hedge them");
+        }
+        return new OPAHedger(opaProperties.getHedging(), opaEvaluationExecutor);
+    }
+
+    /**
+     * Create an {@link OPALoadBalancer} to balance OPA evaluations across the replicas of {@code opa.urls}, if it is
+     * not empty.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @Conditional(OnOPAUrlsCondition.class)
+    public OPALoadBalancer opaLoadBalancer(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory,
+                                           ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter) {
+        if (opaProperties.getBulk().isEnabled() || opaProperties.getPartialEvaluation().isEnabled()) {
+            LOGGER.warn("opa.urls is set together with opa.bulk or opa.partial-evaluation, their requests are still "
+                + "sent to {}", opaProperties.getUrl());
+        }
+        OPARequestBodyWriter requestBodyWriter = opaRequestBodyWriter.getIfAvailable();
+        return new OPALoadBalancer(opaProperties.getUrls(), opaProperties.getLoadBalancing(),
+            url -> opaHttpClientFactory.createOPAAsyncClient(url, requestBodyWriter));
+    }
+
+    /**
+     * Create an {@link OPAPartialEvaluator} to make decisions of {@code opa.path} in-process from residual queries, if
+     * {@code opa.partial-evaluation.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.partial-evaluation", name = "enabled", havingValue = "true")
+    public OPAPartialEvaluator opaPartialEvaluator(OPAProperties opaProperties,
+                                                   OPAHttpClientFactory opaHttpClientFactory) {
+        return new OPAPartialEvaluator(opaHttpClientFactory.createOPAAsyncClient(opaProperties.getUrl(), null),
+            opaProperties);
+    }
+
+    /**
+     * Create an {@link OPAWasmEvaluator} to evaluate policies in-process from a bundle compiled to WebAssembly, if
+     * {@code opa.wasm.enabled} is true and the OPA Java Wasm SDK is on the classpath.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnClass(name = "com.styra.opa.wasm.OpaPolicy")
+    @ConditionalOnProperty(prefix = "opa.wasm", name = "enabled", havingValue = "true")
+    public OPAWasmEvaluator opaWasmEvaluator(OPAProperties opaProperties) throws IOException {
+        return new OPAWasmEvaluator(opaProperties.getWasm());
+    }
+
+    /**
+     * Create an {@link OPARequestBodyWriter} to stream OPA request bodies into pooled buffers, if
+     * {@code opa.streaming.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "opa.streaming", name = "enabled", havingValue = "true")
+    public OPARequestBodyWriter opaRequestBodyWriter(OPAProperties opaProperties) {
+        return new OPARequestBodyWriter(new ObjectMapper(), opaProperties.getStreaming());
+    }
+
+    /**
+     * Auto-configuration for Spring WebFlux applications, which authorize requests using a non-blocking
+     * {@link OPAAsyncClient}.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnClass({ServerWebExchange.class, Mono.class})
+    public static class OPAReactiveAutoConfiguration {
+
+        /**
+         * Create an {@link OPAAsyncClient} bean using {@link OPAProperties#getUrl()}.
+         */
+        @Bean
+        @ConditionalOnMissingBean(OPAAsyncClient.class)
+        public OPAAsyncClient opaAsyncClient(OPAProperties opaProperties, OPAHttpClientFactory opaHttpClientFactory,
+                                             ObjectProvider<OPARequestBodyWriter> opaRequestBodyWriter) {
+            return opaHttpClientFactory.createOPAAsyncClient(opaProperties.getUrl(),
+                opaRequestBodyWriter.getIfAvailable());
+        }
+
+        /**
+         * Create an {@link OPAReactiveAuthorizationManager} bean using {@link OPAAsyncClient} bean and
+         * {@link OPAProperties#getPath()}, which applies the {@link OPARouteTable}, {@link OPATimeouts} and
+         * {@link OPAInputValidator} beans. {@code OPAInput*Customizer} and custom {@link OPAPathSelector} beans are
+         * bound to servlet requests, so they are skipped for reactive requests, and a warning is logged if any is
+         * defined.
+         */
+        @Bean
+        @ConditionalOnMissingBean(OPAReactiveAuthorizationManager.class)
+        public OPAReactiveAuthorizationManager opaReactiveAuthorizationManager(
+            OPAAsyncClient opaAsyncClient, OPAProperties opaProperties,
+            ObjectProvider<OPADecisionCache> opaDecisionCache,
+            ObjectProvider<OPAEvaluatorDecorator> opaEvaluatorDecorators,
+            ObjectProvider<OPAMetricsRecorder> opaMetricsRecorder,
+            ObjectProvider<OPADecisionLogWriter> opaDecisionLogWriter,
+            ObjectProvider<OPALoadBalancer> opaLoadBalancer,
+            ObjectProvider<OPARouteTable> opaRouteTable,
+            ObjectProvider<OPAInputValidator> opaInputValidator,
+            ObjectProvider<OPATimeouts> opaTimeouts,
+            ObjectProvider<OPAPathSelector> opaPathSelector,
+            ObjectProvider<OPAInputSubjectCustomizer> opaInputSubjectCustomizer,
+            ObjectProvider<OPAInputResourceCustomizer> opaInputResourceCustomizer,
+            ObjectProvider<OPAInputActionCustomizer> opaInputActionCustomizer,
+            ObjectProvider<OPAInputContextCustomizer> opaInputContextCustomizer) {
+            if (Stream.of(opaInputSubjectCustomizer, opaInputResourceCustomizer, opaInputActionCustomizer,
+                opaInputContextCustomizer).anyMatch(customizer -> customizer.getIfAvailable() != null)) {
+                LOGGER.warn("OPAInput*Customizer beans only apply to servlet requests, they are skipped by "
+                    + "OPAReactiveAuthorizationManager");
+            }
+            OPAPathSelector pathSelector = opaPathSelector.getIfAvailable();
+            if (pathSelector != null && !(pathSelector instanceof DefaultOPAPathSelector)) {
+                LOGGER.warn("OPAPathSelector beans only apply to servlet requests, they are skipped by "
+                    + "OPAReactiveAuthorizationManager (use opa.routes[].path instead)");
+            }
+            var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(opaAsyncClient,
+                opaProperties.getPath(), opaProperties);
+            opaReactiveAuthorizationManager.setOpaRouteTable(opaRouteTable.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaInputValidator(opaInputValidator.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaTimeouts(opaTimeouts.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaTransport(opaLoadBalancer.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaDecisionCache(opaDecisionCache.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaEvaluatorDecorators(opaEvaluatorDecorators.orderedStream().toList());
+            opaReactiveAuthorizationManager.setOpaMetricsRecorder(opaMetricsRecorder.getIfAvailable());
+            opaReactiveAuthorizationManager.setOpaDecisionLogWriter(opaDecisionLogWriter.getIfAvailable());
+            return opaReactiveAuthorizationManager;
+        }
+    }
+
+    /**
+     * The default {@link OPAPathSelector}, which selects {@link OPAProperties#getPath()} for every request.
+     */
+    record DefaultOPAPathSelector(OPAProperties opaProperties) implements OPAPathSelector {
+
+        @Override
+        public String selectPath(Authentication authentication, RequestAuthorizationContext requestAuthorizationContext,
+                                 Map<String, Object> opaInput) {
+            return opaProperties.getPath();
+        }
+    }
+
+    /**
+     * Matches if {@code opa.urls} contains at least one URL, whether it is given as a list or as a comma-separated
+     * string.
+     */
+    static class OnOPAUrlsCondition extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            boolean urlsSet = Binder.get(context.getEnvironment())
+                .bind("opa.urls", Bindable.listOf(String.class))
+                .map(urls -> !urls.isEmpty())
+                .orElse(false);
+            return urlsSet ? ConditionOutcome.match("opa.urls is set") : ConditionOutcome.noMatch("opa.urls is empty");
+        }
+    }
 }
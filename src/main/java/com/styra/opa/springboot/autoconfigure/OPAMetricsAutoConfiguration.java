@@ -0,0 +1,218 @@
+package com.styra.opa.springboot.autoconfigure;
+
+import com.styra.opa.springboot.CachingContextDataProvider;
+import com.styra.opa.springboot.authorization.OPAAuthorizationEventPublisher;
+import com.styra.opa.springboot.bulk.OPABulkAuthorizer;
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.decisionlog.OPADecisionLogWriter;
+import com.styra.opa.springboot.evaluator.OPABatchEvaluator;
+import com.styra.opa.springboot.evaluator.OPABulkheads;
+import com.styra.opa.springboot.evaluator.OPACircuitBreaker;
+import com.styra.opa.springboot.evaluator.OPAConcurrencyLimiter;
+import com.styra.opa.springboot.evaluator.OPAEvaluationExecutor;
+import com.styra.opa.springboot.evaluator.OPAHedger;
+import com.styra.opa.springboot.evaluator.OPARequestCoalescer;
+import com.styra.opa.springboot.evaluator.OPARetrier;
+import com.styra.opa.springboot.loadbalancing.OPALoadBalancer;
+import com.styra.opa.springboot.metrics.CachingContextDataProviderMeterBinder;
+import com.styra.opa.springboot.metrics.MicrometerOPAMetricsRecorder;
+import com.styra.opa.springboot.metrics.OPAAuthorizationEventPublisherMeterBinder;
+import com.styra.opa.springboot.metrics.OPABulkAuthorizerMeterBinder;
+import com.styra.opa.springboot.metrics.OPABulkheadsMeterBinder;
+import com.styra.opa.springboot.metrics.OPACircuitBreakerMeterBinder;
+import com.styra.opa.springboot.metrics.OPAConcurrencyLimiterMeterBinder;
+import com.styra.opa.springboot.metrics.OPADecisionLogWriterMeterBinder;
+import com.styra.opa.springboot.metrics.OPAEvaluationExecutorMeterBinder;
+import com.styra.opa.springboot.metrics.OPAHedgerMeterBinder;
+import com.styra.opa.springboot.metrics.OPALoadBalancerMeterBinder;
+import com.styra.opa.springboot.metrics.OPAMeterBinder;
+import com.styra.opa.springboot.metrics.OPAMetricsRecorder;
+import com.styra.opa.springboot.metrics.OPAPartialEvaluatorMeterBinder;
+import com.styra.opa.springboot.metrics.OPARetrierMeterBinder;
+import com.styra.opa.springboot.metrics.OPATimeoutsMeterBinder;
+import com.styra.opa.springboot.partial.OPAPartialEvaluator;
+import com.styra.opa.springboot.timeout.OPATimeouts;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for recording OPA authorization metrics with Micrometer. It is
+ * only active if a {@link MeterRegistry} bean is available (e.g. provided by Spring Boot Actuator), which is why it
+ * runs after the Actuator metrics auto-configurations rather than being part of {@link OPAAutoConfiguration}.
+ */
+@AutoConfiguration(afterName = {
+    "org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+    "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+    "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"
+}, after = OPAAutoConfiguration.class)
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnBean(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "opa.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class OPAMetricsAutoConfiguration {
+
+    /**
+     * Create a {@link MicrometerOPAMetricsRecorder} to record every authorization decision.
+     */
+    @Bean
+    @ConditionalOnMissingBean(OPAMetricsRecorder.class)
+    public MicrometerOPAMetricsRecorder opaMetricsRecorder(MeterRegistry meterRegistry, OPAProperties opaProperties) {
+        return new MicrometerOPAMetricsRecorder(meterRegistry, opaProperties.getMetrics());
+    }
+
+    /**
+     * Create an {@link OPAMeterBinder} to expose the counters of the enabled OPA components.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OPAMeterBinder opaMeterBinder(ObjectProvider<OPADecisionCache> opaDecisionCache,
+                                         ObjectProvider<OPARequestCoalescer> opaRequestCoalescer,
+                                         ObjectProvider<OPABatchEvaluator> opaBatchEvaluator) {
+        return new OPAMeterBinder(opaDecisionCache.getIfAvailable(), opaRequestCoalescer.getIfAvailable(),
+            opaBatchEvaluator.getIfAvailable());
+    }
+
+    /**
+     * Create an {@link OPACircuitBreakerMeterBinder} to expose the state of the {@link OPACircuitBreaker}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPACircuitBreaker.class)
+    public OPACircuitBreakerMeterBinder opaCircuitBreakerMeterBinder(OPACircuitBreaker opaCircuitBreaker) {
+        return new OPACircuitBreakerMeterBinder(opaCircuitBreaker);
+    }
+
+    /**
+     * Create an {@link OPAConcurrencyLimiterMeterBinder} to expose the limit of the {@link OPAConcurrencyLimiter}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPAConcurrencyLimiter.class)
+    public OPAConcurrencyLimiterMeterBinder opaConcurrencyLimiterMeterBinder(
+        OPAConcurrencyLimiter opaConcurrencyLimiter) {
+        return new OPAConcurrencyLimiterMeterBinder(opaConcurrencyLimiter);
+    }
+
+    /**
+     * Create an {@link OPABulkheadsMeterBinder} to expose the saturation of the {@link OPABulkheads}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPABulkheads.class)
+    public OPABulkheadsMeterBinder opaBulkheadsMeterBinder(OPABulkheads opaBulkheads) {
+        return new OPABulkheadsMeterBinder(opaBulkheads);
+    }
+
+    /**
+     * Create an {@link OPARetrierMeterBinder} to expose the retries and the retry budget of the {@link OPARetrier}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPARetrier.class)
+    public OPARetrierMeterBinder opaRetrierMeterBinder(OPARetrier opaRetrier) {
+        return new OPARetrierMeterBinder(opaRetrier);
+    }
+
+    /**
+     * Create an {@link OPAHedgerMeterBinder} to expose the hedges and the hedge budget of the {@link OPAHedger}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPAHedger.class)
+    public OPAHedgerMeterBinder opaHedgerMeterBinder(OPAHedger opaHedger) {
+        return new OPAHedgerMeterBinder(opaHedger);
+    }
+
+    /**
+     * Create an {@link OPALoadBalancerMeterBinder} to expose the state of the replicas of the {@link OPALoadBalancer}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPALoadBalancer.class)
+    public OPALoadBalancerMeterBinder opaLoadBalancerMeterBinder(OPALoadBalancer opaLoadBalancer) {
+        return new OPALoadBalancerMeterBinder(opaLoadBalancer);
+    }
+
+    /**
+     * Create an {@link OPAPartialEvaluatorMeterBinder} to expose the counters of the {@link OPAPartialEvaluator}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPAPartialEvaluator.class)
+    public OPAPartialEvaluatorMeterBinder opaPartialEvaluatorMeterBinder(OPAPartialEvaluator opaPartialEvaluator) {
+        return new OPAPartialEvaluatorMeterBinder(opaPartialEvaluator);
+    }
+
+    /**
+     * Create a {@link CachingContextDataProviderMeterBinder} to expose the hits and misses of a
+     * {@link CachingContextDataProvider} bean.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(CachingContextDataProvider.class)
+    public CachingContextDataProviderMeterBinder cachingContextDataProviderMeterBinder(
+        CachingContextDataProvider cachingContextDataProvider) {
+        return new CachingContextDataProviderMeterBinder(cachingContextDataProvider);
+    }
+
+    /**
+     * Create an {@link OPAAuthorizationEventPublisherMeterBinder} to expose the queue of the
+     * {@link OPAAuthorizationEventPublisher}, if {@code opa.authorization-event.async.enabled} is true.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPAAuthorizationEventPublisher.class)
+    @ConditionalOnProperty(prefix = "opa.authorization-event.async", name = "enabled", havingValue = "true")
+    public OPAAuthorizationEventPublisherMeterBinder opaAuthorizationEventPublisherMeterBinder(
+        OPAAuthorizationEventPublisher opaAuthorizationEventPublisher) {
+        return new OPAAuthorizationEventPublisherMeterBinder(opaAuthorizationEventPublisher);
+    }
+
+    /**
+     * Create an {@link OPADecisionLogWriterMeterBinder} to expose the backpressure of an {@link OPADecisionLogWriter}
+     * bean.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPADecisionLogWriter.class)
+    public OPADecisionLogWriterMeterBinder opaDecisionLogWriterMeterBinder(OPADecisionLogWriter opaDecisionLogWriter) {
+        return new OPADecisionLogWriterMeterBinder(opaDecisionLogWriter);
+    }
+
+    /**
+     * Create an {@link OPABulkAuthorizerMeterBinder} to expose the counters of an {@link OPABulkAuthorizer} bean.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPABulkAuthorizer.class)
+    public OPABulkAuthorizerMeterBinder opaBulkAuthorizerMeterBinder(OPABulkAuthorizer opaBulkAuthorizer) {
+        return new OPABulkAuthorizerMeterBinder(opaBulkAuthorizer);
+    }
+
+    /**
+     * Create an {@link OPATimeoutsMeterBinder} to expose the timeout decisions of the {@link OPATimeouts}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPATimeouts.class)
+    public OPATimeoutsMeterBinder opaTimeoutsMeterBinder(OPATimeouts opaTimeouts) {
+        return new OPATimeoutsMeterBinder(opaTimeouts);
+    }
+
+    /**
+     * Create an {@link OPAEvaluationExecutorMeterBinder} to expose the saturation of the {@link OPAEvaluationExecutor}.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(OPAEvaluationExecutor.class)
+    public OPAEvaluationExecutorMeterBinder opaEvaluationExecutorMeterBinder(
+        OPAEvaluationExecutor opaEvaluationExecutor) {
+        return new OPAEvaluationExecutorMeterBinder(opaEvaluationExecutor);
+    }
+}
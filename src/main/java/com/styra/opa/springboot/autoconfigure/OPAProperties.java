@@ -4,6 +4,14 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration properties for OPA authorization support.
@@ -19,6 +27,11 @@ public class OPAProperties {
      * URL of the OPA server. Default is {@value DEFAULT_URL}.
      */
     private String url = DEFAULT_URL;
+    /**
+     * URLs of the OPA replicas to balance evaluations across, using {@code opa.load-balancing.*}. If empty,
+     * evaluations are sent to {@code opa.url}. Default is empty.
+     */
+    private List<String> urls = new ArrayList<>();
     /**
      * Policy path in OPA. Default is null.
      */
@@ -26,6 +39,31 @@ public class OPAProperties {
     private Request request = new Request();
     private Response response = new Response();
     private AuthorizationEvent authorizationEvent = new AuthorizationEvent();
+    private Cache cache = new Cache();
+    private Coalescing coalescing = new Coalescing();
+    private Batch batch = new Batch();
+    private Metrics metrics = new Metrics();
+    private Streaming streaming = new Streaming();
+    private Http http = new Http();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private Wasm wasm = new Wasm();
+    private PartialEvaluation partialEvaluation = new PartialEvaluation();
+    private ContextDataCache contextDataCache = new ContextDataCache();
+    private DecisionLog decisionLog = new DecisionLog();
+    private MethodSecurity methodSecurity = new MethodSecurity();
+    private Bulk bulk = new Bulk();
+    private Timeout timeout = new Timeout();
+    private Executor executor = new Executor();
+    private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+    private Bulkheads bulkheads = new Bulkheads();
+    private Retry retry = new Retry();
+    private LoadBalancing loadBalancing = new LoadBalancing();
+    private Hedging hedging = new Hedging();
+    /**
+     * Routes which select the policy path, short-circuit and cache settings of requests. The first declared route
+     * matching a request applies.
+     */
+    private List<Route> routes = new ArrayList<>();
 
     @Data
     @NoArgsConstructor
@@ -101,12 +139,896 @@ public class OPAProperties {
     public static class AuthorizationEvent {
         private AuthorizationEventType denied = new AuthorizationEventType(true);
         private AuthorizationEventType granted = new AuthorizationEventType(false);
+        private Async async = new Async();
+
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class Async {
+            public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+            /**
+             * Whether events are published by a background thread, instead of the request thread. Default is false.
+             */
+            private boolean enabled;
+            /**
+             * Maximum number of events waiting to be published. Default is {@value DEFAULT_QUEUE_CAPACITY}.
+             */
+            private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+            /**
+             * What happens to events while the queue is full. Default is {@code drop}.
+             */
+            private Overflow overflow = Overflow.DROP;
+
+            public enum Overflow {
+                /**
+                 * Discard the event.
+                 */
+                DROP,
+                /**
+                 * Merge the event into a pending event with the same decision, subject, method and request URI,
+                 * whose count is incremented. Events are dropped if there are already as many pending events as the
+                 * queue capacity.
+                 */
+                COALESCE
+            }
+        }
     }
 
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     public static class AuthorizationEventType {
+        public static final double DEFAULT_SAMPLE_RATE = 1.0;
+
+        private boolean enabled;
+        /**
+         * Fraction (between 0 and 1) of the events of this type which are published. Default is
+         * {@value DEFAULT_SAMPLE_RATE}.
+         */
+        private double sampleRate = DEFAULT_SAMPLE_RATE;
+
+        public AuthorizationEventType(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cache {
+        public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+        public static final Duration DEFAULT_ALLOW_TTL = Duration.ofSeconds(30);
+        public static final Duration DEFAULT_DENY_TTL = Duration.ofSeconds(5);
+        public static final String DEFAULT_TTL_KEY = "cache_ttl";
+        public static final long DEFAULT_LAST_KNOWN_MAXIMUM_SIZE = 10_000;
+
+        /**
+         * Whether to cache OPA decisions in-process. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Maximum number of cached decisions. Once exceeded, entries are evicted using a size-based policy. Default is
+         * {@value DEFAULT_MAXIMUM_SIZE}.
+         */
+        private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+        /**
+         * How long a granted decision is cached. Default is 30 seconds.
+         */
+        private Duration allowTtl = DEFAULT_ALLOW_TTL;
+        /**
+         * How long a denied decision is cached. Default is 5 seconds.
+         */
+        private Duration denyTtl = DEFAULT_DENY_TTL;
+        /**
+         * Key in the response's {@code context.data} which the policy could use to override the TTL of a single
+         * decision. Its value could either be a number of seconds or a duration string (e.g. {@code 10s}). A zero TTL
+         * prevents the decision from being cached. Default is {@value DEFAULT_TTL_KEY}.
+         */
+        private String ttlKey = DEFAULT_TTL_KEY;
+        /**
+         * Dot-separated input keys which are ignored when computing cache keys, because they are different for every
+         * request. Default is {@code context.port}.
+         */
+        private List<String> excludedInputKeys = new ArrayList<>(List.of("context.port"));
+        /**
+         * Names of headers (case-insensitive) in {@code input.action.headers} which are ignored when computing cache
+         * keys, e.g. request ids or tracing headers. Default is empty.
+         */
+        private List<String> excludedHeaders = new ArrayList<>();
+        /**
+         * How long after a decision expired it is still served from the cache, while a single background evaluation
+         * refreshes it, so that requests do not wait for OPA (e.g. while it activates a bundle). Zero disables
+         * serving stale decisions while revalidating. Default is zero.
+         */
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        /**
+         * How long after a decision expired (its maximum stale age) it is still served from the cache if OPA fails to
+         * make it, e.g. while OPA restarts. Zero disables serving stale decisions on errors. Default is zero.
+         */
+        private Duration staleIfError = Duration.ZERO;
+        /**
+         * Maximum number of last known decisions kept for the {@code last-known} (or {@code cached}) decisions of the
+         * circuit breaker, timeouts, concurrency limit and bulkheads, which share them. Unlike cached decisions, they
+         * do not expire, and they are kept whether or not {@code opa.cache.enabled} is set. Default is
+         * {@value DEFAULT_LAST_KNOWN_MAXIMUM_SIZE}.
+         */
+        private long lastKnownMaximumSize = DEFAULT_LAST_KNOWN_MAXIMUM_SIZE;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Coalescing {
+
+        /**
+         * Whether identical, concurrent OPA evaluations share a single request to OPA. Requests are considered
+         * identical if they have the same policy path and input, ignoring the {@code opa.cache.excluded-*} keys.
+         * Default is false.
+         */
+        private boolean enabled;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Batch {
+        public static final Duration DEFAULT_WINDOW = Duration.ofMillis(1);
+        public static final int DEFAULT_MAX_SIZE = 32;
+
+        /**
+         * Whether concurrent OPA evaluations of the same policy path are sent together using the Enterprise OPA
+         * <a href="https://docs.styra.com/enterprise-opa/reference/api-reference/batch-api">Batch API</a>. If the
+         * server does not support it, evaluations fall back to single requests. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * How long the first evaluation of a batch waits for others to join it. Default is 1 millisecond.
+         */
+        private Duration window = DEFAULT_WINDOW;
+        /**
+         * Maximum number of evaluations per batch. A full batch is sent without waiting for the window to elapse.
+         * Default is {@value DEFAULT_MAX_SIZE}.
+         */
+        private int maxSize = DEFAULT_MAX_SIZE;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Metrics {
+        public static final int DEFAULT_MAX_PATH_TAGS = 100;
+
+        /**
+         * Whether authorization decisions are recorded with Micrometer, if a {@code MeterRegistry} bean is available.
+         * Default is true.
+         */
+        private boolean enabled = true;
+        /**
+         * Whether the size of the serialized OPA input is recorded. Since this serializes every input once more on
+         * the request thread, it should only be enabled while investigating input sizes. Default is false.
+         */
+        private boolean inputSize;
+        /**
+         * Maximum number of distinct policy paths used as tag values, further paths are tagged with {@code other}.
+         * Default is {@value DEFAULT_MAX_PATH_TAGS}.
+         */
+        private int maxPathTags = DEFAULT_MAX_PATH_TAGS;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Streaming {
+        public static final int DEFAULT_BUFFER_SIZE = 4096;
+        public static final int DEFAULT_MAX_RETAINED_BUFFER_SIZE = 65_536;
+        public static final int DEFAULT_POOL_SIZE = 64;
+
+        /**
+         * Whether OPA request bodies are streamed into pooled buffers and sent with a non-blocking HTTP client instead
+         * of the {@code OPAClient} bean. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Initial size of a pooled buffer in bytes. Default is {@value DEFAULT_BUFFER_SIZE}.
+         */
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        /**
+         * Buffers which grew beyond this size (in bytes) are not returned to the pool. Default is
+         * {@value DEFAULT_MAX_RETAINED_BUFFER_SIZE}.
+         */
+        private int maxRetainedBufferSize = DEFAULT_MAX_RETAINED_BUFFER_SIZE;
+        /**
+         * Maximum number of idle buffers kept in the pool. Default is {@value DEFAULT_POOL_SIZE}.
+         */
+        private int poolSize = DEFAULT_POOL_SIZE;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Http {
+        public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+        /**
+         * Timeout for establishing a connection to OPA. Default is 10s.
+         */
+        private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        /**
+         * Timeout for a single request to OPA, until the response headers were received. Default is no timeout.
+         */
+        private Duration requestTimeout;
+        /**
+         * Headers sent with every request to OPA (e.g. {@code Authorization}), by the {@code OPAClient} and by every
+         * {@code OPAAsyncClient} built from these properties. Default is empty.
+         */
+        private Map<String, String> headers = new HashMap<>();
+        /**
+         * Preferred HTTP version. {@code HTTP_2} is negotiated via ALPN for {@code https} URLs, and via an upgrade
+         * of the first request for {@code http} URLs; use {@code HTTP_1_1} for OPA sidecars which do not serve h2c.
+         * Default is {@code HTTP_2}.
+         */
+        private HttpClient.Version version = HttpClient.Version.HTTP_2;
+        /**
+         * Number of threads which handle responses. 0 uses the JDK's default (cached) executor. Default is 0.
+         */
+        private int executorThreads;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CircuitBreaker {
+        public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+        public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+        public static final Duration DEFAULT_SLOW_CALL_DURATION = Duration.ofSeconds(2);
+        public static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+        public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 20;
+        public static final Duration DEFAULT_WAIT_DURATION_IN_OPEN_STATE = Duration.ofSeconds(10);
+        public static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 5;
+
+        /**
+         * Whether OPA evaluations are guarded by a circuit breaker. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Percentage of failed calls (within the sliding window) at which the circuit opens. Default is
+         * {@value DEFAULT_FAILURE_RATE_THRESHOLD}.
+         */
+        private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+        /**
+         * Percentage of slow calls (within the sliding window) at which the circuit opens. Default is
+         * {@value DEFAULT_SLOW_CALL_RATE_THRESHOLD}.
+         */
+        private double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+        /**
+         * Calls which take longer than this are considered slow. Default is 2s.
+         */
+        private Duration slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+        /**
+         * Number of most recent calls whose outcomes are used to compute the failure and slow call rates. Default is
+         * {@value DEFAULT_SLIDING_WINDOW_SIZE}.
+         */
+        private int slidingWindowSize = DEFAULT_SLIDING_WINDOW_SIZE;
+        /**
+         * Minimum number of calls in the sliding window before the rates are computed. Default is
+         * {@value DEFAULT_MINIMUM_NUMBER_OF_CALLS}.
+         */
+        private int minimumNumberOfCalls = DEFAULT_MINIMUM_NUMBER_OF_CALLS;
+        /**
+         * How long the circuit stays open before trial calls are permitted (half-open). Default is 10s.
+         */
+        private Duration waitDurationInOpenState = DEFAULT_WAIT_DURATION_IN_OPEN_STATE;
+        /**
+         * Number of trial calls permitted while half-open, whose rates decide whether the circuit closes or opens
+         * again. Default is {@value DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE}.
+         */
+        private int permittedCallsInHalfOpenState = DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE;
+        /**
+         * Decision returned while the circuit is open, for paths without an entry in
+         * {@link #pathDefaultDecisions}. Default is {@code deny}.
+         */
+        private DefaultDecision defaultDecision = DefaultDecision.DENY;
+        /**
+         * Decisions returned while the circuit is open, by policy path.
+         */
+        private Map<String, DefaultDecision> pathDefaultDecisions = new HashMap<>();
+
+        public enum DefaultDecision {
+            /**
+             * Grant access (fail open).
+             */
+            ALLOW,
+            /**
+             * Deny access (fail closed).
+             */
+            DENY,
+            /**
+             * Reuse the last decision OPA made for the same path and input, or deny access if there is none.
+             */
+            LAST_KNOWN
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Wasm {
+        public static final Duration DEFAULT_RELOAD_INTERVAL = Duration.ofSeconds(10);
+
+        /**
+         * Whether policies are evaluated in-process from a bundle compiled to WebAssembly, instead of calling the OPA
+         * server. Requires the {@code com.styra.opa:opa-java-wasm} dependency. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Path of a bundle built with {@code opa build -t wasm}, or of a plain {@code .wasm} module.
+         */
+        private String bundle;
+        /**
+         * Number of Wasm instances, i.e. of concurrent evaluations. 0 means one per available processor. Default is
+         * 0.
+         */
+        private int poolSize;
+        /**
+         * How often the bundle file is checked for changes, which are then loaded without dropping in-flight
+         * evaluations. Zero disables reloading. Default is 10s.
+         */
+        private Duration reloadInterval = DEFAULT_RELOAD_INTERVAL;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartialEvaluation {
+        public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+        /**
+         * Whether decisions of {@code opa.path} are made in-process from residual queries, which OPA's Compile API
+         * returns for every resource id in {@link #resourceIds}. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Values of {@code input.resource.id} (e.g. request paths) whose residual queries are compiled. Evaluations of
+         * other resources are sent to OPA.
+         */
+        private List<String> resourceIds = new ArrayList<>();
+        /**
+         * References which are unknown during partial evaluation, i.e. everything the residual queries may depend on.
+         * Default is {@code input.subject}, {@code input.action} and {@code input.context}.
+         */
+        private List<String> unknowns = new ArrayList<>(List.of("input.subject", "input.action", "input.context"));
+        /**
+         * How often residual queries are compiled again, which bounds how long local decisions may lag behind changes
+         * of policies or data. Zero disables refreshing. Default is 30s.
+         */
+        private Duration refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Route {
+        /**
+         * Spring {@link org.springframework.web.util.pattern.PathPattern} matched against the request path, e.g.
+         * {@code /api/orders/{id}} or {@code /static/**}.
+         */
+        private String pattern;
+        /**
+         * HTTP methods of matching requests. Empty matches all methods.
+         */
+        private List<String> methods = new ArrayList<>();
+        /**
+         * Policy path evaluated for matching requests. If null, the {@link com.styra.opa.springboot.OPAPathSelector}
+         * bean selects it (by default, {@code opa.path}).
+         */
+        private String path;
+        /**
+         * How matching requests are authorized. Default is {@link Action#EVALUATE}.
+         */
+        private Action action = Action.EVALUATE;
+        /**
+         * Maximum time to wait for the decision of matching requests, replacing {@code opa.timeout.*} timeouts, after
+         * which {@code opa.timeout.decision} applies. If null, those are used.
+         */
+        private Duration timeout;
+        private RouteCache cache = new RouteCache();
+
+        /**
+         * How requests matching a route are authorized.
+         */
+        public enum Action {
+            /**
+             * Ask OPA for a decision.
+             */
+            EVALUATE,
+            /**
+             * Do not authorize the request at all: no decision is made, i.e. the authorization manager abstains.
+             */
+            SKIP,
+            /**
+             * Grant access without asking OPA.
+             */
+            PERMIT,
+            /**
+             * Deny access without asking OPA.
+             */
+            DENY
+        }
+
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class RouteCache {
+            /**
+             * Whether decisions of matching requests are cached, if {@code opa.cache.enabled} is true. Default is
+             * true.
+             */
+            private boolean enabled = true;
+            /**
+             * TTL of cached decisions of matching requests, replacing {@code opa.cache.allow-ttl} and
+             * {@code opa.cache.deny-ttl}. If null, those are used.
+             */
+            private Duration ttl;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ContextDataCache {
+        public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+        public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+        public static final Duration DEFAULT_REFRESH_AFTER = Duration.ofMinutes(1);
+        public static final int DEFAULT_REFRESH_THREADS = 2;
+
+        /**
+         * Maximum number of cached context data values, used by
+         * {@link com.styra.opa.springboot.CachingContextDataProvider}. Default is {@value DEFAULT_MAXIMUM_SIZE}.
+         */
+        private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+        /**
+         * How long a value is cached at most. Default is 5 minutes.
+         */
+        private Duration ttl = DEFAULT_TTL;
+        /**
+         * Age after which a value is refreshed in the background on its next access, while the cached value is still
+         * returned. Zero (or at least the TTL) disables refreshing. Default is 1 minute.
+         */
+        private Duration refreshAfter = DEFAULT_REFRESH_AFTER;
+        /**
+         * Number of threads refreshing values in the background. Default is {@value DEFAULT_REFRESH_THREADS}.
+         */
+        private int refreshThreads = DEFAULT_REFRESH_THREADS;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DecisionLog {
+        public static final String DEFAULT_DIRECTORY = "decision-logs";
+        public static final String DEFAULT_FILE_PREFIX = "opa-decisions";
+        public static final DataSize DEFAULT_MAX_FILE_SIZE = DataSize.ofMegabytes(100);
+        public static final Duration DEFAULT_ROTATION_INTERVAL = Duration.ofHours(1);
+        public static final int DEFAULT_MAX_FILES = 10;
+        public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+        public static final int DEFAULT_BUFFER_SIZE = 65_536;
+        public static final double DEFAULT_SAMPLE_RATE = 1.0;
+        public static final List<String> DEFAULT_MASKED_INPUT_KEYS = List.of("action.headers.authorization",
+            "action.headers.proxy-authorization", "action.headers.cookie");
+
+        /**
+         * Whether every decision is written to local, rotated NDJSON files. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Directory of the decision log files, which is created if it does not exist. Default is
+         * {@value DEFAULT_DIRECTORY}.
+         */
+        private String directory = DEFAULT_DIRECTORY;
+        /**
+         * Prefix of the decision log file names, which are followed by the time the file was created. Default is
+         * {@value DEFAULT_FILE_PREFIX}.
+         */
+        private String filePrefix = DEFAULT_FILE_PREFIX;
+        /**
+         * Size after which a new file is started. Default is 100MB.
+         */
+        private DataSize maxFileSize = DEFAULT_MAX_FILE_SIZE;
+        /**
+         * Age after which a new file is started. Null or zero disables time-based rotation. Default is 1 hour.
+         */
+        private Duration rotationInterval = DEFAULT_ROTATION_INTERVAL;
+        /**
+         * Number of files which are kept, including the current one; older files are deleted. Zero keeps all files.
+         * Default is {@value DEFAULT_MAX_FILES}.
+         */
+        private int maxFiles = DEFAULT_MAX_FILES;
+        /**
+         * Maximum number of decisions waiting to be written, further decisions are dropped. Default is
+         * {@value DEFAULT_QUEUE_CAPACITY}.
+         */
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        /**
+         * Size of the direct buffer (in bytes) which decisions are serialized into before they are written. Default
+         * is {@value DEFAULT_BUFFER_SIZE}.
+         */
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+        /**
+         * Fraction (between 0 and 1) of the decisions which are written. Default is {@value DEFAULT_SAMPLE_RATE}.
+         */
+        private double sampleRate = DEFAULT_SAMPLE_RATE;
+        /**
+         * Dot-separated input keys (matched case-insensitively) whose values are replaced by {@code ***}. Setting
+         * them replaces the defaults, which mask the credentials of the request: {@code action.headers.authorization},
+         * {@code action.headers.proxy-authorization} and {@code action.headers.cookie}.
+         */
+        private List<String> maskedInputKeys = new ArrayList<>(DEFAULT_MASKED_INPUT_KEYS);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MethodSecurity {
+
+        /**
+         * Whether methods annotated with {@link com.styra.opa.springboot.method.OPAAuthorize} are authorized by
+         * {@link com.styra.opa.springboot.method.OPAMethodAuthorizationManager}. Requires
+         * {@code @EnableMethodSecurity}. Default is false.
+         */
+        private boolean enabled;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bulk {
+        public static final int DEFAULT_CHUNK_SIZE = 100;
+        public static final int DEFAULT_MAX_CONCURRENT_CHUNKS = 4;
+
+        /**
+         * Whether an {@link com.styra.opa.springboot.bulk.OPABulkAuthorizer} is created. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Policy path which evaluates AuthZEN multi-evaluation inputs, i.e. returns an {@code evaluations} array with
+         * a decision for each of the input's {@code evaluations}. Required.
+         */
+        private String path;
+        /**
+         * Maximum number of resources per request. Larger lists are split into chunks. Default is
+         * {@value DEFAULT_CHUNK_SIZE}.
+         */
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        /**
+         * Maximum number of chunks of one list which are evaluated concurrently. Default is
+         * {@value DEFAULT_MAX_CONCURRENT_CHUNKS}.
+         */
+        private int maxConcurrentChunks = DEFAULT_MAX_CONCURRENT_CHUNKS;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Timeout {
+        /**
+         * Maximum time to wait for a decision, for policy paths without an entry in {@link #pathTimeouts}. If null,
+         * there is no limit.
+         */
+        private Duration defaultTimeout;
+        /**
+         * Maximum times to wait for a decision, by policy path.
+         */
+        private Map<String, Duration> pathTimeouts = new HashMap<>();
+        /**
+         * Inbound request header carrying the time left until the caller's deadline, e.g. {@code 1500} (milliseconds)
+         * or {@code 1500ms}, which caps the timeout. Requests whose deadline already passed are not sent to OPA. If
+         * null, deadlines are not propagated.
+         */
+        private String deadlineHeader;
+        /**
+         * Decision returned if OPA did not respond in time, for policy paths without an entry in
+         * {@link #pathDecisions}. Default is {@code deny}.
+         */
+        private Decision decision = Decision.DENY;
+        /**
+         * Decisions returned if OPA did not respond in time, by policy path.
+         */
+        private Map<String, Decision> pathDecisions = new HashMap<>();
+
+        public enum Decision {
+            /**
+             * Grant access (fail open).
+             */
+            ALLOW,
+            /**
+             * Deny access (fail closed).
+             */
+            DENY,
+            /**
+             * Reuse the last decision OPA made for the same path and input, or deny access if there is none.
+             */
+            CACHED
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Executor {
+        public static final int DEFAULT_MAX_THREADS = 64;
+        public static final int DEFAULT_MAX_QUEUE_SIZE = 256;
+
+        /**
+         * Maximum number of threads running OPA evaluations off the calling thread: blocking evaluations while a
+         * timeout applies, background refreshes of stale decisions, retries, hedges, and evaluations queued by
+         * bulkheads. Default is {@value DEFAULT_MAX_THREADS}.
+         */
+        private int maxThreads = DEFAULT_MAX_THREADS;
+        /**
+         * Maximum number of evaluations waiting for one of these threads. Evaluations over it are rejected. Default is
+         * {@value DEFAULT_MAX_QUEUE_SIZE}.
+         */
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ConcurrencyLimit {
+        public static final int DEFAULT_INITIAL_LIMIT = 20;
+        public static final int DEFAULT_MIN_LIMIT = 1;
+        public static final int DEFAULT_MAX_LIMIT = 200;
+        public static final double DEFAULT_RTT_TOLERANCE = 1.5;
+        public static final double DEFAULT_SMOOTHING = 0.2;
+        public static final int DEFAULT_LONG_WINDOW = 600;
+
+        /**
+         * Whether the number of concurrent OPA evaluations is limited, by a limit which adapts to OPA's latency.
+         * Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Limit before any latency was observed. Default is {@value DEFAULT_INITIAL_LIMIT}.
+         */
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        /**
+         * Lowest limit. Default is {@value DEFAULT_MIN_LIMIT}.
+         */
+        private int minLimit = DEFAULT_MIN_LIMIT;
+        /**
+         * Highest limit. Default is {@value DEFAULT_MAX_LIMIT}.
+         */
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        /**
+         * How much higher than the long-term latency the current latency could be before the limit decreases, e.g.
+         * 1.5 tolerates a 50% increase. Default is {@value DEFAULT_RTT_TOLERANCE}.
+         */
+        private double rttTolerance = DEFAULT_RTT_TOLERANCE;
+        /**
+         * Weight (between 0 and 1) of a new limit, relative to the current one. Default is {@value DEFAULT_SMOOTHING}.
+         */
+        private double smoothing = DEFAULT_SMOOTHING;
+        /**
+         * Number of samples the long-term latency is averaged over. Default is {@value DEFAULT_LONG_WINDOW}.
+         */
+        private int longWindow = DEFAULT_LONG_WINDOW;
+        /**
+         * Decision returned for evaluations over the limit, which are not sent to OPA. Default is {@code deny}.
+         */
+        private CircuitBreaker.DefaultDecision rejectedDecision = CircuitBreaker.DefaultDecision.DENY;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bulkheads {
+        /**
+         * Whether evaluations of the configured policy paths are isolated in bulkheads. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Bulkheads by policy path (the path selected by the {@code OPAPathSelector} or the route), e.g.
+         * {@code opa.bulkheads.paths.[policy/reports].max-concurrent-calls=5}. Evaluations of paths without a bulkhead
+         * are not isolated.
+         */
+        private Map<String, Bulkhead> paths = new HashMap<>();
+
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class Bulkhead {
+            public static final int DEFAULT_MAX_CONCURRENT_CALLS = 10;
+            public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+            public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(1);
+
+            /**
+             * Maximum number of evaluations of the path in flight at once. Default is
+             * {@value DEFAULT_MAX_CONCURRENT_CALLS}.
+             */
+            private int maxConcurrentCalls = DEFAULT_MAX_CONCURRENT_CALLS;
+            /**
+             * Maximum number of evaluations of the path waiting for one in flight to complete. Evaluations over it are
+             * rejected. Default is {@value DEFAULT_MAX_QUEUE_SIZE}.
+             */
+            private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+            /**
+             * Maximum time an evaluation waits in the queue before it is rejected, or null to wait indefinitely.
+             * Default is 1 second.
+             */
+            private Duration maxWait = DEFAULT_MAX_WAIT;
+            /**
+             * Whether the path is evaluated by its own client, with its own connection pool, so that its slow
+             * responses do not hold connections other paths need. Evaluations by a dedicated client bypass batching
+             * and the concurrency limit. Default is false.
+             */
+            private boolean dedicatedClient;
+            /**
+             * Decision returned for rejected evaluations, which are not sent to OPA. Default is {@code deny}.
+             */
+            private CircuitBreaker.DefaultDecision rejectedDecision = CircuitBreaker.DefaultDecision.DENY;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Retry {
+        public static final int DEFAULT_MAX_ATTEMPTS = 3;
+        public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(25);
+        public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(1);
+        public static final double DEFAULT_BUDGET_RATIO = 0.1;
+        public static final int DEFAULT_BUDGET_MAX_TOKENS = 10;
+
+        /**
+         * Whether OPA evaluations which failed with a transient error (e.g. a reset connection or a 5xx status) are
+         * retried. Default is false.
+         */
+        private boolean enabled;
+        /**
+         * Maximum number of attempts of an evaluation, including the first one. Default is
+         * {@value DEFAULT_MAX_ATTEMPTS}.
+         */
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        /**
+         * Lowest backoff before a retry. Backoffs are drawn at random between it and three times the previous one
+         * (decorrelated jitter). Default is 25 milliseconds.
+         */
+        private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+        /**
+         * Highest backoff before a retry. Default is 1 second.
+         */
+        private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+        /**
+         * Maximum number of retries per evaluation, e.g. 0.1 allows one retry for every 10 evaluations, so that
+         * retries could not multiply the load on OPA during an outage. Default is {@value DEFAULT_BUDGET_RATIO}.
+         */
+        private double budgetRatio = DEFAULT_BUDGET_RATIO;
+        /**
+         * Maximum number of retries the budget could accumulate, which bounds bursts of retries after a quiet period.
+         * Default is {@value DEFAULT_BUDGET_MAX_TOKENS}.
+         */
+        private int budgetMaxTokens = DEFAULT_BUDGET_MAX_TOKENS;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LoadBalancing {
+        public static final int DEFAULT_VIRTUAL_NODES = 100;
+        public static final Duration DEFAULT_EWMA_DECAY = Duration.ofSeconds(10);
+
+        /**
+         * How a replica of {@code opa.urls} is selected for each evaluation. Default is least outstanding requests.
+         */
+        private Strategy strategy = Strategy.LEAST_OUTSTANDING_REQUESTS;
+        /**
+         * Time over which the latency average of a replica decays, which is used by the power of two choices
+         * strategy. Shorter times react faster to slow replicas. Default is 10 seconds.
+         */
+        private Duration ewmaDecay = DEFAULT_EWMA_DECAY;
+        /**
+         * Number of points of each replica on the hash ring of the consistent hashing strategy. More points spread
+         * subjects more evenly. Default is {@value DEFAULT_VIRTUAL_NODES}.
+         */
+        private int virtualNodes = DEFAULT_VIRTUAL_NODES;
+        private HealthCheck healthCheck = new HealthCheck();
+
+        public enum Strategy {
+            /**
+             * Select the replica with the fewest evaluations in flight.
+             */
+            LEAST_OUTSTANDING_REQUESTS,
+            /**
+             * Select two replicas at random, and use the one whose latency average weighted by its evaluations in
+             * flight is lower.
+             */
+            POWER_OF_TWO_CHOICES,
+            /**
+             * Select the replica by hashing {@code input.subject.id}, so that the evaluations of a subject are sent
+             * to the same replica, which improves the hit rate of OPA's caches (e.g. of {@code http.send}).
+             */
+            CONSISTENT_HASHING
+        }
+
+        @Data
+        @NoArgsConstructor
+        @AllArgsConstructor
+        public static class HealthCheck {
+            public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+            public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+            public static final int DEFAULT_UNHEALTHY_THRESHOLD = 2;
+
+            /**
+             * Whether replicas are checked periodically using OPA's {@code /health} endpoint, and ejected while they
+             * are not healthy. Default is true.
+             */
+            private boolean enabled = true;
+            /**
+             * Time between health checks of each replica. Default is 5 seconds.
+             */
+            private Duration interval = DEFAULT_INTERVAL;
+            /**
+             * Time after which a health check fails if the replica did not respond. Default is 1 second.
+             */
+            private Duration timeout = DEFAULT_TIMEOUT;
+            /**
+             * Whether replicas are only healthy once all of their bundles were activated ({@code /health?bundles}).
+             * Default is false.
+             */
+            private boolean bundles;
+            /**
+             * Number of consecutive failed health checks after which a replica is ejected. It is admitted again after
+             * its first successful health check. Default is {@value DEFAULT_UNHEALTHY_THRESHOLD}.
+             */
+            private int unhealthyThreshold = DEFAULT_UNHEALTHY_THRESHOLD;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Hedging {
+        public static final double DEFAULT_PERCENTILE = 0.95;
+        public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(5);
+        public static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(1);
+        public static final int DEFAULT_WINDOW_SIZE = 256;
+        public static final double DEFAULT_BUDGET_RATIO = 0.05;
+        public static final int DEFAULT_BUDGET_MAX_TOKENS = 10;
+
+        /**
+         * Whether a duplicate of an OPA evaluation is sent if no response arrived within the hedge delay, and the
+         * first response is used. Default is false.
+         */
         private boolean enabled;
+        /**
+         * Percentile of the recent latencies of a policy path after which its evaluations are hedged, e.g. 0.95
+         * hedges the slowest 5% of evaluations. Default is {@value DEFAULT_PERCENTILE}.
+         */
+        private double percentile = DEFAULT_PERCENTILE;
+        /**
+         * Lowest hedge delay, so that fast policies are not hedged on every small hiccup. Default is 5 milliseconds.
+         */
+        private Duration minDelay = DEFAULT_MIN_DELAY;
+        /**
+         * Highest hedge delay, which is also used until enough latencies of a policy path were observed. Default is
+         * 1 second.
+         */
+        private Duration maxDelay = DEFAULT_MAX_DELAY;
+        /**
+         * Number of recent latencies per policy path from which the percentile is computed. Default is
+         * {@value DEFAULT_WINDOW_SIZE}.
+         */
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+        /**
+         * Maximum number of hedges per evaluation, e.g. 0.05 allows one hedge for every 20 evaluations, which caps
+         * the extra load on OPA. Default is {@value DEFAULT_BUDGET_RATIO}.
+         */
+        private double budgetRatio = DEFAULT_BUDGET_RATIO;
+        /**
+         * Maximum number of hedges the budget could accumulate, which bounds bursts of hedges after a quiet period.
+         * Default is {@value DEFAULT_BUDGET_MAX_TOKENS}.
+         */
+        private int budgetMaxTokens = DEFAULT_BUDGET_MAX_TOKENS;
     }
 }
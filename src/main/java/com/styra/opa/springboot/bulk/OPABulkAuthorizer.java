@@ -0,0 +1,203 @@
+package com.styra.opa.springboot.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.input.OPAInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static java.lang.String.format;
+
+/**
+ * Authorizes one subject and action on a list of resources (e.g. the rows of a page), using the
+ * <a href="https://openid.github.io/authzen/#name-access-evaluations-api">AuthZEN multi-evaluation</a> shape instead of
+ * a request per resource. The policy at {@link OPAProperties.Bulk#getPath()} receives the input
+ * <pre>{@code
+ * {"subject": {...}, "action": {...}, "context": {...}, "evaluations": [{"resource": {...}}, ...]}
+ * }</pre>
+ * and returns an {@code evaluations} array with a {@code decision} (and optionally a {@code context}) per resource, in
+ * the same order.
+ * <br/><br/>
+ * Lists larger than {@link OPAProperties.Bulk#getChunkSize()} are split into chunks, of which at most
+ * {@link OPAProperties.Bulk#getMaxConcurrentChunks()} are in flight at once. Results are always returned in the order
+ * of the resources.
+ */
+public class OPABulkAuthorizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPABulkAuthorizer.class);
+
+    private static final String EVALUATIONS_KEY = "evaluations";
+
+    private final OPAAsyncClient opaAsyncClient;
+    private final String path;
+    private final int chunkSize;
+    private final int maxConcurrentChunks;
+    private final OPAProperties.Request requestProperties;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+
+    public OPABulkAuthorizer(OPAAsyncClient opaAsyncClient, OPAProperties opaProperties) {
+        OPAProperties.Bulk properties = opaProperties.getBulk();
+        if (properties.getPath() == null) {
+            throw new IllegalArgumentException("opa.bulk.path must be set");
+        }
+        this.opaAsyncClient = opaAsyncClient;
+        this.path = properties.getPath();
+        this.chunkSize = Math.max(1, properties.getChunkSize());
+        this.maxConcurrentChunks = Math.max(1, properties.getMaxConcurrentChunks());
+        this.requestProperties = opaProperties.getRequest();
+    }
+
+    /**
+     * Evaluates {@code action} of {@code subject} on each of {@code resources}. The returned future completes with a
+     * response per resource, in the same order, or fails with an {@link OPAException} (wrapped in a
+     * {@link CompletionException}) if any chunk failed.
+     */
+    public CompletableFuture<List<OPAResponse>> evaluate(Map<String, ?> subject, Map<String, ?> action,
+                                                         Map<String, ?> context,
+                                                         List<? extends Map<String, ?>> resources) {
+        if (resources.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        int chunks = (resources.size() + chunkSize - 1) / chunkSize;
+        OPAResponse[] opaResponses = new OPAResponse[resources.size()];
+        // each lane evaluates every maxConcurrentChunks-th chunk, one after another
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        for (int lane = 0; lane < Math.min(chunks, maxConcurrentChunks); lane++) {
+            CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+            for (int chunk = lane; chunk < chunks; chunk += maxConcurrentChunks) {
+                int from = chunk * chunkSize;
+                int to = Math.min(from + chunkSize, resources.size());
+                future = future.thenCompose(ignored -> evaluateChunk(subject, action, context,
+                    resources.subList(from, to)).thenAccept(chunkResponses -> {
+                        for (int i = 0; i < chunkResponses.size(); i++) {
+                            opaResponses[from + i] = chunkResponses.get(i);
+                        }
+                    }));
+            }
+            lanes.add(future);
+        }
+        return CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> Arrays.asList(opaResponses));
+    }
+
+    /**
+     * Evaluates {@code action} of the authenticated subject on each of {@code resources}, using the same subject and
+     * context types as {@link com.styra.opa.springboot.OPAAuthorizationManager}, and blocks until all decisions were
+     * made.
+     *
+     * @param authentication could be null.
+     * @param resources e.g. {@link OPAInput.Resource}s.
+     * @throws CompletionException if OPA could not be queried.
+     */
+    public List<OPAResponse> authorize(Authentication authentication, String action,
+                                       List<? extends Map<String, ?>> resources) {
+        Map<String, Object> subject = authentication != null
+            ? new OPAInput.Subject(requestProperties.getSubject().getType(), authentication.getPrincipal(),
+                authentication.getDetails(), authentication.getAuthorities())
+            : new OPAInput.Subject(requestProperties.getSubject().getType(), null, null, null);
+        Map<String, Object> context = new OPAInput.Context(requestProperties.getContext().getType(), null, null, null);
+        return evaluate(subject, new OPAInput.Action(action, null, null), context, resources).join();
+    }
+
+    /**
+     * Returns the items of which {@code action} is granted to the authenticated subject, in their original order. If
+     * OPA could not be queried, no item is granted.
+     *
+     * @param resourceFunction maps an item to its resource, e.g. {@code order -> new OPAInput.Resource("order",
+     *                         order.id())}.
+     */
+    public <T> List<T> filter(Authentication authentication, String action, List<T> items,
+                              Function<? super T, ? extends Map<String, ?>> resourceFunction) {
+        List<OPAResponse> opaResponses;
+        try {
+            opaResponses = authorize(authentication, action, items.stream().map(resourceFunction).toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OPAException opaException) {
+                LOGGER.error("caught exception from OPA client:", opaException);
+                return List.of();
+            }
+            throw e;
+        }
+        List<T> granted = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (opaResponses.get(i).getDecision()) {
+                granted.add(items.get(i));
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * Returns the number of requests which were sent to OPA.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of resources which were evaluated.
+     */
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    private CompletableFuture<List<OPAResponse>> evaluateChunk(Map<String, ?> subject, Map<String, ?> action,
+                                                               Map<String, ?> context,
+                                                               List<? extends Map<String, ?>> resources) {
+        List<Map<String, Object>> chunkEvaluations = new ArrayList<>(resources.size());
+        for (Map<String, ?> resource : resources) {
+            chunkEvaluations.add(Map.of(RESOURCE, resource));
+        }
+        Map<String, Object> input = new HashMap<>();
+        input.put(SUBJECT, subject);
+        input.put(ACTION, action);
+        input.put(CONTEXT, context);
+        input.put(EVALUATIONS_KEY, chunkEvaluations);
+        requests.increment();
+        evaluations.add(resources.size());
+        LOGGER.trace("evaluating {} resources for path: {}", resources.size(), path);
+        return opaAsyncClient.evaluateResult(path, input)
+            .thenApply(result -> toOPAResponses(result, resources.size()));
+    }
+
+    private List<OPAResponse> toOPAResponses(JsonNode result, int size) {
+        JsonNode results = result.path(EVALUATIONS_KEY);
+        if (!results.isArray() || results.size() != size) {
+            throw new CompletionException(new OPAException(format(
+                "expected %d evaluations from path '%s', got: %s", size, path, results)));
+        }
+        List<OPAResponse> opaResponses = new ArrayList<>(size);
+        try {
+            for (JsonNode evaluation : results) {
+                opaResponses.add(objectMapper.treeToValue(evaluation, OPAResponse.class));
+            }
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(new OPAException("failed to deserialize OPA evaluations", e));
+        }
+        return opaResponses;
+    }
+}
@@ -0,0 +1,254 @@
+package com.styra.opa.springboot.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.styra.opa.springboot.OPADecisionOutcome;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAStaleResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, in-process cache of {@link OPAResponse}s. Entries are keyed on {@link OPADecisionKey}s, which are generated
+ * by {@link OPADecisionKeyGenerator}. Eviction is size-based (W-TinyLFU) and every entry expires after:
+ * <ol>
+ *     <li>the TTL provided by the policy in {@code context.data.<ttl-key>}, if present</li>
+ *     <li>otherwise {@code opa.cache.allow-ttl} or {@code opa.cache.deny-ttl}, depending on the decision</li>
+ * </ol>
+ * The allow and deny TTLs could be overridden per entry, e.g. by {@code opa.routes[].cache.ttl}.
+ * <br/><br/>
+ * Expired entries are kept for {@code opa.cache.stale-while-revalidate} or {@code opa.cache.stale-if-error}, whichever
+ * is longer, so that their decisions could still be served as {@link OPAStaleResponse}s: while a single background
+ * evaluation refreshes them (see {@link #get(OPADecisionKey, Supplier)}), or while OPA fails to make the decision (see
+ * {@link #getIfError(OPADecisionKey)}).
+ * <br/><br/>
+ * It requires Caffeine on the classpath, which is an optional dependency of this SDK.
+ */
+public class OPADecisionCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPADecisionCache.class);
+    private static final double MILLIS_PER_SECOND = 1000;
+
+    private final OPAProperties.Cache properties;
+    private final OPADecisionKeyGenerator keyGenerator;
+    private final Ticker ticker;
+    private final long staleWhileRevalidateNanos;
+    private final long staleIfErrorNanos;
+    private final Cache<OPADecisionKey, Entry> cache;
+
+    public OPADecisionCache(OPAProperties.Cache properties) {
+        this(properties, new OPADecisionKeyGenerator(properties));
+    }
+
+    /**
+     * @param keyGenerator computes the cache keys, e.g. the generator shared with other components.
+     */
+    public OPADecisionCache(OPAProperties.Cache properties, OPADecisionKeyGenerator keyGenerator) {
+        this(properties, keyGenerator, Ticker.systemTicker());
+    }
+
+    OPADecisionCache(OPAProperties.Cache properties, Ticker ticker) {
+        this(properties, new OPADecisionKeyGenerator(properties), ticker);
+    }
+
+    OPADecisionCache(OPAProperties.Cache properties, OPADecisionKeyGenerator keyGenerator, Ticker ticker) {
+        this.properties = properties;
+        this.keyGenerator = keyGenerator;
+        this.ticker = ticker;
+        this.staleWhileRevalidateNanos = nanos(properties.getStaleWhileRevalidate());
+        this.staleIfErrorNanos = nanos(properties.getStaleIfError());
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new DecisionExpiry(Math.max(staleWhileRevalidateNanos, staleIfErrorNanos)))
+            .ticker(ticker)
+            .build();
+    }
+
+    /**
+     * Computes the cache key of an OPA request.
+     *
+     * @param path selected policy path, or null for the default path.
+     * @return null if the input could not be serialized, in which case the decision should not be cached.
+     */
+    public OPADecisionKey key(String path, Map<String, Object> input) {
+        return keyGenerator.key(path, input);
+    }
+
+    /**
+     * Returns the cached response of {@code key}, or null if there is none, or it expired.
+     */
+    public OPAResponse get(OPADecisionKey key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry != null && ageNanos(entry) < entry.ttlNanos() ? entry.opaResponse() : null;
+    }
+
+    /**
+     * Returns the cached response of {@code key} like {@link #get(OPADecisionKey)}, but if it expired less than
+     * {@code opa.cache.stale-while-revalidate} ago, returns it as an {@link OPAStaleResponse}, and refreshes the entry
+     * in the background with the response of {@code refresh}. Only one refresh of an entry runs at a time.
+     */
+    public OPAResponse get(OPADecisionKey key, Supplier<CompletableFuture<OPAResponse>> refresh) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        long ageNanos = ageNanos(entry);
+        if (ageNanos < entry.ttlNanos()) {
+            return entry.opaResponse();
+        }
+        if (ageNanos - entry.ttlNanos() >= staleWhileRevalidateNanos) {
+            return null;
+        }
+        if (entry.refreshing().compareAndSet(false, true)) {
+            LOGGER.trace("refreshing stale decision of path: {}", key.path());
+            CompletableFuture.completedFuture(key)
+                .thenCompose(ignored -> refresh.get())
+                .whenComplete((opaResponse, throwable) -> {
+                    if (throwable != null || opaResponse == null || opaResponse instanceof OPAFallbackResponse) {
+                        LOGGER.debug("failed to refresh stale decision of path: {}", key.path(), throwable);
+                        // a later request could try again
+                        entry.refreshing().set(false);
+                        return;
+                    }
+                    if (!put(key, opaResponse, entry.defaultTtl())) {
+                        cache.asMap().remove(key, entry);
+                    }
+                });
+        }
+        return new OPAStaleResponse(entry.opaResponse(), OPADecisionOutcome.STALE);
+    }
+
+    /**
+     * Returns the cached response of {@code key} as an {@link OPAStaleResponse}, if it expired less than
+     * {@code opa.cache.stale-if-error} ago, to be served instead of failing because OPA did not make the decision.
+     * Returns null otherwise.
+     */
+    public OPAResponse getIfError(OPADecisionKey key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null || ageNanos(entry) - entry.ttlNanos() >= staleIfErrorNanos) {
+            return null;
+        }
+        return new OPAStaleResponse(entry.opaResponse(), OPADecisionOutcome.ERROR);
+    }
+
+    /**
+     * Caches {@code opaResponse}, unless its TTL is zero or it is an {@link OPAFallbackResponse}.
+     */
+    public void put(OPADecisionKey key, OPAResponse opaResponse) {
+        put(key, opaResponse, null);
+    }
+
+    /**
+     * Caches {@code opaResponse}, unless its TTL is zero or it is an {@link OPAFallbackResponse}.
+     *
+     * @param defaultTtl if not null, replaces {@code opa.cache.allow-ttl} and {@code opa.cache.deny-ttl}. A TTL
+     *                   provided by the policy still takes precedence.
+     * @return whether {@code opaResponse} was cached.
+     */
+    public boolean put(OPADecisionKey key, OPAResponse opaResponse, Duration defaultTtl) {
+        if (opaResponse instanceof OPAFallbackResponse) {
+            return false;
+        }
+        Duration ttl = ttl(opaResponse, defaultTtl);
+        if (ttl.isZero()) {
+            return false;
+        }
+        cache.put(key, new Entry(opaResponse, ttl.toNanos(), ticker.read(), defaultTtl, new AtomicBoolean()));
+        return true;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Returns the TTL of {@code opaResponse}, preferring the one provided by the policy (if it is valid).
+     */
+    Duration ttl(OPAResponse opaResponse) {
+        return ttl(opaResponse, null);
+    }
+
+    Duration ttl(OPAResponse opaResponse, Duration entryTtl) {
+        Duration defaultTtl = entryTtl != null ? entryTtl
+            : opaResponse.getDecision() ? properties.getAllowTtl() : properties.getDenyTtl();
+        if (opaResponse.getContext() == null || opaResponse.getContext().getData() == null) {
+            return defaultTtl;
+        }
+        Object policyTtl = opaResponse.getContext().getData().get(properties.getTtlKey());
+        Duration ttl = null;
+        if (policyTtl instanceof Number seconds) {
+            ttl = Duration.ofMillis(Math.round(seconds.doubleValue() * MILLIS_PER_SECOND));
+        } else if (policyTtl instanceof String text) {
+            try {
+                ttl = DurationStyle.detectAndParse(text, ChronoUnit.SECONDS);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("ignoring invalid TTL provided by policy: {}", text);
+            }
+        }
+        return ttl != null && !ttl.isNegative() ? ttl : defaultTtl;
+    }
+
+    private long ageNanos(Entry entry) {
+        return ticker.read() - entry.createdNanos();
+    }
+
+    private static long nanos(Duration duration) {
+        return duration != null && duration.isPositive() ? duration.toNanos() : 0;
+    }
+
+    /**
+     * A cached response, together with the TTL computed when it was put, the time it was put, the default TTL it was
+     * put with (to refresh it with the same one), and whether it is being refreshed.
+     */
+    private record Entry(OPAResponse opaResponse, long ttlNanos, long createdNanos, Duration defaultTtl,
+                         AtomicBoolean refreshing) {
+    }
+
+    /**
+     * Keeps entries for their TTL, plus the longest time their decisions could be served once they expired.
+     */
+    private static final class DecisionExpiry implements Expiry<OPADecisionKey, Entry> {
+
+        private final long staleNanos;
+
+        DecisionExpiry(long staleNanos) {
+            this.staleNanos = staleNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(OPADecisionKey key, Entry value, long currentTime) {
+            return saturatedAdd(value.ttlNanos(), staleNanos);
+        }
+
+        @Override
+        public long expireAfterUpdate(OPADecisionKey key, Entry value, long currentTime, long currentDuration) {
+            return saturatedAdd(value.ttlNanos(), staleNanos);
+        }
+
+        @Override
+        public long expireAfterRead(OPADecisionKey key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private static long saturatedAdd(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+}
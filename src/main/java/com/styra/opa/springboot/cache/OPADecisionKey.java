@@ -0,0 +1,11 @@
+package com.styra.opa.springboot.cache;
+
+/**
+ * Identifies an OPA decision by the policy path and the hash of the canonical input.
+ *
+ * @param path selected policy path, or null for the default path.
+ * @param inputDigest hex-encoded SHA-256 hash of the canonical input.
+ * @see OPADecisionKeyGenerator
+ */
+public record OPADecisionKey(String path, String inputDigest) {
+}
@@ -0,0 +1,123 @@
+package com.styra.opa.springboot.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_HEADERS;
+
+/**
+ * Generates {@link OPADecisionKey}s, so that requests which are expected to get the same decision share the same key.
+ * The key consists of the selected policy path and a SHA-256 hash of the canonical (sorted keys) JSON form of the
+ * input, after the keys configured via {@code opa.cache.excluded-input-keys} and {@code opa.cache.excluded-headers}
+ * have been removed.
+ */
+public class OPADecisionKeyGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPADecisionKeyGenerator.class);
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final List<List<String>> excludedInputKeys;
+    private final Set<String> excludedHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final ObjectMapper canonicalMapper = JsonMapper.builder()
+        .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+        .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+        .build();
+
+    public OPADecisionKeyGenerator(OPAProperties.Cache properties) {
+        this.excludedInputKeys = properties.getExcludedInputKeys().stream()
+            .map(excludedKey -> Arrays.asList(excludedKey.split("\\.")))
+            .toList();
+        this.excludedHeaders.addAll(properties.getExcludedHeaders());
+    }
+
+    /**
+     * Computes the key of an OPA request. The key of an {@link OPAKeyedInput} is only computed once, and then reused.
+     *
+     * @param path selected policy path, or null for the default path.
+     * @return null if the input could not be serialized.
+     */
+    public OPADecisionKey key(String path, Map<String, Object> input) {
+        OPAKeyedInput keyedInput = input instanceof OPAKeyedInput i ? i : null;
+        OPADecisionKey key = keyedInput != null ? keyedInput.key(this, path) : null;
+        if (key != null) {
+            return key;
+        }
+        try {
+            byte[] canonicalInput = canonicalMapper.writeValueAsBytes(withoutExcludedKeys(input));
+            byte[] digest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(canonicalInput);
+            key = new OPADecisionKey(path, HexFormat.of().formatHex(digest));
+            if (keyedInput != null) {
+                keyedInput.setKey(this, key);
+            }
+            return key;
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            LOGGER.debug("could not compute decision key", e);
+            return null;
+        }
+    }
+
+    private Map<String, Object> withoutExcludedKeys(Map<String, Object> input) {
+        Map<String, Object> result = input;
+        for (List<String> excludedKey : excludedInputKeys) {
+            result = without(result, excludedKey);
+        }
+        if (!excludedHeaders.isEmpty()) {
+            result = withoutExcludedHeaders(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of {@code map} without the (nested) {@code key}. Only the maps along the key are copied.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> without(Map<String, Object> map, List<String> key) {
+        String head = key.get(0);
+        if (map == null || !map.containsKey(head)) {
+            return map;
+        }
+        Map<String, Object> copy = new HashMap<>(map);
+        if (key.size() == 1) {
+            copy.remove(head);
+        } else if (map.get(head) instanceof Map<?, ?> child) {
+            copy.put(head, without((Map<String, Object>) child, key.subList(1, key.size())));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> withoutExcludedHeaders(Map<String, Object> input) {
+        if (!(input.get(ACTION) instanceof Map<?, ?> action)
+            || !(action.get(ACTION_HEADERS) instanceof Map<?, ?> headers)) {
+            return input;
+        }
+        Map<String, Object> filteredHeaders = new HashMap<>();
+        headers.forEach((name, value) -> {
+            if (!excludedHeaders.contains(String.valueOf(name))) {
+                filteredHeaders.put(String.valueOf(name), value);
+            }
+        });
+        Map<String, Object> filteredAction = new HashMap<>((Map<String, Object>) action);
+        filteredAction.put(ACTION_HEADERS, filteredHeaders);
+        Map<String, Object> filteredInput = new HashMap<>(input);
+        filteredInput.put(ACTION, filteredAction);
+        return filteredInput;
+    }
+}
@@ -0,0 +1,66 @@
+package com.styra.opa.springboot.cache;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Unmodifiable view of the input of a single OPA evaluation, which remembers the {@link OPADecisionKey} computed for
+ * it. Every layer of an evaluation (e.g. the decision cache, the coalescer and the circuit breaker) keys its input, so
+ * wrapping it once lets them share a single serialization and digest, instead of computing the key again each.
+ */
+public final class OPAKeyedInput extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> input;
+    private volatile KeyedBy keyedBy;
+
+    private OPAKeyedInput(Map<String, Object> input) {
+        this.input = Collections.unmodifiableMap(input);
+    }
+
+    /**
+     * Returns {@code input} wrapped in an {@link OPAKeyedInput}, or {@code input} itself if it already is one, or is
+     * null.
+     */
+    public static Map<String, Object> of(Map<String, Object> input) {
+        return input == null || input instanceof OPAKeyedInput ? input : new OPAKeyedInput(input);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return input.entrySet();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return input.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return input.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return input.size();
+    }
+
+    /**
+     * Returns the key {@code keyGenerator} computed for {@code path}, or null if it did not compute one yet.
+     */
+    OPADecisionKey key(OPADecisionKeyGenerator keyGenerator, String path) {
+        KeyedBy current = keyedBy;
+        return current != null && current.keyGenerator() == keyGenerator && Objects.equals(current.key().path(), path)
+            ? current.key() : null;
+    }
+
+    void setKey(OPADecisionKeyGenerator keyGenerator, OPADecisionKey key) {
+        this.keyedBy = new KeyedBy(keyGenerator, key);
+    }
+
+    private record KeyedBy(OPADecisionKeyGenerator keyGenerator, OPADecisionKey key) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.styra.opa.springboot.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Last decision OPA made for each policy path and input, shared by the components which answer with a fallback
+ * decision while OPA is not asked (e.g. the open {@link com.styra.opa.springboot.evaluator.OPACircuitBreaker}) or did
+ * not respond in time (the {@link com.styra.opa.springboot.timeout.OPATimeouts}), and which could reuse the last known
+ * decision as their fallback. Like the {@link OPADecisionCache}, it is keyed by the shared
+ * {@link OPADecisionKeyGenerator} and never keeps fallback decisions, but its decisions do not expire: they are only
+ * evicted once {@link OPAProperties.Cache#getLastKnownMaximumSize()} is reached.
+ * <br/><br/>
+ * It requires Caffeine on the classpath. Otherwise, no bean is created, and the components which would fall back to
+ * the last known decision deny access instead.
+ */
+public class OPALastKnownDecisions {
+
+    private final OPADecisionKeyGenerator keyGenerator;
+    private final Cache<OPADecisionKey, OPAResponse> responses;
+
+    public OPALastKnownDecisions(OPAProperties.Cache properties, OPADecisionKeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+        this.responses = Caffeine.newBuilder().maximumSize(properties.getLastKnownMaximumSize()).build();
+    }
+
+    /**
+     * Computes the key of an OPA request, see {@link OPADecisionKeyGenerator#key(String, Map)}.
+     */
+    public OPADecisionKey key(String path, Map<String, Object> input) {
+        return keyGenerator.key(path, input);
+    }
+
+    /**
+     * Remembers {@code opaResponse} as the last known decision of {@code key}. Fallback responses, and responses
+     * without a key, are ignored.
+     */
+    public void put(OPADecisionKey key, OPAResponse opaResponse) {
+        if (key != null && opaResponse != null && !(opaResponse instanceof OPAFallbackResponse)) {
+            responses.put(key, opaResponse);
+        }
+    }
+
+    /**
+     * Returns the last known decision of {@code key}, or null if there is none, or {@code key} is null.
+     */
+    public OPAResponse get(OPADecisionKey key) {
+        return key != null ? responses.getIfPresent(key) : null;
+    }
+
+    /**
+     * Returns an {@link OPAFallbackResponse} with the last known decision of {@code key} if there is one, or with
+     * {@code decision} and {@code reason} otherwise.
+     *
+     * @see #fallbackResponse(OPADecisionKey, boolean, String, BiFunction)
+     */
+    public OPAFallbackResponse fallbackResponse(OPADecisionKey key, boolean decision, String reason) {
+        return fallbackResponse(key, decision, reason, OPAFallbackResponse::new);
+    }
+
+    /**
+     * Returns a fallback response created by {@code factory}, with the last known decision of {@code key} if there is
+     * one, or with {@code decision} and {@code reason} (in {@code context.reason_user.en}) otherwise.
+     *
+     * @param key key of the evaluation to answer, or null if the last known decision should not be reused.
+     */
+    public <R extends OPAFallbackResponse> R fallbackResponse(OPADecisionKey key, boolean decision, String reason,
+                                                              BiFunction<Boolean, OPAResponseContext, R> factory) {
+        OPAResponse lastKnownResponse = get(key);
+        if (lastKnownResponse != null) {
+            return factory.apply(lastKnownResponse.getDecision(), lastKnownResponse.getContext());
+        }
+        return OPAFallbackResponse.withReason(decision, reason, factory);
+    }
+}
@@ -0,0 +1,435 @@
+package com.styra.opa.springboot.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Non-blocking OPA client based on the JDK {@link HttpClient}. Policies are evaluated using the
+ * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#get-a-document-with-input">Data API</a>, or the
+ * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#execute-a-simple-query">default decision</a> if
+ * no path is given. Requests never block the calling thread: responses are handled on the {@link HttpClient}'s
+ * executor, which makes this client suitable for event-loop (e.g. Netty) threads.
+ */
+public class OPAAsyncClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAAsyncClient.class);
+
+    private static final String DATA_API_PREFIX = "/v1/data/";
+    private static final String BATCH_API_PREFIX = "/v1/batch/data/";
+    private static final String COMPILE_API = "/v1/compile";
+    private static final String POLICY_API = "/v1/policies";
+    private static final String HEALTH_API = "/health";
+    private static final String HEALTH_BUNDLES_PARAMETER = "?bundles";
+    private static final String INPUT_KEY = "input";
+    private static final String INPUTS_KEY = "inputs";
+    private static final String QUERY_KEY = "query";
+    private static final String UNKNOWNS_KEY = "unknowns";
+    private static final String RESULT_KEY = "result";
+    private static final String RESPONSES_KEY = "responses";
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_MULTI_STATUS = 207;
+    private static final Set<Integer> BATCH_UNSUPPORTED_STATUSES = Set.of(404, 405, 501);
+
+    private final String opaUrl;
+    private final Map<String, String> headers;
+    private final HttpClient httpClient;
+    private final OPARequestBodyWriter requestBodyWriter;
+    private Duration requestTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * @see OPAAsyncClient#OPAAsyncClient(String, Map, HttpClient)
+     */
+    public OPAAsyncClient() {
+        this(OPAProperties.DEFAULT_URL);
+    }
+
+    /**
+     * @see OPAAsyncClient#OPAAsyncClient(String, Map, HttpClient)
+     */
+    public OPAAsyncClient(String opaUrl) {
+        this(opaUrl, Map.of());
+    }
+
+    /**
+     * @see OPAAsyncClient#OPAAsyncClient(String, Map, HttpClient)
+     */
+    public OPAAsyncClient(String opaUrl, Map<String, String> headers) {
+        this(opaUrl, headers, HttpClient.newHttpClient());
+    }
+
+    /**
+     * Instantiates a non-blocking OPA client.
+     *
+     * @param opaUrl URL of the OPA server, which could contain a path prefix (e.g. behind a reverse proxy).
+     * @param headers sent with every request, e.g. {@code Authorization}.
+     * @param httpClient used to send requests.
+     */
+    public OPAAsyncClient(String opaUrl, Map<String, String> headers, HttpClient httpClient) {
+        this(opaUrl, headers, httpClient, null);
+    }
+
+    /**
+     * Instantiates a non-blocking OPA client, which streams request bodies into the pooled buffers of
+     * {@code requestBodyWriter}.
+     *
+     * @param requestBodyWriter if null, request bodies are serialized into a new byte array per request.
+     * @see OPAAsyncClient#OPAAsyncClient(String, Map, HttpClient)
+     */
+    public OPAAsyncClient(String opaUrl, Map<String, String> headers, HttpClient httpClient,
+                          OPARequestBodyWriter requestBodyWriter) {
+        this.opaUrl = opaUrl.endsWith("/") ? opaUrl.substring(0, opaUrl.length() - 1) : opaUrl;
+        this.headers = Map.copyOf(headers);
+        this.httpClient = httpClient;
+        this.requestBodyWriter = requestBodyWriter;
+    }
+
+    /**
+     * Evaluates the policy at {@code path} with {@code input}. The returned future fails with an {@link OPAException}
+     * (wrapped in a {@link CompletionException}) if the request could not be sent, OPA responded with an error (an
+     * {@link OPAHttpStatusException}), or the policy result was undefined.
+     *
+     * @param path policy path (e.g. {@code policy/allow}), or null to use OPA's default decision.
+     */
+    public CompletableFuture<OPAResponse> evaluate(String path, Object input) {
+        if (requestBodyWriter != null) {
+            OPARequestBodyWriter.PooledRequestBody body;
+            try {
+                body = path != null ? requestBodyWriter.writeInput(input) : requestBodyWriter.writeRaw(input);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA input", e));
+            }
+            return send(newRequestBuilder(path), body, "failed to send request to OPA",
+                response -> toOPAResponse(path, response));
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(path != null ? Map.of(INPUT_KEY, input) : input);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA input", e));
+        }
+        HttpRequest request = newRequestBuilder(path)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return send(request, "failed to send request to OPA", response -> toOPAResponse(path, response));
+    }
+
+    /**
+     * Evaluates the policy at {@code path} with {@code input}, and returns its result as is, for policies whose result
+     * is not an {@link OPAResponse} (e.g. AuthZEN multi-evaluations). The returned future fails like the one of
+     * {@link #evaluate(String, Object)}.
+     *
+     * @param path policy path (e.g. {@code authzen/evaluations}).
+     */
+    public CompletableFuture<JsonNode> evaluateResult(String path, Object input) {
+        HttpRequest.Builder requestBuilder = newRequestBuilder(path);
+        if (requestBodyWriter != null) {
+            OPARequestBodyWriter.PooledRequestBody body;
+            try {
+                body = requestBodyWriter.writeInput(input);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA input", e));
+            }
+            return send(requestBuilder, body, "failed to send request to OPA",
+                response -> toDefinedResult(path, response));
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of(INPUT_KEY, input));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA input", e));
+        }
+        HttpRequest request = requestBuilder
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return send(request, "failed to send request to OPA", response -> toDefinedResult(path, response));
+    }
+
+    /**
+     * Evaluates the policy at {@code path} once for each of {@code inputs} in a single request, using the Enterprise
+     * OPA <a href="https://docs.styra.com/enterprise-opa/reference/api-reference/batch-api">Batch API</a>. The returned
+     * map contains a response for each id in {@code inputs} whose policy result was defined; failed or undefined
+     * evaluations are omitted. The returned future fails with an {@link OPABatchUnsupportedException} if the server
+     * does not provide the Batch API (e.g. open source OPA), or with an {@link OPAException} if the batch as a whole
+     * failed.
+     *
+     * @param path policy path (e.g. {@code policy/allow}), the Batch API does not support the default decision.
+     * @param inputs inputs by caller-defined ids.
+     */
+    public CompletableFuture<Map<String, OPAResponse>> evaluateBatch(String path, Map<String, ?> inputs) {
+        HttpRequest.Builder requestBuilder = newRequestBuilder(URI.create(opaUrl + BATCH_API_PREFIX
+            + trimSlashes(path)));
+        if (requestBodyWriter != null) {
+            OPARequestBodyWriter.PooledRequestBody body;
+            try {
+                body = requestBodyWriter.writeInputs(inputs);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA batch input", e));
+            }
+            return send(requestBuilder, body, "failed to send batch request to OPA",
+                response -> toOPAResponses(path, response));
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of(INPUTS_KEY, inputs));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA batch input", e));
+        }
+        HttpRequest request = requestBuilder
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return send(request, "failed to send batch request to OPA", response -> toOPAResponses(path, response));
+    }
+
+    /**
+     * Partially evaluates {@code query} using the
+     * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#compile-api">Compile API</a>, and returns its
+     * {@code result}, which contains the residual {@code queries} (and {@code support} modules, if any).
+     *
+     * @param query query to partially evaluate, e.g. {@code data.policy.allow.decision == true}.
+     * @param input known parts of the input.
+     * @param unknowns references which are treated as unknown, e.g. {@code input.subject}.
+     */
+    public CompletableFuture<JsonNode> compile(String query, Object input, List<String> unknowns) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Map.of(QUERY_KEY, query, INPUT_KEY, input, UNKNOWNS_KEY, unknowns));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to serialize OPA compile request", e));
+        }
+        HttpRequest request = newRequestBuilder(URI.create(opaUrl + COMPILE_API))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+        return send(request, "failed to send compile request to OPA", this::toResult);
+    }
+
+    /**
+     * Lists the policy modules loaded by OPA using the
+     * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#list-policies">Policy API</a>, and returns its
+     * {@code result}. Since it contains the source of every module, it changes whenever a bundle is activated.
+     */
+    public CompletableFuture<JsonNode> listPolicies() {
+        HttpRequest request = newRequestBuilder(URI.create(opaUrl + POLICY_API))
+            .GET()
+            .build();
+        return send(request, "failed to send policy request to OPA", this::toResult);
+    }
+
+    /**
+     * Checks whether OPA is ready to evaluate policies using the
+     * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#health-api">Health API</a>. The returned future
+     * completes with false (rather than failing) if OPA responded with an error status, or could not be reached.
+     *
+     * @param bundles if true, OPA is only healthy once all of its bundles were activated.
+     * @param timeout if not null, overrides the request timeout of this client.
+     */
+    public CompletableFuture<Boolean> checkHealth(boolean bundles, Duration timeout) {
+        HttpRequest.Builder requestBuilder = newRequestBuilder(URI.create(opaUrl + HEALTH_API
+            + (bundles ? HEALTH_BUNDLES_PARAMETER : "")));
+        if (timeout != null) {
+            requestBuilder.timeout(timeout);
+        }
+        return httpClient.sendAsync(requestBuilder.GET().build(), HttpResponse.BodyHandlers.discarding())
+            .handle((response, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.debug("health check of {} failed: {}", opaUrl, throwable.getMessage());
+                    return false;
+                }
+                return response.statusCode() == HTTP_OK;
+            });
+    }
+
+    public String getOpaUrl() {
+        return opaUrl;
+    }
+
+    /**
+     * Fails requests with an {@link java.net.http.HttpTimeoutException} if no response was received within
+     * {@code requestTimeout}. Passing null disables the timeout.
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Creates a request builder targeting {@code path} which already contains the configured headers.
+     */
+    protected HttpRequest.Builder newRequestBuilder(String path) {
+        String target = path != null ? opaUrl + DATA_API_PREFIX + trimSlashes(path) : opaUrl + "/";
+        return newRequestBuilder(URI.create(target));
+    }
+
+    private HttpRequest.Builder newRequestBuilder(URI target) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+            .header("Content-Type", "application/json")
+            .header("Accept", "application/json");
+        headers.forEach(builder::header);
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        return builder;
+    }
+
+    /**
+     * Sends {@code body} without copying it (see {@link OPARequestBodyWriter.PooledRequestBody#publisher()}), and
+     * returns its buffer to the pool once the exchange completed, unless it was aborted, since the {@link HttpClient}
+     * could then still read it.
+     */
+    private <T> CompletableFuture<T> send(HttpRequest.Builder requestBuilder,
+                                          OPARequestBodyWriter.PooledRequestBody body, String errorMessage,
+                                          Function<HttpResponse<byte[]>, T> mapper) {
+        HttpRequest request = requestBuilder
+            .POST(body.publisher())
+            .build();
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request,
+            HttpResponse.BodyHandlers.ofByteArray());
+        exchange.whenComplete((response, throwable) -> {
+            if (!exchange.isCancelled()) {
+                body.release();
+            }
+        });
+        return map(exchange, errorMessage, mapper);
+    }
+
+    private <T> CompletableFuture<T> send(HttpRequest request, String errorMessage,
+                                          Function<HttpResponse<byte[]>, T> mapper) {
+        return map(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()), errorMessage, mapper);
+    }
+
+    /**
+     * Maps the response of {@code exchange} with {@code mapper}. Cancelling the returned future (e.g. once a hedge
+     * won) cancels {@code exchange}, which makes the {@link HttpClient} abort it.
+     */
+    private static <T> CompletableFuture<T> map(CompletableFuture<HttpResponse<byte[]>> exchange, String errorMessage,
+                                                Function<HttpResponse<byte[]>, T> mapper) {
+        CompletableFuture<T> response = exchange
+            .exceptionally(throwable -> {
+                throw new CompletionException(new OPAException(errorMessage, unwrap(throwable)));
+            })
+            .thenApply(mapper);
+        response.whenComplete((result, throwable) -> {
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    protected ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    private OPAResponse toOPAResponse(String path, HttpResponse<byte[]> response) {
+        try {
+            if (response.statusCode() != HTTP_OK) {
+                throw new OPAHttpStatusException(response.statusCode(),
+                    new String(response.body(), StandardCharsets.UTF_8));
+            }
+            if (path == null) {
+                return objectMapper.readValue(response.body(), OPAResponse.class);
+            }
+            JsonNode result = objectMapper.readTree(response.body()).get(RESULT_KEY);
+            if (result == null) {
+                throw new OPAException(format("policy result is undefined for path '%s'", path));
+            }
+            return objectMapper.treeToValue(result, OPAResponse.class);
+        } catch (IOException e) {
+            throw new CompletionException(new OPAException("failed to deserialize OPA response", e));
+        } catch (OPAException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private JsonNode toResult(HttpResponse<byte[]> response) {
+        try {
+            if (response.statusCode() != HTTP_OK) {
+                throw new OPAHttpStatusException(response.statusCode(),
+                    new String(response.body(), StandardCharsets.UTF_8));
+            }
+            return objectMapper.readTree(response.body()).path(RESULT_KEY);
+        } catch (IOException e) {
+            throw new CompletionException(new OPAException("failed to deserialize OPA response", e));
+        } catch (OPAException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private JsonNode toDefinedResult(String path, HttpResponse<byte[]> response) {
+        JsonNode result = toResult(response);
+        if (result.isMissingNode()) {
+            throw new CompletionException(new OPAException(format("policy result is undefined for path '%s'", path)));
+        }
+        return result;
+    }
+
+    private Map<String, OPAResponse> toOPAResponses(String path, HttpResponse<byte[]> response) {
+        try {
+            if (BATCH_UNSUPPORTED_STATUSES.contains(response.statusCode())) {
+                throw new OPABatchUnsupportedException(format("OPA responded with HTTP status %d to batch request",
+                    response.statusCode()));
+            }
+            if (response.statusCode() != HTTP_OK && response.statusCode() != HTTP_MULTI_STATUS) {
+                throw new OPAHttpStatusException(response.statusCode(),
+                    new String(response.body(), StandardCharsets.UTF_8));
+            }
+            JsonNode responses = objectMapper.readTree(response.body()).path(RESPONSES_KEY);
+            Map<String, OPAResponse> opaResponses = new HashMap<>();
+            for (Map.Entry<String, JsonNode> entry : responses.properties()) {
+                JsonNode result = entry.getValue().get(RESULT_KEY);
+                if (result == null) {
+                    LOGGER.debug("no result for batch input {} of path '{}': {}", entry.getKey(), path,
+                        entry.getValue());
+                    continue;
+                }
+                opaResponses.put(entry.getKey(), objectMapper.treeToValue(result, OPAResponse.class));
+            }
+            return opaResponses;
+        } catch (IOException e) {
+            throw new CompletionException(new OPAException("failed to deserialize OPA batch response", e));
+        } catch (OPAException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+    }
+}
@@ -0,0 +1,14 @@
+package com.styra.opa.springboot.client;
+
+import com.styra.opa.OPAException;
+
+/**
+ * Thrown by {@link OPAAsyncClient#evaluateBatch(String, java.util.Map)} if the server does not provide the Enterprise
+ * OPA Batch API.
+ */
+public class OPABatchUnsupportedException extends OPAException {
+
+    public OPABatchUnsupportedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,157 @@
+package com.styra.opa.springboot.client;
+
+import com.styra.opa.OPAClient;
+import com.styra.opa.openapi.OpaApiClient;
+import com.styra.opa.openapi.utils.HTTPClient;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the JDK {@link HttpClient} used to talk to OPA from {@link OPAProperties.Http}, and creates {@link OPAClient}s
+ * and {@link OPAAsyncClient}s which share it, and thereby share its pool of keep-alive connections. All of them send
+ * {@link OPAProperties.Http#getHeaders()} with every request.
+ * <br/><br/>
+ * The connection pool size and the keep-alive timeout are JVM-wide settings of the JDK {@link HttpClient}, which
+ * would affect every other client in the JVM, so they are not configured here, but could be set with the
+ * {@code jdk.httpclient.connectionPoolSize} and {@code jdk.httpclient.keepalive.timeout} system properties.
+ */
+public class OPAHttpClientFactory implements AutoCloseable {
+
+    private final OPAProperties.Http properties;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final Set<OPAClient> opaClients = ConcurrentHashMap.newKeySet();
+
+    public OPAHttpClientFactory(OPAProperties.Http properties) {
+        this.properties = properties;
+        HttpClient.Builder builder = newHttpClientBuilder();
+        if (properties.getExecutorThreads() > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(properties.getExecutorThreads(), runnable -> {
+                Thread thread = new Thread(runnable, "opa-http-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            builder.executor(executor);
+        } else {
+            this.executor = null;
+        }
+        this.httpClient = builder.build();
+    }
+
+    /**
+     * Returns the {@link HttpClient} shared by all clients created by this instance.
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Creates an {@link OPAClient} which sends its requests using the shared {@link HttpClient}, and applies
+     * {@link OPAProperties.Http#getRequestTimeout()} and {@link OPAProperties.Http#getHeaders()} to them.
+     */
+    public OPAClient createOPAClient(String opaUrl) {
+        OPAClient opaClient = new OPAClient(OpaApiClient.builder()
+            .serverURL(opaUrl)
+            .client(new SharedHTTPClient())
+            .build());
+        opaClients.add(opaClient);
+        return opaClient;
+    }
+
+    /**
+     * Returns whether {@code opaClient} was created by this instance, i.e. sends its requests like the
+     * {@link OPAAsyncClient}s it creates.
+     */
+    public boolean isCreatedClient(OPAClient opaClient) {
+        return opaClients.contains(opaClient);
+    }
+
+    /**
+     * Creates an {@link OPAAsyncClient} which sends its requests using the shared {@link HttpClient}, and applies
+     * {@link OPAProperties.Http#getRequestTimeout()} and {@link OPAProperties.Http#getHeaders()} to them.
+     *
+     * @param requestBodyWriter if null, request bodies are not streamed into pooled buffers.
+     */
+    public OPAAsyncClient createOPAAsyncClient(String opaUrl, OPARequestBodyWriter requestBodyWriter) {
+        OPAAsyncClient opaAsyncClient = new OPAAsyncClient(opaUrl, headers(), httpClient, requestBodyWriter);
+        opaAsyncClient.setRequestTimeout(properties.getRequestTimeout());
+        return opaAsyncClient;
+    }
+
+    /**
+     * Creates an {@link OPAAsyncClient} like {@link #createOPAAsyncClient(String, OPARequestBodyWriter)}, but with its
+     * own {@link HttpClient}, built from the same properties, so that it does not share keep-alive connections with
+     * other clients.
+     *
+     * @param requestBodyWriter if null, request bodies are not streamed into pooled buffers.
+     */
+    public OPAAsyncClient createDedicatedOPAAsyncClient(String opaUrl, OPARequestBodyWriter requestBodyWriter) {
+        HttpClient.Builder builder = newHttpClientBuilder();
+        if (executor != null) {
+            builder.executor(executor);
+        }
+        OPAAsyncClient opaAsyncClient = new OPAAsyncClient(opaUrl, headers(), builder.build(), requestBodyWriter);
+        opaAsyncClient.setRequestTimeout(properties.getRequestTimeout());
+        return opaAsyncClient;
+    }
+
+    /**
+     * Stops the executor which handles responses, if one was configured.
+     */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private HttpClient.Builder newHttpClientBuilder() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(properties.getVersion());
+        if (properties.getConnectTimeout() != null) {
+            builder.connectTimeout(properties.getConnectTimeout());
+        }
+        return builder;
+    }
+
+    private Map<String, String> headers() {
+        return properties.getHeaders() != null ? properties.getHeaders() : Map.of();
+    }
+
+    /**
+     * Adapts the shared {@link HttpClient} to the {@link HTTPClient} interface of the OPA Java SDK.
+     */
+    private final class SharedHTTPClient implements HTTPClient {
+
+        @Override
+        public HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+            Duration requestTimeout = properties.getRequestTimeout();
+            Map<String, String> headers = properties.getHeaders();
+            boolean timed = requestTimeout != null && request.timeout().isEmpty();
+            if (!timed && (headers == null || headers.isEmpty())) {
+                return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            }
+            HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+            if (timed) {
+                builder.timeout(requestTimeout);
+            }
+            if (headers != null) {
+                headers.forEach(builder::setHeader);
+            }
+            return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.styra.opa.springboot.client;
+
+import com.styra.opa.OPAException;
+
+import static java.lang.String.format;
+
+/**
+ * Thrown by {@link OPAAsyncClient} if OPA responded with an unexpected HTTP status, e.g. a 5xx status while it is
+ * restarted.
+ */
+public class OPAHttpStatusException extends OPAException {
+
+    private final int statusCode;
+
+    public OPAHttpStatusException(int statusCode, String body) {
+        super(format("OPA responded with HTTP status %d: %s", statusCode, body));
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status OPA responded with.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,218 @@
+package com.styra.opa.springboot.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams OPA request bodies with a {@link JsonGenerator} into pooled byte buffers, which are handed to the HTTP
+ * client as they are (see {@link PooledRequestBody#publisher()}), i.e. without intermediate {@link String}s or copies.
+ * The constant envelopes (e.g. <code>{"input":</code>) are pre-encoded, and so are the keys and types of
+ * {@link com.styra.opa.springboot.input.OPAInput}.
+ * <br/><br/>
+ * The input itself is still built as a {@link com.styra.opa.springboot.input.OPAInput} map and serialized with
+ * {@link ObjectMapper#writeValue(JsonGenerator, Object)}, rather than written directly from the request and the
+ * {@link org.springframework.security.core.Authentication}, since customizers, validators, caches and decision logs
+ * work on that map.
+ * <br/><br/>
+ * A buffer must be {@link PooledRequestBody#release() released} once the request was sent. Buffers which grew beyond
+ * {@link OPAProperties.Streaming#getMaxRetainedBufferSize()} are not returned to the pool, so that a single large
+ * request does not pin its memory.
+ */
+public class OPARequestBodyWriter {
+
+    private static final byte[] INPUT_ENVELOPE = "{\"input\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INPUTS_ENVELOPE = "{\"inputs\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NO_ENVELOPE = new byte[0];
+    private static final int END_OBJECT = '}';
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxRetainedBufferSize;
+    private final BlockingQueue<PooledRequestBody> pool;
+
+    public OPARequestBodyWriter(ObjectMapper objectMapper, OPAProperties.Streaming properties) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = properties.getBufferSize();
+        this.maxRetainedBufferSize = Math.max(properties.getBufferSize(), properties.getMaxRetainedBufferSize());
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, properties.getPoolSize()));
+    }
+
+    /**
+     * Writes <code>{"input": input}</code>, which is the body of a Data API request.
+     */
+    public PooledRequestBody writeInput(Object input) throws IOException {
+        return write(INPUT_ENVELOPE, input);
+    }
+
+    /**
+     * Writes <code>{"inputs": inputs}</code>, which is the body of a Batch API request.
+     */
+    public PooledRequestBody writeInputs(Object inputs) throws IOException {
+        return write(INPUTS_ENVELOPE, inputs);
+    }
+
+    /**
+     * Writes {@code input} without an envelope, which is the body of a default decision request.
+     */
+    public PooledRequestBody writeRaw(Object input) throws IOException {
+        return write(NO_ENVELOPE, input);
+    }
+
+    /**
+     * Returns the number of buffers which are currently available for reuse.
+     */
+    public int getPooledBufferCount() {
+        return pool.size();
+    }
+
+    private PooledRequestBody write(byte[] envelope, Object value) throws IOException {
+        PooledRequestBody body = pool.poll();
+        if (body == null) {
+            body = new PooledRequestBody(this, bufferSize);
+        }
+        body.reset();
+        try {
+            body.write(envelope);
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(body)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                objectMapper.writeValue(gen, value);
+            }
+            if (envelope.length > 0) {
+                body.write(END_OBJECT);
+            }
+            return body;
+        } catch (IOException e) {
+            body.release();
+            throw e;
+        }
+    }
+
+    private void recycle(PooledRequestBody body) {
+        if (body.buffer.length <= maxRetainedBufferSize) {
+            pool.offer(body);
+        }
+    }
+
+    /**
+     * A request body in a pooled buffer. Only the first {@link #length()} bytes of {@link #array()} are valid.
+     */
+    public static final class PooledRequestBody extends OutputStream {
+
+        private final OPARequestBodyWriter writer;
+        private byte[] buffer;
+        private int length;
+        private boolean released;
+
+        private PooledRequestBody(OPARequestBodyWriter writer, int bufferSize) {
+            this.writer = writer;
+            this.buffer = new byte[bufferSize];
+        }
+
+        public byte[] array() {
+            return buffer;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Returns a publisher of this body, which wraps its buffer, rather than copying it like
+         * {@link HttpRequest.BodyPublishers#ofByteArray(byte[], int, int)} does. Thus, this body must not be released
+         * while the HTTP client could still read it, i.e. before its exchange completed.
+         */
+        public HttpRequest.BodyPublisher publisher() {
+            return new WrappingBodyPublisher(buffer, length);
+        }
+
+        /**
+         * Returns the buffer to its pool. Calling this method more than once has no effect.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                writer.recycle(this);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, length, len);
+            length += len;
+        }
+
+        private void reset() {
+            length = 0;
+            released = false;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (length + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+            }
+        }
+    }
+
+    /**
+     * Publishes the first {@code length} bytes of {@code array} as a single {@link ByteBuffer} wrapping it, once per
+     * subscription (e.g. again if the HTTP client resends the request).
+     */
+    private static final class WrappingBodyPublisher implements HttpRequest.BodyPublisher {
+
+        private final byte[] array;
+        private final int length;
+
+        private WrappingBodyPublisher(byte[] array, int length) {
+            this.array = array;
+            this.length = length;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            AtomicBoolean done = new AtomicBoolean();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                        return;
+                    }
+                    subscriber.onNext(ByteBuffer.wrap(array, 0, length).asReadOnlyBuffer());
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    done.set(true);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.styra.opa.springboot.decisionlog;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.styra.opa.springboot.OPADecisionOutcome;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Writes decisions to local NDJSON files, one JSON object per line, e.g.:
+ * <pre>
+ * {"timestamp":"2024-01-01T00:00:00Z","path":"policy/main","decision":true,"cached":false,"outcome":"fresh",
+ *  "duration_ns":1200000,"input":{...},"context":{...}}
+ * </pre>
+ * {@link #log} is called on the request thread, and only puts the decision into a bounded queue (decisions are dropped
+ * while it is full). A single background thread waits for decisions and drains the queue: it serializes them into a
+ * reusable direct {@link ByteBuffer}, which is written to a {@link FileChannel} whenever it is full or the queue is
+ * empty, so that a burst of decisions is written with a few system calls. A new file is started once the current one
+ * reaches {@code opa.decision-log.max-file-size} or {@code opa.decision-log.rotation-interval}, and only the latest
+ * {@code opa.decision-log.max-files} files are kept.
+ */
+public class OPADecisionLogWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPADecisionLogWriter.class);
+    private static final String FILE_SUFFIX = ".ndjson";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+        .withZone(ZoneOffset.UTC);
+    private static final String MASK = "***";
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+    /**
+     * Wakes up the background thread once it is closed.
+     */
+    private static final Decision STOP = new Decision(0, null, null, null, null, false, 0);
+
+    private final OPAProperties.DecisionLog properties;
+    private final Path directory;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String[]> maskedInputKeys = new ArrayList<>();
+    private final BlockingQueue<Decision> queue;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+    // the following fields are only used by the background thread (or by close(), once it terminated)
+    private final ByteBuffer buffer;
+    private JsonGenerator generator;
+    private FileChannel channel;
+    private long fileSize;
+    private long fileCreatedAtMillis;
+    private int fileSequence;
+
+    /**
+     * Creates the directory of {@code properties}, and starts the background thread.
+     *
+     * @throws IOException if the directory could not be created.
+     */
+    public OPADecisionLogWriter(OPAProperties.DecisionLog properties) throws IOException {
+        this(properties, Clock.systemUTC());
+    }
+
+    OPADecisionLogWriter(OPAProperties.DecisionLog properties, Clock clock) throws IOException {
+        this.properties = properties;
+        this.directory = Path.of(properties.getDirectory());
+        this.clock = clock;
+        for (String key : properties.getMaskedInputKeys()) {
+            maskedInputKeys.add(key.split("\\."));
+        }
+        Files.createDirectories(directory);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.buffer = ByteBuffer.allocateDirect(properties.getBufferSize());
+        this.generator = createGenerator();
+        this.thread = new Thread(this::run, "opa-decision-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a decision to be written, unless it is not sampled or the queue is full. The arguments match
+     * {@link com.styra.opa.springboot.metrics.OPAMetricsRecorder#recordDecision}; {@code input} must not be modified
+     * afterward, since it is serialized later.
+     */
+    public void log(String path, Map<String, Object> input, OPAResponse opaResponse, Throwable error, boolean cached,
+                    long durationNanos) {
+        if (!running || !isSampled()) {
+            return;
+        }
+        if (properties.getQueueCapacity() <= 0
+            || !queue.offer(new Decision(clock.millis(), path, input, opaResponse, error, cached, durationNanos))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the number of decisions which were written.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of decisions which were dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of times that writing failed, in which case the decisions in the buffer are lost.
+     */
+    public long getWriteErrorCount() {
+        return writeErrors.sum();
+    }
+
+    /**
+     * Returns the number of decisions waiting to be written.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the background thread, and writes the queued decisions.
+     */
+    @Override
+    public void close() {
+        running = false;
+        // if the queue is full, the background thread is not waiting, and stops once it drained the queue
+        queue.offer(STOP);
+        try {
+            thread.join(CLOSE_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            LOGGER.warn("decision log writer did not stop within {}, queued decisions are lost", CLOSE_TIMEOUT);
+            return;
+        }
+        drain(queue.poll());
+        closeChannel();
+    }
+
+    private boolean isSampled() {
+        double sampleRate = properties.getSampleRate();
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                drain(queue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes {@code first} (if not null) and the decisions queued after it.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void drain(Decision first) {
+        int count = 0;
+        try {
+            for (Decision decision = first; decision != null; decision = queue.poll()) {
+                if (decision == STOP) {
+                    continue;
+                }
+                rotateIfDue();
+                write(decision);
+                count++;
+            }
+            flushBuffer();
+            written.add(count);
+        } catch (IOException | RuntimeException e) {
+            writeErrors.increment();
+            LOGGER.warn("failed to write decision log, discarding buffered decisions:", e);
+            buffer.clear();
+            closeChannel();
+            // the generator could be in the middle of a decision
+            generator = createGenerator();
+        }
+    }
+
+    private void write(Decision decision) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("timestamp", Instant.ofEpochMilli(decision.timestampMillis()).toString());
+        generator.writeStringField("path", decision.path());
+        OPAResponse opaResponse = decision.opaResponse();
+        if (opaResponse != null) {
+            generator.writeBooleanField("decision", opaResponse.getDecision());
+            if (opaResponse instanceof OPAFallbackResponse) {
+                generator.writeBooleanField("fallback", true);
+            }
+        }
+        generator.writeBooleanField("cached", decision.cached());
+        generator.writeStringField("outcome",
+            OPADecisionOutcome.of(opaResponse, decision.error()).name().toLowerCase(Locale.ROOT));
+        generator.writeNumberField("duration_ns", decision.durationNanos());
+        if (decision.error() != null) {
+            Throwable error = decision.error() instanceof CompletionException && decision.error().getCause() != null
+                ? decision.error().getCause() : decision.error();
+            generator.writeStringField("error", error.toString());
+        }
+        generator.writeFieldName("input");
+        writeInput(decision.input());
+        if (opaResponse != null && opaResponse.getContext() != null) {
+            generator.writeObjectField("context", opaResponse.getContext());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        // moves the decision from the generator's buffer into `buffer`
+        generator.flush();
+    }
+
+    private void writeInput(Map<String, Object> input) throws IOException {
+        if (maskedInputKeys.isEmpty() || input == null) {
+            generator.writeObject(input);
+            return;
+        }
+        JsonNode tree = objectMapper.valueToTree(input);
+        for (String[] key : maskedInputKeys) {
+            mask(tree, key, 0);
+        }
+        generator.writeTree(tree);
+    }
+
+    private static void mask(JsonNode node, String[] key, int index) {
+        if (!(node instanceof ObjectNode objectNode)) {
+            return;
+        }
+        List<String> fieldNames = new ArrayList<>();
+        objectNode.fieldNames().forEachRemaining(fieldNames::add);
+        for (String fieldName : fieldNames) {
+            if (!fieldName.equalsIgnoreCase(key[index])) {
+                continue;
+            }
+            if (index == key.length - 1) {
+                objectNode.put(fieldName, MASK);
+            } else {
+                mask(objectNode.get(fieldName), key, index + 1);
+            }
+        }
+    }
+
+    private void rotateIfDue() throws IOException {
+        boolean sizeExceeded = fileSize + buffer.position() >= properties.getMaxFileSize().toBytes();
+        Duration rotationInterval = properties.getRotationInterval();
+        boolean intervalElapsed = channel != null && rotationInterval != null && !rotationInterval.isZero()
+            && clock.millis() - fileCreatedAtMillis >= rotationInterval.toMillis();
+        if (sizeExceeded || intervalElapsed) {
+            flushBuffer();
+            closeChannel();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            FileChannel fileChannel = channel();
+            while (buffer.hasRemaining()) {
+                fileSize += fileChannel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel != null) {
+            return channel;
+        }
+        String timestamp = FILE_TIMESTAMP.format(clock.instant());
+        Path file;
+        do {
+            // the sequence number keeps files which were created within the same millisecond in order
+            file = directory.resolve(String.format("%s-%s-%04d%s", properties.getFilePrefix(), timestamp,
+                fileSequence++, FILE_SUFFIX));
+        } while (Files.exists(file));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        fileSize = 0;
+        fileCreatedAtMillis = clock.millis();
+        deleteOldFiles();
+        return channel;
+    }
+
+    private void deleteOldFiles() throws IOException {
+        if (properties.getMaxFiles() <= 0) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(directory)) {
+            files = paths
+                .filter(path -> path.getFileName().toString().startsWith(properties.getFilePrefix() + "-")
+                    && path.getFileName().toString().endsWith(FILE_SUFFIX))
+                .sorted()
+                .toList();
+        }
+        for (int i = 0; i < files.size() - properties.getMaxFiles(); i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("failed to close decision log file:", e);
+        }
+        channel = null;
+    }
+
+    private JsonGenerator createGenerator() {
+        try {
+            JsonGenerator jsonGenerator = objectMapper.createGenerator(new BufferOutputStream())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // decisions are separated by newlines instead
+            jsonGenerator.setRootValueSeparator(null);
+            return jsonGenerator;
+        } catch (IOException e) {
+            // not thrown, since the output stream is not written to
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Decision(long timestampMillis, String path, Map<String, Object> input, OPAResponse opaResponse,
+                            Throwable error, boolean cached, long durationNanos) {
+    }
+
+    /**
+     * Writes into {@link #buffer}, which is written to the current file whenever it is full.
+     */
+    private final class BufferOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (!buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+                int length = Math.min(remaining, buffer.remaining());
+                buffer.put(b, offset, length);
+                offset += length;
+                remaining -= length;
+            }
+        }
+    }
+}
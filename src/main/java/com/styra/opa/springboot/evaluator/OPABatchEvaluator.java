@@ -0,0 +1,213 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.client.OPABatchUnsupportedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Collects concurrent OPA evaluations of the same policy path and sends them in a single request to the Enterprise OPA
+ * <a href="https://docs.styra.com/enterprise-opa/reference/api-reference/batch-api">Batch API</a>. A batch is sent once
+ * {@link OPAProperties.Batch#getWindow()} elapsed since its first evaluation, or as soon as it contains
+ * {@link OPAProperties.Batch#getMaxSize()} evaluations. Each caller's future is completed from its slot in the batch
+ * response.
+ * <br/><br/>
+ * Evaluations are sent using this instance's {@link OPAAsyncClient} rather than the decorated evaluator, so that
+ * flushing batches never blocks. Hence, they bypass a custom {@link com.styra.opa.OPAClient} bean; the auto-configured
+ * client sends them to {@code opa.url} with {@code opa.http.*} settings (e.g. {@code opa.http.headers}). If the server
+ * does not provide the Batch API, this is remembered and all following evaluations are sent as single requests.
+ * Evaluations of the default decision (null path) are not batched.
+ */
+public class OPABatchEvaluator implements OPAEvaluatorDecorator, Ordered, AutoCloseable {
+
+    /**
+     * Batching is the innermost decorator, since it replaces the transport of the decorated evaluator.
+     */
+    public static final int ORDER = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPABatchEvaluator.class);
+
+    private final OPAAsyncClient opaAsyncClient;
+    private final long windowNanos;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedEvaluations = new LongAdder();
+    private volatile boolean batchSupported = true;
+
+    public OPABatchEvaluator(OPAAsyncClient opaAsyncClient, OPAProperties.Batch properties) {
+        this.opaAsyncClient = opaAsyncClient;
+        this.windowNanos = properties.getWindow().toNanos();
+        this.maxSize = Math.max(1, properties.getMaxSize());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "opa-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        Map<String, Batch> openBatches = new HashMap<>();
+        return (path, input) -> {
+            if (path == null) {
+                return delegate.evaluate(null, input);
+            }
+            if (!batchSupported) {
+                return opaAsyncClient.evaluate(path, input);
+            }
+            CompletableFuture<OPAResponse> future = new CompletableFuture<>();
+            Batch fullBatch = null;
+            synchronized (openBatches) {
+                Batch batch = openBatches.computeIfAbsent(path, Batch::new);
+                batch.add(input, future);
+                if (batch.size() >= maxSize) {
+                    openBatches.remove(path);
+                    if (batch.flush != null) {
+                        batch.flush.cancel(false);
+                    }
+                    fullBatch = batch;
+                } else if (batch.size() == 1) {
+                    batch.flush = scheduler.schedule(() -> {
+                        boolean removed;
+                        synchronized (openBatches) {
+                            removed = openBatches.remove(path, batch);
+                        }
+                        if (removed) {
+                            send(batch);
+                        }
+                    }, windowNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            if (fullBatch != null) {
+                send(fullBatch);
+            }
+            return future;
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Stops the scheduler which sends batches after their window elapsed.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the number of batch requests which were sent to OPA.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of evaluations which were sent as part of a batch request.
+     */
+    public long getBatchedEvaluationCount() {
+        return batchedEvaluations.sum();
+    }
+
+    /**
+     * Returns false once the server responded that it does not provide the Batch API.
+     */
+    public boolean isBatchSupported() {
+        return batchSupported;
+    }
+
+    private void send(Batch batch) {
+        if (batch.size() == 1 || !batchSupported) {
+            sendSingle(batch);
+            return;
+        }
+        Map<String, Object> inputs = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            inputs.put(Integer.toString(i), batch.inputs.get(i));
+        }
+        batches.increment();
+        batchedEvaluations.add(batch.size());
+        LOGGER.trace("sending batch of {} evaluations for path: {}", batch.size(), batch.path);
+        opaAsyncClient.evaluateBatch(batch.path, inputs).whenComplete((opaResponses, throwable) -> {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            if (cause instanceof OPABatchUnsupportedException) {
+                LOGGER.warn("OPA does not support the batch API, falling back to single requests: {}",
+                    cause.getMessage());
+                batchSupported = false;
+                sendSingle(batch);
+            } else if (cause != null) {
+                batch.futures.forEach(future -> future.completeExceptionally(cause));
+            } else {
+                complete(batch, opaResponses);
+            }
+        });
+    }
+
+    private void sendSingle(Batch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<OPAResponse> future = batch.futures.get(i);
+            opaAsyncClient.evaluate(batch.path, batch.inputs.get(i)).whenComplete((opaResponse, throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(opaResponse);
+                }
+            });
+        }
+    }
+
+    private static void complete(Batch batch, Map<String, OPAResponse> opaResponses) {
+        for (int i = 0; i < batch.size(); i++) {
+            OPAResponse opaResponse = opaResponses.get(Integer.toString(i));
+            if (opaResponse != null) {
+                batch.futures.get(i).complete(opaResponse);
+            } else {
+                batch.futures.get(i).completeExceptionally(new OPAException(
+                    format("policy result is undefined or failed for path '%s'", batch.path)));
+            }
+        }
+    }
+
+    private static final class Batch {
+        private final String path;
+        private final List<Map<String, Object>> inputs = new ArrayList<>();
+        private final List<CompletableFuture<OPAResponse>> futures = new ArrayList<>();
+        private ScheduledFuture<?> flush;
+
+        private Batch(String path) {
+            this.path = path;
+        }
+
+        private void add(Map<String, Object> input, CompletableFuture<OPAResponse> future) {
+            inputs.add(input);
+            futures.add(future);
+        }
+
+        private int size() {
+            return inputs.size();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Isolates the evaluations of the configured policy paths in bulkheads, so that a slow policy (e.g. one which calls
+ * out to external data) could only hold as many of the connections and threads as its bulkhead allows, and does not
+ * starve the evaluations of fast policies. Each bulkhead has a maximum number of evaluations in flight, and a bounded
+ * queue of evaluations waiting for one of them to complete. Evaluations which do not fit into the queue, or which
+ * waited longer than {@link OPAProperties.Bulkheads.Bulkhead#getMaxWait()}, are not sent to OPA, but answered with the
+ * configured rejected decision (allow, deny, or the last known decision). The latter are answered with an
+ * {@link OPATimeoutResponse}, since they timed out waiting for their bulkhead.
+ * <br/><br/>
+ * Evaluations never block the calling thread: queued evaluations are started on a thread of the shared
+ * {@link OPAEvaluationExecutor} once an evaluation in flight completes, and are rejected if none is available. Paths
+ * configured with a dedicated client are evaluated by it, instead of the decorated evaluator.
+ */
+public class OPABulkheads implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * Bulkheads wrap the concurrency limiter, but are wrapped by the circuit breaker, so that rejected evaluations are
+     * not recorded as failures.
+     */
+    public static final int ORDER = 600;
+
+    /**
+     * Reason (in {@code context.reason_user.en}) of the decisions returned for rejected evaluations.
+     */
+    public static final String REJECTED_REASON_FORMAT = "OPA evaluations of %s are saturated (bulkhead is full)";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPABulkheads.class);
+
+    private final OPALastKnownDecisions lastKnownDecisions;
+    private final OPAEvaluationExecutor executor;
+    private final Map<String, Bulkhead> bulkheads;
+
+    /**
+     * @param lastKnownDecisions  last known decisions, or null if {@link DefaultDecision#LAST_KNOWN} should fall back
+     *                            to deny (e.g. without Caffeine on the classpath).
+     * @param dedicatedEvaluators creates the evaluator of a path which is configured with a dedicated client.
+     */
+    public OPABulkheads(OPAProperties.Bulkheads properties, OPALastKnownDecisions lastKnownDecisions,
+                        OPAEvaluationExecutor executor, Function<String, OPAEvaluator> dedicatedEvaluators) {
+        this.lastKnownDecisions = lastKnownDecisions;
+        this.executor = executor;
+        Map<String, Bulkhead> bulkheadsByPath = new LinkedHashMap<>();
+        properties.getPaths().forEach((path, bulkheadProperties) -> bulkheadsByPath.put(path,
+            new Bulkhead(path, bulkheadProperties,
+                bulkheadProperties.isDedicatedClient() ? dedicatedEvaluators.apply(path) : null)));
+        this.bulkheads = Collections.unmodifiableMap(bulkheadsByPath);
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (path, input) -> {
+            Bulkhead bulkhead = path != null ? bulkheads.get(path) : null;
+            if (bulkhead == null) {
+                return delegate.evaluate(path, input);
+            }
+            return bulkhead.evaluate(bulkhead.dedicatedEvaluator != null ? bulkhead.dedicatedEvaluator : delegate,
+                input);
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Returns the bulkheads by policy path.
+     */
+    public Map<String, Bulkhead> getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * Bulkhead of a single policy path.
+     */
+    public final class Bulkhead {
+
+        private final String path;
+        private final OPAProperties.Bulkheads.Bulkhead properties;
+        private final OPAEvaluator dedicatedEvaluator;
+        // guarded by this
+        private final Queue<QueuedEvaluation> queue = new ArrayDeque<>();
+        // guarded by this
+        private int active;
+        private final LongAdder rejectedCalls = new LongAdder();
+        private final LongAdder expiredCalls = new LongAdder();
+
+        private Bulkhead(String path, OPAProperties.Bulkheads.Bulkhead properties, OPAEvaluator dedicatedEvaluator) {
+            this.path = path;
+            this.properties = properties;
+            this.dedicatedEvaluator = dedicatedEvaluator;
+        }
+
+        /**
+         * Returns the maximum number of evaluations in flight at once.
+         */
+        public int getMaxConcurrentCalls() {
+            return Math.max(1, properties.getMaxConcurrentCalls());
+        }
+
+        /**
+         * Returns the number of evaluations which are in flight.
+         */
+        public synchronized int getActiveCount() {
+            return active;
+        }
+
+        /**
+         * Returns the number of evaluations waiting for one in flight to complete.
+         */
+        public synchronized int getQueueSize() {
+            return queue.size();
+        }
+
+        /**
+         * Returns the number of evaluations which were answered with the rejected decision, because the queue was full,
+         * they waited too long, or no thread was available to start them.
+         */
+        public long getRejectedCallCount() {
+            return rejectedCalls.sum();
+        }
+
+        /**
+         * Returns the number of rejected evaluations which waited longer than the maximum wait time.
+         */
+        public long getExpiredCallCount() {
+            return expiredCalls.sum();
+        }
+
+        private CompletableFuture<OPAResponse> evaluate(OPAEvaluator evaluator, Map<String, Object> input) {
+            OPADecisionKey key = properties.getRejectedDecision() == DefaultDecision.LAST_KNOWN
+                && lastKnownDecisions != null ? lastKnownDecisions.key(path, input) : null;
+            QueuedEvaluation queuedEvaluation;
+            synchronized (this) {
+                if (active < getMaxConcurrentCalls()) {
+                    active++;
+                    queuedEvaluation = null;
+                } else if (queue.size() < properties.getMaxQueueSize()) {
+                    queuedEvaluation = new QueuedEvaluation(evaluator, input, key);
+                    queue.add(queuedEvaluation);
+                } else {
+                    rejectedCalls.increment();
+                    LOGGER.trace("bulkhead of path {} is full, returning {} decision", path,
+                        properties.getRejectedDecision());
+                    return CompletableFuture.completedFuture(rejectedResponse(key));
+                }
+            }
+            if (queuedEvaluation == null) {
+                return run(evaluator, input, key);
+            }
+            // an evaluation which was cancelled while it is queued (e.g. a hedge which lost) is never started
+            queuedEvaluation.response.whenComplete((opaResponse, throwable) -> {
+                if (queuedEvaluation.response.isCancelled()) {
+                    synchronized (this) {
+                        queue.remove(queuedEvaluation);
+                    }
+                }
+            });
+            Duration maxWait = properties.getMaxWait();
+            if (maxWait != null) {
+                CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS)
+                    .execute(() -> expire(queuedEvaluation));
+            }
+            return queuedEvaluation.response;
+        }
+
+        private CompletableFuture<OPAResponse> run(OPAEvaluator evaluator, Map<String, Object> input,
+                                                   OPADecisionKey key) {
+            return OPAFutures.whenComplete(() -> evaluator.evaluate(path, input), (opaResponse, throwable) -> {
+                if (key != null) {
+                    lastKnownDecisions.put(key, opaResponse);
+                }
+                release();
+            });
+        }
+
+        private void release() {
+            while (true) {
+                QueuedEvaluation next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+                try {
+                    // the evaluation could block (e.g. with a blocking transport), so it must not run on this thread
+                    executor.execute(() -> {
+                        CompletableFuture<OPAResponse> running = run(next.evaluator, next.input, next.key);
+                        running.whenComplete((opaResponse, throwable) -> {
+                            if (throwable != null) {
+                                next.response.completeExceptionally(throwable);
+                            } else {
+                                next.response.complete(opaResponse);
+                            }
+                        });
+                        next.response.whenComplete((opaResponse, throwable) -> {
+                            if (next.response.isCancelled()) {
+                                running.cancel(true);
+                            }
+                        });
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // the slot is still held, so it is handed to the next queued evaluation
+                    rejectedCalls.increment();
+                    LOGGER.trace("no thread was available to start evaluation of path {}, returning {} decision",
+                        path, properties.getRejectedDecision());
+                    next.response.complete(rejectedResponse(next.key));
+                }
+            }
+        }
+
+        private void expire(QueuedEvaluation queuedEvaluation) {
+            synchronized (this) {
+                if (!queue.remove(queuedEvaluation)) {
+                    return;
+                }
+            }
+            rejectedCalls.increment();
+            expiredCalls.increment();
+            LOGGER.trace("evaluation of path {} waited longer than {} in its bulkhead, returning {} decision", path,
+                properties.getMaxWait(), properties.getRejectedDecision());
+            queuedEvaluation.response.complete(rejectedResponse(queuedEvaluation.key, OPATimeoutResponse::new));
+        }
+
+        private OPAResponse rejectedResponse(OPADecisionKey key) {
+            return rejectedResponse(key, OPAFallbackResponse::new);
+        }
+
+        private <R extends OPAFallbackResponse> R rejectedResponse(OPADecisionKey key,
+                                                                   BiFunction<Boolean, OPAResponseContext, R> factory) {
+            boolean decision = properties.getRejectedDecision() == DefaultDecision.ALLOW;
+            String reason = String.format(REJECTED_REASON_FORMAT, path);
+            return key != null ? lastKnownDecisions.fallbackResponse(key, decision, reason, factory)
+                : OPAFallbackResponse.withReason(decision, reason, factory);
+        }
+    }
+
+    private record QueuedEvaluation(OPAEvaluator evaluator, Map<String, Object> input, OPADecisionKey key,
+                                    CompletableFuture<OPAResponse> response) {
+
+        QueuedEvaluation(OPAEvaluator evaluator, Map<String, Object> input, OPADecisionKey key) {
+            this(evaluator, input, key, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Guards OPA evaluations with a circuit breaker, so that requests fail fast instead of piling up while OPA is slow or
+ * unavailable. The breaker is:
+ * <ul>
+ *     <li><b>closed</b> while the failure rate and the slow call rate of the last
+ *     {@link OPAProperties.CircuitBreaker#getSlidingWindowSize()} calls stay below their thresholds</li>
+ *     <li><b>open</b> once either threshold was reached: evaluations are not sent to OPA, but answered immediately
+ *     with the configured default decision of their path (allow, deny, or the last known decision of the shared
+ *     {@link OPALastKnownDecisions})</li>
+ *     <li><b>half-open</b> once {@link OPAProperties.CircuitBreaker#getWaitDurationInOpenState()} elapsed: a few trial
+ *     calls are permitted, whose outcomes decide whether the breaker closes or opens again</li>
+ * </ul>
+ * A single breaker guards all policy paths, since they are evaluated by the same OPA server.
+ * <br/><br/>
+ * Only {@link OPAException}s and {@link IOException}s count as failures, since they tell that OPA (or the connection to
+ * it) failed. Other outcomes say nothing about OPA, so they are neither failures nor successes: exceptions which were
+ * not caused by OPA (e.g. a {@link java.util.concurrent.CancellationException} once the caller stopped waiting, or the
+ * caller's {@link java.util.concurrent.TimeoutException}), and {@link OPAFallbackResponse}s of inner decorators (e.g.
+ * of the {@link OPAConcurrencyLimiter}), which did not reach OPA. While half-open, such calls do not use up a trial.
+ */
+public class OPACircuitBreaker implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * The circuit breaker wraps the transport (and batching), but not coalescing, so that a coalesced evaluation is
+     * recorded once.
+     */
+    public static final int ORDER = 500;
+
+    /**
+     * Reason (in {@code context.reason_user.en}) of the default decisions returned while the breaker is open.
+     */
+    public static final String OPEN_REASON = "OPA is unavailable (circuit breaker is open)";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPACircuitBreaker.class);
+    private static final double PERCENT = 100;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final OPAProperties.CircuitBreaker properties;
+    private final LongSupplier ticker;
+    private final long slowCallNanos;
+    private final long waitNanosInOpenState;
+    private final OPALastKnownDecisions lastKnownDecisions;
+    private final byte[] outcomes;
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder stateTransitions = new LongAdder();
+    private volatile State state = State.CLOSED;
+    // guarded by this
+    private int outcomeIndex;
+    private int outcomeCount;
+    private int failureCount;
+    private int slowCount;
+    private long openedAtNanos;
+    private int halfOpenPermits;
+
+    /**
+     * @param lastKnownDecisions last known decisions, or null if {@link DefaultDecision#LAST_KNOWN} should fall back to
+     *                           deny (e.g. without Caffeine on the classpath).
+     */
+    public OPACircuitBreaker(OPAProperties.CircuitBreaker properties, OPALastKnownDecisions lastKnownDecisions) {
+        this(properties, lastKnownDecisions, System::nanoTime);
+    }
+
+    OPACircuitBreaker(OPAProperties.CircuitBreaker properties, OPALastKnownDecisions lastKnownDecisions,
+                      LongSupplier ticker) {
+        this.properties = properties;
+        this.ticker = ticker;
+        this.slowCallNanos = properties.getSlowCallDuration().toNanos();
+        this.waitNanosInOpenState = properties.getWaitDurationInOpenState().toNanos();
+        this.lastKnownDecisions = lastKnownDecisions;
+        this.outcomes = new byte[Math.max(1, Math.max(properties.getSlidingWindowSize(),
+            properties.getPermittedCallsInHalfOpenState()))];
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (path, input) -> {
+            DefaultDecision defaultDecision = defaultDecision(path);
+            OPADecisionKey key = defaultDecision == DefaultDecision.LAST_KNOWN && lastKnownDecisions != null
+                ? lastKnownDecisions.key(path, input) : null;
+            if (!tryAcquirePermission()) {
+                rejectedCalls.increment();
+                LOGGER.trace("circuit breaker is open, returning {} decision for path: {}", defaultDecision, path);
+                boolean decision = defaultDecision == DefaultDecision.ALLOW;
+                return CompletableFuture.completedFuture(key != null
+                    ? lastKnownDecisions.fallbackResponse(key, decision, OPEN_REASON)
+                    : OPAFallbackResponse.withReason(decision, OPEN_REASON, OPAFallbackResponse::new));
+            }
+            long startNanos = ticker.getAsLong();
+            return CompletableFuture.completedFuture(input)
+                .thenCompose(ignored -> delegate.evaluate(path, input))
+                .whenComplete((opaResponse, throwable) -> {
+                    long durationNanos = ticker.getAsLong() - startNanos;
+                    boolean failure = throwable != null && isFailure(throwable);
+                    if (failure || throwable == null && !(opaResponse instanceof OPAFallbackResponse)) {
+                        onComplete(failure, durationNanos > slowCallNanos);
+                    } else {
+                        onNeutral();
+                    }
+                    if (key != null) {
+                        lastKnownDecisions.put(key, opaResponse);
+                    }
+                });
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of evaluations which were answered with a default decision, because the breaker was open.
+     */
+    public long getRejectedCallCount() {
+        return rejectedCalls.sum();
+    }
+
+    /**
+     * Returns the number of times the breaker changed its state.
+     */
+    public long getStateTransitionCount() {
+        return stateTransitions.sum();
+    }
+
+    private boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            switch (state) {
+                case OPEN:
+                    if (ticker.getAsLong() - openedAtNanos < waitNanosInOpenState) {
+                        return false;
+                    }
+                    transitionTo(State.HALF_OPEN);
+                    halfOpenPermits = Math.max(1, properties.getPermittedCallsInHalfOpenState());
+                    break;
+                case HALF_OPEN:
+                    if (halfOpenPermits == 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return true;
+            }
+            halfOpenPermits--;
+            return true;
+        }
+    }
+
+    private synchronized void onComplete(boolean failure, boolean slow) {
+        if (state == State.OPEN) {
+            // calls which were permitted before the breaker opened
+            return;
+        }
+        int windowSize = state == State.CLOSED ? outcomes.length : Math.max(1,
+            properties.getPermittedCallsInHalfOpenState());
+        record((byte) ((failure ? FAILURE : 0) | (slow ? SLOW : 0)), windowSize);
+        if (state == State.CLOSED) {
+            if (outcomeCount >= properties.getMinimumNumberOfCalls() && thresholdReached()) {
+                open();
+            }
+        } else if (outcomeCount >= windowSize) {
+            if (thresholdReached()) {
+                open();
+            } else {
+                transitionTo(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Returns the trial of a call which says nothing about OPA, so that the half-open breaker is not stuck waiting for
+     * the outcome of trials which never come.
+     */
+    private synchronized void onNeutral() {
+        if (state == State.HALF_OPEN) {
+            halfOpenPermits = Math.min(halfOpenPermits + 1, Math.max(1, properties.getPermittedCallsInHalfOpenState()));
+        }
+    }
+
+    private static boolean isFailure(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        return cause instanceof OPAException || cause instanceof IOException;
+    }
+
+    private void record(byte outcome, int windowSize) {
+        if (outcomeCount == windowSize) {
+            byte evicted = outcomes[outcomeIndex];
+            failureCount -= evicted & FAILURE;
+            slowCount -= (evicted & SLOW) >> 1;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeIndex] = outcome;
+        failureCount += outcome & FAILURE;
+        slowCount += (outcome & SLOW) >> 1;
+        outcomeIndex = (outcomeIndex + 1) % windowSize;
+    }
+
+    private boolean thresholdReached() {
+        return failureCount * PERCENT >= properties.getFailureRateThreshold() * outcomeCount
+            || slowCount * PERCENT >= properties.getSlowCallRateThreshold() * outcomeCount;
+    }
+
+    private void open() {
+        LOGGER.warn("opening OPA circuit breaker: {} of {} calls failed, {} were slow", failureCount, outcomeCount,
+            slowCount);
+        openedAtNanos = ticker.getAsLong();
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State newState) {
+        LOGGER.debug("OPA circuit breaker changed from {} to {}", state, newState);
+        state = newState;
+        stateTransitions.increment();
+        outcomeIndex = 0;
+        outcomeCount = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+
+    private DefaultDecision defaultDecision(String path) {
+        DefaultDecision defaultDecision = path != null ? properties.getPathDefaultDecisions().get(path) : null;
+        return defaultDecision != null ? defaultDecision : properties.getDefaultDecision();
+    }
+}
@@ -0,0 +1,174 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of concurrent OPA evaluations, so that callers back off when OPA slows down (e.g. while it
+ * activates a bundle) instead of queueing ever more requests on both sides. Evaluations over the limit are not sent to
+ * OPA, but answered immediately with the configured rejected decision (allow, deny, or the last known decision of the
+ * shared {@link OPALastKnownDecisions}).
+ * <br/><br/>
+ * The limit adapts to the observed round-trip time (RTT) using a gradient algorithm: after each evaluation, the ratio
+ * of the long-term average RTT (times {@link OPAProperties.ConcurrencyLimit#getRttTolerance()}) to the sampled RTT is
+ * the gradient, clamped to {@code [0.5, 1]}. The new limit is {@code limit * gradient + sqrt(limit)}, smoothed with
+ * the current one, so that it grows while the RTT is stable, and shrinks as soon as it increases. Samples are only
+ * used while at least half of the limit is in use, since a mostly idle client learns nothing about OPA's capacity.
+ */
+public class OPAConcurrencyLimiter implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * The limiter wraps the transport (and batching), but is wrapped by the circuit breaker, so that rejected
+     * evaluations are not recorded as failures.
+     */
+    public static final int ORDER = 700;
+
+    /**
+     * Reason (in {@code context.reason_user.en}) of the decisions returned for rejected evaluations.
+     */
+    public static final String REJECTED_REASON = "OPA is overloaded (concurrency limit reached)";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAConcurrencyLimiter.class);
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double MAX_GRADIENT = 1.0;
+    // the long-term RTT decays faster once it is this much higher than the sampled RTT, so the limit recovers quickly
+    private static final double LONG_RTT_DRIFT = 2.0;
+    private static final double LONG_RTT_DECAY = 0.95;
+
+    private final OPAProperties.ConcurrencyLimit properties;
+    private final LongSupplier ticker;
+    private final OPALastKnownDecisions lastKnownDecisions;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private volatile double limit;
+    // guarded by this
+    private double longRttNanos;
+
+    /**
+     * @param lastKnownDecisions last known decisions, or null if {@link DefaultDecision#LAST_KNOWN} should fall back to
+     *                           deny (e.g. without Caffeine on the classpath).
+     */
+    public OPAConcurrencyLimiter(OPAProperties.ConcurrencyLimit properties,
+                                 OPALastKnownDecisions lastKnownDecisions) {
+        this(properties, lastKnownDecisions, System::nanoTime);
+    }
+
+    OPAConcurrencyLimiter(OPAProperties.ConcurrencyLimit properties, OPALastKnownDecisions lastKnownDecisions,
+                          LongSupplier ticker) {
+        this.properties = properties;
+        this.ticker = ticker;
+        this.lastKnownDecisions = lastKnownDecisions;
+        this.limit = clamp(properties.getInitialLimit(), minLimit(), maxLimit());
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (path, input) -> {
+            OPADecisionKey key = properties.getRejectedDecision() == DefaultDecision.LAST_KNOWN
+                && lastKnownDecisions != null ? lastKnownDecisions.key(path, input) : null;
+            if (!tryAcquire()) {
+                rejectedCalls.increment();
+                LOGGER.trace("concurrency limit {} reached, returning {} decision for path: {}", getLimit(),
+                    properties.getRejectedDecision(), path);
+                boolean decision = properties.getRejectedDecision() == DefaultDecision.ALLOW;
+                return CompletableFuture.completedFuture(key != null
+                    ? lastKnownDecisions.fallbackResponse(key, decision, REJECTED_REASON)
+                    : OPAFallbackResponse.withReason(decision, REJECTED_REASON, OPAFallbackResponse::new));
+            }
+            long startNanos = ticker.getAsLong();
+            return OPAFutures.whenComplete(() -> delegate.evaluate(path, input), (opaResponse, throwable) -> {
+                int inFlightBefore = inFlight.getAndDecrement();
+                if (throwable != null) {
+                    // failures (e.g. refused connections) could be fast, so they say nothing about OPA's latency
+                    return;
+                }
+                onSample(ticker.getAsLong() - startNanos, inFlightBefore);
+                if (key != null) {
+                    lastKnownDecisions.put(key, opaResponse);
+                }
+            });
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Returns the current number of evaluations which could be in flight at once.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of evaluations which are in flight.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of evaluations which were answered with the rejected decision, because the limit was reached.
+     */
+    public long getRejectedCallCount() {
+        return rejectedCalls.sum();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightBefore) {
+        double rtt = Math.max(1, rttNanos);
+        if (longRttNanos == 0) {
+            longRttNanos = rtt;
+        } else {
+            double window = Math.max(1, properties.getLongWindow());
+            longRttNanos += (rtt - longRttNanos) / window;
+            if (longRttNanos / rtt > LONG_RTT_DRIFT) {
+                longRttNanos *= LONG_RTT_DECAY;
+            }
+        }
+        double currentLimit = limit;
+        if (inFlightBefore < currentLimit / 2) {
+            return;
+        }
+        double gradient = clamp(properties.getRttTolerance() * longRttNanos / rtt, MIN_GRADIENT, MAX_GRADIENT);
+        double newLimit = currentLimit * gradient + Math.sqrt(currentLimit);
+        newLimit = currentLimit * (1 - properties.getSmoothing()) + newLimit * properties.getSmoothing();
+        limit = clamp(newLimit, minLimit(), maxLimit());
+    }
+
+    private int minLimit() {
+        return Math.max(1, properties.getMinLimit());
+    }
+
+    private int maxLimit() {
+        return Math.max(minLimit(), properties.getMaxLimit());
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,101 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs OPA evaluations off the calling thread, e.g. blocking evaluations of the {@link com.styra.opa.OPAClient} while a
+ * timeout applies, so that a stuck call holds one of its threads instead of the request thread. It is shared by every
+ * component which starts evaluations of its own: timeouts, the {@link OPARetrier}, the {@link OPAHedger} and
+ * {@link OPABulkheads}. Since OPA could stall every evaluation during an outage, both its threads
+ * ({@link OPAProperties.Executor#getMaxThreads()}) and the evaluations waiting for one
+ * ({@link OPAProperties.Executor#getMaxQueueSize()}) are bounded, and evaluations over them are rejected, instead of
+ * growing a thread per stalled request.
+ */
+public class OPAEvaluationExecutor implements Executor, AutoCloseable {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public OPAEvaluationExecutor(OPAProperties.Executor properties) {
+        int maxThreads = Math.max(1, properties.getMaxThreads());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(Math.max(1, properties.getMaxQueueSize())), runnable -> {
+                Thread thread = new Thread(runnable, "opa-evaluation-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        // threads are only kept while evaluations are run off the calling thread
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs {@code command} on one of this instance's threads.
+     *
+     * @throws RejectedExecutionException if all threads are busy and the queue is full, or this instance was closed.
+     */
+    @Override
+    public void execute(Runnable command) {
+        try {
+            executor.execute(command);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts {@code evaluation} on one of this instance's threads. The returned future fails with a
+     * {@link RejectedExecutionException} if it could not be started.
+     */
+    public CompletableFuture<OPAResponse> submit(Supplier<CompletableFuture<OPAResponse>> evaluation) {
+        try {
+            return CompletableFuture.supplyAsync(evaluation, this).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns the number of threads which are running evaluations.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of evaluations waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of evaluations which were rejected, because all threads were busy and the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops this instance's threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
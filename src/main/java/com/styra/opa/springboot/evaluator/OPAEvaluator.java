@@ -0,0 +1,24 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Evaluates an OPA policy. This is the extension point between the authorization managers and the transport to OPA,
+ * which could be decorated using {@link OPAEvaluatorDecorator}s. The returned future could already be completed (e.g.
+ * when the underlying client is blocking), and fails with an {@link OPAException} if the policy could not be
+ * evaluated.
+ */
+@FunctionalInterface
+public interface OPAEvaluator {
+
+    /**
+     * Evaluates the policy at {@code path} with {@code input}.
+     *
+     * @param path selected policy path, or null for the default path.
+     */
+    CompletableFuture<OPAResponse> evaluate(String path, Map<String, Object> input);
+}
@@ -0,0 +1,38 @@
+package com.styra.opa.springboot.evaluator;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * By defining a bean which implements this interface, clients could add behavior (e.g. coalescing, retries) around
+ * every OPA evaluation. Decorators are applied in {@link Ordered order}: the decorator with the lowest order is the
+ * outermost one, i.e. the first to see an evaluation and the last to see its result.
+ */
+@FunctionalInterface
+public interface OPAEvaluatorDecorator {
+
+    /**
+     * Returns an {@link OPAEvaluator} which delegates to {@code delegate}.
+     */
+    OPAEvaluator decorate(OPAEvaluator delegate);
+
+    /**
+     * Applies {@code decorators} to {@code evaluator}, so that the first decorator (in {@link Ordered order}) is the
+     * outermost one.
+     */
+    static OPAEvaluator decorateAll(OPAEvaluator evaluator, List<? extends OPAEvaluatorDecorator> decorators) {
+        if (decorators == null || decorators.isEmpty()) {
+            return evaluator;
+        }
+        List<OPAEvaluatorDecorator> sortedDecorators = new ArrayList<>(decorators);
+        AnnotationAwareOrderComparator.sort(sortedDecorators);
+        OPAEvaluator decorated = evaluator;
+        for (int i = sortedDecorators.size() - 1; i >= 0; i--) {
+            decorated = sortedDecorators.get(i).decorate(decorated);
+        }
+        return decorated;
+    }
+}
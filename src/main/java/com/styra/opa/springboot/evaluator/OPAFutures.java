@@ -0,0 +1,43 @@
+package com.styra.opa.springboot.evaluator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Composes the futures of evaluations, so that cancelling a composed future is passed on to the evaluation it depends
+ * on, which {@link CompletableFuture} does not do by itself. Thereby, cancelling an evaluation (e.g. the losing attempt
+ * of the {@link OPAHedger}) reaches the {@link com.styra.opa.springboot.client.OPAAsyncClient}, which aborts its
+ * exchange, and the decorators in between release what they hold (e.g. concurrency permits) as soon as it completed.
+ */
+public final class OPAFutures {
+
+    private OPAFutures() {
+    }
+
+    /**
+     * Starts {@code evaluation}, and runs {@code action} once it completed, like
+     * {@code CompletableFuture.completedFuture(null).thenCompose(ignored -> evaluation.get()).whenComplete(action)}
+     * (i.e. exceptions thrown by {@code evaluation} fail the returned future), but cancelling the returned future
+     * cancels the future of {@code evaluation} as well.
+     */
+    public static <T> CompletableFuture<T> whenComplete(Supplier<CompletableFuture<T>> evaluation,
+                                                        BiConsumer<? super T, ? super Throwable> action) {
+        AtomicReference<CompletableFuture<T>> source = new AtomicReference<>();
+        CompletableFuture<T> composed = CompletableFuture.<Void>completedFuture(null)
+            .thenCompose(ignored -> {
+                CompletableFuture<T> future = evaluation.get();
+                source.set(future);
+                return future;
+            })
+            .whenComplete(action);
+        composed.whenComplete((result, throwable) -> {
+            CompletableFuture<T> future = source.get();
+            if (composed.isCancelled() && future != null) {
+                future.cancel(true);
+            }
+        });
+        return composed;
+    }
+}
@@ -0,0 +1,264 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedges OPA evaluations, so that a single slow OPA response (e.g. during a GC pause of one replica) does not dominate
+ * the tail latency of authorization. If no response arrived within the hedge delay of the policy path, a duplicate
+ * evaluation is sent, and whichever response arrives first is used; the other one is cancelled. Cancellation is passed
+ * on through the decorators in between (see {@link OPAFutures}), so that they release their permits, and the
+ * {@link com.styra.opa.springboot.client.OPAAsyncClient} aborts its exchange. An evaluation only fails once both
+ * attempts failed, and evaluations which fail before they are hedged are not hedged.
+ * <br/><br/>
+ * The hedge delay adapts to each policy path: it is the {@link OPAProperties.Hedging#getPercentile()} of the path's
+ * recent latencies, clamped between {@link OPAProperties.Hedging#getMinDelay()} and
+ * {@link OPAProperties.Hedging#getMaxDelay()}. Hedges are limited by a token bucket, which gains
+ * {@link OPAProperties.Hedging#getBudgetRatio()} tokens per evaluation and spends one per hedge, so that hedging could
+ * never add more than that share of load on OPA: each hedge is one additional request, whether it wins or not, since
+ * OPA could have evaluated the losing request before it was aborted. Duplicates pass through the decorated evaluator
+ * again, so they are sent to another replica by the
+ * {@link com.styra.opa.springboot.loadbalancing.OPALoadBalancer} (unless it hashes subjects), or over another pooled
+ * connection. Hedges are sent from a thread of the shared
+ * {@link OPAEvaluationExecutor}, and are skipped if none is available.
+ * <br/><br/>
+ * Only evaluations which are still in flight when the decorated evaluator returns could be hedged, so the transport
+ * must be non-blocking (e.g. an {@link com.styra.opa.springboot.client.OPAAsyncClient}); with the blocking
+ * {@link com.styra.opa.OPAClient}, nothing is hedged, which the auto-configuration warns about.
+ */
+public class OPAHedger implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * The hedger wraps bulkheads and the concurrency limiter, so that duplicates are limited like any other
+     * evaluation, but is wrapped by the retrier, so that an evaluation is only retried once all of its attempts failed.
+     */
+    public static final int ORDER = 575;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAHedger.class);
+    private static final String DEFAULT_PATH_KEY = "";
+    private static final int MIN_SAMPLES = 20;
+    private static final int UPDATE_INTERVAL = 16;
+
+    private final OPAProperties.Hedging properties;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final OPAEvaluationExecutor executor;
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder budgetExhaustedCalls = new LongAdder();
+    // guarded by this
+    private double budgetTokens;
+
+    public OPAHedger(OPAProperties.Hedging properties, OPAEvaluationExecutor executor) {
+        this.properties = properties;
+        this.executor = executor;
+        this.minDelayNanos = Math.max(0, properties.getMinDelay().toNanos());
+        this.maxDelayNanos = Math.max(minDelayNanos, properties.getMaxDelay().toNanos());
+        this.budgetTokens = Math.max(0, properties.getBudgetMaxTokens());
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (path, input) -> {
+            depositBudget();
+            LatencyWindow window = latencies.computeIfAbsent(path != null ? path : DEFAULT_PATH_KEY,
+                key -> new LatencyWindow());
+            CompletableFuture<OPAResponse> primary = attempt(delegate, path, input, window);
+            if (primary.isDone()) {
+                return primary;
+            }
+            HedgedEvaluation evaluation = new HedgedEvaluation(primary);
+            CompletableFuture.delayedExecutor(window.delayNanos, TimeUnit.NANOSECONDS)
+                .execute(() -> submitHedge(evaluation, delegate, path, input, window));
+            return evaluation.response;
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Returns the number of duplicate evaluations which were sent.
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Returns the number of duplicate evaluations which responded before the evaluation they duplicated.
+     */
+    public long getHedgeWonCount() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * Returns the number of slow evaluations which were not hedged, because the hedge budget was exhausted.
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCalls.sum();
+    }
+
+    /**
+     * Returns the number of hedges the budget currently allows.
+     */
+    public synchronized double getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    /**
+     * Returns the current hedge delay of {@code path}.
+     *
+     * @param path policy path, or null for the default path.
+     */
+    public Duration getHedgeDelay(String path) {
+        LatencyWindow window = latencies.get(path != null ? path : DEFAULT_PATH_KEY);
+        return Duration.ofNanos(window != null ? window.delayNanos : maxDelayNanos);
+    }
+
+    private CompletableFuture<OPAResponse> attempt(OPAEvaluator delegate, String path, Map<String, Object> input,
+                                                   LatencyWindow window) {
+        long startNanos = System.nanoTime();
+        // cancelling the losing attempt is passed on to the transport, which aborts its request
+        return OPAFutures.whenComplete(() -> delegate.evaluate(path, input), (opaResponse, throwable) -> {
+            if (throwable == null) {
+                window.record(System.nanoTime() - startNanos);
+            }
+        });
+    }
+
+    private void submitHedge(HedgedEvaluation evaluation, OPAEvaluator delegate, String path,
+                             Map<String, Object> input, LatencyWindow window) {
+        if (evaluation.response.isDone()) {
+            return;
+        }
+        try {
+            // the hedge could block (e.g. with a blocking transport), so it must not run on the timer's thread
+            executor.execute(() -> hedge(evaluation, delegate, path, input, window));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("no thread was available to hedge evaluation of path: {}", path);
+        }
+    }
+
+    private void hedge(HedgedEvaluation evaluation, OPAEvaluator delegate, String path, Map<String, Object> input,
+                       LatencyWindow window) {
+        if (evaluation.response.isDone()) {
+            return;
+        }
+        if (!tryWithdrawBudget()) {
+            budgetExhaustedCalls.increment();
+            LOGGER.debug("hedge budget is exhausted, not hedging evaluation of path: {}", path);
+            return;
+        }
+        // the primary evaluation could have failed meanwhile, which already failed the response
+        if (evaluation.pending.getAndUpdate(pending -> pending == 0 ? 0 : pending + 1) == 0) {
+            return;
+        }
+        hedges.increment();
+        LOGGER.trace("hedging evaluation of path {} after {} ms", path,
+            TimeUnit.NANOSECONDS.toMillis(window.delayNanos));
+        evaluation.hedge(attempt(delegate, path, input, window));
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(Math.max(0, properties.getBudgetMaxTokens()),
+            budgetTokens + Math.max(0, properties.getBudgetRatio()));
+    }
+
+    private synchronized boolean tryWithdrawBudget() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens--;
+        return true;
+    }
+
+    /**
+     * An evaluation, whose response is completed by the first of its attempts which succeeded, or by the last one
+     * which failed.
+     */
+    private final class HedgedEvaluation {
+
+        private final CompletableFuture<OPAResponse> response = new CompletableFuture<>();
+        private final CompletableFuture<OPAResponse> primary;
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile CompletableFuture<OPAResponse> hedge;
+
+        private HedgedEvaluation(CompletableFuture<OPAResponse> primary) {
+            this.primary = primary;
+            primary.whenComplete((opaResponse, throwable) -> complete(opaResponse, throwable, false));
+        }
+
+        private void hedge(CompletableFuture<OPAResponse> hedgeAttempt) {
+            this.hedge = hedgeAttempt;
+            hedgeAttempt.whenComplete((opaResponse, throwable) -> complete(opaResponse, throwable, true));
+            // the primary evaluation could have succeeded before the hedge was published
+            if (response.isDone()) {
+                hedgeAttempt.cancel(true);
+            }
+        }
+
+        private void complete(OPAResponse opaResponse, Throwable throwable, boolean fromHedge) {
+            if (throwable == null) {
+                if (response.complete(opaResponse)) {
+                    CompletableFuture<OPAResponse> other = fromHedge ? primary : hedge;
+                    if (fromHedge) {
+                        hedgesWon.increment();
+                    }
+                    if (other != null) {
+                        other.cancel(true);
+                    }
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                response.completeExceptionally(throwable);
+            }
+        }
+    }
+
+    /**
+     * Recent latencies of a policy path, from which its hedge delay is computed.
+     */
+    private final class LatencyWindow {
+
+        // guarded by this
+        private final long[] samples = new long[Math.max(MIN_SAMPLES, properties.getWindowSize())];
+        // guarded by this
+        private int count;
+        // guarded by this
+        private int next;
+        // guarded by this
+        private int recordsSinceUpdate;
+        private volatile long delayNanos = maxDelayNanos;
+
+        private synchronized void record(long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count < MIN_SAMPLES || ++recordsSinceUpdate < UPDATE_INTERVAL) {
+                return;
+            }
+            // sorting the window once every few evaluations is cheaper than keeping it sorted
+            recordsSinceUpdate = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(Math.min(1, Math.max(0, properties.getPercentile())) * count) - 1;
+            long percentileNanos = sorted[Math.max(0, Math.min(count - 1, index))];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, percentileNanos));
+        }
+    }
+}
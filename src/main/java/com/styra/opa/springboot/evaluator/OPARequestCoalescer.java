@@ -0,0 +1,88 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical, concurrent OPA evaluations (single-flight): while an evaluation is in flight, callers with the
+ * same {@link OPADecisionKey} share its result instead of sending another request to OPA. Unlike
+ * {@link com.styra.opa.springboot.cache.OPADecisionCache}, results are not retained once the evaluation completes.
+ */
+public class OPARequestCoalescer implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * Coalescing wraps all other decorators but partial evaluation (whose local decisions need no coalescing), so that
+     * a coalesced evaluation passes through them once.
+     */
+    public static final int ORDER = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPARequestCoalescer.class);
+
+    private final OPADecisionKeyGenerator keyGenerator;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+
+    public OPARequestCoalescer(OPADecisionKeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        ConcurrentMap<OPADecisionKey, CompletableFuture<OPAResponse>> inFlight = new ConcurrentHashMap<>();
+        return (path, input) -> {
+            OPADecisionKey key = keyGenerator.key(path, input);
+            if (key == null) {
+                evaluations.increment();
+                return delegate.evaluate(path, input);
+            }
+            CompletableFuture<OPAResponse> leader = new CompletableFuture<>();
+            CompletableFuture<OPAResponse> existing = inFlight.putIfAbsent(key, leader);
+            if (existing != null) {
+                deduplicated.increment();
+                LOGGER.trace("joining in-flight OPA evaluation for path: {}", path);
+                return existing.copy();
+            }
+            evaluations.increment();
+            // thenCompose turns exceptions thrown by the delegate into a failed future, so the key is always released
+            CompletableFuture.completedFuture(input)
+                .thenCompose(ignored -> delegate.evaluate(path, input))
+                .whenComplete((opaResponse, throwable) -> {
+                    inFlight.remove(key, leader);
+                    if (throwable != null) {
+                        leader.completeExceptionally(throwable);
+                    } else {
+                        leader.complete(opaResponse);
+                    }
+                });
+            return leader.copy();
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Returns the number of evaluations which were actually sent to the decorated evaluator.
+     */
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    /**
+     * Returns the number of evaluations which joined an identical in-flight evaluation instead of being sent.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+}
@@ -0,0 +1,184 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.styra.opa.openapi.models.errors.ServerError;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAHttpStatusException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Retries OPA evaluations which failed with a transient error, so that a single reset connection (e.g. while OPA is
+ * rolled out) does not turn into a denied request. Only errors after which a retry is safe and could succeed are
+ * retried: I/O errors of the transport (other than request timeouts, since OPA could still be busy with the request)
+ * and 5xx statuses. Policy evaluations are read-only, so retrying them is idempotent.
+ * <br/><br/>
+ * Backoffs use decorrelated jitter: each one is drawn at random between
+ * {@link OPAProperties.Retry#getInitialBackoff()} and three times the previous one, capped at
+ * {@link OPAProperties.Retry#getMaxBackoff()}, so that retrying clients do not synchronize. Retries are limited by a
+ * token bucket, which gains {@link OPAProperties.Retry#getBudgetRatio()} tokens per evaluation and spends one per
+ * retry, so that retries could never multiply the load on OPA during an outage. Once the budget is exhausted, failures
+ * are returned as is, and so are they if no thread of the shared {@link OPAEvaluationExecutor} is available to retry.
+ */
+public class OPARetrier implements OPAEvaluatorDecorator, Ordered {
+
+    /**
+     * The retrier wraps bulkheads, the concurrency limiter and the transport, so that each retry is limited like any
+     * other evaluation, but is wrapped by the circuit breaker, so that it records the outcome after all retries.
+     */
+    public static final int ORDER = 550;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPARetrier.class);
+    private static final int MIN_SERVER_ERROR_STATUS = 500;
+    private static final int BACKOFF_GROWTH = 3;
+
+    private final OPAProperties.Retry properties;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final OPAEvaluationExecutor executor;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhaustedCalls = new LongAdder();
+    // guarded by this
+    private double budgetTokens;
+
+    public OPARetrier(OPAProperties.Retry properties, OPAEvaluationExecutor executor) {
+        this.properties = properties;
+        this.executor = executor;
+        this.initialBackoffNanos = Math.max(0, properties.getInitialBackoff().toNanos());
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, properties.getMaxBackoff().toNanos());
+        this.budgetTokens = Math.max(0, properties.getBudgetMaxTokens());
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (path, input) -> {
+            depositBudget();
+            return attempt(delegate, path, input, 1, initialBackoffNanos);
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Returns the number of retried evaluations.
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the number of failed evaluations which were not retried, because the retry budget was exhausted.
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCalls.sum();
+    }
+
+    /**
+     * Returns the number of retries the budget currently allows.
+     */
+    public synchronized double getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    /**
+     * Returns whether the evaluation which failed with {@code throwable} could be retried.
+     */
+    static boolean isRetryable(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OPAHttpStatusException statusException) {
+                return statusException.getStatusCode() >= MIN_SERVER_ERROR_STATUS;
+            }
+            if (cause instanceof ServerError || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+            if (cause instanceof HttpTimeoutException || cause instanceof JsonProcessingException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the backoff after {@code previousBackoffNanos}, drawn at random between the initial backoff and three
+     * times the previous one, capped at the maximum backoff.
+     */
+    long nextBackoffNanos(long previousBackoffNanos) {
+        long upperBound = Math.min(maxBackoffNanos, Math.max(initialBackoffNanos,
+            previousBackoffNanos * BACKOFF_GROWTH));
+        if (upperBound <= initialBackoffNanos) {
+            return initialBackoffNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(initialBackoffNanos, upperBound + 1);
+    }
+
+    private CompletableFuture<OPAResponse> attempt(OPAEvaluator delegate, String path, Map<String, Object> input,
+                                                   int attempt, long previousBackoffNanos) {
+        return CompletableFuture.completedFuture(input)
+            .thenCompose(ignored -> delegate.evaluate(path, input))
+            .handle((opaResponse, throwable) -> {
+                if (throwable == null) {
+                    return CompletableFuture.completedFuture(opaResponse);
+                }
+                if (attempt >= properties.getMaxAttempts() || !isRetryable(throwable)) {
+                    return CompletableFuture.<OPAResponse>failedFuture(throwable);
+                }
+                if (!tryWithdrawBudget()) {
+                    budgetExhaustedCalls.increment();
+                    LOGGER.debug("retry budget is exhausted, not retrying evaluation of path: {}", path);
+                    return CompletableFuture.<OPAResponse>failedFuture(throwable);
+                }
+                retries.increment();
+                long backoffNanos = nextBackoffNanos(previousBackoffNanos);
+                LOGGER.debug("retrying evaluation of path {} in {} ms (attempt {}): {}", path,
+                    TimeUnit.NANOSECONDS.toMillis(backoffNanos), attempt + 1, throwable.getMessage());
+                return CompletableFuture.runAsync(() -> { },
+                        CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS))
+                    .thenCompose(ignored -> retry(delegate, path, input, attempt + 1, backoffNanos, throwable));
+            })
+            .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<OPAResponse> retry(OPAEvaluator delegate, String path, Map<String, Object> input,
+                                                 int attempt, long backoffNanos, Throwable failure) {
+        try {
+            // the retry could block (e.g. with a blocking transport), so it must not run on the timer's thread
+            return CompletableFuture.supplyAsync(() -> attempt(delegate, path, input, attempt, backoffNanos), executor)
+                .thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("no thread was available to retry evaluation of path: {}", path);
+            return CompletableFuture.failedFuture(failure);
+        }
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(Math.max(0, properties.getBudgetMaxTokens()),
+            budgetTokens + Math.max(0, properties.getBudgetRatio()));
+    }
+
+    private synchronized boolean tryWithdrawBudget() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens--;
+        return true;
+    }
+}
@@ -12,6 +12,7 @@ public final class InputConstants {
     public static final String SUBJECT_AUTHORITIES = "authorities";
     public static final String RESOURCE_TYPE = "type";
     public static final String RESOURCE_ID = "id";
+    public static final String RESOURCE_PROPERTIES = "properties";
     public static final String ACTION_NAME = "name";
     public static final String ACTION_PROTOCOL = "protocol";
     public static final String ACTION_HEADERS = "headers";
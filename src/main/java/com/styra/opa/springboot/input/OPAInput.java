@@ -0,0 +1,494 @@
+package com.styra.opa.springboot.input;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_HEADERS;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_PROTOCOL;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_DATA;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_HOST;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_IP;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_PORT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_AUTHORITIES;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_DETAILS;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_TYPE;
+
+/**
+ * Typed, immutable representation of the OPA
+ * <a href="https://docs.styra.com/sdk/springboot/reference/input-output-schema#input">input</a>. Every part of the
+ * input holds its values in fields and is serialized by a dedicated Jackson serializer with pre-encoded keys, so
+ * building and serializing an input does not allocate a map (and its entries) per part.
+ * <br/><br/>
+ * The input and its parts also implement {@link Map}, which keeps {@link OPAInputSubjectCustomizer}s (and the other
+ * customizers), {@link OPAInputValidator} and {@link com.styra.opa.springboot.cache.OPADecisionKeyGenerator} working.
+ * Absent (null) values are omitted, both from the map view and from the serialized form.
+ */
+@JsonSerialize(using = OPAInputPart.Serializer.class)
+public final class OPAInput extends OPAInputPart {
+
+    private static final SerializableString SUBJECT_KEY = new SerializedString(SUBJECT);
+    private static final SerializableString RESOURCE_KEY = new SerializedString(RESOURCE);
+    private static final SerializableString ACTION_KEY = new SerializedString(ACTION);
+    private static final SerializableString CONTEXT_KEY = new SerializedString(CONTEXT);
+    private static final SerializableString TYPE_KEY = new SerializedString(SUBJECT_TYPE);
+    private static final SerializableString ID_KEY = new SerializedString(SUBJECT_ID);
+    private static final SerializableString DETAILS_KEY = new SerializedString(SUBJECT_DETAILS);
+    private static final SerializableString AUTHORITIES_KEY = new SerializedString(SUBJECT_AUTHORITIES);
+    private static final SerializableString NAME_KEY = new SerializedString(ACTION_NAME);
+    private static final SerializableString PROTOCOL_KEY = new SerializedString(ACTION_PROTOCOL);
+    private static final SerializableString HEADERS_KEY = new SerializedString(ACTION_HEADERS);
+    private static final SerializableString HOST_KEY = new SerializedString(CONTEXT_HOST);
+    private static final SerializableString IP_KEY = new SerializedString(CONTEXT_IP);
+    private static final SerializableString PORT_KEY = new SerializedString(CONTEXT_PORT);
+    private static final SerializableString DATA_KEY = new SerializedString(CONTEXT_DATA);
+
+    private final Map<String, Object> subject;
+    private final Map<String, Object> resource;
+    private final Map<String, Object> action;
+    private final Map<String, Object> context;
+
+    /**
+     * Instantiates an input. Each part is usually a {@link Subject}, {@link Resource}, {@link Action} or
+     * {@link Context}, but could be any map returned by a customizer.
+     *
+     * @param context if null, {@code input.context} is omitted.
+     */
+    public OPAInput(Map<String, Object> subject, Map<String, Object> resource, Map<String, Object> action,
+                    Map<String, Object> context) {
+        this.subject = subject;
+        this.resource = resource;
+        this.action = action;
+        this.context = context;
+    }
+
+    public Map<String, Object> getSubject() {
+        return subject;
+    }
+
+    public Map<String, Object> getResource() {
+        return resource;
+    }
+
+    public Map<String, Object> getAction() {
+        return action;
+    }
+
+    public Map<String, Object> getContext() {
+        return context;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String name)) {
+            return null;
+        }
+        return switch (name) {
+            case SUBJECT -> subject;
+            case RESOURCE -> resource;
+            case ACTION -> action;
+            case CONTEXT -> context;
+            default -> null;
+        };
+    }
+
+    @Override
+    void addEntries(List<Entry<String, Object>> entries) {
+        addEntry(entries, SUBJECT, subject);
+        addEntry(entries, RESOURCE, resource);
+        addEntry(entries, ACTION, action);
+        addEntry(entries, CONTEXT, context);
+    }
+
+    @Override
+    void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+        writeField(gen, provider, SUBJECT_KEY, subject);
+        writeField(gen, provider, RESOURCE_KEY, resource);
+        writeField(gen, provider, ACTION_KEY, action);
+        writeField(gen, provider, CONTEXT_KEY, context);
+    }
+
+    /**
+     * {@code input.subject}, i.e. who is making the request.
+     */
+    @JsonSerialize(using = OPAInputPart.Serializer.class)
+    public static final class Subject extends OPAInputPart {
+
+        private final String type;
+        private final Object id;
+        private final Object details;
+        private final Collection<?> authorities;
+
+        public Subject(String type, Object id, Object details, Collection<?> authorities) {
+            this.type = type;
+            this.id = id;
+            this.details = details;
+            this.authorities = authorities;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            return switch (name) {
+                case SUBJECT_TYPE -> type;
+                case SUBJECT_ID -> id;
+                case SUBJECT_DETAILS -> details;
+                case SUBJECT_AUTHORITIES -> authorities;
+                default -> null;
+            };
+        }
+
+        @Override
+        void addEntries(List<Entry<String, Object>> entries) {
+            addEntry(entries, SUBJECT_TYPE, type);
+            addEntry(entries, SUBJECT_ID, id);
+            addEntry(entries, SUBJECT_DETAILS, details);
+            addEntry(entries, SUBJECT_AUTHORITIES, authorities);
+        }
+
+        @Override
+        void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeType(gen, TYPE_KEY, type);
+            writeField(gen, provider, ID_KEY, id);
+            writeField(gen, provider, DETAILS_KEY, details);
+            writeField(gen, provider, AUTHORITIES_KEY, authorities);
+        }
+    }
+
+    /**
+     * {@code input.resource}, i.e. what is being accessed.
+     */
+    @JsonSerialize(using = OPAInputPart.Serializer.class)
+    public static final class Resource extends OPAInputPart {
+
+        private final String type;
+        private final String id;
+
+        public Resource(String type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            return switch (name) {
+                case RESOURCE_TYPE -> type;
+                case RESOURCE_ID -> id;
+                default -> null;
+            };
+        }
+
+        @Override
+        void addEntries(List<Entry<String, Object>> entries) {
+            addEntry(entries, RESOURCE_TYPE, type);
+            addEntry(entries, RESOURCE_ID, id);
+        }
+
+        @Override
+        void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeType(gen, TYPE_KEY, type);
+            writeField(gen, provider, ID_KEY, id);
+        }
+    }
+
+    /**
+     * {@code input.action}, i.e. how the resource is being accessed.
+     */
+    @JsonSerialize(using = OPAInputPart.Serializer.class)
+    public static final class Action extends OPAInputPart {
+
+        private final String name;
+        private final String protocol;
+        private final Map<String, String> headers;
+
+        public Action(String name, String protocol, Map<String, String> headers) {
+            this.name = name;
+            this.protocol = protocol;
+            this.headers = headers;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String keyName)) {
+                return null;
+            }
+            return switch (keyName) {
+                case ACTION_NAME -> name;
+                case ACTION_PROTOCOL -> protocol;
+                case ACTION_HEADERS -> headers;
+                default -> null;
+            };
+        }
+
+        @Override
+        void addEntries(List<Entry<String, Object>> entries) {
+            addEntry(entries, ACTION_NAME, name);
+            addEntry(entries, ACTION_PROTOCOL, protocol);
+            addEntry(entries, ACTION_HEADERS, headers);
+        }
+
+        @Override
+        void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeField(gen, provider, NAME_KEY, name);
+            writeField(gen, provider, PROTOCOL_KEY, protocol);
+            writeField(gen, provider, HEADERS_KEY, headers);
+        }
+    }
+
+    /**
+     * {@code input.context}, i.e. the environment of the request.
+     */
+    @JsonSerialize(using = OPAInputPart.Serializer.class)
+    public static final class Context extends OPAInputPart {
+
+        private final String type;
+        private final String host;
+        private final String ip;
+        private final Integer port;
+        private final boolean hasData;
+        private final Object data;
+
+        /**
+         * Instantiates a context without {@code data}.
+         */
+        public Context(String type, String host, String ip, Integer port) {
+            this(type, host, ip, port, false, null);
+        }
+
+        /**
+         * Instantiates a context with {@code data}, which is included even if it is null (as {@code "data": null}).
+         */
+        public Context(String type, String host, String ip, Integer port, Object data) {
+            this(type, host, ip, port, true, data);
+        }
+
+        private Context(String type, String host, String ip, Integer port, boolean hasData, Object data) {
+            this.type = type;
+            this.host = host;
+            this.ip = ip;
+            this.port = port;
+            this.hasData = hasData;
+            this.data = data;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            return switch (name) {
+                case CONTEXT_TYPE -> type;
+                case CONTEXT_HOST -> host;
+                case CONTEXT_IP -> ip;
+                case CONTEXT_PORT -> port;
+                case CONTEXT_DATA -> data;
+                default -> null;
+            };
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (hasData && CONTEXT_DATA.equals(key)) || super.containsKey(key);
+        }
+
+        @Override
+        void addEntries(List<Entry<String, Object>> entries) {
+            addEntry(entries, CONTEXT_TYPE, type);
+            addEntry(entries, CONTEXT_HOST, host);
+            addEntry(entries, CONTEXT_IP, ip);
+            addEntry(entries, CONTEXT_PORT, port);
+            if (hasData) {
+                entries.add(new SimpleImmutableEntry<>(CONTEXT_DATA, data));
+            }
+        }
+
+        @Override
+        void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeType(gen, TYPE_KEY, type);
+            writeField(gen, provider, HOST_KEY, host);
+            writeField(gen, provider, IP_KEY, ip);
+            if (port != null) {
+                gen.writeFieldName(PORT_KEY);
+                gen.writeNumber(port);
+            }
+            if (hasData) {
+                gen.writeFieldName(DATA_KEY);
+                provider.defaultSerializeValue(data, gen);
+            }
+        }
+    }
+
+    /**
+     * {@code input.action.headers}, backed by two arrays instead of a hash table. Lookups are linear, which is faster
+     * than hashing for the usual number of request headers. Use {@link Headers.Builder} to create instances.
+     */
+    @JsonSerialize(using = HeadersSerializer.class)
+    public static final class Headers extends AbstractMap<String, String> {
+
+        private final String[] names;
+        private final String[] values;
+        private final int size;
+
+        private Headers(String[] names, String[] values, int size) {
+            this.names = names;
+            this.values = values;
+            this.size = size;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        @Override
+        public String get(Object key) {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (index >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(names[index], values[index]);
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        /**
+         * Collects headers. Adding a header whose name was already added replaces its value. A builder must not be
+         * used anymore once {@link #build()} was called, since the built instance shares its arrays.
+         */
+        public static final class Builder {
+            private static final int INITIAL_CAPACITY = 16;
+
+            private String[] names = new String[INITIAL_CAPACITY];
+            private String[] values = new String[INITIAL_CAPACITY];
+            private int size;
+
+            private Builder() {
+            }
+
+            /**
+             * Adds a header, unless {@code value} is null.
+             */
+            public Builder header(String name, String value) {
+                if (value == null) {
+                    return this;
+                }
+                for (int i = 0; i < size; i++) {
+                    if (names[i].equals(name)) {
+                        values[i] = value;
+                        return this;
+                    }
+                }
+                if (size == names.length) {
+                    names = Arrays.copyOf(names, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                names[size] = name;
+                values[size] = value;
+                size++;
+                return this;
+            }
+
+            public Headers build() {
+                return new Headers(names, values, size);
+            }
+        }
+    }
+
+    /**
+     * Serializes {@link Headers} without creating entries, in the order they were added (i.e. the order of the
+     * request), unless {@link SerializationFeature#ORDER_MAP_ENTRIES_BY_KEYS} is enabled, which custom serializers
+     * must honor themselves. Then they are sorted by name, like the entries of other maps, so that e.g. decision keys
+     * do not depend on the order of the request's headers.
+     */
+    public static final class HeadersSerializer extends StdSerializer<Headers> {
+
+        public HeadersSerializer() {
+            super(Headers.class);
+        }
+
+        @Override
+        public void serialize(Headers value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(value);
+            if (provider.isEnabled(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)) {
+                for (Entry<String, String> header : new TreeMap<>(value).entrySet()) {
+                    gen.writeStringField(header.getKey(), header.getValue());
+                }
+            } else {
+                for (int i = 0; i < value.size; i++) {
+                    gen.writeStringField(value.names[i], value.values[i]);
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+}
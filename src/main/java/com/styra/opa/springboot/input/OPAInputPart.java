@@ -0,0 +1,122 @@
+package com.styra.opa.springboot.input;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class of {@link OPAInput} and its parts, which provides their read-only {@link Map} view and their
+ * serialization.
+ */
+public abstract class OPAInputPart extends AbstractMap<String, Object> {
+
+    /**
+     * Types are usually constants from {@link com.styra.opa.springboot.autoconfigure.OPAProperties.Request}, so only a
+     * few of them are encoded once and reused.
+     */
+    private static final int MAX_ENCODED_TYPES = 64;
+    private static final Map<String, SerializableString> ENCODED_TYPES = new ConcurrentHashMap<>();
+
+    OPAInputPart() {
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        List<Entry<String, Object>> entries = new ArrayList<>();
+        addEntries(entries);
+        List<Entry<String, Object>> unmodifiableEntries = Collections.unmodifiableList(entries);
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return unmodifiableEntries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return unmodifiableEntries.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Adds the entries of all non-null values to {@code entries}.
+     */
+    abstract void addEntries(List<Entry<String, Object>> entries);
+
+    /**
+     * Writes all non-null values as fields of the current JSON object.
+     */
+    abstract void writeFields(JsonGenerator gen, SerializerProvider provider) throws IOException;
+
+    static void addEntry(List<Entry<String, Object>> entries, String key, Object value) {
+        if (value != null) {
+            entries.add(new SimpleImmutableEntry<>(key, value));
+        }
+    }
+
+    static void writeField(JsonGenerator gen, SerializerProvider provider, SerializableString key, Object value)
+        throws IOException {
+        if (value == null) {
+            return;
+        }
+        gen.writeFieldName(key);
+        if (value instanceof String text) {
+            gen.writeString(text);
+        } else {
+            provider.defaultSerializeValue(value, gen);
+        }
+    }
+
+    /**
+     * Writes a {@code type} field, whose (quoted and UTF-8 encoded) value is cached.
+     */
+    static void writeType(JsonGenerator gen, SerializableString key, String type) throws IOException {
+        if (type == null) {
+            return;
+        }
+        SerializableString encodedType = ENCODED_TYPES.get(type);
+        if (encodedType == null) {
+            encodedType = new SerializedString(type);
+            if (ENCODED_TYPES.size() < MAX_ENCODED_TYPES) {
+                ENCODED_TYPES.putIfAbsent(type, encodedType);
+            }
+        }
+        gen.writeFieldName(key);
+        gen.writeString(encodedType);
+    }
+
+    /**
+     * Serializes {@link OPAInput} and its parts without creating their map view.
+     */
+    public static final class Serializer extends StdSerializer<OPAInputPart> {
+
+        public Serializer() {
+            super(OPAInputPart.class);
+        }
+
+        @Override
+        public void serialize(OPAInputPart value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject(value);
+            value.writeFields(gen, provider);
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.styra.opa.springboot.loadbalancing;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.styra.opa.springboot.evaluator.OPAFutures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+
+/**
+ * Balances OPA evaluations across the replicas of {@code opa.urls}, so that neither a central load balancer (which
+ * adds a hop) nor pinning each application instance to a single OPA is needed. Each evaluation is sent to one replica,
+ * selected by the configured {@link OPAProperties.LoadBalancing.Strategy}:
+ * <ul>
+ *     <li>least outstanding requests: the replica with the fewest evaluations in flight.</li>
+ *     <li>power of two choices: the cheaper of two random replicas, where the cost is the exponentially weighted
+ *     moving average of its latency, multiplied by its evaluations in flight. Failed evaluations are recorded as
+ *     taking at least the health check timeout, so that a replica which fails fast does not attract evaluations.</li>
+ *     <li>consistent hashing: the replica owning {@code input.subject.id} on a hash ring, so that the evaluations of
+ *     a subject hit the same OPA caches. Evaluations without a subject id are sent to the replica with the fewest
+ *     evaluations in flight.</li>
+ * </ul>
+ * Unless disabled, replicas are checked periodically using OPA's {@code /health} endpoint. A replica is ejected after
+ * {@link OPAProperties.LoadBalancing.HealthCheck#getUnhealthyThreshold()} consecutive failed checks, and admitted
+ * again after a successful one. If no replica is healthy, evaluations are balanced across all of them, rather than
+ * failed without trying.
+ */
+public class OPALoadBalancer implements OPAEvaluator, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPALoadBalancer.class);
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MIX_SHIFT = 33;
+    private static final long MIX_MULTIPLIER = 0xff51afd7ed558ccdL;
+    private static final long MIX_FINAL_MULTIPLIER = 0xc4ceb9fe1a85ec53L;
+
+    private final OPAProperties.LoadBalancing properties;
+    private final List<Replica> replicas;
+    private final NavigableMap<Long, Replica> ring = new TreeMap<>();
+    private final double ewmaDecayNanos;
+    private final long failureLatencyNanos;
+    private final ScheduledExecutorService healthChecker;
+    private final LongAdder noHealthyReplicaCalls = new LongAdder();
+    private volatile List<Replica> healthyReplicas;
+
+    /**
+     * @param urls URLs of the OPA replicas.
+     * @param clientFactory creates the client of each replica.
+     */
+    public OPALoadBalancer(List<String> urls, OPAProperties.LoadBalancing properties,
+                           Function<String, OPAAsyncClient> clientFactory) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("opa.urls must not be empty");
+        }
+        this.properties = properties;
+        List<Replica> replicaList = new ArrayList<>();
+        for (String url : urls) {
+            replicaList.add(new Replica(url, clientFactory.apply(url)));
+        }
+        this.replicas = List.copyOf(replicaList);
+        this.healthyReplicas = replicas;
+        int virtualNodes = Math.max(1, properties.getVirtualNodes());
+        for (Replica replica : replicas) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(i + "#" + replica.url), replica);
+            }
+        }
+        this.ewmaDecayNanos = Math.max(1, properties.getEwmaDecay().toNanos());
+        OPAProperties.LoadBalancing.HealthCheck healthCheck = properties.getHealthCheck();
+        this.failureLatencyNanos = healthCheck.getTimeout() != null ? healthCheck.getTimeout().toNanos() : 0;
+        long intervalNanos = healthCheck.getInterval() != null ? healthCheck.getInterval().toNanos() : 0;
+        if (healthCheck.isEnabled() && intervalNanos > 0) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "opa-health-check-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, intervalNanos, TimeUnit.NANOSECONDS);
+        } else {
+            this.healthChecker = null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<OPAResponse> evaluate(String path, Map<String, Object> input) {
+        return select(input).evaluate(path, input);
+    }
+
+    /**
+     * Returns the replicas, in the order of {@code opa.urls}.
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the number of evaluations which were balanced across all replicas, because none of them was healthy.
+     */
+    public long getNoHealthyReplicaCount() {
+        return noHealthyReplicaCalls.sum();
+    }
+
+    /**
+     * Stops the health checks.
+     */
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the health of every replica once, and returns a future which completes once all checks completed.
+     */
+    CompletableFuture<Void> checkHealth() {
+        OPAProperties.LoadBalancing.HealthCheck healthCheck = properties.getHealthCheck();
+        return CompletableFuture.allOf(replicas.stream()
+            .map(replica -> replica.client.checkHealth(healthCheck.isBundles(), healthCheck.getTimeout())
+                .thenAccept(replica::recordHealthCheck))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Returns the position of {@code key} on the hash ring: FNV-1a, followed by the MurmurHash3 finalizer, so that
+     * keys which only differ in their last characters are spread across the ring.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= Byte.toUnsignedLong(b);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> MIX_SHIFT;
+        hash *= MIX_MULTIPLIER;
+        hash ^= hash >>> MIX_SHIFT;
+        hash *= MIX_FINAL_MULTIPLIER;
+        hash ^= hash >>> MIX_SHIFT;
+        return hash;
+    }
+
+    private Replica select(Map<String, Object> input) {
+        List<Replica> candidates = healthyReplicas;
+        boolean healthyOnly = true;
+        if (candidates.isEmpty()) {
+            noHealthyReplicaCalls.increment();
+            LOGGER.debug("no OPA replica is healthy, balancing evaluation across all of them");
+            candidates = replicas;
+            healthyOnly = false;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        return switch (properties.getStrategy()) {
+            case POWER_OF_TWO_CHOICES -> powerOfTwoChoices(candidates);
+            case CONSISTENT_HASHING -> consistentHashing(input, candidates, healthyOnly);
+            default -> leastOutstandingRequests(candidates);
+        };
+    }
+
+    private static Replica leastOutstandingRequests(List<Replica> candidates) {
+        // start at a random replica, so that ties are not always broken in favor of the first one
+        int size = candidates.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = candidates.get((start + i) % size);
+            if (selected == null || replica.getOutstandingCount() < selected.getOutstandingCount()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    private static Replica powerOfTwoChoices(List<Replica> candidates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Replica firstReplica = candidates.get(first);
+        Replica secondReplica = candidates.get(second);
+        return firstReplica.cost() <= secondReplica.cost() ? firstReplica : secondReplica;
+    }
+
+    private Replica consistentHashing(Map<String, Object> input, List<Replica> candidates, boolean healthyOnly) {
+        String subjectId = subjectId(input);
+        if (subjectId == null) {
+            return leastOutstandingRequests(candidates);
+        }
+        long hash = hash(subjectId);
+        for (Replica replica : ring.tailMap(hash, true).values()) {
+            if (!healthyOnly || replica.isHealthy()) {
+                return replica;
+            }
+        }
+        for (Replica replica : ring.headMap(hash, false).values()) {
+            if (!healthyOnly || replica.isHealthy()) {
+                return replica;
+            }
+        }
+        // the last healthy replica was ejected since the candidates were read
+        return candidates.get(0);
+    }
+
+    private static String subjectId(Map<String, Object> input) {
+        if (input != null && input.get(SUBJECT) instanceof Map<?, ?> subject) {
+            Object id = subject.get(SUBJECT_ID);
+            return id != null ? id.toString() : null;
+        }
+        return null;
+    }
+
+    private static boolean cancelled(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        return cause instanceof CancellationException;
+    }
+
+    private synchronized void updateHealthyReplicas() {
+        healthyReplicas = replicas.stream().filter(Replica::isHealthy).toList();
+    }
+
+    /**
+     * A single OPA replica, with the state used to select it.
+     */
+    public final class Replica {
+
+        private final String url;
+        private final OPAAsyncClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private volatile boolean healthy = true;
+        // guarded by this
+        private int consecutiveFailedHealthChecks;
+        // guarded by this
+        private double latencyEwmaNanos;
+        // guarded by this
+        private long lastLatencyNanos;
+        // guarded by this
+        private boolean latencyRecorded;
+
+        private Replica(String url, OPAAsyncClient client) {
+            this.url = url;
+            this.client = client;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns false while the replica is ejected, because its health checks failed.
+         */
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /**
+         * Returns the number of evaluations sent to the replica which are in flight.
+         */
+        public int getOutstandingCount() {
+            return outstanding.get();
+        }
+
+        /**
+         * Returns the number of evaluations sent to the replica.
+         */
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        /**
+         * Returns the number of times the replica was ejected.
+         */
+        public long getEjectionCount() {
+            return ejections.sum();
+        }
+
+        /**
+         * Returns the exponentially weighted moving average of the replica's latency.
+         */
+        public synchronized Duration getLatencyEwma() {
+            return Duration.ofNanos((long) latencyEwmaNanos);
+        }
+
+        private CompletableFuture<OPAResponse> evaluate(String path, Map<String, Object> input) {
+            outstanding.incrementAndGet();
+            requests.increment();
+            long startNanos = System.nanoTime();
+            return OPAFutures.whenComplete(() -> client.evaluate(path, input), (opaResponse, throwable) -> {
+                outstanding.decrementAndGet();
+                // a cancelled request (e.g. a hedge which lost) says nothing about the replica
+                if (cancelled(throwable)) {
+                    return;
+                }
+                long latencyNanos = System.nanoTime() - startNanos;
+                recordLatency(throwable != null ? Math.max(latencyNanos, failureLatencyNanos) : latencyNanos);
+            });
+        }
+
+        private synchronized void recordLatency(long latencyNanos) {
+            long nowNanos = System.nanoTime();
+            if (!latencyRecorded) {
+                latencyEwmaNanos = latencyNanos;
+                latencyRecorded = true;
+            } else {
+                double weight = Math.exp(-(nowNanos - lastLatencyNanos) / ewmaDecayNanos);
+                latencyEwmaNanos = latencyEwmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            lastLatencyNanos = nowNanos;
+        }
+
+        private synchronized double cost() {
+            // the latency is offset by one, so that the evaluations in flight count before any latency is known
+            return (latencyEwmaNanos + 1) * (outstanding.get() + 1);
+        }
+
+        private void recordHealthCheck(boolean passed) {
+            boolean changed;
+            int failedHealthChecks;
+            synchronized (this) {
+                if (passed) {
+                    consecutiveFailedHealthChecks = 0;
+                    changed = !healthy;
+                } else {
+                    consecutiveFailedHealthChecks++;
+                    changed = healthy && consecutiveFailedHealthChecks
+                        >= Math.max(1, properties.getHealthCheck().getUnhealthyThreshold());
+                }
+                if (changed) {
+                    healthy = passed;
+                }
+                failedHealthChecks = consecutiveFailedHealthChecks;
+            }
+            if (changed) {
+                if (passed) {
+                    LOGGER.info("OPA replica {} is healthy again, admitting it", url);
+                } else {
+                    ejections.increment();
+                    LOGGER.warn("OPA replica {} failed {} health checks, ejecting it", url,
+                        failedHealthChecks);
+                }
+                updateHealthyReplicas();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.styra.opa.springboot.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Authorizes invocations of the annotated method (or of every method of the annotated class) using
+ * {@link OPAMethodAuthorizationManager}, instead of a {@code @PreAuthorize} expression.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface OPAAuthorize {
+
+    /**
+     * Policy path in OPA. If empty, {@code opa.path} (or the default path defined by the OPA configuration) is used.
+     */
+    String path() default "";
+
+    /**
+     * Value of {@code input.resource.type}. If empty, {@code opa.request.resource.type} is used.
+     */
+    String resourceType() default "";
+
+    /**
+     * Value of {@code input.action.name}. If empty, the name of the method is used.
+     */
+    String action() default "";
+}
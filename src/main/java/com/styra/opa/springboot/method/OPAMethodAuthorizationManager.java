@@ -0,0 +1,314 @@
+package com.styra.opa.springboot.method;
+
+import com.styra.opa.springboot.OPAAuthorizationManager;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.authorization.OPAAccessDeniedException;
+import com.styra.opa.springboot.authorization.OPAAuthorizationDecision;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.input.OPAInput;
+import com.styra.opa.springboot.input.OPAInputActionCustomizer;
+import com.styra.opa.springboot.input.OPAInputContextCustomizer;
+import com.styra.opa.springboot.input.OPAInputResourceCustomizer;
+import com.styra.opa.springboot.input.OPAInputSubjectCustomizer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.Pointcuts;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_PROPERTIES;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+
+/**
+ * This class authorizes method invocations (e.g. of services) using OPA, and could replace {@code @PreAuthorize}
+ * expressions. Methods are selected and configured by {@link OPAAuthorize}, and the OPA input is built from the
+ * invocation:
+ * <ul>
+ *     <li>{@code input.subject}: the {@link Authentication}, like for HTTP requests.</li>
+ *     <li>{@code input.resource}: {@link OPAAuthorize#resourceType()}, the {@link OPAResourceId} argument and the
+ *     {@link OPAResourceProperty} arguments (in {@code properties}).</li>
+ *     <li>{@code input.action.name}: {@link OPAAuthorize#action()} or the name of the method.</li>
+ *     <li>{@code input.context}: the remote host, ip and port of the current HTTP request, if there is one.</li>
+ * </ul>
+ * Evaluations are delegated to {@link OPAAuthorizationManager#opaRequest(String, Map)}, so they use the same
+ * {@link com.styra.opa.OPAClient} (or transport), decorators, decision cache and metrics, and the same
+ * {@code OPAInput*Customizer} beans are applied. Customizers get the {@link RequestAuthorizationContext} of the
+ * current HTTP request, which is null if the method is not invoked while handling one.
+ * <br/><br/>
+ * The annotations, parameters and property accessors of a method are reflected at its first invocation and cached,
+ * so that later invocations do not use reflection.
+ */
+public class OPAMethodAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAMethodAuthorizationManager.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final OPAAuthorizationManager opaAuthorizationManager;
+    private final Map<Method, MethodMetadata> methodMetadata = new ConcurrentHashMap<>();
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private OPAProperties opaProperties = new OPAProperties();
+    @Autowired(required = false)
+    private OPAInputSubjectCustomizer opaInputSubjectCustomizer;
+    @Autowired(required = false)
+    private OPAInputResourceCustomizer opaInputResourceCustomizer;
+    @Autowired(required = false)
+    private OPAInputActionCustomizer opaInputActionCustomizer;
+    @Autowired(required = false)
+    private OPAInputContextCustomizer opaInputContextCustomizer;
+
+    /**
+     * @param opaAuthorizationManager evaluates the inputs of method invocations.
+     */
+    public OPAMethodAuthorizationManager(OPAAuthorizationManager opaAuthorizationManager) {
+        this.opaAuthorizationManager = opaAuthorizationManager;
+    }
+
+    @Override
+    public void verify(Supplier<Authentication> authenticationSupplier, MethodInvocation invocation) {
+        OPAResponse opaResponse = opaRequest(authenticationSupplier, invocation);
+        if (opaResponse == null) {
+            throw new OPAAccessDeniedException("null response from policy");
+        }
+        if (opaResponse.getDecision()) {
+            return;
+        }
+        String reason = opaResponse.getReasonForDecision(opaAuthorizationManager.getReasonKey());
+        throw new OPAAccessDeniedException(reason != null ? reason : "access denied by policy", opaResponse);
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authenticationSupplier, MethodInvocation invocation) {
+        OPAResponse opaResponse = opaRequest(authenticationSupplier, invocation);
+        if (opaResponse == null) {
+            LOGGER.trace("OPA provided a null response, default-denying invocation");
+            return new OPAAuthorizationDecision(false, null);
+        }
+        return new OPAAuthorizationDecision(opaResponse.getDecision(), opaResponse);
+    }
+
+    /**
+     * Creates an interceptor (which is also an {@link org.springframework.aop.Advisor}) to authorize the methods
+     * annotated with {@link OPAAuthorize}, or declared by a class annotated with it, using this instance.
+     */
+    public AuthorizationManagerBeforeMethodInterceptor createInterceptor() {
+        return new AuthorizationManagerBeforeMethodInterceptor(Pointcuts.union(
+            new AnnotationMatchingPointcut(null, OPAAuthorize.class, true),
+            new AnnotationMatchingPointcut(OPAAuthorize.class, true)), this);
+    }
+
+    @Autowired
+    public void setOpaProperties(OPAProperties opaProperties) {
+        this.opaProperties = opaProperties;
+    }
+
+    private OPAResponse opaRequest(Supplier<Authentication> authenticationSupplier, MethodInvocation invocation) {
+        MethodMetadata metadata = methodMetadata.computeIfAbsent(invocation.getMethod(), this::reflect);
+        Authentication authentication = authenticationSupplier.get();
+        Map<String, Object> input = makeInput(authentication, invocation.getArguments(), metadata);
+        LOGGER.trace("OPA input of {} is: {}", invocation.getMethod(), input);
+        return opaAuthorizationManager.opaRequest(metadata.path() != null ? metadata.path() : opaProperties.getPath(),
+            input);
+    }
+
+    private Map<String, Object> makeInput(Authentication authentication, Object[] arguments,
+                                          MethodMetadata metadata) {
+        HttpServletRequest request = currentRequest();
+        RequestAuthorizationContext requestContext = request != null ? new RequestAuthorizationContext(request) : null;
+
+        Object subjectId = null;
+        Object subjectDetails = null;
+        Collection<? extends GrantedAuthority> subjectAuthorities = null;
+        if (authentication != null) {
+            subjectId = authentication.getPrincipal();
+            subjectDetails = authentication.getDetails();
+            subjectAuthorities = authentication.getAuthorities();
+        }
+        Map<String, Object> subject = new OPAInput.Subject(opaProperties.getRequest().getSubject().getType(),
+            subjectId, subjectDetails, subjectAuthorities);
+        if (opaInputSubjectCustomizer != null) {
+            subject = opaInputSubjectCustomizer.customize(authentication, requestContext, new HashMap<>(subject));
+        }
+
+        String resourceType = metadata.resourceType() != null ? metadata.resourceType()
+            : opaProperties.getRequest().getResource().getType();
+        String resourceId = metadata.resourceId(arguments);
+        Map<String, Object> resource;
+        if (metadata.properties().isEmpty()) {
+            resource = new OPAInput.Resource(resourceType, resourceId);
+        } else {
+            Map<String, Object> properties = new HashMap<>();
+            for (ResourceProperty property : metadata.properties()) {
+                properties.put(property.name(), arguments[property.index()]);
+            }
+            resource = new HashMap<>();
+            resource.put(RESOURCE_TYPE, resourceType);
+            if (resourceId != null) {
+                resource.put(RESOURCE_ID, resourceId);
+            }
+            resource.put(RESOURCE_PROPERTIES, properties);
+        }
+        if (opaInputResourceCustomizer != null) {
+            resource = opaInputResourceCustomizer.customize(authentication, requestContext, resource);
+        }
+
+        Map<String, Object> action = new OPAInput.Action(metadata.action(), null, null);
+        if (opaInputActionCustomizer != null) {
+            action = opaInputActionCustomizer.customize(authentication, requestContext, action);
+        }
+
+        String contextType = opaProperties.getRequest().getContext().getType();
+        Map<String, Object> context = request != null
+            ? new OPAInput.Context(contextType, request.getRemoteHost(), request.getRemoteAddr(),
+                request.getRemotePort())
+            : new OPAInput.Context(contextType, null, null, null);
+        if (opaInputContextCustomizer != null) {
+            context = opaInputContextCustomizer.customize(authentication, requestContext, new HashMap<>(context));
+        }
+
+        return new OPAInput(subject, resource, action, context);
+    }
+
+    private static HttpServletRequest currentRequest() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes instanceof ServletRequestAttributes servletRequestAttributes
+            ? servletRequestAttributes.getRequest() : null;
+    }
+
+    /**
+     * Resolves the metadata of {@code method}, whose {@link OPAAuthorize} attributes override the ones of its class.
+     */
+    private MethodMetadata reflect(Method method) {
+        OPAAuthorize methodAnnotation = AnnotatedElementUtils.findMergedAnnotation(method, OPAAuthorize.class);
+        OPAAuthorize classAnnotation = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(),
+            OPAAuthorize.class);
+        String path = attribute(methodAnnotation, classAnnotation, OPAAuthorize::path);
+        String resourceType = attribute(methodAnnotation, classAnnotation, OPAAuthorize::resourceType);
+        String action = attribute(methodAnnotation, classAnnotation, OPAAuthorize::action);
+
+        int resourceIdIndex = -1;
+        MethodHandle resourceIdGetter = null;
+        List<ResourceProperty> properties = new ArrayList<>();
+        Parameter[] parameters = method.getParameters();
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+        for (int i = 0; i < parameters.length; i++) {
+            OPAResourceId resourceId = parameters[i].getAnnotation(OPAResourceId.class);
+            if (resourceId != null) {
+                if (resourceIdIndex >= 0) {
+                    throw new IllegalStateException("more than one parameter of " + method
+                        + " is annotated with @OPAResourceId");
+                }
+                resourceIdIndex = i;
+                resourceIdGetter = resourceId.value().isEmpty() ? null
+                    : getter(parameters[i].getType(), resourceId.value());
+            }
+            OPAResourceProperty resourceProperty = parameters[i].getAnnotation(OPAResourceProperty.class);
+            if (resourceProperty != null) {
+                String name = resourceProperty.value();
+                if (name.isEmpty()) {
+                    name = parameterNames != null ? parameterNames[i] : parameters[i].getName();
+                }
+                properties.add(new ResourceProperty(i, name));
+            }
+        }
+        return new MethodMetadata(path, resourceType, action != null ? action : method.getName(),
+            method.getDeclaringClass().getSimpleName() + "." + method.getName(), resourceIdIndex, resourceIdGetter,
+            List.copyOf(properties));
+    }
+
+    private static String attribute(OPAAuthorize methodAnnotation, OPAAuthorize classAnnotation,
+                                    Function<OPAAuthorize, String> attribute) {
+        if (methodAnnotation != null && !attribute.apply(methodAnnotation).isEmpty()) {
+            return attribute.apply(methodAnnotation);
+        }
+        if (classAnnotation != null && !attribute.apply(classAnnotation).isEmpty()) {
+            return attribute.apply(classAnnotation);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a handle of the accessor of {@code property} (a bean property or a record component) of {@code type}.
+     */
+    private static MethodHandle getter(Class<?> type, String property) {
+        Method accessor = null;
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                if (component.getName().equals(property)) {
+                    accessor = component.getAccessor();
+                }
+            }
+        } else {
+            PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+            accessor = descriptor != null ? descriptor.getReadMethod() : null;
+        }
+        if (accessor == null) {
+            throw new IllegalStateException("no readable property '" + property + "' in " + type.getName());
+        }
+        ReflectionUtils.makeAccessible(accessor);
+        try {
+            return MethodHandles.lookup().unreflect(accessor).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("property '" + property + "' of " + type.getName() + " is not accessible",
+                e);
+        }
+    }
+
+    private record MethodMetadata(String path, String resourceType, String action, String defaultResourceId,
+                                  int resourceIdIndex, MethodHandle resourceIdGetter,
+                                  List<ResourceProperty> properties) {
+
+        @SuppressWarnings("checkstyle:IllegalCatch")
+        private String resourceId(Object[] arguments) {
+            if (resourceIdIndex < 0) {
+                return defaultResourceId;
+            }
+            Object resourceId = arguments[resourceIdIndex];
+            if (resourceId != null && resourceIdGetter != null) {
+                try {
+                    resourceId = (Object) resourceIdGetter.invokeExact(resourceId);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("failed to get the resource id", e);
+                }
+            }
+            return resourceId != null ? resourceId.toString() : null;
+        }
+    }
+
+    private record ResourceProperty(int index, String name) {
+    }
+}
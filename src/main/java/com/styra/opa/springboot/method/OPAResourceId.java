@@ -0,0 +1,24 @@
+package com.styra.opa.springboot.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the argument which identifies the resource of a method authorized by {@link OPAMethodAuthorizationManager},
+ * whose value becomes {@code input.resource.id}. If there is no such argument, the id is the name of the class and
+ * the method (e.g. {@code OrderService.cancel}).
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OPAResourceId {
+
+    /**
+     * Name of the (bean) property of the argument which holds the id, e.g. {@code id} for an {@code Order} argument
+     * with a {@code getId()} method. If empty, the argument itself is the id.
+     */
+    String value() default "";
+}
@@ -0,0 +1,23 @@
+package com.styra.opa.springboot.method;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Adds the annotated argument of a method authorized by {@link OPAMethodAuthorizationManager} to
+ * {@code input.resource.properties}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OPAResourceProperty {
+
+    /**
+     * Key of the argument in {@code input.resource.properties}. If empty, the name of the parameter is used, which
+     * requires compiling with {@code -parameters}.
+     */
+    String value() default "";
+}
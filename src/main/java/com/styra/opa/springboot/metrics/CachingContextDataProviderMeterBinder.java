@@ -0,0 +1,41 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.CachingContextDataProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the hit, miss and refresh counters of a {@link CachingContextDataProvider} to a {@link MeterRegistry}.
+ */
+public class CachingContextDataProviderMeterBinder implements MeterBinder {
+
+    private final CachingContextDataProvider cachingContextDataProvider;
+
+    public CachingContextDataProviderMeterBinder(CachingContextDataProvider cachingContextDataProvider) {
+        this.cachingContextDataProvider = cachingContextDataProvider;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("opa.context-data.cache.gets", cachingContextDataProvider,
+                CachingContextDataProvider::getHitCount)
+            .tag("result", "hit")
+            .description("Requests whose context data was cached")
+            .register(registry);
+        FunctionCounter.builder("opa.context-data.cache.gets", cachingContextDataProvider,
+                CachingContextDataProvider::getMissCount)
+            .tag("result", "miss")
+            .description("Requests whose context data had to be loaded")
+            .register(registry);
+        FunctionCounter.builder("opa.context-data.cache.refreshes", cachingContextDataProvider,
+                CachingContextDataProvider::getRefreshCount)
+            .description("Background refreshes of cached context data")
+            .register(registry);
+        Gauge.builder("opa.context-data.cache.size", cachingContextDataProvider,
+                CachingContextDataProvider::estimatedSize)
+            .description("Estimated number of cached context data values")
+            .register(registry);
+    }
+}
@@ -0,0 +1,151 @@
+package com.styra.opa.springboot.metrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.springboot.OPADecisionOutcome;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Records authorization decisions with Micrometer:
+ * <ul>
+ *     <li>{@value DECISION_TIMER}: a timer (with a percentile histogram) of the time spent deciding, tagged by the
+ *     selected policy {@code path}, the {@code decision} ({@code granted}, {@code denied}, {@code timeout} or
+ *     {@code error}), the {@code exception} type, whether the decision was {@code cached}, and its {@code outcome}
+ *     ({@code fresh}, {@code stale}, {@code fallback}, {@code timeout} or {@code error}, see
+ *     {@link OPADecisionOutcome}). Timeout responses are tagged with the {@code timeout} decision as well.</li>
+ *     <li>{@value INPUT_SIZE_SUMMARY}: a distribution summary of the serialized input size in bytes, tagged by
+ *     {@code path}, if {@code opa.metrics.input-size} is enabled.</li>
+ * </ul>
+ * Tag cardinality is bounded: policy paths (not request paths) are used as tags, and only the first
+ * {@code opa.metrics.max-path-tags} distinct paths get their own tag value; further ones are tagged with
+ * {@value OTHER_PATH}.
+ */
+public class MicrometerOPAMetricsRecorder implements OPAMetricsRecorder {
+
+    public static final String DECISION_TIMER = "opa.authorization.decision";
+    public static final String INPUT_SIZE_SUMMARY = "opa.authorization.input.size";
+    public static final String DEFAULT_PATH = "default";
+    public static final String OTHER_PATH = "other";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicrometerOPAMetricsRecorder.class);
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final OPAProperties.Metrics properties;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> pathTags = ConcurrentHashMap.newKeySet();
+
+    public MicrometerOPAMetricsRecorder(MeterRegistry meterRegistry, OPAProperties.Metrics properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    public void recordDecision(String path, Map<String, Object> input, OPAResponse opaResponse, Throwable error,
+                               boolean cached, long durationNanos) {
+        String pathTag = pathTag(path);
+        Timer.builder(DECISION_TIMER)
+            .description("Time spent deciding whether a request is authorized")
+            .tags(Tags.of(
+                "path", pathTag,
+                "decision", decisionTag(opaResponse, error),
+                "exception", exceptionTag(error),
+                "cached", Boolean.toString(cached),
+                "outcome", OPADecisionOutcome.of(opaResponse, error).name().toLowerCase(Locale.ROOT)))
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (properties.isInputSize() && !cached && input != null) {
+            recordInputSize(pathTag, input);
+        }
+    }
+
+    private void recordInputSize(String pathTag, Map<String, Object> input) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        try {
+            objectMapper.writeValue(outputStream, input);
+        } catch (JsonProcessingException e) {
+            LOGGER.debug("failed to serialize OPA input for metrics", e);
+            return;
+        } catch (IOException e) {
+            LOGGER.debug("failed to count OPA input bytes", e);
+            return;
+        }
+        DistributionSummary.builder(INPUT_SIZE_SUMMARY)
+            .description("Size of the serialized OPA input")
+            .baseUnit("bytes")
+            .tag("path", pathTag)
+            .register(meterRegistry)
+            .record(outputStream.count);
+    }
+
+    private String pathTag(String path) {
+        if (path == null) {
+            return DEFAULT_PATH;
+        }
+        if (pathTags.contains(path)) {
+            return path;
+        }
+        // racing threads could add a few more paths than the maximum, which still bounds the cardinality
+        if (pathTags.size() >= properties.getMaxPathTags()) {
+            return OTHER_PATH;
+        }
+        pathTags.add(path);
+        return path;
+    }
+
+    private static String decisionTag(OPAResponse opaResponse, Throwable error) {
+        if (opaResponse instanceof OPATimeoutResponse) {
+            return "timeout";
+        }
+        if (error != null || opaResponse == null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            return cause instanceof TimeoutException ? "timeout" : "error";
+        }
+        return opaResponse.getDecision() ? "granted" : "denied";
+    }
+
+    private static String exceptionTag(Throwable error) {
+        if (error == null) {
+            return NO_EXCEPTION;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Discards all bytes written to it, only counting them.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
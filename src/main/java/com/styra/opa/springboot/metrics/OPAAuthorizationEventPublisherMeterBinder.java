@@ -0,0 +1,38 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.authorization.OPAAuthorizationEventPublisher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the queue size and the overflow counters of an asynchronous {@link OPAAuthorizationEventPublisher} to a
+ * {@link MeterRegistry}.
+ */
+public class OPAAuthorizationEventPublisherMeterBinder implements MeterBinder {
+
+    private final OPAAuthorizationEventPublisher opaAuthorizationEventPublisher;
+
+    public OPAAuthorizationEventPublisherMeterBinder(OPAAuthorizationEventPublisher opaAuthorizationEventPublisher) {
+        this.opaAuthorizationEventPublisher = opaAuthorizationEventPublisher;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opa.authorization-events.queue.size", opaAuthorizationEventPublisher,
+                OPAAuthorizationEventPublisher::getQueueSize)
+            .description("Authorization events waiting to be published")
+            .register(registry);
+        FunctionCounter.builder("opa.authorization-events.overflow", opaAuthorizationEventPublisher,
+                OPAAuthorizationEventPublisher::getDroppedCount)
+            .tag("outcome", "dropped")
+            .description("Authorization events which arrived while the queue was full")
+            .register(registry);
+        FunctionCounter.builder("opa.authorization-events.overflow", opaAuthorizationEventPublisher,
+                OPAAuthorizationEventPublisher::getCoalescedCount)
+            .tag("outcome", "coalesced")
+            .description("Authorization events which arrived while the queue was full")
+            .register(registry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.bulk.OPABulkAuthorizer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters of an {@link OPABulkAuthorizer} to a {@link MeterRegistry}.
+ */
+public class OPABulkAuthorizerMeterBinder implements MeterBinder {
+
+    private final OPABulkAuthorizer opaBulkAuthorizer;
+
+    public OPABulkAuthorizerMeterBinder(OPABulkAuthorizer opaBulkAuthorizer) {
+        this.opaBulkAuthorizer = opaBulkAuthorizer;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("opa.bulk.requests", opaBulkAuthorizer, OPABulkAuthorizer::getRequestCount)
+            .description("Multi-evaluation requests which were sent to OPA")
+            .register(registry);
+        FunctionCounter.builder("opa.bulk.evaluations", opaBulkAuthorizer, OPABulkAuthorizer::getEvaluationCount)
+            .description("Resources which were evaluated as part of multi-evaluation requests")
+            .register(registry);
+    }
+}
@@ -0,0 +1,47 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPABulkheads;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the saturation and counters of each bulkhead of {@link OPABulkheads} to a {@link MeterRegistry}, tagged with
+ * its policy path.
+ */
+public class OPABulkheadsMeterBinder implements MeterBinder {
+
+    private final OPABulkheads opaBulkheads;
+
+    public OPABulkheadsMeterBinder(OPABulkheads opaBulkheads) {
+        this.opaBulkheads = opaBulkheads;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        opaBulkheads.getBulkheads().forEach((path, bulkhead) -> {
+            Gauge.builder("opa.bulkhead.active", bulkhead, OPABulkheads.Bulkhead::getActiveCount)
+                .tag("path", path)
+                .description("OPA evaluations of the path which are in flight")
+                .register(registry);
+            Gauge.builder("opa.bulkhead.max-concurrent-calls", bulkhead, OPABulkheads.Bulkhead::getMaxConcurrentCalls)
+                .tag("path", path)
+                .description("Maximum number of OPA evaluations of the path in flight at once")
+                .register(registry);
+            Gauge.builder("opa.bulkhead.saturation", bulkhead,
+                    b -> (double) b.getActiveCount() / b.getMaxConcurrentCalls())
+                .tag("path", path)
+                .description("Share of the bulkhead of the path which is in use")
+                .register(registry);
+            Gauge.builder("opa.bulkhead.queue.size", bulkhead, OPABulkheads.Bulkhead::getQueueSize)
+                .tag("path", path)
+                .description("OPA evaluations of the path waiting for one in flight to complete")
+                .register(registry);
+            FunctionCounter.builder("opa.bulkhead.rejected", bulkhead, OPABulkheads.Bulkhead::getRejectedCallCount)
+                .tag("path", path)
+                .description("OPA evaluations of the path which were answered with the rejected decision")
+                .register(registry);
+        });
+    }
+}
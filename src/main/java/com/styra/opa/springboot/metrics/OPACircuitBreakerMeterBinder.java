@@ -0,0 +1,41 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPACircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Locale;
+
+/**
+ * Binds the state and counters of an {@link OPACircuitBreaker} to a {@link MeterRegistry}. The state gauge is 1 for
+ * the current state and 0 for the others.
+ */
+public class OPACircuitBreakerMeterBinder implements MeterBinder {
+
+    private final OPACircuitBreaker opaCircuitBreaker;
+
+    public OPACircuitBreakerMeterBinder(OPACircuitBreaker opaCircuitBreaker) {
+        this.opaCircuitBreaker = opaCircuitBreaker;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (OPACircuitBreaker.State state : OPACircuitBreaker.State.values()) {
+            Gauge.builder("opa.circuit-breaker.state", opaCircuitBreaker,
+                    circuitBreaker -> circuitBreaker.getState() == state ? 1 : 0)
+                .tag("state", state.name().toLowerCase(Locale.ROOT))
+                .description("Whether the OPA circuit breaker is in the given state")
+                .register(registry);
+        }
+        FunctionCounter.builder("opa.circuit-breaker.rejected", opaCircuitBreaker,
+                OPACircuitBreaker::getRejectedCallCount)
+            .description("OPA evaluations which were answered with a default decision while the breaker was open")
+            .register(registry);
+        FunctionCounter.builder("opa.circuit-breaker.transitions", opaCircuitBreaker,
+                OPACircuitBreaker::getStateTransitionCount)
+            .description("State transitions of the OPA circuit breaker")
+            .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPAConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the limit and counters of an {@link OPAConcurrencyLimiter} to a {@link MeterRegistry}.
+ */
+public class OPAConcurrencyLimiterMeterBinder implements MeterBinder {
+
+    private final OPAConcurrencyLimiter opaConcurrencyLimiter;
+
+    public OPAConcurrencyLimiterMeterBinder(OPAConcurrencyLimiter opaConcurrencyLimiter) {
+        this.opaConcurrencyLimiter = opaConcurrencyLimiter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opa.concurrency-limit.limit", opaConcurrencyLimiter, OPAConcurrencyLimiter::getLimit)
+            .description("Current number of OPA evaluations which could be in flight at once")
+            .register(registry);
+        Gauge.builder("opa.concurrency-limit.in-flight", opaConcurrencyLimiter, OPAConcurrencyLimiter::getInFlight)
+            .description("OPA evaluations which are in flight")
+            .register(registry);
+        FunctionCounter.builder("opa.concurrency-limit.rejected", opaConcurrencyLimiter,
+                OPAConcurrencyLimiter::getRejectedCallCount)
+            .description("OPA evaluations which were answered with the rejected decision, since the limit was reached")
+            .register(registry);
+    }
+}
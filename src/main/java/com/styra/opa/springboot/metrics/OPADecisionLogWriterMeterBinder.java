@@ -0,0 +1,41 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.decisionlog.OPADecisionLogWriter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the queue size (i.e. the backpressure) and the written, dropped and failed decisions of an
+ * {@link OPADecisionLogWriter} to a {@link MeterRegistry}.
+ */
+public class OPADecisionLogWriterMeterBinder implements MeterBinder {
+
+    private final OPADecisionLogWriter opaDecisionLogWriter;
+
+    public OPADecisionLogWriterMeterBinder(OPADecisionLogWriter opaDecisionLogWriter) {
+        this.opaDecisionLogWriter = opaDecisionLogWriter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opa.decision-log.queue.size", opaDecisionLogWriter, OPADecisionLogWriter::getQueueSize)
+            .description("Decisions waiting to be written to the decision log")
+            .register(registry);
+        FunctionCounter.builder("opa.decision-log.records", opaDecisionLogWriter,
+                OPADecisionLogWriter::getWrittenCount)
+            .tag("outcome", "written")
+            .description("Decisions handled by the decision log")
+            .register(registry);
+        FunctionCounter.builder("opa.decision-log.records", opaDecisionLogWriter,
+                OPADecisionLogWriter::getDroppedCount)
+            .tag("outcome", "dropped")
+            .description("Decisions handled by the decision log")
+            .register(registry);
+        FunctionCounter.builder("opa.decision-log.write.errors", opaDecisionLogWriter,
+                OPADecisionLogWriter::getWriteErrorCount)
+            .description("Failed writes to the decision log, each losing the buffered decisions")
+            .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPAEvaluationExecutor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the saturation and rejections of an {@link OPAEvaluationExecutor} to a {@link MeterRegistry}.
+ */
+public class OPAEvaluationExecutorMeterBinder implements MeterBinder {
+
+    private final OPAEvaluationExecutor opaEvaluationExecutor;
+
+    public OPAEvaluationExecutorMeterBinder(OPAEvaluationExecutor opaEvaluationExecutor) {
+        this.opaEvaluationExecutor = opaEvaluationExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opa.executor.active", opaEvaluationExecutor, OPAEvaluationExecutor::getActiveCount)
+            .description("Threads running OPA evaluations off the calling thread")
+            .register(registry);
+        Gauge.builder("opa.executor.queue.size", opaEvaluationExecutor, OPAEvaluationExecutor::getQueueSize)
+            .description("OPA evaluations waiting for a thread")
+            .register(registry);
+        FunctionCounter.builder("opa.executor.rejected", opaEvaluationExecutor,
+                OPAEvaluationExecutor::getRejectedCount)
+            .description("OPA evaluations which were rejected, because all threads were busy and the queue was full")
+            .register(registry);
+    }
+}
@@ -0,0 +1,35 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPAHedger;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters and the hedge budget of an {@link OPAHedger} to a {@link MeterRegistry}.
+ */
+public class OPAHedgerMeterBinder implements MeterBinder {
+
+    private final OPAHedger opaHedger;
+
+    public OPAHedgerMeterBinder(OPAHedger opaHedger) {
+        this.opaHedger = opaHedger;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("opa.hedge.sent", opaHedger, OPAHedger::getHedgeCount)
+            .description("Duplicate OPA evaluations sent since no response arrived within the hedge delay")
+            .register(registry);
+        FunctionCounter.builder("opa.hedge.won", opaHedger, OPAHedger::getHedgeWonCount)
+            .description("Duplicate OPA evaluations which responded before the evaluation they duplicated")
+            .register(registry);
+        FunctionCounter.builder("opa.hedge.budget-exhausted", opaHedger, OPAHedger::getBudgetExhaustedCount)
+            .description("Slow OPA evaluations which were not hedged, since the hedge budget was exhausted")
+            .register(registry);
+        Gauge.builder("opa.hedge.budget.tokens", opaHedger, OPAHedger::getBudgetTokens)
+            .description("Number of hedges the hedge budget currently allows")
+            .register(registry);
+    }
+}
@@ -0,0 +1,55 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.loadbalancing.OPALoadBalancer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the state of each replica of an {@link OPALoadBalancer} to a {@link MeterRegistry}, tagged with its URL.
+ */
+public class OPALoadBalancerMeterBinder implements MeterBinder {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final OPALoadBalancer opaLoadBalancer;
+
+    public OPALoadBalancerMeterBinder(OPALoadBalancer opaLoadBalancer) {
+        this.opaLoadBalancer = opaLoadBalancer;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (OPALoadBalancer.Replica replica : opaLoadBalancer.getReplicas()) {
+            Gauge.builder("opa.load-balancer.outstanding", replica, OPALoadBalancer.Replica::getOutstandingCount)
+                .tag("replica", replica.getUrl())
+                .description("OPA evaluations sent to the replica which are in flight")
+                .register(registry);
+            Gauge.builder("opa.load-balancer.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                .tag("replica", replica.getUrl())
+                .description("Whether the replica passed its health checks (1) or is ejected (0)")
+                .register(registry);
+            Gauge.builder("opa.load-balancer.latency.ewma", replica,
+                    r -> r.getLatencyEwma().toNanos() / NANOS_PER_SECOND)
+                .tag("replica", replica.getUrl())
+                .baseUnit("seconds")
+                .description("Exponentially weighted moving average of the latency of the replica")
+                .register(registry);
+            FunctionCounter.builder("opa.load-balancer.requests", replica, OPALoadBalancer.Replica::getRequestCount)
+                .tag("replica", replica.getUrl())
+                .description("OPA evaluations sent to the replica")
+                .register(registry);
+            FunctionCounter.builder("opa.load-balancer.ejections", replica, OPALoadBalancer.Replica::getEjectionCount)
+                .tag("replica", replica.getUrl())
+                .description("Times the replica was ejected after failed health checks")
+                .register(registry);
+        }
+        FunctionCounter.builder("opa.load-balancer.no-healthy-replica", opaLoadBalancer,
+                OPALoadBalancer::getNoHealthyReplicaCount)
+            .description("OPA evaluations balanced across all replicas, since none of them was healthy")
+            .register(registry);
+    }
+}
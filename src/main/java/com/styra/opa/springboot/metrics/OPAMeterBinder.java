@@ -0,0 +1,55 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.evaluator.OPABatchEvaluator;
+import com.styra.opa.springboot.evaluator.OPARequestCoalescer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters of the optional OPA components (decision cache, request coalescer, batch evaluator) to a
+ * {@link MeterRegistry}. Components which are null are skipped.
+ */
+public class OPAMeterBinder implements MeterBinder {
+
+    private final OPADecisionCache opaDecisionCache;
+    private final OPARequestCoalescer opaRequestCoalescer;
+    private final OPABatchEvaluator opaBatchEvaluator;
+
+    public OPAMeterBinder(OPADecisionCache opaDecisionCache, OPARequestCoalescer opaRequestCoalescer,
+                          OPABatchEvaluator opaBatchEvaluator) {
+        this.opaDecisionCache = opaDecisionCache;
+        this.opaRequestCoalescer = opaRequestCoalescer;
+        this.opaBatchEvaluator = opaBatchEvaluator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (opaDecisionCache != null) {
+            Gauge.builder("opa.cache.size", opaDecisionCache, OPADecisionCache::estimatedSize)
+                .description("Estimated number of cached OPA decisions")
+                .register(registry);
+        }
+        if (opaRequestCoalescer != null) {
+            FunctionCounter.builder("opa.coalescing.evaluations", opaRequestCoalescer,
+                    OPARequestCoalescer::getEvaluationCount)
+                .description("OPA evaluations which were sent by the request coalescer")
+                .register(registry);
+            FunctionCounter.builder("opa.coalescing.deduplicated", opaRequestCoalescer,
+                    OPARequestCoalescer::getDeduplicatedCount)
+                .description("OPA evaluations which joined an identical in-flight evaluation")
+                .register(registry);
+        }
+        if (opaBatchEvaluator != null) {
+            FunctionCounter.builder("opa.batch.requests", opaBatchEvaluator, OPABatchEvaluator::getBatchCount)
+                .description("Batch requests which were sent to OPA")
+                .register(registry);
+            FunctionCounter.builder("opa.batch.evaluations", opaBatchEvaluator,
+                    OPABatchEvaluator::getBatchedEvaluationCount)
+                .description("OPA evaluations which were sent as part of a batch request")
+                .register(registry);
+        }
+    }
+}
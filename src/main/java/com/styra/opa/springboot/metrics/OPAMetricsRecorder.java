@@ -0,0 +1,30 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.OPAResponse;
+
+import java.util.Map;
+
+/**
+ * Records the outcome of every authorization decision made by {@link com.styra.opa.springboot.OPAAuthorizationManager}
+ * and {@link com.styra.opa.springboot.reactive.OPAReactiveAuthorizationManager}. Implementations are called on the
+ * request thread (or an event-loop thread), so they must be fast and must not block.
+ *
+ * @see MicrometerOPAMetricsRecorder
+ */
+@FunctionalInterface
+public interface OPAMetricsRecorder {
+
+    /**
+     * Records a single decision.
+     *
+     * @param path selected policy path, or null for the default path.
+     * @param input OPA input which was evaluated.
+     * @param opaResponse null if the evaluation failed, unless a stale decision was served instead (see
+     *                    {@link com.styra.opa.springboot.OPADecisionOutcome}).
+     * @param error null if the evaluation succeeded.
+     * @param cached whether the response was served from {@link com.styra.opa.springboot.cache.OPADecisionCache}.
+     * @param durationNanos time spent making the decision, including the cache lookup.
+     */
+    void recordDecision(String path, Map<String, Object> input, OPAResponse opaResponse, Throwable error,
+                        boolean cached, long durationNanos);
+}
@@ -0,0 +1,35 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.partial.OPAPartialEvaluator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters of an {@link OPAPartialEvaluator} to a {@link MeterRegistry}.
+ */
+public class OPAPartialEvaluatorMeterBinder implements MeterBinder {
+
+    private final OPAPartialEvaluator opaPartialEvaluator;
+
+    public OPAPartialEvaluatorMeterBinder(OPAPartialEvaluator opaPartialEvaluator) {
+        this.opaPartialEvaluator = opaPartialEvaluator;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("opa.partial-evaluation.resources", opaPartialEvaluator,
+                OPAPartialEvaluator::getCompiledResourceCount)
+            .description("Resources whose OPA decisions are made locally from residual queries")
+            .register(registry);
+        FunctionCounter.builder("opa.partial-evaluation.local", opaPartialEvaluator,
+                OPAPartialEvaluator::getLocalDecisionCount)
+            .description("OPA decisions which were made locally from residual queries")
+            .register(registry);
+        FunctionCounter.builder("opa.partial-evaluation.refreshes", opaPartialEvaluator,
+                OPAPartialEvaluator::getRefreshCount)
+            .description("Times residual queries were compiled because OPA's policies changed")
+            .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.evaluator.OPARetrier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters and the retry budget of an {@link OPARetrier} to a {@link MeterRegistry}.
+ */
+public class OPARetrierMeterBinder implements MeterBinder {
+
+    private final OPARetrier opaRetrier;
+
+    public OPARetrierMeterBinder(OPARetrier opaRetrier) {
+        this.opaRetrier = opaRetrier;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("opa.retry.retries", opaRetrier, OPARetrier::getRetryCount)
+            .description("OPA evaluations which were retried after a transient error")
+            .register(registry);
+        FunctionCounter.builder("opa.retry.budget-exhausted", opaRetrier, OPARetrier::getBudgetExhaustedCount)
+            .description("Failed OPA evaluations which were not retried, since the retry budget was exhausted")
+            .register(registry);
+        Gauge.builder("opa.retry.budget.tokens", opaRetrier, OPARetrier::getBudgetTokens)
+            .description("Number of retries the retry budget currently allows")
+            .register(registry);
+    }
+}
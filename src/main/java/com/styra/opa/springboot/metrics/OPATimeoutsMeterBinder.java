@@ -0,0 +1,28 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.springboot.timeout.OPATimeouts;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Binds the counters of an {@link OPATimeouts} to a {@link MeterRegistry}.
+ */
+public class OPATimeoutsMeterBinder implements MeterBinder {
+
+    private final OPATimeouts opaTimeouts;
+
+    public OPATimeoutsMeterBinder(OPATimeouts opaTimeouts) {
+        this.opaTimeouts = opaTimeouts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("opa.timeout.decisions", opaTimeouts, OPATimeouts::getTimeoutCount)
+            .description("Evaluations which were answered with a timeout decision, because OPA did not respond in time")
+            .register(registry);
+        FunctionCounter.builder("opa.timeout.expired-deadlines", opaTimeouts, OPATimeouts::getExpiredDeadlineCount)
+            .description("Requests whose deadline had already passed before OPA was asked")
+            .register(registry);
+    }
+}
@@ -0,0 +1,255 @@
+package com.styra.opa.springboot.partial;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.styra.opa.springboot.evaluator.OPAEvaluatorDecorator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+
+/**
+ * Makes decisions of {@code opa.path} in-process, for the resources listed in
+ * {@link OPAProperties.PartialEvaluation#getResourceIds()}. For each of them, OPA's
+ * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#compile-api">Compile API</a> partially evaluates
+ * {@code data.<path>.decision == true} with {@code input.resource} known and the configured
+ * {@link OPAProperties.PartialEvaluation#getUnknowns() unknowns}, and the residual queries are translated by
+ * {@link OPAResidualCompiler} into a predicate on the input. Evaluations of other paths or resources, and of resources
+ * whose residual queries could not be translated, are passed to the decorated evaluator.
+ * <br/><br/>
+ * Residual queries are compiled in the background when this instance is created, and again every
+ * {@link OPAProperties.PartialEvaluation#getRefreshInterval()}, since they also depend on data (e.g. of bundles), whose
+ * changes are only visible in the residual queries themselves. Local decisions may hence lag behind data changes by up
+ * to one refresh interval. If the policies loaded by OPA (as listed by the Policy API) changed, or a refresh failed,
+ * all evaluations are passed to the decorated evaluator until residual queries are compiled again. Only inputs whose
+ * {@code resource} has exactly the configured type and a listed id are decided locally, since residual queries were
+ * compiled for no other resource attributes. Local decisions only carry the {@code decision}, i.e. no {@code context}.
+ */
+public class OPAPartialEvaluator implements OPAEvaluatorDecorator, Ordered, AutoCloseable {
+
+    /**
+     * Partial evaluation is the outermost decorator, since local decisions need none of the others.
+     */
+    public static final int ORDER = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAPartialEvaluator.class);
+    private static final String DECISION_KEY = "decision";
+
+    private final OPAAsyncClient opaAsyncClient;
+    private final String path;
+    private final String query;
+    private final String resourceType;
+    private final List<String> resourceIds;
+    private final List<String> unknowns;
+    private final ScheduledExecutorService refresher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LongAdder localDecisions = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private volatile Map<String, Predicate<JsonNode>> predicates = Map.of();
+    private volatile JsonNode policies;
+
+    /**
+     * Instantiates an instance which compiles the residual queries of {@link OPAProperties#getPath()} in the
+     * background.
+     *
+     * @param opaAsyncClient used to call the Compile API and the Policy API.
+     * @param opaProperties provides the path, the resource type and {@link OPAProperties#getPartialEvaluation()}.
+     */
+    public OPAPartialEvaluator(OPAAsyncClient opaAsyncClient, OPAProperties opaProperties) {
+        if (opaProperties.getPath() == null) {
+            throw new IllegalArgumentException("opa.path must be set to use partial evaluation");
+        }
+        OPAProperties.PartialEvaluation properties = opaProperties.getPartialEvaluation();
+        this.opaAsyncClient = opaAsyncClient;
+        this.path = trimSlashes(opaProperties.getPath());
+        this.query = query(path);
+        this.resourceType = opaProperties.getRequest().getResource().getType();
+        this.resourceIds = List.copyOf(properties.getResourceIds());
+        this.unknowns = List.copyOf(properties.getUnknowns());
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "opa-partial-evaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long refreshMillis = properties.getRefreshInterval() != null ? properties.getRefreshInterval().toMillis() : 0;
+        if (refreshMillis > 0) {
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresher.execute(this::refreshQuietly);
+        }
+    }
+
+    @Override
+    public OPAEvaluator decorate(OPAEvaluator delegate) {
+        return (evaluatedPath, input) -> {
+            Predicate<JsonNode> predicate = evaluatedPath != null && path.equals(trimSlashes(evaluatedPath))
+                ? predicate(input) : null;
+            if (predicate == null) {
+                return delegate.evaluate(evaluatedPath, input);
+            }
+            JsonNode inputNode;
+            try {
+                inputNode = objectMapper.valueToTree(input);
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("failed to convert input, evaluating it with OPA:", e);
+                return delegate.evaluate(evaluatedPath, input);
+            }
+            localDecisions.increment();
+            return CompletableFuture.completedFuture(new OPAResponse(predicate.test(inputNode), null));
+        };
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    /**
+     * Compiles the residual queries again. If the policies loaded by OPA changed since the last refresh, all
+     * evaluations are passed to the decorated evaluator until they are compiled, so that decisions of outdated
+     * policies are never made locally.
+     *
+     * @throws OPAException if OPA could not be called, in which case all evaluations are passed to the decorated
+     *                      evaluator until the next refresh compiles them again.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    public synchronized void refresh() throws OPAException {
+        Map<String, Predicate<JsonNode>> compiledPredicates = new HashMap<>();
+        JsonNode currentPolicies;
+        try {
+            currentPolicies = join(opaAsyncClient.listPolicies());
+            if (!currentPolicies.equals(policies)) {
+                predicates = Map.of();
+            }
+            for (String resourceId : resourceIds) {
+                JsonNode result = join(opaAsyncClient.compile(query, Map.of(RESOURCE,
+                    Map.of(RESOURCE_TYPE, resourceType, RESOURCE_ID, resourceId)), unknowns));
+                try {
+                    compiledPredicates.put(resourceId, OPAResidualCompiler.compile(result));
+                } catch (OPAResidualNotSupportedException e) {
+                    LOGGER.info("residual queries of resource '{}' are not supported, evaluating it with OPA: {}",
+                        resourceId, e.getMessage());
+                }
+            }
+        } catch (OPAException | RuntimeException e) {
+            predicates = Map.of();
+            policies = null;
+            throw e;
+        }
+        predicates = Map.copyOf(compiledPredicates);
+        policies = currentPolicies;
+        refreshes.increment();
+        LOGGER.debug("compiled residual queries of {} out of {} resources", compiledPredicates.size(),
+            resourceIds.size());
+    }
+
+    /**
+     * Returns the number of resources whose decisions are currently made locally.
+     */
+    public int getCompiledResourceCount() {
+        return predicates.size();
+    }
+
+    /**
+     * Returns the number of decisions which were made locally.
+     */
+    public long getLocalDecisionCount() {
+        return localDecisions.sum();
+    }
+
+    /**
+     * Returns the number of times residual queries were compiled.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Stops checking the policies for changes.
+     */
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Runtime exceptions are caught as well, since they would cancel the periodic refresh.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (OPAException | RuntimeException e) {
+            LOGGER.error("failed to compile residual queries, evaluating all resources with OPA:", e);
+        }
+    }
+
+    private Predicate<JsonNode> predicate(Map<String, Object> input) {
+        // residual queries only know the type and the id, so any other resource attribute is left to OPA
+        if (input != null && input.get(RESOURCE) instanceof Map<?, ?> resource && resource.size() == 2
+            && resourceType.equals(resource.get(RESOURCE_TYPE))
+            && resource.get(RESOURCE_ID) instanceof String resourceId) {
+            return predicates.get(resourceId);
+        }
+        return null;
+    }
+
+    /**
+     * Builds {@code data["<segment>"]...["decision"] == true}, quoting segments as JSON strings.
+     */
+    private String query(String policyPath) {
+        StringBuilder builder = new StringBuilder("data");
+        try {
+            for (String segment : policyPath.split("/")) {
+                builder.append('[').append(objectMapper.writeValueAsString(segment)).append(']');
+            }
+            builder.append('[').append(objectMapper.writeValueAsString(DECISION_KEY)).append(']');
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid opa.path: " + policyPath, e);
+        }
+        return builder.append(" == true").toString();
+    }
+
+    private static JsonNode join(CompletableFuture<JsonNode> future) throws OPAException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OPAException opaException) {
+                throw opaException;
+            }
+            throw new OPAException("failed to call OPA", e.getCause());
+        }
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
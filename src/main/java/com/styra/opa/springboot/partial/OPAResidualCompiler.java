@@ -0,0 +1,310 @@
+package com.styra.opa.springboot.partial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+import static java.lang.String.format;
+
+/**
+ * Translates the residual queries returned by OPA's
+ * <a href="https://www.openpolicyagent.org/docs/latest/rest-api/#compile-api">Compile API</a> into a
+ * {@link Predicate} on the (JSON) input. The query is true if any residual query is true, and a residual query is true
+ * if all of its expressions are true. Supported expressions are:
+ * <ul>
+ *     <li>comparisons using {@code ==}, {@code =}, {@code !=}, {@code <}, {@code <=}, {@code >}, {@code >=}</li>
+ *     <li>membership using {@code in}</li>
+ *     <li>a single reference, which is true if it is defined and not false</li>
+ *     <li>negations of the above using {@code not}</li>
+ * </ul>
+ * Operands must be constants or references into {@code input}. A reference may iterate over collections (e.g.
+ * {@code input.subject.authorities[_]}), as long as its variable is not used anywhere else in the query. Anything else
+ * (e.g. built-in functions, {@code with} modifiers, or support modules) causes an
+ * {@link OPAResidualNotSupportedException}.
+ */
+final class OPAResidualCompiler {
+
+    private static final String QUERIES_KEY = "queries";
+    private static final String SUPPORT_KEY = "support";
+    private static final String TERMS_KEY = "terms";
+    private static final String NEGATED_KEY = "negated";
+    private static final String WITH_KEY = "with";
+    private static final String TYPE_KEY = "type";
+    private static final String VALUE_KEY = "value";
+    private static final String INPUT = "input";
+    private static final int BINARY_OPERATOR_TERMS = 3;
+    private static final Comparator<JsonNode> NUMERIC_EQUALITY = (left, right) ->
+        left.isNumber() && right.isNumber() ? left.decimalValue().compareTo(right.decimalValue())
+            : left.equals(right) ? 0 : 1;
+    private static final Map<String, BiPredicate<JsonNode, JsonNode>> OPERATORS = Map.of(
+        "eq", OPAResidualCompiler::equal,
+        "equal", OPAResidualCompiler::equal,
+        "neq", (left, right) -> !equal(left, right),
+        "lt", (left, right) -> compare(left, right) < 0,
+        "lte", (left, right) -> compare(left, right) <= 0,
+        "gt", (left, right) -> compare(left, right) > 0,
+        "gte", (left, right) -> compare(left, right) >= 0,
+        "internal.member_2", OPAResidualCompiler::member);
+
+    private OPAResidualCompiler() {
+    }
+
+    /**
+     * Compiles the {@code result} of a Compile API response.
+     *
+     * @throws OPAResidualNotSupportedException if any residual query could not be translated.
+     */
+    static Predicate<JsonNode> compile(JsonNode result) throws OPAResidualNotSupportedException {
+        if (result.hasNonNull(SUPPORT_KEY) && !result.get(SUPPORT_KEY).isEmpty()) {
+            throw new OPAResidualNotSupportedException("residual queries depend on support modules");
+        }
+        JsonNode queries = result.path(QUERIES_KEY);
+        List<Predicate<JsonNode>> predicates = new ArrayList<>();
+        for (JsonNode query : queries) {
+            predicates.add(compileQuery(query));
+        }
+        if (predicates.isEmpty()) {
+            return input -> false;
+        }
+        return input -> {
+            for (Predicate<JsonNode> predicate : predicates) {
+                if (predicate.test(input)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Predicate<JsonNode> compileQuery(JsonNode query) throws OPAResidualNotSupportedException {
+        Set<String> vars = new HashSet<>();
+        List<Predicate<JsonNode>> predicates = new ArrayList<>();
+        for (JsonNode expr : query) {
+            predicates.add(compileExpr(expr, vars));
+        }
+        return input -> {
+            for (Predicate<JsonNode> predicate : predicates) {
+                if (!predicate.test(input)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static Predicate<JsonNode> compileExpr(JsonNode expr, Set<String> vars)
+        throws OPAResidualNotSupportedException {
+        if (expr.hasNonNull(WITH_KEY) && !expr.get(WITH_KEY).isEmpty()) {
+            throw new OPAResidualNotSupportedException("with modifiers are not supported: " + expr);
+        }
+        JsonNode terms = expr.path(TERMS_KEY);
+        Predicate<JsonNode> predicate;
+        if (terms.isObject()) {
+            Operand operand = compileOperand(terms, vars);
+            predicate = input -> {
+                for (JsonNode value : operand.values(input)) {
+                    if (!value.isBoolean() || value.booleanValue()) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        } else if (terms.isArray() && terms.size() == BINARY_OPERATOR_TERMS) {
+            String operatorName = refName(terms.get(0));
+            BiPredicate<JsonNode, JsonNode> operator = OPERATORS.get(operatorName);
+            if (operator == null) {
+                throw new OPAResidualNotSupportedException("operator is not supported: " + operatorName);
+            }
+            Operand left = compileOperand(terms.get(1), vars);
+            Operand right = compileOperand(terms.get(2), vars);
+            predicate = input -> {
+                for (JsonNode leftValue : left.values(input)) {
+                    for (JsonNode rightValue : right.values(input)) {
+                        if (operator.test(leftValue, rightValue)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            };
+        } else {
+            throw new OPAResidualNotSupportedException("expression is not supported: " + expr);
+        }
+        return expr.path(NEGATED_KEY).asBoolean() ? predicate.negate() : predicate;
+    }
+
+    /**
+     * Returns the dotted name of an operator, e.g. {@code internal.member_2}.
+     */
+    private static String refName(JsonNode term) throws OPAResidualNotSupportedException {
+        if (!"ref".equals(term.path(TYPE_KEY).asText())) {
+            throw new OPAResidualNotSupportedException("operator is not supported: " + term);
+        }
+        StringBuilder name = new StringBuilder();
+        for (JsonNode segment : term.path(VALUE_KEY)) {
+            if (!name.isEmpty()) {
+                name.append('.');
+            }
+            name.append(segment.path(VALUE_KEY).asText());
+        }
+        return name.toString();
+    }
+
+    private static Operand compileOperand(JsonNode term, Set<String> vars) throws OPAResidualNotSupportedException {
+        if ("ref".equals(term.path(TYPE_KEY).asText())) {
+            return compileRef(term.path(VALUE_KEY), vars);
+        }
+        List<JsonNode> constant = List.of(constant(term));
+        return input -> constant;
+    }
+
+    private static Operand compileRef(JsonNode ref, Set<String> vars) throws OPAResidualNotSupportedException {
+        JsonNode head = ref.path(0);
+        if (!"var".equals(head.path(TYPE_KEY).asText()) || !INPUT.equals(head.path(VALUE_KEY).asText())) {
+            throw new OPAResidualNotSupportedException("only references into input are supported: " + ref);
+        }
+        List<JsonNode> segments = new ArrayList<>();
+        for (int i = 1; i < ref.size(); i++) {
+            JsonNode segment = ref.get(i);
+            if ("var".equals(segment.path(TYPE_KEY).asText())) {
+                if (!vars.add(segment.path(VALUE_KEY).asText())) {
+                    throw new OPAResidualNotSupportedException("variables used more than once are not supported: "
+                        + segment.path(VALUE_KEY).asText());
+                }
+                segments.add(null);
+            } else {
+                segments.add(constant(segment));
+            }
+        }
+        return input -> {
+            List<JsonNode> values = List.of(input);
+            for (JsonNode segment : segments) {
+                List<JsonNode> next = new ArrayList<>();
+                for (JsonNode value : values) {
+                    if (segment == null) {
+                        value.elements().forEachRemaining(next::add);
+                    } else {
+                        JsonNode child = segment.isIntegralNumber() ? value.get(segment.intValue())
+                            : segment.isTextual() ? value.get(segment.textValue()) : null;
+                        if (child != null) {
+                            next.add(child);
+                        }
+                    }
+                }
+                values = next;
+            }
+            return values;
+        };
+    }
+
+    /**
+     * Converts a term which does not depend on the input into its JSON value. Sets are converted to arrays.
+     */
+    private static JsonNode constant(JsonNode term) throws OPAResidualNotSupportedException {
+        String type = term.path(TYPE_KEY).asText();
+        JsonNode value = term.path(VALUE_KEY);
+        return switch (type) {
+            case "null" -> JsonNodeFactory.instance.nullNode();
+            case "boolean", "number", "string" -> value;
+            case "array", "set" -> {
+                ArrayNode array = JsonNodeFactory.instance.arrayNode();
+                for (JsonNode element : value) {
+                    array.add(constant(element));
+                }
+                yield array;
+            }
+            case "object" -> {
+                ObjectNode object = JsonNodeFactory.instance.objectNode();
+                for (JsonNode item : value) {
+                    JsonNode key = constant(item.path(0));
+                    if (!key.isTextual()) {
+                        throw new OPAResidualNotSupportedException("object keys must be strings: " + term);
+                    }
+                    object.set(key.textValue(), constant(item.path(1)));
+                }
+                yield object;
+            }
+            default -> throw new OPAResidualNotSupportedException(format("term of type '%s' is not supported: %s",
+                type, term));
+        };
+    }
+
+    private static boolean equal(JsonNode left, JsonNode right) {
+        return left.equals(NUMERIC_EQUALITY, right);
+    }
+
+    private static boolean member(JsonNode element, JsonNode collection) {
+        Iterator<JsonNode> elements = collection.elements();
+        while (elements.hasNext()) {
+            if (equal(element, elements.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders values like OPA does: null &lt; booleans &lt; numbers &lt; strings &lt; arrays &lt; objects. Arrays are
+     * ordered element-wise, objects of the same size are not ordered.
+     */
+    private static int compare(JsonNode left, JsonNode right) {
+        int rank = Integer.compare(rank(left), rank(right));
+        if (rank != 0) {
+            return rank;
+        }
+        if (left.isBoolean()) {
+            return Boolean.compare(left.booleanValue(), right.booleanValue());
+        }
+        if (left.isNumber()) {
+            return left.decimalValue().compareTo(right.decimalValue());
+        }
+        if (left.isTextual()) {
+            return left.textValue().compareTo(right.textValue());
+        }
+        if (left.isArray()) {
+            for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+                int element = compare(left.get(i), right.get(i));
+                if (element != 0) {
+                    return element;
+                }
+            }
+        }
+        return Integer.compare(left.size(), right.size());
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static int rank(JsonNode value) {
+        if (value.isBoolean()) {
+            return 1;
+        } else if (value.isNumber()) {
+            return 2;
+        } else if (value.isTextual()) {
+            return 3;
+        } else if (value.isArray()) {
+            return 4;
+        } else if (value.isObject()) {
+            return 5;
+        }
+        return 0;
+    }
+
+    /**
+     * Resolves a term to its values: a constant has one value, a reference has none if it is undefined, and one value
+     * per element of the collections it iterates over.
+     */
+    @FunctionalInterface
+    private interface Operand {
+        List<JsonNode> values(JsonNode input);
+    }
+}
@@ -0,0 +1,14 @@
+package com.styra.opa.springboot.partial;
+
+import com.styra.opa.OPAException;
+
+/**
+ * Thrown if residual queries returned by OPA's Compile API could not be translated into a local predicate, in which
+ * case the affected resource is evaluated by OPA.
+ */
+public class OPAResidualNotSupportedException extends OPAException {
+
+    public OPAResidualNotSupportedException(String message) {
+        super(message);
+    }
+}
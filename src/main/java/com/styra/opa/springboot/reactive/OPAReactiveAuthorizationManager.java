@@ -0,0 +1,351 @@
+package com.styra.opa.springboot.reactive;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.authorization.OPAAccessDeniedException;
+import com.styra.opa.springboot.authorization.OPAAuthorizationDecision;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPAKeyedInput;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.decisionlog.OPADecisionLogWriter;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.styra.opa.springboot.evaluator.OPAEvaluatorDecorator;
+import com.styra.opa.springboot.input.OPAInput;
+import com.styra.opa.springboot.input.OPAInputValidator;
+import com.styra.opa.springboot.metrics.OPAMetricsRecorder;
+import com.styra.opa.springboot.route.OPARouteTable;
+import com.styra.opa.springboot.timeout.OPATimeouts;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class implements {@link ReactiveAuthorizationManager} for Spring WebFlux applications. It builds the same
+ * <a href="https://docs.styra.com/sdk/springboot/reference/input-output-schema#input">input</a> as
+ * {@link com.styra.opa.springboot.OPAAuthorizationManager} based on {@link Authentication} and
+ * {@link ServerWebExchange}, and evaluates it using the non-blocking {@link OPAAsyncClient}, so event-loop threads are
+ * never parked while waiting for OPA.
+ * <br/><br/>
+ * Like {@link com.styra.opa.springboot.OPAAuthorizationManager}, it applies the {@link OPARouteTable} (so routes
+ * could select the policy path, skip, permit or deny requests, disable caching or limit how long to wait for OPA), the
+ * {@link OPATimeouts} and the {@link OPAInputValidator}. Since reactive authorization managers could not abstain,
+ * requests whose authorization is skipped are granted. The input customizers and the
+ * {@link com.styra.opa.springboot.OPAPathSelector} are bound to servlet requests, so they do not apply.
+ * <br/><br/>
+ * Since {@link org.springframework.http.server.reactive.ServerHttpRequest} does not expose the protocol,
+ * {@code input.action.protocol} is omitted.
+ */
+public class OPAReactiveAuthorizationManager implements ReactiveAuthorizationManager<AuthorizationContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAReactiveAuthorizationManager.class);
+
+    private final OPAAsyncClient opaAsyncClient;
+    private final String opaPath;
+    private final OPAProperties opaProperties;
+    @Getter
+    private final String reasonKey;
+    private OPADecisionCache opaDecisionCache;
+    private OPAEvaluator opaTransport;
+    private List<? extends OPAEvaluatorDecorator> opaEvaluatorDecorators = List.of();
+    private OPAEvaluator opaEvaluator;
+    private OPAMetricsRecorder opaMetricsRecorder;
+    private OPADecisionLogWriter opaDecisionLogWriter;
+    private OPARouteTable opaRouteTable;
+    private OPAInputValidator opaInputValidator;
+    private OPATimeouts opaTimeouts;
+
+    /**
+     * @see OPAReactiveAuthorizationManager#OPAReactiveAuthorizationManager(OPAAsyncClient, String, OPAProperties)
+     */
+    public OPAReactiveAuthorizationManager(OPAAsyncClient opaAsyncClient, String opaPath) {
+        this(opaAsyncClient, opaPath, new OPAProperties());
+    }
+
+    /**
+     * Instantiates an instance to authorize reactive requests.
+     *
+     * @param opaAsyncClient used to evaluate policies.
+     * @param opaPath if null, the default path defined by the OPA configuration will be used.
+     * @param opaProperties provides the input types and the reason key.
+     */
+    public OPAReactiveAuthorizationManager(OPAAsyncClient opaAsyncClient, String opaPath,
+                                           OPAProperties opaProperties) {
+        this.opaAsyncClient = opaAsyncClient;
+        this.opaPath = opaPath;
+        this.opaProperties = opaProperties;
+        this.reasonKey = opaProperties.getResponse().getContext().getReasonKey();
+        this.opaTransport = opaAsyncClient::evaluate;
+        this.opaEvaluator = opaTransport;
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> check(Mono<Authentication> authentication, AuthorizationContext object) {
+        OPAProperties.Route route = route(object.getExchange());
+        if (route != null && route.getAction() == OPAProperties.Route.Action.SKIP) {
+            LOGGER.trace("skipping authorization of route: {}", route.getPattern());
+            return Mono.just(new AuthorizationDecision(true));
+        }
+        return opaRequest(authentication, object, route)
+            .map(opaResponse -> (AuthorizationDecision) new OPAAuthorizationDecision(opaResponse.getDecision(),
+                opaResponse))
+            .switchIfEmpty(Mono.fromSupplier(() -> {
+                LOGGER.trace("OPA provided a null response, default-denying access");
+                return new OPAAuthorizationDecision(false, null);
+            }));
+    }
+
+    @Override
+    public Mono<Void> verify(Mono<Authentication> authentication, AuthorizationContext object) {
+        OPAProperties.Route route = route(object.getExchange());
+        if (route != null && route.getAction() == OPAProperties.Route.Action.SKIP) {
+            LOGGER.trace("skipping authorization of route: {}", route.getPattern());
+            return Mono.empty();
+        }
+        return opaRequest(authentication, object, route)
+            .switchIfEmpty(Mono.error(() -> new OPAAccessDeniedException("null response from policy")))
+            .flatMap(opaResponse -> {
+                if (opaResponse.getDecision()) {
+                    LOGGER.trace("access verified successfully");
+                    return Mono.empty();
+                }
+                String reason = opaResponse.getReasonForDecision(reasonKey);
+                return Mono.error(new OPAAccessDeniedException(reason != null ? reason : "access denied by policy",
+                    opaResponse));
+            })
+            .then();
+    }
+
+    /**
+     * Calls OPA without generating an {@link AuthorizationDecision}. The returned {@link Mono} is empty if OPA could
+     * not be reached, responded with an error, or did not respond within the timeout of the request (unless the
+     * {@link OPATimeouts} provide a timeout decision), and if the request matches a route whose authorization is
+     * skipped.
+     */
+    public Mono<OPAResponse> opaRequest(Mono<Authentication> authentication, AuthorizationContext object) {
+        return opaRequest(authentication, object, route(object.getExchange()));
+    }
+
+    private Mono<OPAResponse> opaRequest(Mono<Authentication> authentication, AuthorizationContext object,
+                                         OPAProperties.Route route) {
+        if (route != null && route.getAction() != OPAProperties.Route.Action.EVALUATE) {
+            LOGGER.trace("{} route without asking OPA: {}", route.getAction(), route.getPattern());
+            return Mono.justOrEmpty(OPARouteTable.response(route));
+        }
+        String selectedOPAPath = route != null && route.getPath() != null ? route.getPath() : opaPath;
+        return authentication
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(optionalAuthentication -> {
+                long startNanos = System.nanoTime();
+                Map<String, Object> input = makeRequestInput(optionalAuthentication.orElse(null),
+                    object.getExchange());
+                LOGGER.trace("OPA input (request body) is: {}", input);
+                return evaluate(selectedOPAPath, OPAKeyedInput.of(input), route, object.getExchange().getRequest(),
+                    startNanos);
+            })
+            .onErrorResume(throwable -> throwable instanceof OPAException || throwable instanceof TimeoutException,
+                e -> {
+                    LOGGER.error("caught exception from OPA client:", e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<OPAResponse> evaluate(String path, Map<String, Object> input, OPAProperties.Route route,
+                                       ServerHttpRequest request, long startNanos) {
+        boolean cacheEnabled = opaDecisionCache != null && (route == null || route.getCache().isEnabled());
+        OPADecisionKey cacheKey = cacheEnabled ? opaDecisionCache.key(path, input) : null;
+        OPAResponse cachedResponse = cacheKey != null
+            ? opaDecisionCache.get(cacheKey, () -> opaEvaluator.evaluate(path, input)) : null;
+        if (cachedResponse != null) {
+            LOGGER.trace("OPA response (cached) is: {}", cachedResponse);
+            recordDecision(path, input, cachedResponse, null, true, startNanos);
+            return Mono.just(cachedResponse);
+        }
+        Duration timeout = opaTimeouts != null ? opaTimeouts.reactiveTimeout(path, route, request.getHeaders())
+            : route != null ? route.getTimeout() : null;
+        Mono<OPAResponse> response;
+        if (timeout != null && !timeout.isPositive()) {
+            response = Mono.error(new TimeoutException("request deadline has passed"));
+        } else {
+            // cancelling the Mono (e.g. once it timed out) cancels the evaluation
+            response = Mono.fromFuture(() -> opaEvaluator.evaluate(path, input));
+            if (timeout != null) {
+                response = response.timeout(timeout);
+            }
+        }
+        return response
+            .map(opaResponse -> {
+                LOGGER.trace("OPA response is: {}", opaResponse);
+                // fallback decisions were not made by OPA (e.g. the circuit breaker is open), so serve them like errors
+                boolean fallback = opaResponse instanceof OPAFallbackResponse;
+                OPAResponse staleResponse = fallback && cacheKey != null ? opaDecisionCache.getIfError(cacheKey) : null;
+                if (staleResponse != null) {
+                    LOGGER.debug("OPA did not make the decision of path {}, serving stale decision", path);
+                    recordDecision(path, input, staleResponse, null, true, startNanos);
+                    return staleResponse;
+                }
+                recordDecision(path, input, opaResponse, null, false, startNanos);
+                if (opaTimeouts != null) {
+                    opaTimeouts.recordResponse(path, input, opaResponse);
+                }
+                if (cacheKey != null && !fallback) {
+                    opaDecisionCache.put(cacheKey, opaResponse, route != null ? route.getCache().getTtl() : null);
+                }
+                return opaResponse;
+            })
+            .onErrorResume(throwable -> {
+                boolean timedOut = throwable instanceof TimeoutException;
+                boolean failed = throwable instanceof OPAException || timedOut;
+                OPAResponse staleResponse = failed && cacheKey != null ? opaDecisionCache.getIfError(cacheKey) : null;
+                if (timedOut && staleResponse == null && opaTimeouts != null) {
+                    LOGGER.error("OPA did not respond within {} for path: {}", timeout, path);
+                    // the decision which is actually returned is recorded, i.e. the timeout response
+                    OPAResponse timeoutResponse = opaTimeouts.timeoutResponse(path, input, timeout);
+                    recordDecision(path, input, timeoutResponse, throwable, false, startNanos);
+                    return Mono.justOrEmpty(timeoutResponse);
+                }
+                recordDecision(path, input, staleResponse, throwable, staleResponse != null, startNanos);
+                if (staleResponse == null) {
+                    return Mono.error(throwable);
+                }
+                LOGGER.error("caught exception from OPA client, serving stale decision:", throwable);
+                return Mono.just(staleResponse);
+            });
+    }
+
+    private OPAProperties.Route route(ServerWebExchange exchange) {
+        if (opaRouteTable == null) {
+            return null;
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        return opaRouteTable.match(request.getMethod().name(), request.getPath().pathWithinApplication().value());
+    }
+
+    private void recordDecision(String path, Map<String, Object> input, OPAResponse opaResponse, Throwable error,
+                                boolean cached, long startNanos) {
+        if (opaMetricsRecorder == null && opaDecisionLogWriter == null) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        if (opaMetricsRecorder != null) {
+            opaMetricsRecorder.recordDecision(path, input, opaResponse, error, cached, durationNanos);
+        }
+        if (opaDecisionLogWriter != null) {
+            opaDecisionLogWriter.log(path, input, opaResponse, error, cached, durationNanos);
+        }
+    }
+
+    private Map<String, Object> makeRequestInput(Authentication authentication, ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+
+        Map<String, Object> subject = authentication != null
+            ? new OPAInput.Subject(opaProperties.getRequest().getSubject().getType(), authentication.getPrincipal(),
+                authentication.getDetails(), authentication.getAuthorities())
+            : new OPAInput.Subject(opaProperties.getRequest().getSubject().getType(), null, null, null);
+
+        Map<String, Object> resource = new OPAInput.Resource(opaProperties.getRequest().getResource().getType(),
+            request.getPath().pathWithinApplication().value());
+
+        OPAInput.Headers.Builder headers = OPAInput.Headers.builder();
+        request.getHeaders().forEach((name, values) -> headers.header(name, values.isEmpty() ? null : values.get(0)));
+        Map<String, Object> action = new OPAInput.Action(request.getMethod().name(), null, headers.build());
+
+        String contextType = opaProperties.getRequest().getContext().getType();
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        Map<String, Object> context;
+        if (remoteAddress != null) {
+            String ip = remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : null;
+            context = new OPAInput.Context(contextType, remoteAddress.getHostString(), ip, remoteAddress.getPort());
+        } else {
+            context = new OPAInput.Context(contextType, null, null, null);
+        }
+
+        Map<String, Object> input = new OPAInput(subject, resource, action, context);
+
+        if (opaInputValidator != null) {
+            // the validator only looks at the input, so it does not need the servlet request
+            opaInputValidator.validate(authentication, null, input);
+        }
+
+        return input;
+    }
+
+    /**
+     * Enables caching of OPA decisions. Passing null disables caching.
+     */
+    public void setOpaDecisionCache(OPADecisionCache opaDecisionCache) {
+        this.opaDecisionCache = opaDecisionCache;
+    }
+
+    /**
+     * Records every decision made by this instance using {@code opaMetricsRecorder}. Passing null disables recording.
+     */
+    public void setOpaMetricsRecorder(OPAMetricsRecorder opaMetricsRecorder) {
+        this.opaMetricsRecorder = opaMetricsRecorder;
+    }
+
+    /**
+     * Writes every decision made by this instance using {@code opaDecisionLogWriter}. Passing null disables writing.
+     */
+    public void setOpaDecisionLogWriter(OPADecisionLogWriter opaDecisionLogWriter) {
+        this.opaDecisionLogWriter = opaDecisionLogWriter;
+    }
+
+    /**
+     * Applies {@code opa.routes} to the requests authorized by this instance. Passing null disables routes.
+     */
+    public void setOpaRouteTable(OPARouteTable opaRouteTable) {
+        this.opaRouteTable = opaRouteTable;
+    }
+
+    /**
+     * Validates every input built by this instance using {@code opaInputValidator}. Passing null disables validation.
+     */
+    public void setOpaInputValidator(OPAInputValidator opaInputValidator) {
+        this.opaInputValidator = opaInputValidator;
+    }
+
+    /**
+     * Limits how long this instance waits for OPA using {@code opaTimeouts}. Passing null only applies the timeouts of
+     * routes.
+     */
+    public void setOpaTimeouts(OPATimeouts opaTimeouts) {
+        this.opaTimeouts = opaTimeouts;
+    }
+
+    /**
+     * Applies {@code opaEvaluatorDecorators} around every evaluation done by this instance's {@link OPAAsyncClient}.
+     * Decorators must not block, since evaluations could be started on event-loop threads.
+     */
+    public void setOpaEvaluatorDecorators(List<? extends OPAEvaluatorDecorator> opaEvaluatorDecorators) {
+        this.opaEvaluatorDecorators = opaEvaluatorDecorators != null ? opaEvaluatorDecorators : List.of();
+        this.opaEvaluator = OPAEvaluatorDecorator.decorateAll(opaTransport, this.opaEvaluatorDecorators);
+    }
+
+    /**
+     * Evaluates policies using {@code opaTransport} (e.g. the
+     * {@link com.styra.opa.springboot.loadbalancing.OPALoadBalancer}) instead of this instance's
+     * {@link OPAAsyncClient}. The transport must not block. Passing null restores the {@link OPAAsyncClient}.
+     */
+    public void setOpaTransport(OPAEvaluator opaTransport) {
+        this.opaTransport = opaTransport != null ? opaTransport : opaAsyncClient::evaluate;
+        this.opaEvaluator = OPAEvaluatorDecorator.decorateAll(this.opaTransport, opaEvaluatorDecorators);
+    }
+}
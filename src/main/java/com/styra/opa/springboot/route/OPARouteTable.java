@@ -0,0 +1,151 @@
+package com.styra.opa.springboot.route;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the {@link OPAProperties.Route} of a request. Routes are compiled once into a trie, which is keyed on the
+ * literal leading segments of their patterns (e.g. {@code api} and {@code orders} for {@code /api/orders/{id}}), so
+ * that a lookup walks the request path once and only tries the patterns of the nodes it visits, instead of every
+ * route. Of the matching routes, the first declared one applies.
+ */
+public class OPARouteTable {
+
+    private static final char SEPARATOR = '/';
+
+    private final Node root = new Node();
+    private final PathPatternParser parser = new PathPatternParser();
+    private final boolean empty;
+
+    /**
+     * Compiles {@code routes}.
+     *
+     * @throws org.springframework.web.util.pattern.PatternParseException if a pattern is invalid.
+     */
+    public OPARouteTable(List<OPAProperties.Route> routes) {
+        for (int i = 0; i < routes.size(); i++) {
+            OPAProperties.Route route = routes.get(i);
+            if (route.getPattern() == null) {
+                throw new IllegalArgumentException("opa.routes[" + i + "].pattern must be set");
+            }
+            Node node = root;
+            for (String segment : literalSegments(route.getPattern())) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.entries.add(new Entry(i, parser.parse(route.getPattern()), methods(route.getMethods()), route));
+        }
+        this.empty = routes.isEmpty();
+    }
+
+    /**
+     * Returns the first declared route which matches {@code method} and {@code path}, or null if none does.
+     *
+     * @param path request path within the application, e.g. the servlet path.
+     */
+    public OPAProperties.Route match(String method, String path) {
+        if (empty || path == null) {
+            return null;
+        }
+        String upperCaseMethod = method != null ? method.toUpperCase(Locale.ROOT) : null;
+        PathContainer pathContainer = PathContainer.parsePath(path);
+        Entry match = match(root, upperCaseMethod, pathContainer, null);
+        Node node = root;
+        for (PathContainer.Element element : pathContainer.elements()) {
+            if (!(element instanceof PathContainer.PathSegment segment)) {
+                continue;
+            }
+            node = node.children.get(segment.valueToMatch());
+            if (node == null) {
+                break;
+            }
+            match = match(node, upperCaseMethod, pathContainer, match);
+        }
+        return match != null ? match.route() : null;
+    }
+
+    /**
+     * Returns the response of a route which is not evaluated by OPA ({@link OPAProperties.Route.Action#PERMIT} or
+     * {@link OPAProperties.Route.Action#DENY}), or null if its authorization is skipped.
+     */
+    public static OPAResponse response(OPAProperties.Route route) {
+        if (route.getAction() == OPAProperties.Route.Action.SKIP) {
+            return null;
+        }
+        boolean decision = route.getAction() == OPAProperties.Route.Action.PERMIT;
+        OPAResponseContext context = new OPAResponseContext();
+        context.setReasonUser(Map.of(OPAProperties.Response.Context.DEFAULT_REASON_KEY,
+            (decision ? "access permitted by route " : "access denied by route ") + route.getPattern()));
+        return new OPAFallbackResponse(decision, context);
+    }
+
+    /**
+     * Returns the first entry of {@code node} which matches and was declared before {@code match}, or {@code match}.
+     */
+    private static Entry match(Node node, String upperCaseMethod, PathContainer pathContainer, Entry match) {
+        for (Entry entry : node.entries) {
+            if (match != null && entry.index() > match.index()) {
+                break;
+            }
+            if (entry.matches(upperCaseMethod, pathContainer)) {
+                return entry;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Returns the segments of {@code pattern} before the first one containing a wildcard or a variable.
+     */
+    private static List<String> literalSegments(String pattern) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < pattern.length()) {
+            int end = pattern.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            String segment = pattern.substring(start, end);
+            if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0) {
+                break;
+            }
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static Set<String> methods(List<String> methods) {
+        return methods == null ? Set.of() : methods.stream()
+            .map(method -> method.trim().toUpperCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        // in declaration order
+        private final List<Entry> entries = new ArrayList<>();
+    }
+
+    private record Entry(int index, PathPattern pattern, Set<String> methods, OPAProperties.Route route) {
+
+        private boolean matches(String upperCaseMethod, PathContainer pathContainer) {
+            return (methods.isEmpty() || upperCaseMethod != null && methods.contains(upperCaseMethod))
+                && pattern.matches(pathContainer);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.styra.opa.springboot.timeout;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.Timeout.Decision;
+import com.styra.opa.springboot.cache.OPADecisionKey;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import static java.lang.String.format;
+
+/**
+ * Decides how long {@link com.styra.opa.springboot.OPAAuthorizationManager} (and
+ * {@link com.styra.opa.springboot.reactive.OPAReactiveAuthorizationManager}) waits for OPA, and what it decides if OPA
+ * did not respond in time. The timeout of an evaluation is the first one which is set of:
+ * <ol>
+ *     <li>the {@link OPAProperties.Route#getTimeout()} of the request's route</li>
+ *     <li>the {@link OPAProperties.Timeout#getPathTimeouts()} entry of the selected policy path</li>
+ *     <li>{@link OPAProperties.Timeout#getDefaultTimeout()}</li>
+ * </ol>
+ * capped by the time left until the deadline carried in {@link OPAProperties.Timeout#getDeadlineHeader()}. If it
+ * expires, an {@link OPATimeoutResponse} is returned, whose decision (allow, deny, or the last known decision of the
+ * shared {@link OPALastKnownDecisions}) is configured per path.
+ * <br/><br/>
+ * Evaluations of the blocking {@link com.styra.opa.OPAClient} are run on the
+ * {@link com.styra.opa.springboot.evaluator.OPAEvaluationExecutor} while a timeout applies, so that a stuck call only
+ * holds one of its bounded threads, instead of the request thread.
+ */
+public class OPATimeouts {
+
+    /**
+     * Format of the reason (in {@code context.reason_user.en}) of timeout decisions, whose argument is the timeout.
+     */
+    public static final String TIMEOUT_REASON_FORMAT = "OPA did not respond within %s";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPATimeouts.class);
+
+    private final OPAProperties.Timeout properties;
+    private final OPALastKnownDecisions lastKnownDecisions;
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder expiredDeadlines = new LongAdder();
+
+    /**
+     * @param lastKnownDecisions last known decisions, or null if {@link Decision#CACHED} should fall back to deny (e.g.
+     *                           without Caffeine on the classpath).
+     */
+    public OPATimeouts(OPAProperties.Timeout properties, OPALastKnownDecisions lastKnownDecisions) {
+        this.properties = properties;
+        this.lastKnownDecisions = lastKnownDecisions;
+    }
+
+    /**
+     * Returns how long to wait for the decision of {@code path}, which is zero or negative if the request's deadline
+     * already passed, or null if there is no limit.
+     *
+     * @param route the request's route, could be null.
+     * @param request the request being authorized, could be null (e.g. outside of a request).
+     */
+    public Duration timeout(String path, OPAProperties.Route route, HttpServletRequest request) {
+        return timeout(path, route, request != null ? request::getHeader : null);
+    }
+
+    /**
+     * Like {@link #timeout(String, OPAProperties.Route, HttpServletRequest)}, for reactive requests.
+     *
+     * @param route the request's route, could be null.
+     * @param headers the headers of the request being authorized, could be null (e.g. outside of a request).
+     */
+    public Duration reactiveTimeout(String path, OPAProperties.Route route, HttpHeaders headers) {
+        return timeout(path, route, headers != null ? headers::getFirst : null);
+    }
+
+    private Duration timeout(String path, OPAProperties.Route route, UnaryOperator<String> headers) {
+        Duration timeout = route != null ? route.getTimeout() : null;
+        if (timeout == null && path != null) {
+            timeout = properties.getPathTimeouts().get(path);
+        }
+        if (timeout == null) {
+            timeout = properties.getDefaultTimeout();
+        }
+        Duration remaining = remaining(headers);
+        if (remaining != null && (timeout == null || remaining.compareTo(timeout) < 0)) {
+            if (remaining.isZero() || remaining.isNegative()) {
+                expiredDeadlines.increment();
+            }
+            return remaining;
+        }
+        return timeout;
+    }
+
+    /**
+     * Returns the response to an evaluation of {@code path} which did not complete within {@code timeout}.
+     */
+    public OPAResponse timeoutResponse(String path, Map<String, Object> input, Duration timeout) {
+        timeouts.increment();
+        Decision decision = decision(path);
+        String reason = format(TIMEOUT_REASON_FORMAT, timeout);
+        if (decision != Decision.CACHED || lastKnownDecisions == null) {
+            return OPAFallbackResponse.withReason(decision == Decision.ALLOW, reason, OPATimeoutResponse::new);
+        }
+        OPADecisionKey key = lastKnownDecisions.key(path, input);
+        return lastKnownDecisions.fallbackResponse(key, false, reason, OPATimeoutResponse::new);
+    }
+
+    /**
+     * Remembers {@code opaResponse} as the last known decision of {@code path} and {@code input}, if {@code path}
+     * falls back to cached decisions.
+     */
+    public void recordResponse(String path, Map<String, Object> input, OPAResponse opaResponse) {
+        if (decision(path) == Decision.CACHED && lastKnownDecisions != null) {
+            lastKnownDecisions.put(lastKnownDecisions.key(path, input), opaResponse);
+        }
+    }
+
+    /**
+     * Returns the number of evaluations which were answered with a timeout decision.
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Returns the number of requests whose deadline had already passed before OPA was asked.
+     */
+    public long getExpiredDeadlineCount() {
+        return expiredDeadlines.sum();
+    }
+
+    private Decision decision(String path) {
+        Decision decision = path != null ? properties.getPathDecisions().get(path) : null;
+        return decision != null ? decision : properties.getDecision();
+    }
+
+    /**
+     * Returns the time left until the deadline carried in the request's {@code headers}, or null if it carries none.
+     */
+    private Duration remaining(UnaryOperator<String> headers) {
+        if (properties.getDeadlineHeader() == null || headers == null) {
+            return null;
+        }
+        String value = headers.apply(properties.getDeadlineHeader());
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return DurationStyle.detectAndParse(value.trim(), ChronoUnit.MILLIS);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("ignoring invalid {} header: {}", properties.getDeadlineHeader(), value);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.styra.opa.springboot.wasm;
+
+import com.styra.opa.wasm.OpaPolicy;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * {@link OPAWasmPolicy} backed by the <a href="https://github.com/StyraInc/opa-java-wasm">OPA Java Wasm SDK</a>,
+ * which runs the policy on <a href="https://github.com/dylibso/chicory">Chicory</a>, a pure-Java Wasm runtime.
+ */
+final class ChicoryOPAWasmPolicy implements OPAWasmPolicy {
+
+    private final OpaPolicy policy;
+
+    ChicoryOPAWasmPolicy(OPAWasmBundle bundle) {
+        this.policy = OpaPolicy.builder()
+            .withPolicy(new ByteArrayInputStream(bundle.getWasm()))
+            .build();
+        if (bundle.getData() != null) {
+            policy.data(bundle.getData());
+        }
+    }
+
+    @Override
+    public String evaluate(String entrypoint, String input) {
+        return policy.entrypoint(entrypoint).evaluate(input);
+    }
+}
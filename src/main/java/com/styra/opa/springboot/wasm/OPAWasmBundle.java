@@ -0,0 +1,134 @@
+package com.styra.opa.springboot.wasm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A policy compiled to WebAssembly, and its (optional) base documents. It is read either from a bundle built with
+ * {@code opa build -t wasm} (a gzipped tarball containing {@code /policy.wasm} and {@code /data.json}), or from a plain
+ * {@code .wasm} module.
+ */
+public final class OPAWasmBundle {
+
+    private static final String WASM_EXTENSION = ".wasm";
+    private static final String POLICY_ENTRY = "policy.wasm";
+    private static final String DATA_ENTRY = "data.json";
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_OFFSET = 0;
+    private static final int NAME_LENGTH = 100;
+    private static final int SIZE_OFFSET = 124;
+    private static final int SIZE_LENGTH = 12;
+    private static final int TYPE_OFFSET = 156;
+    private static final int PREFIX_OFFSET = 345;
+    private static final int PREFIX_LENGTH = 155;
+    private static final int OCTAL = 8;
+
+    private final byte[] wasm;
+    private final String data;
+
+    public OPAWasmBundle(byte[] wasm, String data) {
+        this.wasm = wasm;
+        this.data = data;
+    }
+
+    /**
+     * Reads a bundle (or a plain {@code .wasm} module, based on the file name) from {@code path}.
+     *
+     * @throws IOException if the file could not be read, or the bundle does not contain {@code /policy.wasm}.
+     */
+    public static OPAWasmBundle read(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(WASM_EXTENSION)) {
+            return new OPAWasmBundle(Files.readAllBytes(path), null);
+        }
+        try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path))) {
+            return readTar(inputStream, path);
+        }
+    }
+
+    /**
+     * The compiled policy module.
+     */
+    public byte[] getWasm() {
+        return wasm;
+    }
+
+    /**
+     * The base documents (JSON), or null if the bundle has none.
+     */
+    public String getData() {
+        return data;
+    }
+
+    private static OPAWasmBundle readTar(InputStream inputStream, Path path) throws IOException {
+        DataInputStream tar = new DataInputStream(inputStream);
+        byte[] header = new byte[BLOCK_SIZE];
+        byte[] wasm = null;
+        String data = null;
+        while (true) {
+            try {
+                tar.readFully(header);
+            } catch (EOFException e) {
+                break;
+            }
+            String name = field(header, PREFIX_OFFSET, PREFIX_LENGTH) + field(header, NAME_OFFSET, NAME_LENGTH);
+            if (name.isEmpty()) {
+                break;
+            }
+            long size = Long.parseLong(field(header, SIZE_OFFSET, SIZE_LENGTH).trim(), OCTAL);
+            byte[] content = readEntry(tar, size);
+            if (!isRegularFile(header[TYPE_OFFSET])) {
+                continue;
+            }
+            String entry = normalize(name);
+            if (POLICY_ENTRY.equals(entry)) {
+                wasm = content;
+            } else if (DATA_ENTRY.equals(entry)) {
+                data = new String(content, StandardCharsets.UTF_8);
+            }
+        }
+        if (wasm == null) {
+            throw new IOException("bundle " + path + " does not contain /" + POLICY_ENTRY
+                + ", it must be built with 'opa build -t wasm'");
+        }
+        return new OPAWasmBundle(wasm, data);
+    }
+
+    private static byte[] readEntry(DataInputStream tar, long size) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream((int) size);
+        byte[] block = new byte[BLOCK_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            tar.readFully(block);
+            content.write(block, 0, (int) Math.min(BLOCK_SIZE, remaining));
+            remaining -= BLOCK_SIZE;
+        }
+        return content.toByteArray();
+    }
+
+    private static boolean isRegularFile(byte type) {
+        return type == '0' || type == 0;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String normalize(String name) {
+        String normalized = name;
+        while (normalized.startsWith("/") || normalized.startsWith("./")) {
+            normalized = normalized.substring(normalized.indexOf('/') + 1);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,204 @@
+package com.styra.opa.springboot.wasm;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Evaluates policies in-process, from a bundle compiled to WebAssembly with {@code opa build -t wasm}, instead of
+ * calling an OPA server. Policy paths are used as Wasm entrypoints, so every path which is evaluated must be given to
+ * {@code opa build} with {@code -e}. The default decision (null path) is not supported.
+ * <br/><br/>
+ * Wasm instances are not thread-safe, so this evaluator keeps a pool of
+ * {@link OPAProperties.Wasm#getPoolSize()} instances (by default, one per available processor), and evaluations wait
+ * for a free instance. Since evaluations are CPU-bound, they run on the calling thread.
+ * <br/><br/>
+ * If {@link OPAProperties.Wasm#getReloadInterval()} is positive, the bundle file is checked for changes periodically.
+ * A changed bundle is loaded into a new pool, which replaces the current one; evaluations which are in flight finish on
+ * the instances of the previous pool.
+ */
+public class OPAWasmEvaluator implements OPAEvaluator, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OPAWasmEvaluator.class);
+    private static final String RESULT_KEY = "result";
+
+    private final Path bundlePath;
+    private final int poolSize;
+    private final OPAWasmPolicy.Factory policyFactory;
+    private final ScheduledExecutorService reloader;
+    private final LongAdder reloads = new LongAdder();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private volatile Pool pool;
+    private volatile FileTime bundleLastModified;
+
+    /**
+     * Loads the bundle at {@link OPAProperties.Wasm#getBundle()}, and runs it using the OPA Java Wasm SDK.
+     *
+     * @throws IOException if the bundle could not be loaded.
+     */
+    public OPAWasmEvaluator(OPAProperties.Wasm properties) throws IOException {
+        this(properties, ChicoryOPAWasmPolicy::new);
+    }
+
+    OPAWasmEvaluator(OPAProperties.Wasm properties, OPAWasmPolicy.Factory policyFactory) throws IOException {
+        if (properties.getBundle() == null) {
+            throw new IllegalArgumentException("opa.wasm.bundle must be set");
+        }
+        this.bundlePath = Path.of(properties.getBundle());
+        this.poolSize = properties.getPoolSize() > 0
+            ? properties.getPoolSize() : Runtime.getRuntime().availableProcessors();
+        this.policyFactory = policyFactory;
+        this.bundleLastModified = Files.getLastModifiedTime(bundlePath);
+        this.pool = load();
+        long reloadMillis = properties.getReloadInterval() != null ? properties.getReloadInterval().toMillis() : 0;
+        if (reloadMillis > 0) {
+            this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "opa-wasm-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader.scheduleWithFixedDelay(this::reloadIfModified, reloadMillis, reloadMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.reloader = null;
+        }
+    }
+
+    /**
+     * Evaluates the policy on the calling thread, so the returned future is already completed. Runtime exceptions of
+     * the Wasm runtime (e.g. traps) are turned into an {@link OPAException}.
+     */
+    @Override
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    public CompletableFuture<OPAResponse> evaluate(String path, Map<String, Object> input) {
+        if (path == null) {
+            return CompletableFuture.failedFuture(new OPAException(
+                "the default decision is not supported by Wasm policies, set opa.path"));
+        }
+        try {
+            String result = pool.evaluate(trimSlashes(path), objectMapper.writeValueAsString(input));
+            JsonNode resultSet = objectMapper.readTree(result);
+            JsonNode decision = resultSet.path(0).get(RESULT_KEY);
+            if (decision == null) {
+                throw new OPAException(format("policy result is undefined for path '%s'", path));
+            }
+            return CompletableFuture.completedFuture(objectMapper.treeToValue(decision, OPAResponse.class));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to evaluate Wasm policy", e));
+        } catch (OPAException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(new OPAException("failed to evaluate Wasm policy", e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new OPAException("interrupted while waiting for a Wasm instance",
+                e));
+        }
+    }
+
+    /**
+     * Loads the bundle into a new pool, which replaces the current one.
+     *
+     * @throws IOException if the bundle could not be loaded, in which case the current pool is kept.
+     */
+    public void reload() throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(bundlePath);
+        pool = load();
+        bundleLastModified = lastModified;
+        reloads.increment();
+        LOGGER.info("reloaded Wasm bundle {}", bundlePath);
+    }
+
+    /**
+     * Returns the number of times the bundle was reloaded.
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    /**
+     * Stops checking the bundle for changes.
+     */
+    @Override
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * Runtime exceptions are caught as well, since they would cancel the periodic check.
+     */
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void reloadIfModified() {
+        try {
+            if (!Files.getLastModifiedTime(bundlePath).equals(bundleLastModified)) {
+                reload();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("failed to reload Wasm bundle {}, keeping the current one:", bundlePath, e);
+        }
+    }
+
+    private Pool load() throws IOException {
+        OPAWasmBundle bundle = OPAWasmBundle.read(bundlePath);
+        Pool newPool = new Pool(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            newPool.instances.add(policyFactory.create(bundle));
+        }
+        return newPool;
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    /**
+     * Instances of one version of the bundle. An instance is always returned to the pool it was taken from.
+     */
+    private static final class Pool {
+        private final BlockingQueue<OPAWasmPolicy> instances;
+
+        private Pool(int size) {
+            this.instances = new ArrayBlockingQueue<>(size);
+        }
+
+        private String evaluate(String entrypoint, String input) throws InterruptedException {
+            OPAWasmPolicy instance = instances.take();
+            try {
+                return instance.evaluate(entrypoint, input);
+            } finally {
+                instances.add(instance);
+            }
+        }
+    }
+}
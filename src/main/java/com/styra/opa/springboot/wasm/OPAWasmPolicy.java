@@ -0,0 +1,25 @@
+package com.styra.opa.springboot.wasm;
+
+/**
+ * An instance of a policy compiled to WebAssembly. Instances hold the Wasm memory of their evaluations, so they must
+ * not be used by more than one thread at a time.
+ */
+public interface OPAWasmPolicy {
+
+    /**
+     * Evaluates {@code entrypoint} with {@code input}.
+     *
+     * @param entrypoint entrypoint given to {@code opa build -e}, e.g. {@code policy/allow}.
+     * @param input the input as JSON.
+     * @return the result set as JSON, e.g. <code>[{"result": ...}]</code>, which is empty if the result is undefined.
+     */
+    String evaluate(String entrypoint, String input);
+
+    /**
+     * Creates {@link OPAWasmPolicy} instances from an {@link OPAWasmBundle}.
+     */
+    @FunctionalInterface
+    interface Factory {
+        OPAWasmPolicy create(OPAWasmBundle bundle);
+    }
+}
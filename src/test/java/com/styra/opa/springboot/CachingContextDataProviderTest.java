@@ -0,0 +1,147 @@
+package com.styra.opa.springboot;
+
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uses a manual ticker, and runs refreshes when {@link #runRefreshes()} is called.
+ */
+public class CachingContextDataProviderTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> pendingRefreshes = new ArrayList<>();
+    private final Function<Object, Object> loader = key -> key + "-" + loads.incrementAndGet();
+    private final BiFunction<Authentication, RequestAuthorizationContext, Object> keyFunction =
+        (authentication, object) -> authentication.getName();
+
+    @Test
+    public void testHitsAndMisses() {
+        var provider = provider();
+
+        assertEquals("alice-1", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals("alice-1", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals("bob-2", provider.getContextData(() -> authentication("bob"), null));
+        assertEquals(1, provider.getHitCount());
+        assertEquals(2, provider.getMissCount());
+        assertEquals(2, provider.estimatedSize());
+
+        provider.invalidateAll();
+        assertEquals("alice-3", provider.getContextData(() -> authentication("alice"), null));
+    }
+
+    @Test
+    public void testNullKeyHasNoData() {
+        var provider = new CachingContextDataProvider((authentication, object) -> null, loader, properties(),
+            pendingRefreshes::add, nanos::get);
+
+        assertNull(provider.getContextData(() -> authentication("alice"), null));
+        assertEquals(0, loads.get());
+        assertEquals(0, provider.getHitCount());
+        assertEquals(0, provider.getMissCount());
+    }
+
+    @Test
+    public void testRefreshAhead() {
+        var provider = provider();
+        provider.getContextData(() -> authentication("alice"), null);
+
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        // the stale data is returned, and a single refresh is started
+        assertEquals("alice-1", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals("alice-1", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals(1, pendingRefreshes.size());
+        assertEquals(1, provider.getRefreshCount());
+
+        runRefreshes();
+        assertEquals("alice-2", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals(1, provider.getMissCount());
+    }
+
+    /**
+     * Make sure that refreshes only use the key, since the request and authentication could be recycled by then.
+     */
+    @Test
+    public void testRefreshOnlyUsesKey() {
+        var provider = provider();
+        var authentication = authentication("alice");
+        provider.getContextData(() -> authentication, null);
+
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        provider.getContextData(() -> authentication, null);
+        when(authentication.getName()).thenThrow(new IllegalStateException("recycled"));
+        runRefreshes();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testRefreshesRunOnOwnThreads() throws Exception {
+        var threadName = new CompletableFuture<String>();
+        var properties = properties();
+        properties.setRefreshAfter(Duration.ofNanos(1));
+        try (var provider = new CachingContextDataProvider(keyFunction, key -> {
+            // the first load is done by the request thread, the second one is the refresh
+            if (loads.incrementAndGet() > 1) {
+                threadName.complete(Thread.currentThread().getName());
+            }
+            return key;
+        }, properties)) {
+            provider.getContextData(() -> authentication("alice"), null);
+            Thread.sleep(1);
+            provider.getContextData(() -> authentication("alice"), null);
+            assertTrue(threadName.get(5, TimeUnit.SECONDS).startsWith("opa-context-data-refresh-"));
+        }
+    }
+
+    @Test
+    public void testExpiry() {
+        var provider = provider();
+        provider.getContextData(() -> authentication("alice"), null);
+
+        nanos.addAndGet(Duration.ofMinutes(5).toNanos());
+        assertEquals("alice-2", provider.getContextData(() -> authentication("alice"), null));
+        assertEquals(2, provider.getMissCount());
+        assertEquals(0, provider.getRefreshCount());
+    }
+
+    private CachingContextDataProvider provider() {
+        return new CachingContextDataProvider(keyFunction, loader, properties(), pendingRefreshes::add, nanos::get);
+    }
+
+    private void runRefreshes() {
+        List<Runnable> refreshes = new ArrayList<>(pendingRefreshes);
+        pendingRefreshes.clear();
+        refreshes.forEach(Runnable::run);
+    }
+
+    private static OPAProperties.ContextDataCache properties() {
+        var properties = new OPAProperties.ContextDataCache();
+        properties.setTtl(Duration.ofMinutes(5));
+        properties.setRefreshAfter(Duration.ofMinutes(1));
+        return properties;
+    }
+
+    private static Authentication authentication(String name) {
+        var authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn(name);
+        return authentication;
+    }
+}
@@ -1,6 +1,11 @@
 package com.styra.opa.springboot;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.styra.opa.OPAClient;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.cache.OPADecisionCache;
+import com.styra.opa.springboot.route.OPARouteTable;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
@@ -24,6 +29,13 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class OPAAuthorizationManagerTest extends BaseIntegrationTest {
@@ -128,6 +140,57 @@ class OPAAuthorizationManagerTest extends BaseIntegrationTest {
             () -> opaAuthorizationManager.verify(authenticationSupplier, context));
     }
 
+    /**
+     * Make sure that, when an {@link OPADecisionCache} is set, requests which only differ in excluded keys (such as
+     * {@code context.port}) are served from the cache.
+     */
+    @Test
+    public void testOPAAuthorizationManagerDecisionCache() throws OPAException {
+        var mockAuth = createMockAuthentication();
+        when(authenticationSupplier.get()).thenReturn(mockAuth);
+        var opaClient = spy(new OPAClient(address, HEADERS));
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, "policy/decision_always_true");
+        opaAuthorizationManager.setOpaDecisionCache(new OPADecisionCache(new OPAProperties.Cache()));
+
+        when(httpServletRequest.getRemotePort()).thenReturn(50001);
+        assertTrue(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+        when(httpServletRequest.getRemotePort()).thenReturn(50002);
+        assertTrue(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+
+        verify(opaClient, times(1)).evaluate(eq("policy/decision_always_true"), any(), any(TypeReference.class));
+    }
+
+    /**
+     * Make sure that routes select the policy path of matching requests, and skip, permit or deny requests without
+     * calling OPA.
+     */
+    @Test
+    public void testOPAAuthorizationManagerRoutes() throws OPAException {
+        var mockAuth = createMockAuthentication();
+        when(authenticationSupplier.get()).thenReturn(mockAuth);
+        var opaClient = spy(new OPAClient(address, HEADERS));
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, "policy/decision_always_false");
+        opaAuthorizationManager.setOpaRouteTable(new OPARouteTable(List.of(
+            route("/static/**", OPAProperties.Route.Action.SKIP, null),
+            route("/public/**", OPAProperties.Route.Action.PERMIT, null),
+            route("/admin/**", OPAProperties.Route.Action.DENY, null),
+            route("/api/orders/{id}", OPAProperties.Route.Action.EVALUATE, "policy/decision_always_true"))));
+
+        when(httpServletRequest.getServletPath()).thenReturn("/static/app.js");
+        assertNull(opaAuthorizationManager.check(authenticationSupplier, context));
+        assertDoesNotThrow(() -> opaAuthorizationManager.verify(authenticationSupplier, context));
+        when(httpServletRequest.getServletPath()).thenReturn("/public/index.html");
+        assertTrue(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+        when(httpServletRequest.getServletPath()).thenReturn("/admin/users");
+        assertFalse(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+        verify(opaClient, never()).evaluate(anyString(), any(), any(TypeReference.class));
+
+        when(httpServletRequest.getServletPath()).thenReturn("/api/orders/42");
+        assertTrue(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+        when(httpServletRequest.getServletPath()).thenReturn("/api/invoices/42");
+        assertFalse(opaAuthorizationManager.check(authenticationSupplier, context).isGranted());
+    }
+
     /**
      * By reading back the input, we can make sure the OPA input has the right structure and content.
      */
@@ -235,4 +298,12 @@ class OPAAuthorizationManagerTest extends BaseIntegrationTest {
         assertEquals("other reason key", actualResponse.getReasonForDecision("other"));
         assertEquals("echo rule always allows", actualResponse.getReasonForDecision("nonexistant"));
     }
+
+    private static OPAProperties.Route route(String pattern, OPAProperties.Route.Action action, String path) {
+        var route = new OPAProperties.Route();
+        route.setPattern(pattern);
+        route.setAction(action);
+        route.setPath(path);
+        return route;
+    }
 }
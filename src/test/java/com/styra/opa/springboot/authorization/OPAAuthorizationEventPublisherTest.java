@@ -0,0 +1,131 @@
+package com.styra.opa.springboot.authorization;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.event.AuthorizationDeniedEvent;
+import org.springframework.security.authorization.event.AuthorizationEvent;
+import org.springframework.security.authorization.event.AuthorizationGrantedEvent;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Publishes events asynchronously using an executor which runs tasks when {@link #runTasks()} is called.
+ */
+public class OPAAuthorizationEventPublisherTest {
+
+    private final List<Object> events = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Test
+    public void testAsyncEventsCarrySnapshots() {
+        var publisher = new OPAAuthorizationEventPublisher(events::add, properties(OPAProperties.AuthorizationEvent
+            .Async.Overflow.DROP), tasks::add);
+
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "bob", "/orders", false);
+        assertTrue(events.isEmpty());
+        assertEquals(2, publisher.getQueueSize());
+
+        runTasks();
+        assertEquals(2, events.size());
+        AuthorizationGrantedEvent<?> granted = assertInstanceOf(AuthorizationGrantedEvent.class, events.get(0));
+        var snapshot = assertInstanceOf(OPAAuthorizationEventSnapshot.class, granted.getObject());
+        assertEquals("alice", snapshot.subject());
+        assertEquals("GET", snapshot.method());
+        assertEquals("/orders", snapshot.requestUri());
+        assertEquals("decision-id", snapshot.decisionId());
+        assertEquals(1, snapshot.count());
+        assertEquals("alice", granted.getAuthentication().get().getName());
+        var opaResponse = ((OPAAuthorizationDecision) granted.getAuthorizationDecision()).getOpaResponse();
+        assertEquals("decision-id", opaResponse.getContext().getId());
+        assertNull(opaResponse.getContext().getData());
+        assertInstanceOf(AuthorizationDeniedEvent.class, events.get(1));
+        assertEquals(0, publisher.getQueueSize());
+    }
+
+    @Test
+    public void testDropWhenQueueIsFull() {
+        var publisher = new OPAAuthorizationEventPublisher(events::add, properties(OPAProperties.AuthorizationEvent
+            .Async.Overflow.DROP), tasks::add);
+
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/orders", true);
+        assertEquals(1, publisher.getDroppedCount());
+
+        runTasks();
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void testCoalesceWhenQueueIsFull() {
+        var publisher = new OPAAuthorizationEventPublisher(events::add, properties(OPAProperties.AuthorizationEvent
+            .Async.Overflow.COALESCE), tasks::add);
+
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/invoices", true);
+        publish(publisher, "alice", "/invoices", true);
+        // there are already as many coalesced events as the queue capacity
+        publish(publisher, "bob", "/invoices", true);
+        assertEquals(3, publisher.getCoalescedCount());
+        assertEquals(1, publisher.getDroppedCount());
+
+        runTasks();
+        assertEquals(4, events.size());
+        long count = 0;
+        for (Object event : events) {
+            count += ((OPAAuthorizationEventSnapshot) ((AuthorizationEvent) event).getObject()).count();
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testSampling() {
+        var properties = properties(OPAProperties.AuthorizationEvent.Async.Overflow.DROP);
+        properties.getAuthorizationEvent().getAsync().setEnabled(false);
+        properties.getAuthorizationEvent().getGranted().setSampleRate(0);
+        var publisher = new OPAAuthorizationEventPublisher(events::add, properties);
+
+        publish(publisher, "alice", "/orders", true);
+        publish(publisher, "alice", "/orders", false);
+        assertEquals(1, events.size());
+        assertInstanceOf(RequestAuthorizationContext.class, ((AuthorizationEvent) events.get(0)).getObject());
+    }
+
+    private static OPAProperties properties(OPAProperties.AuthorizationEvent.Async.Overflow overflow) {
+        var properties = new OPAProperties();
+        properties.getAuthorizationEvent().getGranted().setEnabled(true);
+        properties.getAuthorizationEvent().getAsync().setEnabled(true);
+        properties.getAuthorizationEvent().getAsync().setQueueCapacity(2);
+        properties.getAuthorizationEvent().getAsync().setOverflow(overflow);
+        return properties;
+    }
+
+    private static void publish(OPAAuthorizationEventPublisher publisher, String user, String uri, boolean granted) {
+        var context = new OPAResponseContext("decision-id", null, Map.of("en", "reason"),
+            Map.of("input", Map.of("large", "data")));
+        publisher.publishAuthorizationEvent(() -> new TestingAuthenticationToken(user, null),
+            new RequestAuthorizationContext(new MockHttpServletRequest("GET", uri)),
+            new OPAAuthorizationDecision(granted, new OPAResponse(granted, context)));
+    }
+
+    private void runTasks() {
+        List<Runnable> pendingTasks = new ArrayList<>(tasks);
+        tasks.clear();
+        pendingTasks.forEach(Runnable::run);
+    }
+}
@@ -7,6 +7,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -34,5 +38,130 @@ public class DefaultOPAPropertiesTest {
             opaProperties.getResponse().getContext().getReasonKey());
         assertTrue(opaProperties.getAuthorizationEvent().getDenied().isEnabled());
         assertFalse(opaProperties.getAuthorizationEvent().getGranted().isEnabled());
+        assertEquals(OPAProperties.AuthorizationEventType.DEFAULT_SAMPLE_RATE,
+            opaProperties.getAuthorizationEvent().getGranted().getSampleRate());
+        assertFalse(opaProperties.getAuthorizationEvent().getAsync().isEnabled());
+        assertEquals(OPAProperties.AuthorizationEvent.Async.DEFAULT_QUEUE_CAPACITY,
+            opaProperties.getAuthorizationEvent().getAsync().getQueueCapacity());
+        assertEquals(OPAProperties.AuthorizationEvent.Async.Overflow.DROP,
+            opaProperties.getAuthorizationEvent().getAsync().getOverflow());
+        assertFalse(opaProperties.getCache().isEnabled());
+        assertEquals(OPAProperties.Cache.DEFAULT_MAXIMUM_SIZE, opaProperties.getCache().getMaximumSize());
+        assertEquals(OPAProperties.Cache.DEFAULT_ALLOW_TTL, opaProperties.getCache().getAllowTtl());
+        assertEquals(OPAProperties.Cache.DEFAULT_DENY_TTL, opaProperties.getCache().getDenyTtl());
+        assertEquals(OPAProperties.Cache.DEFAULT_TTL_KEY, opaProperties.getCache().getTtlKey());
+        assertEquals(List.of("context.port"), opaProperties.getCache().getExcludedInputKeys());
+        assertTrue(opaProperties.getCache().getExcludedHeaders().isEmpty());
+        assertEquals(Duration.ZERO, opaProperties.getCache().getStaleWhileRevalidate());
+        assertEquals(Duration.ZERO, opaProperties.getCache().getStaleIfError());
+        assertEquals(OPAProperties.Cache.DEFAULT_LAST_KNOWN_MAXIMUM_SIZE,
+            opaProperties.getCache().getLastKnownMaximumSize());
+        assertFalse(opaProperties.getCoalescing().isEnabled());
+        assertFalse(opaProperties.getBatch().isEnabled());
+        assertEquals(OPAProperties.Batch.DEFAULT_WINDOW, opaProperties.getBatch().getWindow());
+        assertEquals(OPAProperties.Batch.DEFAULT_MAX_SIZE, opaProperties.getBatch().getMaxSize());
+        assertTrue(opaProperties.getMetrics().isEnabled());
+        assertFalse(opaProperties.getMetrics().isInputSize());
+        assertEquals(OPAProperties.Metrics.DEFAULT_MAX_PATH_TAGS, opaProperties.getMetrics().getMaxPathTags());
+        assertFalse(opaProperties.getStreaming().isEnabled());
+        assertEquals(OPAProperties.Streaming.DEFAULT_BUFFER_SIZE, opaProperties.getStreaming().getBufferSize());
+        assertEquals(OPAProperties.Streaming.DEFAULT_MAX_RETAINED_BUFFER_SIZE,
+            opaProperties.getStreaming().getMaxRetainedBufferSize());
+        assertEquals(OPAProperties.Streaming.DEFAULT_POOL_SIZE, opaProperties.getStreaming().getPoolSize());
+        assertEquals(OPAProperties.Http.DEFAULT_CONNECT_TIMEOUT, opaProperties.getHttp().getConnectTimeout());
+        assertNull(opaProperties.getHttp().getRequestTimeout());
+        assertEquals(HttpClient.Version.HTTP_2, opaProperties.getHttp().getVersion());
+        assertEquals(0, opaProperties.getHttp().getExecutorThreads());
+        assertFalse(opaProperties.getCircuitBreaker().isEnabled());
+        assertEquals(OPAProperties.CircuitBreaker.DEFAULT_FAILURE_RATE_THRESHOLD,
+            opaProperties.getCircuitBreaker().getFailureRateThreshold());
+        assertEquals(OPAProperties.CircuitBreaker.DEFAULT_SLIDING_WINDOW_SIZE,
+            opaProperties.getCircuitBreaker().getSlidingWindowSize());
+        assertEquals(OPAProperties.CircuitBreaker.DefaultDecision.DENY,
+            opaProperties.getCircuitBreaker().getDefaultDecision());
+        assertTrue(opaProperties.getCircuitBreaker().getPathDefaultDecisions().isEmpty());
+        assertFalse(opaProperties.getWasm().isEnabled());
+        assertNull(opaProperties.getWasm().getBundle());
+        assertEquals(0, opaProperties.getWasm().getPoolSize());
+        assertEquals(OPAProperties.Wasm.DEFAULT_RELOAD_INTERVAL, opaProperties.getWasm().getReloadInterval());
+        assertFalse(opaProperties.getPartialEvaluation().isEnabled());
+        assertTrue(opaProperties.getPartialEvaluation().getResourceIds().isEmpty());
+        assertEquals(List.of("input.subject", "input.action", "input.context"),
+            opaProperties.getPartialEvaluation().getUnknowns());
+        assertEquals(OPAProperties.PartialEvaluation.DEFAULT_REFRESH_INTERVAL,
+            opaProperties.getPartialEvaluation().getRefreshInterval());
+        assertTrue(opaProperties.getRoutes().isEmpty());
+        assertEquals(OPAProperties.ContextDataCache.DEFAULT_MAXIMUM_SIZE,
+            opaProperties.getContextDataCache().getMaximumSize());
+        assertEquals(OPAProperties.ContextDataCache.DEFAULT_TTL, opaProperties.getContextDataCache().getTtl());
+        assertEquals(OPAProperties.ContextDataCache.DEFAULT_REFRESH_AFTER,
+            opaProperties.getContextDataCache().getRefreshAfter());
+        assertEquals(OPAProperties.ContextDataCache.DEFAULT_REFRESH_THREADS,
+            opaProperties.getContextDataCache().getRefreshThreads());
+        assertFalse(opaProperties.getDecisionLog().isEnabled());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_DIRECTORY, opaProperties.getDecisionLog().getDirectory());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_MAX_FILE_SIZE, opaProperties.getDecisionLog().getMaxFileSize());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_ROTATION_INTERVAL,
+            opaProperties.getDecisionLog().getRotationInterval());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_MAX_FILES, opaProperties.getDecisionLog().getMaxFiles());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_SAMPLE_RATE, opaProperties.getDecisionLog().getSampleRate());
+        assertEquals(OPAProperties.DecisionLog.DEFAULT_MASKED_INPUT_KEYS,
+            opaProperties.getDecisionLog().getMaskedInputKeys());
+        assertFalse(opaProperties.getMethodSecurity().isEnabled());
+        assertFalse(opaProperties.getBulk().isEnabled());
+        assertNull(opaProperties.getBulk().getPath());
+        assertEquals(OPAProperties.Bulk.DEFAULT_CHUNK_SIZE, opaProperties.getBulk().getChunkSize());
+        assertEquals(OPAProperties.Bulk.DEFAULT_MAX_CONCURRENT_CHUNKS,
+            opaProperties.getBulk().getMaxConcurrentChunks());
+        assertNull(opaProperties.getTimeout().getDefaultTimeout());
+        assertTrue(opaProperties.getTimeout().getPathTimeouts().isEmpty());
+        assertNull(opaProperties.getTimeout().getDeadlineHeader());
+        assertEquals(OPAProperties.Timeout.Decision.DENY, opaProperties.getTimeout().getDecision());
+        assertTrue(opaProperties.getTimeout().getPathDecisions().isEmpty());
+        assertEquals(OPAProperties.Executor.DEFAULT_MAX_THREADS, opaProperties.getExecutor().getMaxThreads());
+        assertEquals(OPAProperties.Executor.DEFAULT_MAX_QUEUE_SIZE, opaProperties.getExecutor().getMaxQueueSize());
+        assertFalse(opaProperties.getConcurrencyLimit().isEnabled());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_INITIAL_LIMIT,
+            opaProperties.getConcurrencyLimit().getInitialLimit());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_MIN_LIMIT,
+            opaProperties.getConcurrencyLimit().getMinLimit());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_MAX_LIMIT,
+            opaProperties.getConcurrencyLimit().getMaxLimit());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_RTT_TOLERANCE,
+            opaProperties.getConcurrencyLimit().getRttTolerance());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_SMOOTHING,
+            opaProperties.getConcurrencyLimit().getSmoothing());
+        assertEquals(OPAProperties.ConcurrencyLimit.DEFAULT_LONG_WINDOW,
+            opaProperties.getConcurrencyLimit().getLongWindow());
+        assertEquals(OPAProperties.CircuitBreaker.DefaultDecision.DENY,
+            opaProperties.getConcurrencyLimit().getRejectedDecision());
+        assertFalse(opaProperties.getBulkheads().isEnabled());
+        assertTrue(opaProperties.getBulkheads().getPaths().isEmpty());
+        assertFalse(opaProperties.getRetry().isEnabled());
+        assertEquals(OPAProperties.Retry.DEFAULT_MAX_ATTEMPTS, opaProperties.getRetry().getMaxAttempts());
+        assertEquals(OPAProperties.Retry.DEFAULT_INITIAL_BACKOFF, opaProperties.getRetry().getInitialBackoff());
+        assertEquals(OPAProperties.Retry.DEFAULT_MAX_BACKOFF, opaProperties.getRetry().getMaxBackoff());
+        assertEquals(OPAProperties.Retry.DEFAULT_BUDGET_RATIO, opaProperties.getRetry().getBudgetRatio());
+        assertEquals(OPAProperties.Retry.DEFAULT_BUDGET_MAX_TOKENS, opaProperties.getRetry().getBudgetMaxTokens());
+        assertTrue(opaProperties.getUrls().isEmpty());
+        OPAProperties.LoadBalancing loadBalancing = opaProperties.getLoadBalancing();
+        assertEquals(OPAProperties.LoadBalancing.Strategy.LEAST_OUTSTANDING_REQUESTS, loadBalancing.getStrategy());
+        assertEquals(OPAProperties.LoadBalancing.DEFAULT_EWMA_DECAY, loadBalancing.getEwmaDecay());
+        assertEquals(OPAProperties.LoadBalancing.DEFAULT_VIRTUAL_NODES, loadBalancing.getVirtualNodes());
+        assertTrue(loadBalancing.getHealthCheck().isEnabled());
+        assertEquals(OPAProperties.LoadBalancing.HealthCheck.DEFAULT_INTERVAL,
+            loadBalancing.getHealthCheck().getInterval());
+        assertEquals(OPAProperties.LoadBalancing.HealthCheck.DEFAULT_TIMEOUT,
+            loadBalancing.getHealthCheck().getTimeout());
+        assertFalse(loadBalancing.getHealthCheck().isBundles());
+        assertEquals(OPAProperties.LoadBalancing.HealthCheck.DEFAULT_UNHEALTHY_THRESHOLD,
+            loadBalancing.getHealthCheck().getUnhealthyThreshold());
+        assertFalse(opaProperties.getHedging().isEnabled());
+        assertEquals(OPAProperties.Hedging.DEFAULT_PERCENTILE, opaProperties.getHedging().getPercentile());
+        assertEquals(OPAProperties.Hedging.DEFAULT_MIN_DELAY, opaProperties.getHedging().getMinDelay());
+        assertEquals(OPAProperties.Hedging.DEFAULT_MAX_DELAY, opaProperties.getHedging().getMaxDelay());
+        assertEquals(OPAProperties.Hedging.DEFAULT_WINDOW_SIZE, opaProperties.getHedging().getWindowSize());
+        assertEquals(OPAProperties.Hedging.DEFAULT_BUDGET_RATIO, opaProperties.getHedging().getBudgetRatio());
+        assertEquals(OPAProperties.Hedging.DEFAULT_BUDGET_MAX_TOKENS, opaProperties.getHedging().getBudgetMaxTokens());
     }
 }
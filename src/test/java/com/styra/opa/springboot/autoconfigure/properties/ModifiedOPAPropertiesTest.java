@@ -7,6 +7,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -21,6 +27,116 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
     "opa.response.context.reason-key=de",
     "opa.authorization-event.denied.enabled=false",
     "opa.authorization-event.granted.enabled=true",
+    "opa.authorization-event.granted.sample-rate=0.1",
+    "opa.authorization-event.async.enabled=true",
+    "opa.authorization-event.async.queue-capacity=256",
+    "opa.authorization-event.async.overflow=coalesce",
+    "opa.cache.enabled=true",
+    "opa.cache.maximum-size=500",
+    "opa.cache.allow-ttl=1m",
+    "opa.cache.deny-ttl=1s",
+    "opa.cache.ttl-key=ttl",
+    "opa.cache.excluded-input-keys=context.port,context.ip",
+    "opa.cache.excluded-headers=X-Request-Id,traceparent",
+    "opa.cache.stale-while-revalidate=10s",
+    "opa.cache.stale-if-error=5m",
+    "opa.cache.last-known-maximum-size=100",
+    "opa.coalescing.enabled=true",
+    "opa.batch.enabled=true",
+    "opa.batch.window=2ms",
+    "opa.batch.max-size=100",
+    "opa.metrics.enabled=false",
+    "opa.metrics.input-size=true",
+    "opa.metrics.max-path-tags=10",
+    "opa.streaming.enabled=true",
+    "opa.streaming.buffer-size=1024",
+    "opa.streaming.max-retained-buffer-size=8192",
+    "opa.streaming.pool-size=8",
+    "opa.http.connect-timeout=2s",
+    "opa.http.request-timeout=500ms",
+    "opa.http.version=http_1_1",
+    "opa.http.executor-threads=4",
+    "opa.circuit-breaker.enabled=true",
+    "opa.circuit-breaker.failure-rate-threshold=25",
+    "opa.circuit-breaker.slow-call-duration=500ms",
+    "opa.circuit-breaker.sliding-window-size=50",
+    "opa.circuit-breaker.wait-duration-in-open-state=30s",
+    "opa.circuit-breaker.default-decision=allow",
+    "opa.circuit-breaker.path-default-decisions.[policy/admin]=last-known",
+    "opa.wasm.enabled=true",
+    "opa.wasm.bundle=/etc/opa/bundle.tar.gz",
+    "opa.wasm.pool-size=4",
+    "opa.wasm.reload-interval=0s",
+    "opa.partial-evaluation.enabled=true",
+    "opa.partial-evaluation.resource-ids=/orders,/users",
+    "opa.partial-evaluation.unknowns=input.subject",
+    "opa.partial-evaluation.refresh-interval=1m",
+    "opa.routes[0].pattern=/static/**",
+    "opa.routes[0].action=skip",
+    "opa.routes[1].pattern=/api/orders/{id}",
+    "opa.routes[1].methods=GET,POST",
+    "opa.routes[1].path=orders/allow",
+    "opa.routes[1].timeout=500ms",
+    "opa.routes[1].cache.enabled=false",
+    "opa.routes[1].cache.ttl=1m",
+    "opa.context-data-cache.maximum-size=500",
+    "opa.context-data-cache.ttl=10m",
+    "opa.context-data-cache.refresh-after=2m",
+    "opa.context-data-cache.refresh-threads=4",
+    "opa.decision-log.enabled=true",
+    "opa.decision-log.directory=/var/log/opa",
+    "opa.decision-log.max-file-size=10MB",
+    "opa.decision-log.rotation-interval=15m",
+    "opa.decision-log.sample-rate=0.5",
+    "opa.decision-log.masked-input-keys=action.headers.authorization,subject.details",
+    "opa.method-security.enabled=true",
+    "opa.bulk.enabled=true",
+    "opa.bulk.path=authzen/evaluations",
+    "opa.bulk.chunk-size=50",
+    "opa.bulk.max-concurrent-chunks=2",
+    "opa.timeout.default-timeout=250ms",
+    "opa.timeout.path-timeouts.[policy/slow]=2s",
+    "opa.timeout.deadline-header=X-Request-Timeout",
+    "opa.timeout.decision=cached",
+    "opa.timeout.path-decisions.[policy/public]=allow",
+    "opa.executor.max-threads=8",
+    "opa.executor.max-queue-size=16",
+    "opa.concurrency-limit.enabled=true",
+    "opa.concurrency-limit.initial-limit=10",
+    "opa.concurrency-limit.min-limit=2",
+    "opa.concurrency-limit.max-limit=50",
+    "opa.concurrency-limit.rtt-tolerance=2.0",
+    "opa.concurrency-limit.smoothing=0.5",
+    "opa.concurrency-limit.long-window=100",
+    "opa.concurrency-limit.rejected-decision=last-known",
+    "opa.bulkheads.enabled=true",
+    "opa.bulkheads.paths.[policy/reports].max-concurrent-calls=5",
+    "opa.bulkheads.paths.[policy/reports].max-queue-size=20",
+    "opa.bulkheads.paths.[policy/reports].max-wait=200ms",
+    "opa.bulkheads.paths.[policy/reports].dedicated-client=true",
+    "opa.bulkheads.paths.[policy/reports].rejected-decision=allow",
+    "opa.retry.enabled=true",
+    "opa.retry.max-attempts=2",
+    "opa.retry.initial-backoff=10ms",
+    "opa.retry.max-backoff=500ms",
+    "opa.retry.budget-ratio=0.2",
+    "opa.retry.budget-max-tokens=5",
+    "opa.urls=http://opa-0:8181,http://opa-1:8181",
+    "opa.load-balancing.strategy=consistent-hashing",
+    "opa.load-balancing.ewma-decay=5s",
+    "opa.load-balancing.virtual-nodes=50",
+    "opa.load-balancing.health-check.enabled=false",
+    "opa.load-balancing.health-check.interval=10s",
+    "opa.load-balancing.health-check.timeout=500ms",
+    "opa.load-balancing.health-check.bundles=true",
+    "opa.load-balancing.health-check.unhealthy-threshold=3",
+    "opa.hedging.enabled=true",
+    "opa.hedging.percentile=0.99",
+    "opa.hedging.min-delay=2ms",
+    "opa.hedging.max-delay=200ms",
+    "opa.hedging.window-size=512",
+    "opa.hedging.budget-ratio=0.02",
+    "opa.hedging.budget-max-tokens=4",
 })
 @EnableConfigurationProperties(OPAProperties.class)
 @ExtendWith(SpringExtension.class)
@@ -39,5 +155,127 @@ public class ModifiedOPAPropertiesTest {
         assertEquals("de", opaProperties.getResponse().getContext().getReasonKey());
         assertFalse(opaProperties.getAuthorizationEvent().getDenied().isEnabled());
         assertTrue(opaProperties.getAuthorizationEvent().getGranted().isEnabled());
+        assertEquals(0.1, opaProperties.getAuthorizationEvent().getGranted().getSampleRate());
+        assertTrue(opaProperties.getAuthorizationEvent().getAsync().isEnabled());
+        assertEquals(256, opaProperties.getAuthorizationEvent().getAsync().getQueueCapacity());
+        assertEquals(OPAProperties.AuthorizationEvent.Async.Overflow.COALESCE,
+            opaProperties.getAuthorizationEvent().getAsync().getOverflow());
+        assertTrue(opaProperties.getCache().isEnabled());
+        assertEquals(500, opaProperties.getCache().getMaximumSize());
+        assertEquals(Duration.ofMinutes(1), opaProperties.getCache().getAllowTtl());
+        assertEquals(Duration.ofSeconds(1), opaProperties.getCache().getDenyTtl());
+        assertEquals("ttl", opaProperties.getCache().getTtlKey());
+        assertEquals(List.of("context.port", "context.ip"), opaProperties.getCache().getExcludedInputKeys());
+        assertEquals(List.of("X-Request-Id", "traceparent"), opaProperties.getCache().getExcludedHeaders());
+        assertEquals(Duration.ofSeconds(10), opaProperties.getCache().getStaleWhileRevalidate());
+        assertEquals(Duration.ofMinutes(5), opaProperties.getCache().getStaleIfError());
+        assertEquals(100, opaProperties.getCache().getLastKnownMaximumSize());
+        assertTrue(opaProperties.getCoalescing().isEnabled());
+        assertTrue(opaProperties.getBatch().isEnabled());
+        assertEquals(Duration.ofMillis(2), opaProperties.getBatch().getWindow());
+        assertEquals(100, opaProperties.getBatch().getMaxSize());
+        assertFalse(opaProperties.getMetrics().isEnabled());
+        assertTrue(opaProperties.getMetrics().isInputSize());
+        assertEquals(10, opaProperties.getMetrics().getMaxPathTags());
+        assertTrue(opaProperties.getStreaming().isEnabled());
+        assertEquals(1024, opaProperties.getStreaming().getBufferSize());
+        assertEquals(8192, opaProperties.getStreaming().getMaxRetainedBufferSize());
+        assertEquals(8, opaProperties.getStreaming().getPoolSize());
+        assertEquals(Duration.ofSeconds(2), opaProperties.getHttp().getConnectTimeout());
+        assertEquals(Duration.ofMillis(500), opaProperties.getHttp().getRequestTimeout());
+        assertEquals(HttpClient.Version.HTTP_1_1, opaProperties.getHttp().getVersion());
+        assertEquals(4, opaProperties.getHttp().getExecutorThreads());
+        assertTrue(opaProperties.getCircuitBreaker().isEnabled());
+        assertEquals(25, opaProperties.getCircuitBreaker().getFailureRateThreshold());
+        assertEquals(Duration.ofMillis(500), opaProperties.getCircuitBreaker().getSlowCallDuration());
+        assertEquals(50, opaProperties.getCircuitBreaker().getSlidingWindowSize());
+        assertEquals(Duration.ofSeconds(30), opaProperties.getCircuitBreaker().getWaitDurationInOpenState());
+        assertEquals(OPAProperties.CircuitBreaker.DefaultDecision.ALLOW,
+            opaProperties.getCircuitBreaker().getDefaultDecision());
+        assertEquals(Map.of("policy/admin", OPAProperties.CircuitBreaker.DefaultDecision.LAST_KNOWN),
+            opaProperties.getCircuitBreaker().getPathDefaultDecisions());
+        assertTrue(opaProperties.getWasm().isEnabled());
+        assertEquals("/etc/opa/bundle.tar.gz", opaProperties.getWasm().getBundle());
+        assertEquals(4, opaProperties.getWasm().getPoolSize());
+        assertEquals(Duration.ZERO, opaProperties.getWasm().getReloadInterval());
+        assertTrue(opaProperties.getPartialEvaluation().isEnabled());
+        assertEquals(List.of("/orders", "/users"), opaProperties.getPartialEvaluation().getResourceIds());
+        assertEquals(List.of("input.subject"), opaProperties.getPartialEvaluation().getUnknowns());
+        assertEquals(Duration.ofMinutes(1), opaProperties.getPartialEvaluation().getRefreshInterval());
+        assertEquals(2, opaProperties.getRoutes().size());
+        assertEquals("/static/**", opaProperties.getRoutes().get(0).getPattern());
+        assertEquals(OPAProperties.Route.Action.SKIP, opaProperties.getRoutes().get(0).getAction());
+        assertTrue(opaProperties.getRoutes().get(0).getCache().isEnabled());
+        OPAProperties.Route route = opaProperties.getRoutes().get(1);
+        assertEquals("/api/orders/{id}", route.getPattern());
+        assertEquals(List.of("GET", "POST"), route.getMethods());
+        assertEquals("orders/allow", route.getPath());
+        assertEquals(OPAProperties.Route.Action.EVALUATE, route.getAction());
+        assertEquals(Duration.ofMillis(500), route.getTimeout());
+        assertFalse(route.getCache().isEnabled());
+        assertEquals(Duration.ofMinutes(1), route.getCache().getTtl());
+        assertEquals(500, opaProperties.getContextDataCache().getMaximumSize());
+        assertEquals(Duration.ofMinutes(10), opaProperties.getContextDataCache().getTtl());
+        assertEquals(Duration.ofMinutes(2), opaProperties.getContextDataCache().getRefreshAfter());
+        assertEquals(4, opaProperties.getContextDataCache().getRefreshThreads());
+        assertTrue(opaProperties.getDecisionLog().isEnabled());
+        assertEquals("/var/log/opa", opaProperties.getDecisionLog().getDirectory());
+        assertEquals(DataSize.ofMegabytes(10), opaProperties.getDecisionLog().getMaxFileSize());
+        assertEquals(Duration.ofMinutes(15), opaProperties.getDecisionLog().getRotationInterval());
+        assertEquals(0.5, opaProperties.getDecisionLog().getSampleRate());
+        assertEquals(List.of("action.headers.authorization", "subject.details"),
+            opaProperties.getDecisionLog().getMaskedInputKeys());
+        assertTrue(opaProperties.getMethodSecurity().isEnabled());
+        assertTrue(opaProperties.getBulk().isEnabled());
+        assertEquals("authzen/evaluations", opaProperties.getBulk().getPath());
+        assertEquals(50, opaProperties.getBulk().getChunkSize());
+        assertEquals(2, opaProperties.getBulk().getMaxConcurrentChunks());
+        assertEquals(Duration.ofMillis(250), opaProperties.getTimeout().getDefaultTimeout());
+        assertEquals(Map.of("policy/slow", Duration.ofSeconds(2)), opaProperties.getTimeout().getPathTimeouts());
+        assertEquals("X-Request-Timeout", opaProperties.getTimeout().getDeadlineHeader());
+        assertEquals(OPAProperties.Timeout.Decision.CACHED, opaProperties.getTimeout().getDecision());
+        assertEquals(Map.of("policy/public", OPAProperties.Timeout.Decision.ALLOW),
+            opaProperties.getTimeout().getPathDecisions());
+        assertEquals(8, opaProperties.getExecutor().getMaxThreads());
+        assertEquals(16, opaProperties.getExecutor().getMaxQueueSize());
+        assertTrue(opaProperties.getConcurrencyLimit().isEnabled());
+        assertEquals(10, opaProperties.getConcurrencyLimit().getInitialLimit());
+        assertEquals(2, opaProperties.getConcurrencyLimit().getMinLimit());
+        assertEquals(50, opaProperties.getConcurrencyLimit().getMaxLimit());
+        assertEquals(2.0, opaProperties.getConcurrencyLimit().getRttTolerance());
+        assertEquals(0.5, opaProperties.getConcurrencyLimit().getSmoothing());
+        assertEquals(100, opaProperties.getConcurrencyLimit().getLongWindow());
+        assertEquals(OPAProperties.CircuitBreaker.DefaultDecision.LAST_KNOWN,
+            opaProperties.getConcurrencyLimit().getRejectedDecision());
+        assertTrue(opaProperties.getBulkheads().isEnabled());
+        OPAProperties.Bulkheads.Bulkhead bulkhead = opaProperties.getBulkheads().getPaths().get("policy/reports");
+        assertEquals(5, bulkhead.getMaxConcurrentCalls());
+        assertEquals(20, bulkhead.getMaxQueueSize());
+        assertEquals(Duration.ofMillis(200), bulkhead.getMaxWait());
+        assertTrue(bulkhead.isDedicatedClient());
+        assertEquals(OPAProperties.CircuitBreaker.DefaultDecision.ALLOW, bulkhead.getRejectedDecision());
+        assertTrue(opaProperties.getRetry().isEnabled());
+        assertEquals(2, opaProperties.getRetry().getMaxAttempts());
+        assertEquals(Duration.ofMillis(10), opaProperties.getRetry().getInitialBackoff());
+        assertEquals(Duration.ofMillis(500), opaProperties.getRetry().getMaxBackoff());
+        assertEquals(0.2, opaProperties.getRetry().getBudgetRatio());
+        assertEquals(5, opaProperties.getRetry().getBudgetMaxTokens());
+        assertEquals(List.of("http://opa-0:8181", "http://opa-1:8181"), opaProperties.getUrls());
+        OPAProperties.LoadBalancing loadBalancing = opaProperties.getLoadBalancing();
+        assertEquals(OPAProperties.LoadBalancing.Strategy.CONSISTENT_HASHING, loadBalancing.getStrategy());
+        assertEquals(Duration.ofSeconds(5), loadBalancing.getEwmaDecay());
+        assertEquals(50, loadBalancing.getVirtualNodes());
+        assertFalse(loadBalancing.getHealthCheck().isEnabled());
+        assertEquals(Duration.ofSeconds(10), loadBalancing.getHealthCheck().getInterval());
+        assertEquals(Duration.ofMillis(500), loadBalancing.getHealthCheck().getTimeout());
+        assertTrue(loadBalancing.getHealthCheck().isBundles());
+        assertEquals(3, loadBalancing.getHealthCheck().getUnhealthyThreshold());
+        assertTrue(opaProperties.getHedging().isEnabled());
+        assertEquals(0.99, opaProperties.getHedging().getPercentile());
+        assertEquals(Duration.ofMillis(2), opaProperties.getHedging().getMinDelay());
+        assertEquals(Duration.ofMillis(200), opaProperties.getHedging().getMaxDelay());
+        assertEquals(512, opaProperties.getHedging().getWindowSize());
+        assertEquals(0.02, opaProperties.getHedging().getBudgetRatio());
+        assertEquals(4, opaProperties.getHedging().getBudgetMaxTokens());
     }
 }
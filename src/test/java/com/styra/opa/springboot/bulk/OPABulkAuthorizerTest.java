@@ -0,0 +1,156 @@
+package com.styra.opa.springboot.bulk;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.input.OPAInput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses a local stub server, whose policy at {@code authzen/evaluations} grants {@code read} on even resource ids, and
+ * responds to later chunks first, to check that decisions are returned in the order of the resources.
+ */
+public class OPABulkAuthorizerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final ConcurrentLinkedQueue<JsonNode> requests = new ConcurrentLinkedQueue<>();
+    private HttpServer server;
+    private OPAAsyncClient opaAsyncClient;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/data/authzen/evaluations", this::handleEvaluations);
+        server.createContext("/v1/data/authzen/broken", this::handleBroken);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        opaAsyncClient = new OPAAsyncClient("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testChunkedEvaluationsKeepOrder() {
+        var bulkAuthorizer = new OPABulkAuthorizer(opaAsyncClient, properties("authzen/evaluations"));
+        List<Map<String, ?>> resources = IntStream.range(0, 10)
+            .<Map<String, ?>>mapToObj(id -> new OPAInput.Resource("order", Integer.toString(id)))
+            .toList();
+
+        List<OPAResponse> opaResponses = bulkAuthorizer.authorize(new TestingAuthenticationToken("alice", null),
+            "read", resources);
+
+        assertEquals(10, opaResponses.size());
+        for (int i = 0; i < opaResponses.size(); i++) {
+            assertEquals(i % 2 == 0, opaResponses.get(i).getDecision(), "decision of resource " + i);
+        }
+        assertEquals(4, bulkAuthorizer.getRequestCount());
+        assertEquals(10, bulkAuthorizer.getEvaluationCount());
+        for (JsonNode request : requests) {
+            assertEquals("alice", request.path(SUBJECT).path(SUBJECT_ID).asText());
+            assertEquals("read", request.path(ACTION).path(ACTION_NAME).asText());
+            assertTrue(request.path("evaluations").size() <= 3);
+        }
+    }
+
+    @Test
+    public void testFilter() {
+        var bulkAuthorizer = new OPABulkAuthorizer(opaAsyncClient, properties("authzen/evaluations"));
+
+        assertEquals(List.of(2, 4), bulkAuthorizer.filter(null, "read", List.of(1, 2, 3, 4, 5),
+            id -> new OPAInput.Resource("order", id.toString())));
+        assertEquals(List.of(), bulkAuthorizer.filter(null, "read", List.of(), id -> Map.of()));
+        assertEquals(0, bulkAuthorizer.filter(null, "write", List.of(1, 2, 3), id -> Map.of(RESOURCE_ID, id)).size());
+    }
+
+    @Test
+    public void testFailures() {
+        var bulkAuthorizer = new OPABulkAuthorizer(opaAsyncClient, properties("authzen/broken"));
+        List<Map<String, ?>> resources = List.of(Map.of(RESOURCE_ID, "1"), Map.of(RESOURCE_ID, "2"));
+
+        var exception = assertThrows(CompletionException.class, () -> bulkAuthorizer.authorize(null, "read",
+            resources));
+        assertInstanceOf(OPAException.class, exception.getCause());
+        assertEquals(List.of(), bulkAuthorizer.filter(null, "read", List.of(1, 2), id -> Map.of(RESOURCE_ID, id)));
+        assertThrows(IllegalArgumentException.class, () -> new OPABulkAuthorizer(opaAsyncClient, properties(null)));
+    }
+
+    private static OPAProperties properties(String path) {
+        var properties = new OPAProperties();
+        properties.getBulk().setPath(path);
+        properties.getBulk().setChunkSize(3);
+        properties.getBulk().setMaxConcurrentChunks(2);
+        return properties;
+    }
+
+    private void handleEvaluations(HttpExchange exchange) throws IOException {
+        JsonNode input = OBJECT_MAPPER.readTree(exchange.getRequestBody()).path("input");
+        requests.add(input);
+        boolean read = "read".equals(input.path(ACTION).path(ACTION_NAME).asText());
+        ArrayNode evaluations = OBJECT_MAPPER.createArrayNode();
+        int firstId = Integer.MAX_VALUE;
+        for (JsonNode evaluation : input.path("evaluations")) {
+            int id = evaluation.path(RESOURCE).path(RESOURCE_ID).asInt();
+            firstId = Math.min(firstId, id);
+            evaluations.addObject().put("decision", read && id % 2 == 0);
+        }
+        try {
+            // respond to the first chunks last
+            Thread.sleep(Math.max(0, 50 - firstId * 5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.putObject("result").set("evaluations", evaluations);
+        respond(exchange, body);
+    }
+
+    private void handleBroken(HttpExchange exchange) throws IOException {
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        // one evaluation too few
+        body.putObject("result").putArray("evaluations").addObject().put("decision", true);
+        respond(exchange, body);
+    }
+
+    private static void respond(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
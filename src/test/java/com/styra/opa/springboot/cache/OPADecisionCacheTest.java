@@ -0,0 +1,353 @@
+package com.styra.opa.springboot.cache;
+
+import com.styra.opa.OPAClient;
+import com.styra.opa.springboot.OPAAuthorizationManager;
+import com.styra.opa.springboot.OPADecisionOutcome;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.OPAStaleResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.styra.opa.springboot.input.OPAInput;
+import com.styra.opa.springboot.reactive.OPAReactiveAuthorizationManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_HEADERS;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_PORT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static java.util.Map.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class OPADecisionCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Make sure that keys only depend on the path and the canonical input, not on excluded keys/headers or the order
+     * of map entries.
+     */
+    @Test
+    public void testKeyIgnoresExcludedKeysAndHeaders() {
+        var properties = new OPAProperties.Cache();
+        properties.setExcludedHeaders(List.of("X-Request-Id"));
+        var cache = new OPADecisionCache(properties, nanos::get);
+
+        var key1 = cache.key("policy/allow", input(1234, "abc", "alice"));
+        var key2 = cache.key("policy/allow", input(5678, "def", "alice"));
+        var key3 = cache.key("policy/allow", input(1234, "abc", "bob"));
+        var key4 = cache.key("policy/other", input(1234, "abc", "alice"));
+
+        assertNotNull(key1);
+        assertEquals(key1, key2);
+        assertNotEquals(key1, key3);
+        assertNotEquals(key1, key4);
+    }
+
+    /**
+     * Make sure that keys do not depend on the order of the request's headers, with and without excluded headers.
+     */
+    @Test
+    public void testKeyIgnoresHeaderOrder() {
+        var properties = new OPAProperties.Cache();
+        var keyGenerator = new OPADecisionKeyGenerator(properties);
+        properties.setExcludedHeaders(List.of("X-Request-Id"));
+        var excludingKeyGenerator = new OPADecisionKeyGenerator(properties);
+
+        var input = inputWithHeaders(OPAInput.Headers.builder().header("Accept", "*/*").header("Host", "localhost")
+            .header("X-Request-Id", "abc"));
+        var reordered = inputWithHeaders(OPAInput.Headers.builder().header("X-Request-Id", "abc")
+            .header("Host", "localhost").header("Accept", "*/*"));
+        assertEquals(keyGenerator.key("policy/allow", input), keyGenerator.key("policy/allow", reordered));
+        assertEquals(excludingKeyGenerator.key("policy/allow", input),
+            excludingKeyGenerator.key("policy/allow", reordered));
+        assertNotEquals(keyGenerator.key("policy/allow", input), keyGenerator.key("policy/allow",
+            inputWithHeaders(OPAInput.Headers.builder().header("Accept", "*/*").header("Host", "example.com"))));
+    }
+
+    /**
+     * Make sure that the key of an {@link OPAKeyedInput} is computed once per path and generator, and that it equals
+     * the key of the input it wraps.
+     */
+    @Test
+    public void testKeyedInputIsKeyedOnce() {
+        var properties = new OPAProperties.Cache();
+        var keyGenerator = new OPADecisionKeyGenerator(properties);
+        var input = OPAKeyedInput.of(input(1234, "abc", "alice"));
+
+        var key = keyGenerator.key("policy/allow", input);
+        assertSame(key, keyGenerator.key("policy/allow", input));
+        assertEquals(key, keyGenerator.key("policy/allow", input(1234, "abc", "alice")));
+        assertEquals(input(1234, "abc", "alice"), input);
+        assertSame(input, OPAKeyedInput.of(input));
+        assertThrows(UnsupportedOperationException.class, () -> input.put(SUBJECT, Map.of()));
+
+        var otherPathKey = keyGenerator.key("policy/other", input);
+        assertEquals("policy/other", otherPathKey.path());
+        var otherGenerator = new OPADecisionKeyGenerator(properties);
+        assertNotSame(otherPathKey, otherGenerator.key("policy/other", input));
+    }
+
+    @Test
+    public void testAllowAndDenyTtl() {
+        var properties = new OPAProperties.Cache();
+        properties.setAllowTtl(Duration.ofSeconds(10));
+        properties.setDenyTtl(Duration.ofSeconds(2));
+        var cache = new OPADecisionCache(properties, nanos::get);
+        var allowKey = cache.key("policy/allow", input(1, "a", "alice"));
+        var denyKey = cache.key("policy/allow", input(1, "a", "bob"));
+        var allow = new OPAResponse(true, null);
+        var deny = new OPAResponse(false, null);
+
+        cache.put(allowKey, allow);
+        cache.put(denyKey, deny);
+        assertSame(allow, cache.get(allowKey));
+        assertSame(deny, cache.get(denyKey));
+
+        nanos.addAndGet(Duration.ofSeconds(3).toNanos());
+        assertSame(allow, cache.get(allowKey));
+        assertNull(cache.get(denyKey));
+
+        nanos.addAndGet(Duration.ofSeconds(8).toNanos());
+        assertNull(cache.get(allowKey));
+    }
+
+    /**
+     * Make sure that the policy could override the TTL via {@code context.data}, including disabling caching.
+     */
+    @Test
+    public void testPolicyProvidedTtl() {
+        var cache = new OPADecisionCache(new OPAProperties.Cache(), nanos::get);
+        var key = cache.key("policy/allow", input(1, "a", "alice"));
+
+        assertEquals(Duration.ofSeconds(90), cache.ttl(responseWithTtl(90)));
+        assertEquals(Duration.ofMillis(1500), cache.ttl(responseWithTtl(1.5)));
+        assertEquals(Duration.ofMinutes(2), cache.ttl(responseWithTtl("2m")));
+        assertEquals(OPAProperties.Cache.DEFAULT_ALLOW_TTL, cache.ttl(responseWithTtl("not a duration")));
+
+        cache.put(key, responseWithTtl(0));
+        assertNull(cache.get(key));
+
+        var response = responseWithTtl(1);
+        cache.put(key, response);
+        assertSame(response, cache.get(key));
+        nanos.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.get(key));
+    }
+
+    /**
+     * Make sure that a per-entry TTL (e.g. of a route) replaces the allow and deny TTLs, but not the policy's TTL.
+     */
+    @Test
+    public void testEntryTtl() {
+        var cache = new OPADecisionCache(new OPAProperties.Cache(), nanos::get);
+        var key = cache.key("policy/allow", input(1, "a", "alice"));
+
+        assertEquals(Duration.ofSeconds(90), cache.ttl(responseWithTtl(90), Duration.ofSeconds(5)));
+        assertEquals(Duration.ofSeconds(5), cache.ttl(new OPAResponse(false, null), Duration.ofSeconds(5)));
+
+        var response = new OPAResponse(true, null);
+        cache.put(key, response, Duration.ofSeconds(5));
+        assertSame(response, cache.get(key));
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        assertNull(cache.get(key));
+
+        cache.put(key, response, Duration.ZERO);
+        assertNull(cache.get(key));
+    }
+
+    /**
+     * Make sure that an expired decision is served while a single refresh runs, and replaced by its response.
+     */
+    @Test
+    public void testStaleWhileRevalidate() {
+        var properties = new OPAProperties.Cache();
+        properties.setAllowTtl(Duration.ofSeconds(5));
+        properties.setStaleWhileRevalidate(Duration.ofSeconds(10));
+        var cache = new OPADecisionCache(properties, nanos::get);
+        var key = cache.key("policy/allow", input(1, "a", "alice"));
+        var refreshes = new AtomicInteger();
+        var refreshed = new CompletableFuture<OPAResponse>();
+
+        cache.put(key, new OPAResponse(true, null));
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        assertNull(cache.get(key));
+        OPAResponse stale = cache.get(key, () -> {
+            refreshes.incrementAndGet();
+            return refreshed;
+        });
+        assertInstanceOf(OPAStaleResponse.class, stale);
+        assertTrue(stale.getDecision());
+        assertEquals(OPADecisionOutcome.STALE, OPADecisionOutcome.of(stale, null));
+        assertInstanceOf(OPAStaleResponse.class, cache.get(key, () -> {
+            refreshes.incrementAndGet();
+            return refreshed;
+        }));
+        assertEquals(1, refreshes.get());
+
+        refreshed.complete(new OPAResponse(false, null));
+        assertFalse(cache.get(key).getDecision());
+        nanos.addAndGet(Duration.ofSeconds(20).toNanos());
+        assertNull(cache.get(key, () -> refreshed));
+    }
+
+    @Test
+    public void testFailedRefreshIsRetried() {
+        var properties = new OPAProperties.Cache();
+        properties.setStaleWhileRevalidate(Duration.ofSeconds(10));
+        var cache = new OPADecisionCache(properties, nanos::get);
+        var key = cache.key("policy/allow", input(1, "a", "alice"));
+        var refreshes = new AtomicInteger();
+
+        cache.put(key, new OPAResponse(true, null), Duration.ofSeconds(5));
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        for (int i = 0; i < 2; i++) {
+            assertInstanceOf(OPAStaleResponse.class, cache.get(key, () -> {
+                refreshes.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("OPA is restarting"));
+            }));
+        }
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    public void testStaleIfError() {
+        var properties = new OPAProperties.Cache();
+        properties.setAllowTtl(Duration.ofSeconds(5));
+        properties.setStaleIfError(Duration.ofSeconds(10));
+        var cache = new OPADecisionCache(properties, nanos::get);
+        var key = cache.key("policy/allow", input(1, "a", "alice"));
+
+        cache.put(key, new OPAResponse(true, null));
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        // serving stale decisions while revalidating is disabled
+        assertNull(cache.get(key, CompletableFuture::new));
+        OPAResponse stale = cache.getIfError(key);
+        assertInstanceOf(OPAStaleResponse.class, stale);
+        assertTrue(stale.getDecision());
+        assertEquals(OPADecisionOutcome.ERROR, OPADecisionOutcome.of(stale, null));
+
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertNull(cache.getIfError(key));
+    }
+
+    /**
+     * Make sure that the managers serve stale decisions instead of fallback decisions, which OPA did not make (e.g.
+     * while the circuit breaker is open), and never cache fallback decisions.
+     */
+    @Test
+    public void testStaleIfErrorOnFallback() {
+        var cache = staleIfErrorCache();
+        var fallback = new AtomicBoolean();
+        var opaAuthorizationManager = new OPAAuthorizationManager(mock(OPAClient.class), "policy/allow");
+        opaAuthorizationManager.setOpaDecisionCache(cache);
+        opaAuthorizationManager.setOpaTransport(transport(fallback));
+        var input = input(1, "a", "alice");
+
+        assertTrue(opaAuthorizationManager.opaRequest("policy/allow", input).getDecision());
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        fallback.set(true);
+        OPAResponse stale = opaAuthorizationManager.opaRequest("policy/allow", input);
+        assertInstanceOf(OPAStaleResponse.class, stale);
+        assertTrue(stale.getDecision());
+        assertEquals(OPADecisionOutcome.ERROR, OPADecisionOutcome.of(stale, null));
+
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        OPAResponse fallbackResponse = opaAuthorizationManager.opaRequest("policy/allow", input);
+        assertInstanceOf(OPAFallbackResponse.class, fallbackResponse);
+        assertFalse(fallbackResponse.getDecision());
+        assertNull(cache.get(cache.key("policy/allow", input)));
+    }
+
+    @Test
+    public void testReactiveStaleIfErrorOnFallback() {
+        var cache = staleIfErrorCache();
+        var fallback = new AtomicBoolean();
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient("http://localhost:1"), "policy/allow");
+        opaReactiveAuthorizationManager.setOpaDecisionCache(cache);
+        opaReactiveAuthorizationManager.setOpaTransport(transport(fallback));
+        var context = new AuthorizationContext(MockServerWebExchange.from(MockServerHttpRequest.get("/").build()));
+
+        assertTrue(opaReactiveAuthorizationManager.opaRequest(Mono.empty(), context).block().getDecision());
+        nanos.addAndGet(Duration.ofSeconds(6).toNanos());
+        fallback.set(true);
+        OPAResponse stale = opaReactiveAuthorizationManager.opaRequest(Mono.empty(), context).block();
+        assertInstanceOf(OPAStaleResponse.class, stale);
+        assertTrue(stale.getDecision());
+
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        OPAResponse fallbackResponse = opaReactiveAuthorizationManager.opaRequest(Mono.empty(), context).block();
+        assertInstanceOf(OPAFallbackResponse.class, fallbackResponse);
+        assertFalse(fallbackResponse.getDecision());
+    }
+
+    private OPADecisionCache staleIfErrorCache() {
+        var properties = new OPAProperties.Cache();
+        properties.setAllowTtl(Duration.ofSeconds(5));
+        properties.setStaleIfError(Duration.ofSeconds(10));
+        return new OPADecisionCache(properties, nanos::get);
+    }
+
+    /**
+     * Allows access, or denies it with a fallback decision (like an open circuit breaker) while {@code fallback} is
+     * set.
+     */
+    private static OPAEvaluator transport(AtomicBoolean fallback) {
+        return (path, input) -> CompletableFuture.completedFuture(fallback.get()
+            ? new OPAFallbackResponse(false, new OPAResponseContext()) : new OPAResponse(true, null));
+    }
+
+    private static OPAResponse responseWithTtl(Object ttl) {
+        var context = new OPAResponseContext();
+        context.setData(Map.of(OPAProperties.Cache.DEFAULT_TTL_KEY, ttl));
+        return new OPAResponse(true, context);
+    }
+
+    private static OPAInput inputWithHeaders(OPAInput.Headers.Builder headers) {
+        return new OPAInput(
+            new OPAInput.Subject("java_authentication", "alice", null, List.of()),
+            new OPAInput.Resource("endpoint", "/orders"),
+            new OPAInput.Action("GET", "HTTP/1.1", headers.build()),
+            new OPAInput.Context("http", "localhost", "127.0.0.1", 8080));
+    }
+
+    private static Map<String, Object> input(int port, String requestId, String subjectId) {
+        return Map.ofEntries(
+            entry(SUBJECT, Map.of(SUBJECT_ID, subjectId)),
+            entry(ACTION, Map.ofEntries(
+                entry(ACTION_NAME, "GET"),
+                entry(ACTION_HEADERS, Map.of("x-request-id", requestId, "Accept", "*/*"))
+            )),
+            entry(CONTEXT, Map.of(CONTEXT_TYPE, "http", CONTEXT_PORT, port))
+        );
+    }
+}
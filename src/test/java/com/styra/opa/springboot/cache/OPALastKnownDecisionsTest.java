@@ -0,0 +1,68 @@
+package com.styra.opa.springboot.cache;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.evaluator.OPACircuitBreaker;
+import com.styra.opa.springboot.timeout.OPATimeouts;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPALastKnownDecisionsTest {
+
+    private static final Map<String, Object> INPUT = Map.of(SUBJECT, Map.of(SUBJECT_ID, "alice"));
+
+    private final OPAProperties.Cache properties = new OPAProperties.Cache();
+    private final OPALastKnownDecisions lastKnownDecisions = new OPALastKnownDecisions(properties,
+        new OPADecisionKeyGenerator(properties));
+
+    @Test
+    public void testFallbackResponses() {
+        var key = lastKnownDecisions.key("policy/allow", INPUT);
+        OPAFallbackResponse opaResponse = lastKnownDecisions.fallbackResponse(key, false, "OPA is unavailable");
+        assertFalse(opaResponse.getDecision());
+        assertEquals("OPA is unavailable", opaResponse.getReasonForDecision("en"));
+
+        // fallbacks and responses without a key are never remembered
+        lastKnownDecisions.put(key, new OPAFallbackResponse(true, null));
+        lastKnownDecisions.put(null, new OPAResponse(true, null));
+        assertNull(lastKnownDecisions.get(key));
+
+        lastKnownDecisions.put(key, new OPAResponse(true, null));
+        assertTrue(lastKnownDecisions.fallbackResponse(key, false, "OPA is unavailable").getDecision());
+        assertFalse(lastKnownDecisions.fallbackResponse(null, false, "OPA is unavailable").getDecision());
+        assertInstanceOf(OPATimeoutResponse.class,
+            lastKnownDecisions.fallbackResponse(key, false, "OPA did not respond", OPATimeoutResponse::new));
+    }
+
+    /**
+     * Make sure that a decision remembered by one component is reused by the others.
+     */
+    @Test
+    public void testSharedByComponents() {
+        var circuitBreakerProperties = new OPAProperties.CircuitBreaker();
+        circuitBreakerProperties.setDefaultDecision(DefaultDecision.LAST_KNOWN);
+        var circuitBreaker = new OPACircuitBreaker(circuitBreakerProperties, lastKnownDecisions);
+        circuitBreaker.decorate((path, input) -> CompletableFuture.completedFuture(new OPAResponse(true, null)))
+            .evaluate("policy/allow", INPUT).join();
+
+        var timeoutProperties = new OPAProperties.Timeout();
+        timeoutProperties.setDecision(OPAProperties.Timeout.Decision.CACHED);
+        var opaTimeouts = new OPATimeouts(timeoutProperties, lastKnownDecisions);
+        assertTrue(opaTimeouts.timeoutResponse("policy/allow", INPUT, Duration.ofSeconds(1)).getDecision());
+        assertFalse(opaTimeouts.timeoutResponse("policy/other", INPUT, Duration.ofSeconds(1)).getDecision());
+    }
+}
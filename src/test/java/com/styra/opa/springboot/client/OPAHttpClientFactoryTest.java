@@ -0,0 +1,136 @@
+package com.styra.opa.springboot.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPAHttpClientFactoryTest {
+
+    private static final byte[] ALLOW = "{\"result\":{\"decision\":true}}".getBytes(StandardCharsets.UTF_8);
+    private static final long SLOW_RESPONSE_MILLIS = 1000;
+
+    private HttpServer server;
+    private String opaUrl;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/data/fast", exchange -> respond(exchange, 0));
+        server.createContext("/v1/data/slow", exchange -> respond(exchange, SLOW_RESPONSE_MILLIS));
+        server.start();
+        opaUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testHttpClientIsBuiltFromProperties() {
+        var properties = new OPAProperties.Http();
+        properties.setConnectTimeout(Duration.ofSeconds(2));
+        properties.setVersion(HttpClient.Version.HTTP_1_1);
+        properties.setExecutorThreads(2);
+        try (var factory = new OPAHttpClientFactory(properties)) {
+            HttpClient httpClient = factory.getHttpClient();
+            assertEquals(HttpClient.Version.HTTP_1_1, httpClient.version());
+            assertEquals(Duration.ofSeconds(2), httpClient.connectTimeout().orElseThrow());
+            assertTrue(httpClient.executor().isPresent());
+        }
+    }
+
+    @Test
+    public void testClientsUseSharedHttpClient() throws OPAException {
+        try (var factory = new OPAHttpClientFactory(new OPAProperties.Http())) {
+            OPAResponse opaResponse = factory.createOPAClient(opaUrl).evaluate("fast", Map.of(),
+                new TypeReference<>() {
+                });
+            assertTrue(opaResponse.getDecision());
+            assertTrue(factory.createOPAAsyncClient(opaUrl, null).evaluate("fast", Map.of()).join().getDecision());
+        }
+    }
+
+    /**
+     * Make sure that every client sends the configured headers, so that none of them bypasses them.
+     */
+    @Test
+    public void testClientsSendConfiguredHeaders() throws OPAException {
+        List<String> authorizations = new CopyOnWriteArrayList<>();
+        server.createContext("/v1/data/headers", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            respond(exchange, 0);
+        });
+        var properties = new OPAProperties.Http();
+        properties.setHeaders(Map.of("Authorization", "Bearer secret"));
+        try (var factory = new OPAHttpClientFactory(properties)) {
+            var opaClient = factory.createOPAClient(opaUrl);
+            assertTrue(factory.isCreatedClient(opaClient));
+            opaClient.evaluate("headers", Map.of(), new TypeReference<OPAResponse>() {
+            });
+            factory.createOPAAsyncClient(opaUrl, null).evaluate("headers", Map.of()).join();
+            factory.createDedicatedOPAAsyncClient(opaUrl, null).evaluate("headers", Map.of()).join();
+        }
+        assertEquals(List.of("Bearer secret", "Bearer secret", "Bearer secret"), authorizations);
+    }
+
+    @Test
+    public void testDedicatedClient() {
+        try (var factory = new OPAHttpClientFactory(new OPAProperties.Http())) {
+            var opaAsyncClient = factory.createDedicatedOPAAsyncClient(opaUrl, null);
+            assertTrue(opaAsyncClient.evaluate("fast", Map.of()).join().getDecision());
+        }
+    }
+
+    @Test
+    public void testRequestTimeout() {
+        var properties = new OPAProperties.Http();
+        properties.setRequestTimeout(Duration.ofMillis(100));
+        try (var factory = new OPAHttpClientFactory(properties)) {
+            var opaClient = factory.createOPAClient(opaUrl);
+            assertThrows(OPAException.class, () -> opaClient.evaluate("slow", Map.of(),
+                new TypeReference<OPAResponse>() {
+                }));
+
+            var exception = assertThrows(CompletionException.class,
+                () -> factory.createOPAAsyncClient(opaUrl, null).evaluate("slow", Map.of()).join());
+            assertInstanceOf(OPAException.class, exception.getCause());
+            assertInstanceOf(HttpTimeoutException.class, exception.getCause().getCause());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, long delayMillis) throws IOException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, ALLOW.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(ALLOW);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.styra.opa.springboot.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.input.OPAInput;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPARequestBodyWriterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void testBodiesEqualObjectMapperOutput() throws IOException {
+        var writer = new OPARequestBodyWriter(OBJECT_MAPPER, new OPAProperties.Streaming());
+        OPAInput input = input();
+
+        assertBody(OBJECT_MAPPER.writeValueAsBytes(Map.of("input", input)), writer.writeInput(input));
+        assertBody(OBJECT_MAPPER.writeValueAsBytes(Map.of("inputs", Map.of("0", input))),
+            writer.writeInputs(Map.of("0", input)));
+        assertBody(OBJECT_MAPPER.writeValueAsBytes(input), writer.writeRaw(input));
+    }
+
+    @Test
+    public void testBuffersAreReused() throws IOException {
+        var properties = new OPAProperties.Streaming();
+        properties.setBufferSize(16);
+        properties.setMaxRetainedBufferSize(1024);
+        var writer = new OPARequestBodyWriter(OBJECT_MAPPER, properties);
+
+        var body = writer.writeInput(input());
+        byte[] buffer = body.array();
+        body.release();
+        body.release();
+        assertEquals(1, writer.getPooledBufferCount());
+
+        var reusedBody = writer.writeInput(Map.of("id", 1));
+        assertSame(buffer, reusedBody.array());
+        assertEquals(0, writer.getPooledBufferCount());
+        assertBody(OBJECT_MAPPER.writeValueAsBytes(Map.of("input", Map.of("id", 1))), reusedBody);
+    }
+
+    @Test
+    public void testLargeBuffersAreNotRetained() throws IOException {
+        var properties = new OPAProperties.Streaming();
+        properties.setBufferSize(16);
+        properties.setMaxRetainedBufferSize(64);
+        var writer = new OPARequestBodyWriter(OBJECT_MAPPER, properties);
+
+        var body = writer.writeInput(Map.of("data", "x".repeat(256)));
+        body.release();
+        assertEquals(0, writer.getPooledBufferCount());
+        assertNotSame(body.array(), writer.writeInput(Map.of()).array());
+    }
+
+    /**
+     * Make sure that the publisher wraps the pooled buffer rather than copying it, and publishes it to each subscriber.
+     */
+    @Test
+    public void testPublisherWrapsBuffer() throws IOException {
+        var writer = new OPARequestBodyWriter(OBJECT_MAPPER, new OPAProperties.Streaming());
+        var body = writer.writeRaw(Map.of("id", 1));
+        var publisher = body.publisher();
+        assertEquals(body.length(), publisher.contentLength());
+
+        byte[] expected = OBJECT_MAPPER.writeValueAsBytes(Map.of("id", 2));
+        body.array()[expected.length - 2] = '2';
+        assertArrayEquals(expected, publish(publisher));
+        assertArrayEquals(expected, publish(publisher));
+        body.release();
+    }
+
+    private static byte[] publish(Flow.Publisher<ByteBuffer> publisher) {
+        List<ByteBuffer> buffers = new ArrayList<>();
+        boolean[] completed = new boolean[1];
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                buffers.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new AssertionError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        assertTrue(completed[0]);
+        assertEquals(1, buffers.size());
+        byte[] bytes = new byte[buffers.get(0).remaining()];
+        buffers.get(0).get(bytes);
+        return bytes;
+    }
+
+    private static OPAInput input() {
+        return new OPAInput(
+            new OPAInput.Subject("java_authentication", "alice", null, List.of("ROLE_USER")),
+            new OPAInput.Resource("endpoint", "/hello"),
+            new OPAInput.Action("GET", "HTTP/1.1", OPAInput.Headers.builder().header("Accept", "*/*").build()),
+            new OPAInput.Context("http", "localhost", "127.0.0.1", 8080));
+    }
+
+    private static void assertBody(byte[] expected, OPARequestBodyWriter.PooledRequestBody body) {
+        assertArrayEquals(expected, Arrays.copyOf(body.array(), body.length()));
+        body.release();
+    }
+}
@@ -0,0 +1,145 @@
+package com.styra.opa.springboot.decisionlog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPADecisionLogWriterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testWritesMaskedDecisions() throws Exception {
+        var properties = properties();
+        properties.setMaskedInputKeys(List.of("action.headers.authorization"));
+        try (var writer = new OPADecisionLogWriter(properties)) {
+            writer.log("policy/main", input("/orders"), new OPAResponse(true, new OPAResponseContext("id", null, null,
+                null)), null, false, 1_000);
+            writer.log(null, input("/invoices"), null, new CompletionException(new OPAException("unavailable")), false,
+                2_000);
+            writer.log("policy/main", input("/users"), new OPAFallbackResponse(false, null), null, false, 3_000);
+        }
+
+        List<JsonNode> decisions = readDecisions();
+        assertEquals(3, decisions.size());
+        JsonNode allowed = decisions.get(0);
+        assertEquals("policy/main", allowed.get("path").asText());
+        assertTrue(allowed.get("decision").asBoolean());
+        assertFalse(allowed.get("cached").asBoolean());
+        assertEquals("fresh", allowed.get("outcome").asText());
+        assertEquals(1_000, allowed.get("duration_ns").asLong());
+        assertEquals("id", allowed.get("context").get("id").asText());
+        assertEquals("/orders", allowed.get("input").get("resource").get("id").asText());
+        assertEquals("***", allowed.get("input").get("action").get("headers").get("Authorization").asText());
+        assertEquals("application/json", allowed.get("input").get("action").get("headers").get("Accept").asText());
+        JsonNode failed = decisions.get(1);
+        assertTrue(failed.get("path").isNull());
+        assertFalse(failed.has("decision"));
+        assertTrue(failed.get("error").asText().contains("unavailable"));
+        assertEquals("error", failed.get("outcome").asText());
+        JsonNode fallback = decisions.get(2);
+        assertFalse(fallback.get("decision").asBoolean());
+        assertEquals("fallback", fallback.get("outcome").asText());
+    }
+
+    /**
+     * Make sure that credentials of the request are masked by default.
+     */
+    @Test
+    public void testMasksCredentialsByDefault() throws Exception {
+        try (var writer = new OPADecisionLogWriter(properties())) {
+            writer.log("policy/main", Map.of("action", Map.of("headers", Map.of("authorization", "Bearer secret",
+                "Cookie", "JSESSIONID=secret", "Accept", "application/json"))), new OPAResponse(true, null), null,
+                false, 1_000);
+        }
+
+        JsonNode headers = readDecisions().get(0).get("input").get("action").get("headers");
+        assertEquals("***", headers.get("authorization").asText());
+        assertEquals("***", headers.get("Cookie").asText());
+        assertEquals("application/json", headers.get("Accept").asText());
+    }
+
+    @Test
+    public void testRotatesAndDeletesOldFiles() throws Exception {
+        var properties = properties();
+        properties.setMaxFileSize(DataSize.ofBytes(512));
+        properties.setMaxFiles(2);
+        properties.setBufferSize(128);
+        try (var writer = new OPADecisionLogWriter(properties)) {
+            for (int i = 0; i < 50; i++) {
+                writer.log("policy/main", input("/orders/" + i), new OPAResponse(true, null), null, false, 1_000);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count());
+        }
+        List<JsonNode> decisions = readDecisions();
+        assertFalse(decisions.isEmpty());
+        assertEquals("/orders/49", decisions.get(decisions.size() - 1).get("input").get("resource").get("id").asText());
+    }
+
+    @Test
+    public void testSamplingAndDropping() throws Exception {
+        var properties = properties();
+        properties.setSampleRate(0);
+        try (var writer = new OPADecisionLogWriter(properties)) {
+            writer.log("policy/main", input("/orders"), new OPAResponse(true, null), null, false, 1_000);
+            assertEquals(0, writer.getDroppedCount());
+        }
+        properties.setSampleRate(1);
+        properties.setQueueCapacity(0);
+        try (var writer = new OPADecisionLogWriter(properties)) {
+            writer.log("policy/main", input("/orders"), new OPAResponse(true, null), null, false, 1_000);
+            assertEquals(1, writer.getDroppedCount());
+        }
+        assertTrue(readDecisions().isEmpty());
+    }
+
+    private OPAProperties.DecisionLog properties() {
+        var properties = new OPAProperties.DecisionLog();
+        properties.setDirectory(directory.toString());
+        return properties;
+    }
+
+    private static Map<String, Object> input(String resourceId) {
+        return Map.of("resource", Map.of("id", resourceId),
+            "action", Map.of("name", "GET", "headers", Map.of("Authorization", "Bearer secret",
+                "Accept", "application/json")));
+    }
+
+    private List<JsonNode> readDecisions() throws IOException {
+        List<JsonNode> decisions = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                for (String line : Files.readAllLines(file)) {
+                    decisions.add(OBJECT_MAPPER.readTree(line));
+                }
+            }
+        }
+        return decisions;
+    }
+}
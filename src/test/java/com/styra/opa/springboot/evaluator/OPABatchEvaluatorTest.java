@@ -0,0 +1,151 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Uses a local stub server, which grants access to subjects with an even id, to count the HTTP calls made with and
+ * without batching.
+ */
+public class OPABatchEvaluatorTest {
+
+    private static final int EVALUATIONS = 100;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final AtomicInteger singleCalls = new AtomicInteger();
+    private final AtomicBoolean batchSupported = new AtomicBoolean(true);
+    private HttpServer server;
+    private OPAAsyncClient opaAsyncClient;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/batch/data/", this::handleBatch);
+        server.createContext("/v1/data/", this::handleSingle);
+        server.start();
+        opaAsyncClient = new OPAAsyncClient("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBatchingReducesHttpCalls() {
+        var properties = new OPAProperties.Batch();
+        properties.setWindow(Duration.ofMillis(50));
+        properties.setMaxSize(25);
+        try (var batchEvaluator = new OPABatchEvaluator(opaAsyncClient, properties)) {
+            var evaluator = batchEvaluator.decorate(opaAsyncClient::evaluate);
+
+            assertDecisions(evaluateAll(evaluator));
+            assertEquals(EVALUATIONS / 25, batchCalls.get());
+            assertEquals(0, singleCalls.get());
+            assertEquals(EVALUATIONS / 25, batchEvaluator.getBatchCount());
+            assertEquals(EVALUATIONS, batchEvaluator.getBatchedEvaluationCount());
+
+            // a batch which is not full is sent once the window elapsed
+            assertDecisions(List.of(evaluator.evaluate("policy/allow", input(0)),
+                evaluator.evaluate("policy/allow", input(1))));
+            assertEquals(EVALUATIONS / 25 + 1, batchCalls.get());
+        }
+    }
+
+    @Test
+    public void testFallbackToSingleCallsIfBatchApiIsMissing() {
+        batchSupported.set(false);
+        try (var batchEvaluator = new OPABatchEvaluator(opaAsyncClient, new OPAProperties.Batch())) {
+            var evaluator = batchEvaluator.decorate(opaAsyncClient::evaluate);
+
+            assertDecisions(evaluateAll(evaluator));
+            assertFalse(batchEvaluator.isBatchSupported());
+            int rejectedBatchCalls = batchCalls.get();
+
+            // once the batch API is known to be missing, it is not called anymore
+            assertDecisions(evaluateAll(evaluator));
+            assertEquals(rejectedBatchCalls, batchCalls.get());
+            assertEquals(2 * EVALUATIONS, singleCalls.get());
+        }
+    }
+
+    private static List<CompletableFuture<OPAResponse>> evaluateAll(OPAEvaluator evaluator) {
+        var futures = new ArrayList<CompletableFuture<OPAResponse>>();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            futures.add(evaluator.evaluate("policy/allow", input(i)));
+        }
+        return futures;
+    }
+
+    private static void assertDecisions(List<CompletableFuture<OPAResponse>> futures) {
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i % 2 == 0, futures.get(i).join().getDecision());
+        }
+    }
+
+    private static Map<String, Object> input(int subjectId) {
+        return Map.of(SUBJECT, Map.of(SUBJECT_ID, subjectId));
+    }
+
+    private static JsonNode decide(JsonNode input) {
+        return OBJECT_MAPPER.createObjectNode()
+            .put("decision", input.path(SUBJECT).path(SUBJECT_ID).asInt() % 2 == 0);
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        batchCalls.incrementAndGet();
+        if (!batchSupported.get()) {
+            respond(exchange, 404, OBJECT_MAPPER.createObjectNode().put("code", "resource_not_found"));
+            return;
+        }
+        var inputs = OBJECT_MAPPER.readTree(exchange.getRequestBody()).path("inputs");
+        ObjectNode responses = OBJECT_MAPPER.createObjectNode();
+        inputs.properties().forEach(entry -> responses.putObject(entry.getKey())
+            .set("result", decide(entry.getValue())));
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.set("responses", responses);
+        respond(exchange, 200, body);
+    }
+
+    private void handleSingle(HttpExchange exchange) throws IOException {
+        singleCalls.incrementAndGet();
+        var input = OBJECT_MAPPER.readTree(exchange.getRequestBody()).path("input");
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.set("result", decide(input));
+        respond(exchange, 200, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
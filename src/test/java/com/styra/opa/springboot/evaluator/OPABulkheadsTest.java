@@ -0,0 +1,174 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluations are completed by the tests, queued ones are started on another thread.
+ */
+public class OPABulkheadsTest {
+
+    private static final String SLOW_PATH = "policy/slow";
+    private static final String FAST_PATH = "policy/fast";
+
+    private final BlockingQueue<CompletableFuture<OPAResponse>> pending = new LinkedBlockingQueue<>();
+    private final OPAProperties.Bulkheads properties = new OPAProperties.Bulkheads();
+    private final OPAProperties.Bulkheads.Bulkhead slowBulkhead = new OPAProperties.Bulkheads.Bulkhead();
+    private OPAEvaluationExecutor executor = new OPAEvaluationExecutor(new OPAProperties.Executor());
+    private OPABulkheads bulkheads;
+
+    private OPAEvaluator decorate(OPAEvaluator dedicatedEvaluator) {
+        var cacheProperties = new OPAProperties.Cache();
+        properties.getPaths().put(SLOW_PATH, slowBulkhead);
+        bulkheads = new OPABulkheads(properties,
+            new OPALastKnownDecisions(cacheProperties, new OPADecisionKeyGenerator(cacheProperties)), executor,
+            path -> dedicatedEvaluator);
+        return bulkheads.decorate((path, input) -> {
+            CompletableFuture<OPAResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+    }
+
+    @AfterEach
+    public void closeExecutor() {
+        executor.close();
+    }
+
+    @Test
+    public void testQueuesEvaluationsOverTheLimit() throws InterruptedException {
+        slowBulkhead.setMaxConcurrentCalls(1);
+        var evaluator = decorate(null);
+        OPABulkheads.Bulkhead bulkhead = bulkheads.getBulkheads().get(SLOW_PATH);
+
+        CompletableFuture<OPAResponse> first = evaluator.evaluate(SLOW_PATH, Map.of("id", 1));
+        CompletableFuture<OPAResponse> second = evaluator.evaluate(SLOW_PATH, Map.of("id", 2));
+        assertEquals(1, bulkhead.getActiveCount());
+        assertEquals(1, bulkhead.getQueueSize());
+        assertEquals(1, pending.size());
+
+        // other paths are not isolated, so the slow path does not hold them up
+        evaluator.evaluate(FAST_PATH, Map.of());
+        assertEquals(2, pending.size());
+        pending.take().complete(new OPAResponse(true, null));
+        pending.take().complete(new OPAResponse(true, null));
+        assertTrue(first.join().getDecision());
+
+        CompletableFuture<OPAResponse> started = pending.poll(5, TimeUnit.SECONDS);
+        assertNotNull(started, "queued evaluation is started once the first one completed");
+        assertEquals(0, bulkhead.getQueueSize());
+        started.complete(new OPAResponse(true, null));
+        assertTrue(second.get(5, TimeUnit.SECONDS).getDecision());
+        assertEquals(0, bulkhead.getActiveCount());
+        assertEquals(0, bulkhead.getRejectedCallCount());
+    }
+
+    @Test
+    public void testRejectsEvaluationsWhenTheQueueIsFull() {
+        slowBulkhead.setMaxConcurrentCalls(1);
+        slowBulkhead.setMaxQueueSize(1);
+        var evaluator = decorate(null);
+
+        evaluator.evaluate(SLOW_PATH, Map.of("id", 1));
+        evaluator.evaluate(SLOW_PATH, Map.of("id", 2));
+        OPAResponse rejected = evaluator.evaluate(SLOW_PATH, Map.of("id", 3)).join();
+        assertInstanceOf(OPAFallbackResponse.class, rejected);
+        assertFalse(rejected.getDecision());
+        assertEquals(String.format(OPABulkheads.REJECTED_REASON_FORMAT, SLOW_PATH),
+            rejected.getReasonForDecision("en"));
+        assertEquals(1, bulkheads.getBulkheads().get(SLOW_PATH).getRejectedCallCount());
+        assertEquals(1, pending.size());
+    }
+
+    @Test
+    public void testRejectsEvaluationsWhichWaitedTooLong() throws Exception {
+        slowBulkhead.setMaxConcurrentCalls(1);
+        slowBulkhead.setMaxWait(Duration.ofMillis(50));
+        slowBulkhead.setRejectedDecision(OPAProperties.CircuitBreaker.DefaultDecision.ALLOW);
+        var evaluator = decorate(null);
+        OPABulkheads.Bulkhead bulkhead = bulkheads.getBulkheads().get(SLOW_PATH);
+
+        evaluator.evaluate(SLOW_PATH, Map.of("id", 1));
+        OPAResponse rejected = evaluator.evaluate(SLOW_PATH, Map.of("id", 2)).get(5, TimeUnit.SECONDS);
+        assertInstanceOf(OPATimeoutResponse.class, rejected);
+        assertTrue(rejected.getDecision());
+        assertEquals(1, bulkhead.getExpiredCallCount());
+        assertEquals(0, bulkhead.getQueueSize());
+
+        pending.take().complete(new OPAResponse(true, null));
+        assertEquals(0, bulkhead.getActiveCount());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void testRejectsQueuedEvaluationsWithoutAThread() throws Exception {
+        executor.close();
+        executor = new OPAEvaluationExecutor(new OPAProperties.Executor(1, 1));
+        slowBulkhead.setMaxConcurrentCalls(1);
+        slowBulkhead.setRejectedDecision(OPAProperties.CircuitBreaker.DefaultDecision.LAST_KNOWN);
+        var evaluator = decorate(null);
+        OPABulkheads.Bulkhead bulkhead = bulkheads.getBulkheads().get(SLOW_PATH);
+
+        CompletableFuture<OPAResponse> first = evaluator.evaluate(SLOW_PATH, Map.of("id", 1));
+        CompletableFuture<OPAResponse> second = evaluator.evaluate(SLOW_PATH, Map.of("id", 1));
+        CompletableFuture<OPAResponse> third = evaluator.evaluate(SLOW_PATH, Map.of("id", 2));
+        CountDownLatch busy = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(busy));
+            executor.execute(() -> awaitQuietly(busy));
+
+            // queued evaluations are answered with the rejected decision, the last known one if there is one
+            pending.take().complete(new OPAResponse(true, null));
+            assertTrue(first.join().getDecision());
+            OPAResponse lastKnown = second.get(5, TimeUnit.SECONDS);
+            assertInstanceOf(OPAFallbackResponse.class, lastKnown);
+            assertTrue(lastKnown.getDecision());
+            assertFalse(third.get(5, TimeUnit.SECONDS).getDecision());
+            assertEquals(2, bulkhead.getRejectedCallCount());
+            assertEquals(2, executor.getRejectedCount());
+            assertEquals(0, bulkhead.getActiveCount());
+            assertEquals(0, bulkhead.getQueueSize());
+        } finally {
+            busy.countDown();
+        }
+    }
+
+    @Test
+    public void testDedicatedClient() {
+        slowBulkhead.setDedicatedClient(true);
+        var evaluator = decorate((path, input) -> CompletableFuture.completedFuture(new OPAResponse(false, null)));
+
+        assertFalse(evaluator.evaluate(SLOW_PATH, Map.of()).join().getDecision());
+        assertTrue(pending.isEmpty());
+        evaluator.evaluate(FAST_PATH, Map.of());
+        assertEquals(1, pending.size());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPACircuitBreakerTest {
+
+    private static final int WINDOW_SIZE = 10;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final OPAProperties.CircuitBreaker properties = new OPAProperties.CircuitBreaker();
+    private volatile boolean failing;
+    private volatile long callNanos;
+
+    private OPACircuitBreaker newCircuitBreaker() {
+        return newCircuitBreaker(new OPALastKnownDecisions(new OPAProperties.Cache(),
+            new OPADecisionKeyGenerator(new OPAProperties.Cache())));
+    }
+
+    private OPACircuitBreaker newCircuitBreaker(OPALastKnownDecisions lastKnownDecisions) {
+        properties.setSlidingWindowSize(WINDOW_SIZE);
+        properties.setMinimumNumberOfCalls(WINDOW_SIZE);
+        properties.setPermittedCallsInHalfOpenState(2);
+        properties.setWaitDurationInOpenState(Duration.ofSeconds(10));
+        properties.setSlowCallDuration(Duration.ofSeconds(1));
+        properties.setSlowCallRateThreshold(50);
+        return new OPACircuitBreaker(properties, lastKnownDecisions, nanos::get);
+    }
+
+    private OPAEvaluator decorate(OPACircuitBreaker circuitBreaker) {
+        return circuitBreaker.decorate((path, input) -> {
+            calls.incrementAndGet();
+            nanos.addAndGet(callNanos);
+            if (failing) {
+                return CompletableFuture.failedFuture(new OPAException("OPA is down"));
+            }
+            return CompletableFuture.completedFuture(new OPAResponse(true, null));
+        });
+    }
+
+    @Test
+    public void testOpensOnFailuresAndAnswersWithDefaultDecisions() {
+        properties.setPathDefaultDecisions(Map.of("policy/public", DefaultDecision.ALLOW));
+        var circuitBreaker = newCircuitBreaker();
+        var evaluator = decorate(circuitBreaker);
+
+        failing = true;
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            assertTrue(evaluator.evaluate("policy/allow", input(i)).isCompletedExceptionally());
+        }
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        OPAResponse denied = evaluator.evaluate("policy/allow", input(0)).join();
+        assertFalse(denied.getDecision());
+        assertInstanceOf(OPAFallbackResponse.class, denied);
+        assertEquals(OPACircuitBreaker.OPEN_REASON, denied.getReasonForDecision("en"));
+        assertTrue(evaluator.evaluate("policy/public", input(0)).join().getDecision());
+        assertEquals(WINDOW_SIZE, calls.get());
+        assertEquals(2, circuitBreaker.getRejectedCallCount());
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulTrialCalls() {
+        var circuitBreaker = newCircuitBreaker();
+        var evaluator = decorate(circuitBreaker);
+
+        failing = true;
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // a failed trial call opens the breaker again
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        evaluator.evaluate("policy/allow", input(0));
+        evaluator.evaluate("policy/allow", input(0));
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        failing = false;
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertTrue(evaluator.evaluate("policy/allow", input(0)).join().getDecision());
+        assertEquals(OPACircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(evaluator.evaluate("policy/allow", input(0)).join().getDecision());
+        assertEquals(OPACircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(WINDOW_SIZE + 4, calls.get());
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        var circuitBreaker = newCircuitBreaker();
+        var evaluator = decorate(circuitBreaker);
+
+        callNanos = Duration.ofSeconds(2).toNanos();
+        for (int i = 0; i < WINDOW_SIZE / 2; i++) {
+            assertTrue(evaluator.evaluate("policy/allow", input(i)).join().getDecision());
+        }
+        callNanos = 0;
+        for (int i = 0; i < WINDOW_SIZE / 2 - 1; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        evaluator.evaluate("policy/allow", input(0));
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    /**
+     * Make sure that cancellations, the caller's timeouts and fallback responses of inner decorators are neither
+     * failures nor successes, and do not use up the trials of the half-open breaker.
+     */
+    @Test
+    public void testIgnoresOutcomesNotCausedByOPA() {
+        var circuitBreaker = newCircuitBreaker();
+        var result = new AtomicReference<CompletableFuture<OPAResponse>>();
+        OPAEvaluator evaluator = circuitBreaker.decorate((path, input) -> {
+            calls.incrementAndGet();
+            return result.get();
+        });
+        CompletableFuture<OPAResponse> fallback =
+            CompletableFuture.completedFuture(new OPAFallbackResponse(false, null));
+
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            result.set(CompletableFuture.failedFuture(new CancellationException()));
+            evaluator.evaluate("policy/allow", input(i));
+            result.set(CompletableFuture.failedFuture(new TimeoutException()));
+            evaluator.evaluate("policy/allow", input(i));
+            result.set(fallback);
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        result.set(CompletableFuture.failedFuture(new OPAException("OPA is down")));
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        result.set(fallback);
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        result.set(CompletableFuture.completedFuture(new OPAResponse(true, null)));
+        assertTrue(evaluator.evaluate("policy/allow", input(0)).join().getDecision());
+        assertTrue(evaluator.evaluate("policy/allow", input(0)).join().getDecision());
+        assertEquals(OPACircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getRejectedCallCount());
+    }
+
+    @Test
+    public void testLastKnownDecision() {
+        properties.setDefaultDecision(DefaultDecision.LAST_KNOWN);
+        var circuitBreaker = newCircuitBreaker();
+        var evaluator = decorate(circuitBreaker);
+
+        evaluator.evaluate("policy/allow", input(0)).join();
+        failing = true;
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        OPAResponse lastKnown = evaluator.evaluate("policy/allow", input(0)).join();
+        assertTrue(lastKnown.getDecision());
+        assertInstanceOf(OPAFallbackResponse.class, lastKnown);
+        assertFalse(evaluator.evaluate("policy/allow", input(1)).join().getDecision());
+        assertFalse(evaluator.evaluate("policy/other", input(0)).join().getDecision());
+    }
+
+    @Test
+    public void testLastKnownDecisionWithoutLastKnownDecisions() {
+        properties.setDefaultDecision(DefaultDecision.LAST_KNOWN);
+        var circuitBreaker = newCircuitBreaker(null);
+        var evaluator = decorate(circuitBreaker);
+
+        evaluator.evaluate("policy/allow", input(0)).join();
+        failing = true;
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        assertEquals(OPACircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        OPAResponse fallback = evaluator.evaluate("policy/allow", input(0)).join();
+        assertFalse(fallback.getDecision());
+        assertInstanceOf(OPAFallbackResponse.class, fallback);
+    }
+
+    private static Map<String, Object> input(int subjectId) {
+        return Map.of(SUBJECT, Map.of(SUBJECT_ID, subjectId));
+    }
+}
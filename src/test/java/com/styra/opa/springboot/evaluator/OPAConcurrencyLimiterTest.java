@@ -0,0 +1,142 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.CircuitBreaker.DefaultDecision;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluations are completed by the tests, after advancing the ticker by the round-trip time they should observe.
+ */
+public class OPAConcurrencyLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<CompletableFuture<OPAResponse>> pending = new ArrayList<>();
+    private final OPAProperties.ConcurrencyLimit properties = new OPAProperties.ConcurrencyLimit();
+
+    private OPAConcurrencyLimiter newConcurrencyLimiter() {
+        return new OPAConcurrencyLimiter(properties, new OPALastKnownDecisions(new OPAProperties.Cache(),
+            new OPADecisionKeyGenerator(new OPAProperties.Cache())), nanos::get);
+    }
+
+    private OPAEvaluator decorate(OPAConcurrencyLimiter concurrencyLimiter) {
+        return concurrencyLimiter.decorate((path, input) -> {
+            CompletableFuture<OPAResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    public void testRejectsEvaluationsOverTheLimit() {
+        properties.setInitialLimit(2);
+        var concurrencyLimiter = newConcurrencyLimiter();
+        var evaluator = decorate(concurrencyLimiter);
+
+        evaluator.evaluate("policy/allow", input(1));
+        evaluator.evaluate("policy/allow", input(2));
+        assertEquals(2, concurrencyLimiter.getInFlight());
+
+        OPAResponse rejected = evaluator.evaluate("policy/allow", input(3)).join();
+        assertInstanceOf(OPAFallbackResponse.class, rejected);
+        assertFalse(rejected.getDecision());
+        assertEquals(OPAConcurrencyLimiter.REJECTED_REASON, rejected.getReasonForDecision("en"));
+        assertEquals(1, concurrencyLimiter.getRejectedCallCount());
+        assertEquals(2, pending.size());
+
+        pending.get(0).complete(new OPAResponse(true, null));
+        assertEquals(1, concurrencyLimiter.getInFlight());
+        assertFalse(evaluator.evaluate("policy/allow", input(3)).isDone());
+        assertEquals(3, pending.size());
+    }
+
+    /**
+     * Make sure that cancelling an evaluation (e.g. a hedge which lost) cancels the decorated evaluation, and releases
+     * its permit right away.
+     */
+    @Test
+    public void testCancellationReleasesPermit() {
+        properties.setInitialLimit(1);
+        var concurrencyLimiter = newConcurrencyLimiter();
+        var evaluator = decorate(concurrencyLimiter);
+
+        CompletableFuture<OPAResponse> response = evaluator.evaluate("policy/allow", input(1));
+        assertEquals(1, concurrencyLimiter.getInFlight());
+        response.cancel(true);
+        assertTrue(pending.get(0).isCancelled());
+        assertEquals(0, concurrencyLimiter.getInFlight());
+        assertFalse(evaluator.evaluate("policy/allow", input(2)).isDone());
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency() {
+        properties.setInitialLimit(10);
+        properties.setMaxLimit(100);
+        var concurrencyLimiter = newConcurrencyLimiter();
+        var evaluator = decorate(concurrencyLimiter);
+
+        for (int round = 0; round < 30; round++) {
+            runRound(concurrencyLimiter, evaluator, Duration.ofMillis(10));
+        }
+        int stableLimit = concurrencyLimiter.getLimit();
+        assertTrue(stableLimit > 10, "limit grows while the latency is stable: " + stableLimit);
+
+        for (int round = 0; round < 3; round++) {
+            runRound(concurrencyLimiter, evaluator, Duration.ofMillis(50));
+        }
+        int slowLimit = concurrencyLimiter.getLimit();
+        assertTrue(slowLimit < stableLimit / 2, "limit shrinks while the latency increased: " + slowLimit);
+        assertEquals(0, concurrencyLimiter.getRejectedCallCount());
+    }
+
+    @Test
+    public void testLastKnownRejectedDecisions() {
+        properties.setInitialLimit(1);
+        properties.setMaxLimit(1);
+        properties.setRejectedDecision(DefaultDecision.LAST_KNOWN);
+        var concurrencyLimiter = newConcurrencyLimiter();
+        var evaluator = decorate(concurrencyLimiter);
+
+        evaluator.evaluate("policy/allow", input(1));
+        pending.get(0).complete(new OPAResponse(true, null));
+        evaluator.evaluate("policy/allow", input(2));
+
+        assertTrue(evaluator.evaluate("policy/allow", input(1)).join().getDecision());
+        assertFalse(evaluator.evaluate("policy/allow", input(3)).join().getDecision());
+        assertEquals(2, concurrencyLimiter.getRejectedCallCount());
+    }
+
+    /**
+     * Starts as many evaluations as the limit permits, and completes them after {@code rtt}.
+     */
+    private void runRound(OPAConcurrencyLimiter concurrencyLimiter, OPAEvaluator evaluator, Duration rtt) {
+        pending.clear();
+        int limit = concurrencyLimiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            evaluator.evaluate("policy/allow", input(i));
+        }
+        nanos.addAndGet(rtt.toNanos());
+        pending.forEach(future -> future.complete(new OPAResponse(true, null)));
+    }
+
+    private static Map<String, Object> input(int id) {
+        return Map.of(SUBJECT, Map.of(SUBJECT_ID, id));
+    }
+}
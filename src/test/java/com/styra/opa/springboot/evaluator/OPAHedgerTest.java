@@ -0,0 +1,161 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluations are completed by the tests, hedges are sent on another thread.
+ */
+public class OPAHedgerTest {
+
+    private final BlockingQueue<CompletableFuture<OPAResponse>> pending = new LinkedBlockingQueue<>();
+    private final OPAProperties.Hedging properties = new OPAProperties.Hedging();
+    private OPAEvaluationExecutor executor = new OPAEvaluationExecutor(new OPAProperties.Executor());
+    private OPAHedger hedger;
+
+    private OPAEvaluator decorate() {
+        properties.setMaxDelay(Duration.ofMillis(10));
+        hedger = new OPAHedger(properties, executor);
+        return hedger.decorate((path, input) -> {
+            CompletableFuture<OPAResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+    }
+
+    @AfterEach
+    public void closeExecutor() {
+        executor.close();
+    }
+
+    @Test
+    public void testHedgesSlowEvaluations() throws Exception {
+        var evaluator = decorate();
+
+        CompletableFuture<OPAResponse> response = evaluator.evaluate("policy/allow", Map.of());
+        CompletableFuture<OPAResponse> primary = pending.take();
+        CompletableFuture<OPAResponse> hedge = pending.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge, "evaluation is hedged once the hedge delay elapsed");
+        assertFalse(response.isDone());
+
+        hedge.complete(new OPAResponse(true, null));
+        assertTrue(response.get(5, TimeUnit.SECONDS).getDecision());
+        // the losing attempt is cancelled, which is passed on to the decorated evaluator
+        assertTrue(primary.isCancelled());
+        primary.complete(new OPAResponse(false, null));
+        assertTrue(response.join().getDecision());
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWonCount());
+    }
+
+    @Test
+    public void testFastEvaluationsAreNotHedged() {
+        properties.setMaxDelay(Duration.ofMillis(10));
+        hedger = new OPAHedger(properties, executor);
+        var evaluator = hedger.decorate((path, input) ->
+            CompletableFuture.completedFuture(new OPAResponse(true, null)));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(evaluator.evaluate("policy/allow", Map.of()).join().getDecision());
+        }
+        assertEquals(0, hedger.getHedgeCount());
+        // the delay adapts to the observed latencies of the path, other paths keep the maximum delay
+        assertEquals(properties.getMinDelay(), hedger.getHedgeDelay("policy/allow"));
+        assertEquals(properties.getMaxDelay(), hedger.getHedgeDelay("policy/other"));
+    }
+
+    @Test
+    public void testFailsOnlyIfAllAttemptsFailed() throws Exception {
+        var evaluator = decorate();
+
+        CompletableFuture<OPAResponse> response = evaluator.evaluate("policy/allow", Map.of());
+        CompletableFuture<OPAResponse> primary = pending.take();
+        CompletableFuture<OPAResponse> hedge = pending.poll(5, TimeUnit.SECONDS);
+        assertNotNull(hedge);
+
+        primary.completeExceptionally(new OPAException("failed to send request to OPA"));
+        assertFalse(response.isDone());
+        hedge.completeExceptionally(new OPAException("failed to send request to OPA"));
+        var exception = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OPAException.class, exception.getCause());
+        assertEquals(0, hedger.getHedgeWonCount());
+    }
+
+    @Test
+    public void testHedgesAreLimitedByBudget() throws Exception {
+        properties.setBudgetMaxTokens(1);
+        properties.setBudgetRatio(0);
+        var evaluator = decorate();
+
+        evaluator.evaluate("policy/allow", Map.of("id", 1));
+        pending.take();
+        assertNotNull(pending.poll(5, TimeUnit.SECONDS));
+
+        CompletableFuture<OPAResponse> response = evaluator.evaluate("policy/allow", Map.of("id", 2));
+        CompletableFuture<OPAResponse> primary = pending.take();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hedger.getBudgetExhaustedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, hedger.getBudgetExhaustedCount());
+        assertEquals(1, hedger.getHedgeCount());
+        assertTrue(pending.isEmpty());
+
+        primary.complete(new OPAResponse(true, null));
+        assertTrue(response.get(5, TimeUnit.SECONDS).getDecision());
+    }
+
+    @Test
+    public void testSkipsHedgesWithoutAThread() throws Exception {
+        executor.close();
+        executor = new OPAEvaluationExecutor(new OPAProperties.Executor(1, 1));
+        var evaluator = decorate();
+        CountDownLatch busy = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(busy));
+            executor.execute(() -> awaitQuietly(busy));
+
+            CompletableFuture<OPAResponse> response = evaluator.evaluate("policy/allow", Map.of());
+            CompletableFuture<OPAResponse> primary = pending.take();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (executor.getRejectedCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, executor.getRejectedCount());
+            assertEquals(0, hedger.getHedgeCount());
+            assertTrue(pending.isEmpty());
+
+            primary.complete(new OPAResponse(true, null));
+            assertTrue(response.get(5, TimeUnit.SECONDS).getDecision());
+        } finally {
+            busy.countDown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
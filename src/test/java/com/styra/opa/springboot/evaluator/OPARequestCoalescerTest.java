@@ -0,0 +1,80 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_PORT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OPARequestCoalescerTest {
+
+    private final OPARequestCoalescer coalescer =
+        new OPARequestCoalescer(new OPADecisionKeyGenerator(new OPAProperties.Cache()));
+    private final List<CompletableFuture<OPAResponse>> pending = new ArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final OPAEvaluator evaluator = coalescer.decorate((path, input) -> {
+        calls.incrementAndGet();
+        var future = new CompletableFuture<OPAResponse>();
+        pending.add(future);
+        return future;
+    });
+
+    /**
+     * Make sure that identical in-flight evaluations (only differing in {@code context.port}) share one call, and that
+     * the next evaluation after completion results in a new call.
+     */
+    @Test
+    public void testIdenticalEvaluationsAreCoalesced() {
+        var results = new ArrayList<CompletableFuture<OPAResponse>>();
+        for (int port = 0; port < 10; port++) {
+            results.add(evaluator.evaluate("policy/allow", input("alice", port)));
+        }
+        var other = evaluator.evaluate("policy/allow", input("bob", 0));
+
+        assertEquals(2, calls.get());
+        assertEquals(2, coalescer.getEvaluationCount());
+        assertEquals(9, coalescer.getDeduplicatedCount());
+
+        var opaResponse = new OPAResponse(true, null);
+        pending.get(0).complete(opaResponse);
+        results.forEach(result -> assertSame(opaResponse, result.join()));
+
+        evaluator.evaluate("policy/allow", input("alice", 0));
+        assertEquals(3, calls.get());
+        pending.get(1).complete(opaResponse);
+        assertSame(opaResponse, other.join());
+    }
+
+    @Test
+    public void testFailuresArePropagatedToAllCallers() {
+        var first = evaluator.evaluate("policy/allow", input("alice", 1));
+        var second = evaluator.evaluate("policy/allow", input("alice", 2));
+        pending.get(0).completeExceptionally(new OPAException("boom"));
+
+        var exception = assertThrows(CompletionException.class, first::join);
+        assertInstanceOf(OPAException.class, exception.getCause());
+        exception = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(OPAException.class, exception.getCause());
+        assertEquals(1, calls.get());
+    }
+
+    private static Map<String, Object> input(String subjectId, int port) {
+        return Map.of(SUBJECT, Map.of(SUBJECT_ID, subjectId), CONTEXT, Map.of(CONTEXT_PORT, port));
+    }
+}
@@ -0,0 +1,147 @@
+package com.styra.opa.springboot.evaluator;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAHttpStatusException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPARetrierTest {
+
+    private final OPAProperties.Retry properties = new OPAProperties.Retry();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private OPAEvaluationExecutor executor = new OPAEvaluationExecutor(new OPAProperties.Executor());
+    private OPARetrier retrier;
+
+    private OPAEvaluator decorate(int failures, Throwable failure) {
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(5));
+        retrier = new OPARetrier(properties, executor);
+        return retrier.decorate((path, input) -> attempts.incrementAndGet() <= failures
+            ? CompletableFuture.failedFuture(new CompletionException(failure))
+            : CompletableFuture.completedFuture(new OPAResponse(true, null)));
+    }
+
+    @AfterEach
+    public void closeExecutor() {
+        executor.close();
+    }
+
+    @Test
+    public void testRetriesTransientFailures() throws Exception {
+        var evaluator = decorate(2, new OPAException("failed to send request to OPA", new ConnectException()));
+
+        assertTrue(evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS).getDecision());
+        assertEquals(3, attempts.get());
+        assertEquals(2, retrier.getRetryCount());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        var evaluator = decorate(Integer.MAX_VALUE, new OPAHttpStatusException(503, "unavailable"));
+
+        var exception = assertThrows(ExecutionException.class,
+            () -> evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OPAHttpStatusException.class, exception.getCause());
+        assertEquals(OPAProperties.Retry.DEFAULT_MAX_ATTEMPTS, attempts.get());
+    }
+
+    @Test
+    public void testDoesNotRetryPermanentFailures() {
+        var evaluator = decorate(1, new OPAHttpStatusException(400, "bad request"));
+
+        assertThrows(ExecutionException.class,
+            () -> evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS));
+        assertEquals(1, attempts.get());
+        assertEquals(0, retrier.getRetryCount());
+    }
+
+    @Test
+    public void testRetriesAreLimitedByBudget() throws Exception {
+        properties.setBudgetMaxTokens(1);
+        properties.setBudgetRatio(0);
+        var evaluator = decorate(Integer.MAX_VALUE, new OPAException("failed", new IOException("connection reset")));
+
+        assertThrows(ExecutionException.class,
+            () -> evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertThrows(ExecutionException.class,
+            () -> evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(1, retrier.getRetryCount());
+        assertEquals(2, retrier.getBudgetExhaustedCount());
+    }
+
+    @Test
+    public void testReturnsTheFailureWithoutAThread() throws Exception {
+        executor.close();
+        executor = new OPAEvaluationExecutor(new OPAProperties.Executor(1, 1));
+        var evaluator = decorate(1, new OPAException("failed", new ConnectException()));
+        CountDownLatch busy = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(busy));
+            executor.execute(() -> awaitQuietly(busy));
+
+            var exception = assertThrows(ExecutionException.class,
+                () -> evaluator.evaluate("policy/allow", Map.of()).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OPAException.class, exception.getCause());
+            assertEquals(1, attempts.get());
+            assertEquals(1, executor.getRejectedCount());
+        } finally {
+            busy.countDown();
+        }
+    }
+
+    @Test
+    public void testIsRetryable() {
+        assertTrue(OPARetrier.isRetryable(new CompletionException(new OPAException("failed", new ConnectException()))));
+        assertTrue(OPARetrier.isRetryable(new OPAException("failed", new HttpConnectTimeoutException("timeout"))));
+        assertTrue(OPARetrier.isRetryable(new OPAHttpStatusException(502, "bad gateway")));
+        assertFalse(OPARetrier.isRetryable(new OPAException("failed", new HttpTimeoutException("timeout"))));
+        assertFalse(OPARetrier.isRetryable(new OPAHttpStatusException(404, "not found")));
+        assertFalse(OPARetrier.isRetryable(new OPAException("policy result is undefined for path 'policy/allow'")));
+    }
+
+    @Test
+    public void testBackoffIsJittered() {
+        properties.setInitialBackoff(Duration.ofMillis(10));
+        properties.setMaxBackoff(Duration.ofMillis(100));
+        retrier = new OPARetrier(properties, executor);
+        long previous = Duration.ofMillis(10).toNanos();
+        for (int i = 0; i < 100; i++) {
+            long backoff = retrier.nextBackoffNanos(previous);
+            assertTrue(backoff >= Duration.ofMillis(10).toNanos(), "backoff is at least the initial one: " + backoff);
+            assertTrue(backoff <= Math.min(Duration.ofMillis(100).toNanos(), previous * 3),
+                "backoff is at most three times the previous one, and the maximum: " + backoff);
+            previous = backoff;
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.styra.opa.springboot.input;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_HEADERS;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_DATA;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_PORT;
+import static com.styra.opa.springboot.input.InputConstants.CONTEXT_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_AUTHORITIES;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OPAInputTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Make sure that the typed input is serialized like the equivalent maps, and that its map view is equal to them.
+     */
+    @Test
+    public void testTypedInputIsEquivalentToMaps() throws Exception {
+        var headers = OPAInput.Headers.builder()
+            .header("Accept", "*/*")
+            .header("X-Ignored", null)
+            .header("UnitTestHeader", "123abc")
+            .build();
+        var input = new OPAInput(
+            new OPAInput.Subject("java_authentication", "alice", null, List.of("ROLE_USER")),
+            new OPAInput.Resource("endpoint", "/unit/test"),
+            new OPAInput.Action("GET", null, headers),
+            new OPAInput.Context("http", null, null, 50000, null));
+
+        var context = new HashMap<String, Object>(Map.of(CONTEXT_TYPE, "http", CONTEXT_PORT, 50000));
+        context.put(CONTEXT_DATA, null);
+        Map<String, Object> expected = Map.of(
+            SUBJECT, Map.of(SUBJECT_TYPE, "java_authentication", SUBJECT_ID, "alice",
+                SUBJECT_AUTHORITIES, List.of("ROLE_USER")),
+            RESOURCE, Map.of(RESOURCE_TYPE, "endpoint", RESOURCE_ID, "/unit/test"),
+            ACTION, Map.of(ACTION_NAME, "GET", ACTION_HEADERS, Map.of("Accept", "*/*", "UnitTestHeader", "123abc")),
+            CONTEXT, context);
+
+        assertEquals(expected, input);
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(expected)),
+            objectMapper.readTree(objectMapper.writeValueAsBytes(input)));
+        assertEquals(expected, objectMapper.readValue(objectMapper.writeValueAsBytes(input), Map.class));
+    }
+
+    @Test
+    public void testMapView() {
+        var headers = OPAInput.Headers.builder().header("Accept", "text/html").header("Accept", "*/*").build();
+        var subject = new OPAInput.Subject("java_authentication", null, null, null);
+        var context = new OPAInput.Context("http", "localhost", "127.0.0.1", 8080);
+
+        assertEquals(1, headers.size());
+        assertEquals("*/*", headers.get("Accept"));
+        assertNull(headers.get("accept"));
+        assertEquals(Map.of(SUBJECT_TYPE, "java_authentication"), subject);
+        assertFalse(subject.containsKey(SUBJECT_ID));
+        assertFalse(context.containsKey(CONTEXT_DATA));
+        assertTrue(new OPAInput.Context(null, null, null, null, null).containsKey(CONTEXT_DATA));
+        assertEquals(8080, context.get(CONTEXT_PORT));
+        assertThrows(UnsupportedOperationException.class, () -> subject.put(SUBJECT_ID, "alice"));
+        assertNull(new OPAInput(subject, null, null, null).get(CONTEXT));
+    }
+}
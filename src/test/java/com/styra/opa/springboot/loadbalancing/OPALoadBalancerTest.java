@@ -0,0 +1,244 @@
+package com.styra.opa.springboot.loadbalancing;
+
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses local stub servers as OPA replicas, which grant every evaluation, and whose health and latency are controlled
+ * by the tests.
+ */
+public class OPALoadBalancerTest {
+
+    private static final String RESULT = "{\"result\": {\"decision\": true}}";
+
+    private final List<StubReplica> stubs = new ArrayList<>();
+    private final OPAProperties.LoadBalancing properties = new OPAProperties.LoadBalancing();
+    private OPALoadBalancer loadBalancer;
+
+    @BeforeEach
+    public void startServers() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            stubs.add(new StubReplica());
+        }
+        properties.getHealthCheck().setEnabled(false);
+    }
+
+    @AfterEach
+    public void stopServers() {
+        if (loadBalancer != null) {
+            loadBalancer.close();
+        }
+        stubs.forEach(stub -> {
+            stub.release.countDown();
+            stub.server.stop(0);
+            stub.executor.shutdownNow();
+        });
+    }
+
+    @Test
+    public void testLeastOutstandingRequests() {
+        stubs.forEach(stub -> stub.blocked.set(true));
+        loadBalancer = newLoadBalancer();
+
+        List<CompletableFuture<OPAResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(loadBalancer.evaluate("policy/allow", Map.of()));
+        }
+        loadBalancer.getReplicas().forEach(replica -> assertEquals(2, replica.getOutstandingCount()));
+
+        stubs.forEach(stub -> stub.release.countDown());
+        futures.forEach(future -> assertTrue(future.join().getDecision()));
+        loadBalancer.getReplicas().forEach(replica -> {
+            assertEquals(2, replica.getRequestCount());
+            assertEquals(0, replica.getOutstandingCount());
+        });
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesAvoidsSlowReplica() {
+        StubReplica slow = stubs.get(0);
+        slow.delayMillis = 50;
+        properties.setStrategy(OPAProperties.LoadBalancing.Strategy.POWER_OF_TWO_CHOICES);
+        loadBalancer = new OPALoadBalancer(List.of(slow.url, stubs.get(1).url), properties, OPAAsyncClient::new);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(loadBalancer.evaluate("policy/allow", Map.of()).join().getDecision());
+        }
+        // with two replicas, both are compared on every evaluation, so the slow one is only used until its latency
+        // is known
+        assertEquals(1, loadBalancer.getReplicas().get(0).getRequestCount());
+        assertEquals(19, loadBalancer.getReplicas().get(1).getRequestCount());
+    }
+
+    @Test
+    public void testConsistentHashingPinsSubjects() {
+        properties.setStrategy(OPAProperties.LoadBalancing.Strategy.CONSISTENT_HASHING);
+        loadBalancer = newLoadBalancer();
+
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.evaluate("policy/allow", input("alice")).join();
+        }
+        assertEquals(1, loadBalancer.getReplicas().stream().filter(replica -> replica.getRequestCount() > 0).count());
+
+        for (int i = 0; i < 100; i++) {
+            loadBalancer.evaluate("policy/allow", input("user-" + i)).join();
+        }
+        loadBalancer.getReplicas().forEach(replica -> assertTrue(replica.getRequestCount() > 0,
+            "subjects are spread across all replicas: " + replica.getUrl()));
+    }
+
+    @Test
+    public void testConsistentHashingSkipsEjectedReplicas() {
+        properties.setStrategy(OPAProperties.LoadBalancing.Strategy.CONSISTENT_HASHING);
+        properties.getHealthCheck().setUnhealthyThreshold(1);
+        loadBalancer = newLoadBalancer();
+        loadBalancer.evaluate("policy/allow", input("alice")).join();
+        int owner = indexOfUsedReplica();
+
+        stubs.get(owner).healthy.set(false);
+        loadBalancer.checkHealth().join();
+        loadBalancer.evaluate("policy/allow", input("alice")).join();
+        assertEquals(1, loadBalancer.getReplicas().get(owner).getRequestCount());
+
+        // once the owner is healthy again, the subject is sent to it again
+        stubs.get(owner).healthy.set(true);
+        loadBalancer.checkHealth().join();
+        loadBalancer.evaluate("policy/allow", input("alice")).join();
+        assertEquals(2, loadBalancer.getReplicas().get(owner).getRequestCount());
+    }
+
+    @Test
+    public void testEjectsUnhealthyReplicas() {
+        properties.getHealthCheck().setBundles(true);
+        loadBalancer = newLoadBalancer();
+        OPALoadBalancer.Replica unhealthy = loadBalancer.getReplicas().get(0);
+        stubs.get(0).healthy.set(false);
+
+        loadBalancer.checkHealth().join();
+        assertTrue(unhealthy.isHealthy(), "replica is only ejected after the unhealthy threshold");
+        loadBalancer.checkHealth().join();
+        assertFalse(unhealthy.isHealthy());
+        assertEquals(1, unhealthy.getEjectionCount());
+        assertTrue(stubs.get(0).bundlesChecked.get());
+
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.evaluate("policy/allow", Map.of()).join();
+        }
+        assertEquals(0, unhealthy.getRequestCount());
+
+        stubs.get(0).healthy.set(true);
+        loadBalancer.checkHealth().join();
+        assertTrue(unhealthy.isHealthy());
+    }
+
+    @Test
+    public void testUsesAllReplicasIfNoneIsHealthy() {
+        properties.getHealthCheck().setUnhealthyThreshold(1);
+        loadBalancer = newLoadBalancer();
+        stubs.forEach(stub -> stub.healthy.set(false));
+        loadBalancer.checkHealth().join();
+
+        assertTrue(loadBalancer.evaluate("policy/allow", Map.of()).join().getDecision());
+        assertEquals(1, loadBalancer.getNoHealthyReplicaCount());
+    }
+
+    @Test
+    public void testHashIsStable() {
+        assertEquals(OPALoadBalancer.hash("alice"), OPALoadBalancer.hash("alice"));
+        assertNotEquals(OPALoadBalancer.hash("0#http://opa-0:8181"), OPALoadBalancer.hash("1#http://opa-0:8181"));
+    }
+
+    private OPALoadBalancer newLoadBalancer() {
+        return new OPALoadBalancer(stubs.stream().map(stub -> stub.url).toList(), properties, OPAAsyncClient::new);
+    }
+
+    private int indexOfUsedReplica() {
+        List<OPALoadBalancer.Replica> replicas = loadBalancer.getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            if (replicas.get(i).getRequestCount() > 0) {
+                return i;
+            }
+        }
+        throw new AssertionError("no replica was used");
+    }
+
+    private static Map<String, Object> input(String subjectId) {
+        return Map.of(SUBJECT, Map.of(SUBJECT_ID, subjectId));
+    }
+
+    private static final class StubReplica {
+
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final HttpServer server;
+        private final String url;
+        private final AtomicBoolean healthy = new AtomicBoolean(true);
+        private final AtomicBoolean bundlesChecked = new AtomicBoolean();
+        private final AtomicBoolean blocked = new AtomicBoolean();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile long delayMillis;
+
+        private StubReplica() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/v1/data/", this::handleData);
+            server.createContext("/health", this::handleHealth);
+            server.start();
+            url = "http://localhost:" + server.getAddress().getPort();
+        }
+
+        private void handleData(HttpExchange exchange) throws IOException {
+            try {
+                if (blocked.get()) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, RESULT);
+        }
+
+        private void handleHealth(HttpExchange exchange) throws IOException {
+            if ("bundles".equals(exchange.getRequestURI().getQuery())) {
+                bundlesChecked.set(true);
+            }
+            respond(exchange, healthy.get() ? 200 : 500, "{}");
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+    }
+}
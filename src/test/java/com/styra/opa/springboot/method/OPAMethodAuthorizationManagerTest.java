@@ -0,0 +1,126 @@
+package com.styra.opa.springboot.method;
+
+import com.styra.opa.springboot.OPAAuthorizationManager;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPAResponseContext;
+import com.styra.opa.springboot.authorization.OPAAccessDeniedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_PROPERTIES;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluates policies using a stub transport, which records the paths and inputs, and only allows the action
+ * {@code list}.
+ */
+public class OPAMethodAuthorizationManagerTest {
+
+    private final List<String> paths = new ArrayList<>();
+    private final List<Map<String, Object>> inputs = new ArrayList<>();
+    private final Supplier<Authentication> authentication = () -> new TestingAuthenticationToken("alice", null,
+        "ROLE_USER");
+
+    @Test
+    public void testInputFromAnnotationsAndArguments() throws Exception {
+        var manager = manager();
+        var cancel = OrderService.class.getMethod("cancel", Order.class, String.class);
+
+        var decision = manager.check(authentication, new SimpleMethodInvocation(new OrderService(), cancel,
+            new Order("42"), "duplicate"));
+        assertFalse(decision.isGranted());
+        // the metadata is cached, but the arguments are not
+        manager.check(authentication, new SimpleMethodInvocation(new OrderService(), cancel, new Order("43"), null));
+
+        assertEquals(List.of("orders/cancel", "orders/cancel"), paths);
+        assertEquals("alice", part(0, SUBJECT).get(SUBJECT_ID));
+        assertEquals("order", part(0, RESOURCE).get(RESOURCE_TYPE));
+        assertEquals("42", part(0, RESOURCE).get(RESOURCE_ID));
+        assertEquals(Map.of("reason", "duplicate"), part(0, RESOURCE).get(RESOURCE_PROPERTIES));
+        assertEquals("revoke", part(0, ACTION).get(ACTION_NAME));
+        assertEquals("43", part(1, RESOURCE).get(RESOURCE_ID));
+    }
+
+    @Test
+    public void testDefaults() throws Exception {
+        var manager = manager();
+        var list = OrderService.class.getMethod("list");
+
+        assertTrue(manager.check(authentication, new SimpleMethodInvocation(new OrderService(), list)).isGranted());
+        assertNull(paths.get(0));
+        assertEquals("order", part(0, RESOURCE).get(RESOURCE_TYPE));
+        assertEquals("OrderService.list", part(0, RESOURCE).get(RESOURCE_ID));
+        assertEquals("list", part(0, ACTION).get(ACTION_NAME));
+    }
+
+    @Test
+    public void testVerifyThrowsWithReason() throws Exception {
+        var manager = manager();
+        var cancel = OrderService.class.getMethod("cancel", Order.class, String.class);
+
+        var exception = assertThrows(OPAAccessDeniedException.class, () -> manager.verify(authentication,
+            new SimpleMethodInvocation(new OrderService(), cancel, new Order("42"), null)));
+        assertEquals("only listing is allowed", exception.getMessage());
+    }
+
+    @Test
+    public void testMoreThanOneResourceId() throws Exception {
+        var manager = manager();
+        var move = OrderService.class.getMethod("move", String.class, String.class);
+
+        assertThrows(IllegalStateException.class, () -> manager.check(authentication,
+            new SimpleMethodInvocation(new OrderService(), move, "42", "43")));
+    }
+
+    private OPAMethodAuthorizationManager manager() {
+        var opaAuthorizationManager = new OPAAuthorizationManager();
+        opaAuthorizationManager.setOpaTransport((path, input) -> {
+            paths.add(path);
+            inputs.add(input);
+            boolean decision = "list".equals(((Map<?, ?>) input.get(ACTION)).get(ACTION_NAME));
+            return CompletableFuture.completedFuture(new OPAResponse(decision, new OPAResponseContext("id", null,
+                Map.of("en", "only listing is allowed"), null)));
+        });
+        return new OPAMethodAuthorizationManager(opaAuthorizationManager);
+    }
+
+    private Map<?, ?> part(int index, String key) {
+        return (Map<?, ?>) inputs.get(index).get(key);
+    }
+
+    public record Order(String id) {
+    }
+
+    @OPAAuthorize(resourceType = "order")
+    public static class OrderService {
+
+        @OPAAuthorize(path = "orders/cancel", action = "revoke")
+        public void cancel(@OPAResourceId("id") Order order, @OPAResourceProperty("reason") String reason) {
+        }
+
+        public void list() {
+        }
+
+        public void move(@OPAResourceId String from, @OPAResourceId String to) {
+        }
+    }
+}
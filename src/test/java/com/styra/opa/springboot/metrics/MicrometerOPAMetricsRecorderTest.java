@@ -0,0 +1,92 @@
+package com.styra.opa.springboot.metrics;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAFallbackResponse;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static com.styra.opa.springboot.metrics.MicrometerOPAMetricsRecorder.DECISION_TIMER;
+import static com.styra.opa.springboot.metrics.MicrometerOPAMetricsRecorder.INPUT_SIZE_SUMMARY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MicrometerOPAMetricsRecorderTest {
+
+    private static final Map<String, Object> INPUT = Map.of(SUBJECT, Map.of(SUBJECT_ID, "alice"));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testDecisionsAreTagged() {
+        var properties = new OPAProperties.Metrics();
+        properties.setInputSize(true);
+        var recorder = new MicrometerOPAMetricsRecorder(meterRegistry, properties);
+
+        recorder.recordDecision("policy/allow", INPUT, new OPAResponse(true, null), null, false, 1_000_000);
+        recorder.recordDecision("policy/allow", INPUT, new OPAResponse(true, null), null, true, 1_000);
+        recorder.recordDecision("policy/allow", INPUT, new OPAResponse(false, null), null, false, 2_000_000);
+        recorder.recordDecision(null, INPUT, null, new CompletionException(new OPAException("boom")), false, 1);
+        recorder.recordDecision("policy/slow", INPUT, null, new CompletionException(new TimeoutException()), false, 1);
+        recorder.recordDecision("policy/open", INPUT, new OPAFallbackResponse(false, null), null, false, 1);
+        recorder.recordDecision("policy/queued", INPUT, new OPATimeoutResponse(true, null), null, false, 1);
+
+        var granted = meterRegistry.get(DECISION_TIMER)
+            .tags("path", "policy/allow", "decision", "granted", "exception", "none", "cached", "false").timer();
+        assertEquals(1, granted.count());
+        assertEquals(1, granted.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("decision", "granted", "cached", "true").timer()
+            .count());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("path", "policy/allow", "decision", "denied").timer()
+            .count());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER)
+            .tags("path", MicrometerOPAMetricsRecorder.DEFAULT_PATH, "decision", "error", "exception", "OPAException")
+            .timer().count());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("path", "policy/slow", "decision", "timeout")
+            .timer().count());
+        assertEquals(3, meterRegistry.get(DECISION_TIMER).tags("outcome", "fresh").timers().stream()
+            .mapToLong(Timer::count).sum());
+        assertEquals(2, meterRegistry.get(DECISION_TIMER).tags("outcome", "error").timers().stream()
+            .mapToLong(Timer::count).sum());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("path", "policy/open", "decision", "denied",
+            "outcome", "fallback").timer().count());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("path", "policy/queued", "decision", "timeout",
+            "outcome", "timeout").timer().count());
+
+        // cached decisions were not serialized
+        var inputSize = meterRegistry.get(INPUT_SIZE_SUMMARY).tags("path", "policy/allow").summary();
+        assertEquals(2, inputSize.count());
+        assertEquals("{\"subject\":{\"id\":\"alice\"}}".length(), inputSize.max());
+    }
+
+    /**
+     * Make sure that the number of path tags is bounded.
+     */
+    @Test
+    public void testPathTagsAreBounded() {
+        var properties = new OPAProperties.Metrics();
+        properties.setMaxPathTags(2);
+        var recorder = new MicrometerOPAMetricsRecorder(meterRegistry, properties);
+
+        for (int i = 0; i < 10; i++) {
+            recorder.recordDecision("policy/p" + i, INPUT, new OPAResponse(true, null), null, false, 1);
+        }
+        recorder.recordDecision("policy/p0", INPUT, new OPAResponse(true, null), null, false, 1);
+
+        assertEquals(2, meterRegistry.get(DECISION_TIMER).tags("path", "policy/p0").timer().count());
+        assertEquals(1, meterRegistry.get(DECISION_TIMER).tags("path", "policy/p1").timer().count());
+        assertEquals(8, meterRegistry.get(DECISION_TIMER)
+            .tags("path", MicrometerOPAMetricsRecorder.OTHER_PATH).timer().count());
+        assertNull(meterRegistry.find(INPUT_SIZE_SUMMARY).summary());
+    }
+}
@@ -0,0 +1,208 @@
+package com.styra.opa.springboot.partial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.evaluator.OPAEvaluator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.styra.opa.springboot.input.InputConstants.ACTION;
+import static com.styra.opa.springboot.input.InputConstants.ACTION_NAME;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_ID;
+import static com.styra.opa.springboot.input.InputConstants.RESOURCE_TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses a local stub server, whose Compile API returns {@code input.action.name == "GET"} (or another allowed action)
+ * for {@code /orders} and an unsupported residual for {@code /users}, to check which evaluations are made locally.
+ */
+public class OPAPartialEvaluatorTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String SUPPORTED_RESIDUAL = """
+        {"queries": [[{"index": 0, "terms": [
+          {"type": "ref", "value": [{"type": "var", "value": "eq"}]},
+          {"type": "ref", "value": [{"type": "var", "value": "input"}, {"type": "string", "value": "action"},
+            {"type": "string", "value": "name"}]},
+          {"type": "string", "value": "GET"}]}]]}
+        """;
+    private static final String UNSUPPORTED_RESIDUAL = """
+        {"queries": [[{"index": 0, "terms": [
+          {"type": "ref", "value": [{"type": "var", "value": "startswith"}]},
+          {"type": "ref", "value": [{"type": "var", "value": "input"}, {"type": "string", "value": "action"},
+            {"type": "string", "value": "name"}]},
+          {"type": "string", "value": "G"}]}]]}
+        """;
+
+    private final AtomicInteger compileCalls = new AtomicInteger();
+    private final AtomicReference<String> policyRevision = new AtomicReference<>("1");
+    private final AtomicReference<String> allowedAction = new AtomicReference<>("GET");
+    private HttpServer server;
+    private OPAAsyncClient opaAsyncClient;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/compile", this::handleCompile);
+        server.createContext("/v1/policies", this::handlePolicies);
+        server.start();
+        opaAsyncClient = new OPAAsyncClient("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testLocalDecisionsAndFallback() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        OPAEvaluator delegate = (path, input) -> {
+            delegateCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(new OPAResponse(true, null));
+        };
+        try (var partialEvaluator = new OPAPartialEvaluator(opaAsyncClient, properties())) {
+            partialEvaluator.refresh();
+            var evaluator = partialEvaluator.decorate(delegate);
+            assertEquals(1, partialEvaluator.getCompiledResourceCount());
+
+            assertTrue(evaluator.evaluate("policy/main", input("/orders", "GET")).join().getDecision());
+            assertFalse(evaluator.evaluate("/policy/main/", input("/orders", "POST")).join().getDecision());
+            assertEquals(2, partialEvaluator.getLocalDecisionCount());
+            assertEquals(0, delegateCalls.get());
+
+            // unsupported residuals, unknown resources and other paths are evaluated by the delegate
+            evaluator.evaluate("policy/main", input("/users", "POST")).join();
+            evaluator.evaluate("policy/main", input("/other", "POST")).join();
+            evaluator.evaluate("policy/other", input("/orders", "POST")).join();
+            assertEquals(3, delegateCalls.get());
+        }
+    }
+
+    @Test
+    public void testOtherResourceAttributesAreEvaluatedByOPA() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        OPAEvaluator delegate = (path, input) -> {
+            delegateCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(new OPAResponse(true, null));
+        };
+        try (var partialEvaluator = new OPAPartialEvaluator(opaAsyncClient, properties())) {
+            partialEvaluator.refresh();
+            var evaluator = partialEvaluator.decorate(delegate);
+
+            assertTrue(evaluator.evaluate("policy/main", Map.of(RESOURCE, Map.of(RESOURCE_ID, "/orders"),
+                ACTION, Map.of(ACTION_NAME, "POST"))).join().getDecision());
+            assertTrue(evaluator.evaluate("policy/main", Map.of(RESOURCE,
+                Map.of(RESOURCE_TYPE, "document", RESOURCE_ID, "/orders"), ACTION, Map.of(ACTION_NAME, "POST")))
+                .join().getDecision());
+            assertTrue(evaluator.evaluate("policy/main", Map.of(RESOURCE,
+                Map.of(RESOURCE_TYPE, "endpoint", RESOURCE_ID, "/orders", "owner", "alice"),
+                ACTION, Map.of(ACTION_NAME, "POST"))).join().getDecision());
+            assertEquals(3, delegateCalls.get());
+            assertEquals(0, partialEvaluator.getLocalDecisionCount());
+        }
+    }
+
+    @Test
+    public void testRecompilesOnEveryRefresh() throws Exception {
+        OPAEvaluator delegate = (path, input) -> CompletableFuture.completedFuture(new OPAResponse(true, null));
+        try (var partialEvaluator = new OPAPartialEvaluator(opaAsyncClient, properties())) {
+            partialEvaluator.refresh();
+            var evaluator = partialEvaluator.decorate(delegate);
+            long refreshes = partialEvaluator.getRefreshCount();
+            int calls = compileCalls.get();
+            assertFalse(evaluator.evaluate("policy/main", input("/orders", "POST")).join().getDecision());
+
+            // data changes, e.g. of a bundle, leave the policies as they are but change the residual queries
+            allowedAction.set("POST");
+            partialEvaluator.refresh();
+            assertEquals(refreshes + 1, partialEvaluator.getRefreshCount());
+            assertEquals(calls + 2, compileCalls.get());
+            assertTrue(evaluator.evaluate("policy/main", input("/orders", "POST")).join().getDecision());
+
+            policyRevision.set("2");
+            partialEvaluator.refresh();
+            assertEquals(refreshes + 2, partialEvaluator.getRefreshCount());
+            assertEquals(calls + 4, compileCalls.get());
+        }
+    }
+
+    @Test
+    public void testFailedRefreshEvaluatesWithOPA() throws Exception {
+        AtomicInteger delegateCalls = new AtomicInteger();
+        OPAEvaluator delegate = (path, input) -> {
+            delegateCalls.incrementAndGet();
+            return CompletableFuture.completedFuture(new OPAResponse(true, null));
+        };
+        try (var partialEvaluator = new OPAPartialEvaluator(opaAsyncClient, properties())) {
+            partialEvaluator.refresh();
+            var evaluator = partialEvaluator.decorate(delegate);
+            assertEquals(1, partialEvaluator.getCompiledResourceCount());
+
+            server.stop(0);
+            assertThrows(OPAException.class, partialEvaluator::refresh);
+            assertEquals(0, partialEvaluator.getCompiledResourceCount());
+            evaluator.evaluate("policy/main", input("/orders", "GET")).join();
+            assertEquals(1, delegateCalls.get());
+        }
+    }
+
+    private static OPAProperties properties() {
+        var properties = new OPAProperties();
+        properties.setPath("policy/main");
+        properties.getPartialEvaluation().setResourceIds(List.of("/orders", "/users"));
+        properties.getPartialEvaluation().setRefreshInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private static Map<String, Object> input(String resourceId, String actionName) {
+        return Map.of(RESOURCE, Map.of(RESOURCE_TYPE, "endpoint", RESOURCE_ID, resourceId),
+            ACTION, Map.of(ACTION_NAME, actionName));
+    }
+
+    private void handleCompile(HttpExchange exchange) throws IOException {
+        compileCalls.incrementAndGet();
+        JsonNode request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+        String resourceId = request.path("input").path(RESOURCE).path(RESOURCE_ID).asText();
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.set("result", OBJECT_MAPPER.readTree("/orders".equals(resourceId)
+            ? SUPPORTED_RESIDUAL.replace("GET", allowedAction.get()) : UNSUPPORTED_RESIDUAL));
+        respond(exchange, body);
+    }
+
+    private void handlePolicies(HttpExchange exchange) throws IOException {
+        ObjectNode body = OBJECT_MAPPER.createObjectNode();
+        body.putArray("result").addObject().put("id", "policy.rego").put("raw", "revision " + policyRevision.get());
+        respond(exchange, body);
+    }
+
+    private static void respond(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.styra.opa.springboot.partial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles residual queries in the JSON format of OPA's Compile API, which are built by the helpers at the end of this
+ * class.
+ */
+public class OPAResidualCompilerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void testQueriesAreOredAndExpressionsAreAnded() throws Exception {
+        // input.action.name == "GET"; input.subject.authorities[_].authority == "ROLE_USER"
+        // input.subject.authorities[_].authority == "ROLE_ADMIN"
+        Predicate<JsonNode> predicate = compile(
+            query(expr("eq", ref("action", "name"), string("GET")),
+                expr("eq", ref("subject", "authorities", "$01", "authority"), string("ROLE_USER"))),
+            query(expr("equal", ref("subject", "authorities", "$02", "authority"), string("ROLE_ADMIN"))));
+
+        assertTrue(predicate.test(input("GET", "ROLE_USER")));
+        assertFalse(predicate.test(input("POST", "ROLE_USER")));
+        assertTrue(predicate.test(input("POST", "ROLE_OTHER", "ROLE_ADMIN")));
+        assertFalse(predicate.test(input("GET", "ROLE_OTHER")));
+    }
+
+    @Test
+    public void testTrivialResults() throws Exception {
+        assertTrue(compile(query()).test(input("GET")));
+        assertFalse(compile().test(input("GET")));
+        assertFalse(OPAResidualCompiler.compile(OBJECT_MAPPER.createObjectNode()).test(input("GET")));
+    }
+
+    @Test
+    public void testOperators() throws Exception {
+        JsonNode input = input("GET");
+        assertTrue(compile(query(expr("neq", ref("action", "name"), string("POST")))).test(input));
+        assertTrue(compile(query(expr("internal.member_2", ref("action", "name"),
+            "{\"type\":\"set\",\"value\":[" + string("GET") + "," + string("HEAD") + "]}"))).test(input));
+        assertTrue(compile(query(expr("lt", ref("context", "port"), "{\"type\":\"number\",\"value\":1024}")))
+            .test(input));
+        assertFalse(compile(query(expr("gte", ref("context", "port"), "{\"type\":\"number\",\"value\":443.0}")))
+            .test(input));
+        assertTrue(compile(query(expr("eq", ref("context", "port"), "{\"type\":\"number\",\"value\":80.0}")))
+            .test(input));
+    }
+
+    @Test
+    public void testTruthinessAndNegation() throws Exception {
+        JsonNode input = input("GET");
+        assertFalse(compile(query(term(ref("context", "secure"), false))).test(input));
+        assertTrue(compile(query(term(ref("context", "secure"), true))).test(input));
+        assertFalse(compile(query(term(ref("context", "missing"), false))).test(input));
+        assertTrue(compile(query(term(ref("context", "missing"), true))).test(input));
+    }
+
+    @Test
+    public void testUnsupportedResiduals() {
+        assertThrows(OPAResidualNotSupportedException.class, () -> compile(query(
+            expr("startswith", ref("action", "name"), string("G")))));
+        assertThrows(OPAResidualNotSupportedException.class, () -> compile(query(
+            expr("eq", "{\"type\":\"ref\",\"value\":[{\"type\":\"var\",\"value\":\"data\"}]}", string("GET")))));
+        assertThrows(OPAResidualNotSupportedException.class, () -> compile(query(
+            expr("eq", ref("subject", "authorities", "$01", "authority"), string("ROLE_USER")),
+            expr("eq", ref("subject", "authorities", "$01", "scope"), string("orders")))));
+        assertThrows(OPAResidualNotSupportedException.class, () -> OPAResidualCompiler.compile(OBJECT_MAPPER.readTree(
+            "{\"queries\":[[]],\"support\":[{\"package\":{}}]}")));
+    }
+
+    private static Predicate<JsonNode> compile(String... queries) throws Exception {
+        return OPAResidualCompiler.compile(OBJECT_MAPPER.readTree("{\"queries\":[" + String.join(",", queries)
+            + "]}"));
+    }
+
+    private static JsonNode input(String action, String... authorities) {
+        return OBJECT_MAPPER.valueToTree(Map.of(
+            "action", Map.of("name", action),
+            "subject", Map.of("authorities", Arrays.stream(authorities)
+                .map(authority -> Map.of("authority", authority)).toList()),
+            "context", Map.of("port", 80, "secure", false)));
+    }
+
+    private static String query(String... exprs) {
+        return "[" + String.join(",", exprs) + "]";
+    }
+
+    private static String expr(String operator, String left, String right) {
+        String[] segments = operator.split("\\.");
+        String operatorRef = Arrays.stream(segments, 1, segments.length)
+            .map(segment -> "," + string(segment))
+            .collect(Collectors.joining("", "{\"type\":\"ref\",\"value\":[" + var(segments[0]), "]}"));
+        return "{\"index\":0,\"terms\":[" + String.join(",", List.of(operatorRef, left, right)) + "]}";
+    }
+
+    private static String term(String term, boolean negated) {
+        return "{\"index\":0,\"negated\":" + negated + ",\"terms\":" + term + "}";
+    }
+
+    /**
+     * Builds a reference into the input, whose segments starting with {@code $} are variables.
+     */
+    private static String ref(String... path) {
+        return Arrays.stream(path)
+            .map(segment -> segment.startsWith("$") ? var(segment) : string(segment))
+            .collect(Collectors.joining(",", "{\"type\":\"ref\",\"value\":[" + var("input") + ",", "]}"));
+    }
+
+    private static String var(String name) {
+        return "{\"type\":\"var\",\"value\":\"" + name + "\"}";
+    }
+
+    private static String string(String value) {
+        return "{\"type\":\"string\",\"value\":\"" + value + "\"}";
+    }
+}
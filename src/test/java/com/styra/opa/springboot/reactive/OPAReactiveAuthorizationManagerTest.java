@@ -0,0 +1,143 @@
+package com.styra.opa.springboot.reactive;
+
+import com.styra.opa.springboot.BaseIntegrationTest;
+import com.styra.opa.springboot.authorization.OPAAccessDeniedException;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.input.OPAInputValidator;
+import com.styra.opa.springboot.route.OPARouteTable;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OPAReactiveAuthorizationManagerTest extends BaseIntegrationTest {
+
+    @Test
+    public void testOPAReactiveAuthorizationManagerSimpleAllow() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_true");
+        var actual = opaReactiveAuthorizationManager
+            .check(Mono.just(createMockAuthentication()), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertTrue(actual.isGranted());
+    }
+
+    @Test
+    public void testOPAReactiveAuthorizationManagerSimpleDeny() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_false");
+        var actual = opaReactiveAuthorizationManager
+            .check(Mono.just(createMockAuthentication()), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertFalse(actual.isGranted());
+    }
+
+    @Test
+    public void testOPAReactiveAuthorizationManagerVerify() {
+        var allowManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_true");
+        var denyManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_false");
+        assertDoesNotThrow(() -> allowManager
+            .verify(Mono.just(createMockAuthentication()), createAuthorizationContext()).block());
+        assertThrows(OPAAccessDeniedException.class, () -> denyManager
+            .verify(Mono.just(createMockAuthentication()), createAuthorizationContext()).block());
+    }
+
+    /**
+     * Make sure that an unreachable OPA server results in a denied decision rather than an error.
+     */
+    @Test
+    public void testOPAReactiveAuthorizationManagerUnreachable() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient("http://localhost:1", HEADERS), "policy/decision_always_true");
+        var actual = opaReactiveAuthorizationManager
+            .check(Mono.empty(), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertFalse(actual.isGranted());
+    }
+
+    /**
+     * By reading back the input, we can make sure the OPA input has the right structure and content.
+     */
+    @Test
+    public void testOPAReactiveAuthorizationManagerEcho() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/echo");
+        var actual = opaReactiveAuthorizationManager
+            .opaRequest(Mono.just(createNullMockAuthentication()), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertTrue(actual.getDecision());
+        var data = actual.getContext().getData();
+        assertEquals("testuser", jsonGet(data, "/subject/id"));
+        assertEquals(OPAProperties.Request.Subject.DEFAULT_TYPE, jsonGet(data, "/subject/type"));
+        assertEquals("/unit/test", jsonGet(data, "/resource/id"));
+        assertEquals(OPAProperties.Request.Resource.DEFAULT_TYPE, jsonGet(data, "/resource/type"));
+        assertEquals("GET", jsonGet(data, "/action/name"));
+        assertEquals("123abc", jsonGet(data, "/action/headers/UnitTestHeader"));
+        assertEquals("192.0.2.123", jsonGet(data, "/context/ip"));
+        assertEquals("50000", jsonGet(data, "/context/port"));
+        assertEquals(OPAProperties.Request.Context.DEFAULT_TYPE, jsonGet(data, "/context/type"));
+    }
+
+    @Test
+    public void testOPAReactiveAuthorizationManagerRoutes() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_true");
+        var route = new OPAProperties.Route();
+        route.setPattern("/unit/**");
+        route.setPath("policy/decision_always_false");
+        opaReactiveAuthorizationManager.setOpaRouteTable(new OPARouteTable(List.of(route)));
+        var actual = opaReactiveAuthorizationManager
+            .check(Mono.just(createMockAuthentication()), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertFalse(actual.isGranted(), "route selects the policy path");
+
+        route.setAction(OPAProperties.Route.Action.SKIP);
+        actual = opaReactiveAuthorizationManager
+            .check(Mono.just(createMockAuthentication()), createAuthorizationContext())
+            .block();
+        assertNotNull(actual);
+        assertTrue(actual.isGranted(), "skipped requests are granted");
+        assertNull(opaReactiveAuthorizationManager
+            .opaRequest(Mono.just(createMockAuthentication()), createAuthorizationContext())
+            .block());
+    }
+
+    @Test
+    public void testOPAReactiveAuthorizationManagerValidatesInput() {
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(
+            new OPAAsyncClient(address, HEADERS), "policy/decision_always_true");
+        opaReactiveAuthorizationManager.setOpaInputValidator(new OPAInputValidator());
+        // without authentication, input.subject.id is missing
+        assertThrows(AccessDeniedException.class, () -> opaReactiveAuthorizationManager
+            .check(Mono.empty(), createAuthorizationContext()).block());
+    }
+
+    private AuthorizationContext createAuthorizationContext() {
+        var request = MockServerHttpRequest.get("/unit/test")
+            .header("UnitTestHeader", "123abc")
+            .remoteAddress(new InetSocketAddress("192.0.2.123", 50000))
+            .build();
+        return new AuthorizationContext(MockServerWebExchange.from(request));
+    }
+}
@@ -0,0 +1,64 @@
+package com.styra.opa.springboot.route;
+
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OPARouteTableTest {
+
+    @Test
+    public void testFirstDeclaredMatchingRouteApplies() {
+        var readOrder = route("/api/orders/{id}", "GET");
+        var anyOrder = route("/api/orders/**");
+        var api = route("/api/**");
+        var health = route("/actuator/health");
+        var fallback = route("/**");
+        var routeTable = new OPARouteTable(List.of(readOrder, anyOrder, api, health, fallback));
+
+        assertSame(readOrder, routeTable.match("GET", "/api/orders/42"));
+        assertSame(readOrder, routeTable.match("get", "/api/orders/42"));
+        assertSame(anyOrder, routeTable.match("DELETE", "/api/orders/42"));
+        assertSame(anyOrder, routeTable.match("GET", "/api/orders"));
+        assertSame(api, routeTable.match("GET", "/api/invoices/42"));
+        assertSame(health, routeTable.match("GET", "/actuator/health"));
+        assertSame(fallback, routeTable.match("GET", "/actuator/health/liveness"));
+        assertSame(fallback, routeTable.match("GET", "/"));
+    }
+
+    @Test
+    public void testCatchAllRouteDeclaredFirstShadowsLaterRoutes() {
+        var fallback = route("/**");
+        var routeTable = new OPARouteTable(List.of(fallback, route("/api/orders/{id}")));
+
+        assertSame(fallback, routeTable.match("GET", "/api/orders/42"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        var routeTable = new OPARouteTable(List.of(route("/api/orders/{id}", "GET", "HEAD"), route("/static/*.js")));
+
+        assertNull(routeTable.match("POST", "/api/orders/42"));
+        assertNull(routeTable.match("GET", "/api/orders/42/items"));
+        assertNull(routeTable.match("GET", "/static/app.css"));
+        assertNull(routeTable.match(null, "/api/orders/42"));
+        assertNull(new OPARouteTable(List.of()).match("GET", "/api/orders/42"));
+    }
+
+    @Test
+    public void testInvalidRoutes() {
+        assertThrows(IllegalArgumentException.class, () -> new OPARouteTable(List.of(route(null))));
+        assertThrows(IllegalArgumentException.class, () -> new OPARouteTable(List.of(route("/api/**/orders"))));
+    }
+
+    private static OPAProperties.Route route(String pattern, String... methods) {
+        var route = new OPAProperties.Route();
+        route.setPattern(pattern);
+        route.setMethods(List.of(methods));
+        return route;
+    }
+}
@@ -0,0 +1,257 @@
+package com.styra.opa.springboot.timeout;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.styra.opa.OPAClient;
+import com.styra.opa.springboot.OPAAuthorizationManager;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.OPATimeoutResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import com.styra.opa.springboot.autoconfigure.OPAProperties.Timeout.Decision;
+import com.styra.opa.springboot.cache.OPADecisionKeyGenerator;
+import com.styra.opa.springboot.cache.OPALastKnownDecisions;
+import com.styra.opa.springboot.client.OPAAsyncClient;
+import com.styra.opa.springboot.evaluator.OPAEvaluationExecutor;
+import com.styra.opa.springboot.metrics.MicrometerOPAMetricsRecorder;
+import com.styra.opa.springboot.reactive.OPAReactiveAuthorizationManager;
+import com.styra.opa.springboot.route.OPARouteTable;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT;
+import static com.styra.opa.springboot.input.InputConstants.SUBJECT_ID;
+import static com.styra.opa.springboot.metrics.MicrometerOPAMetricsRecorder.DECISION_TIMER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OPATimeoutsTest {
+
+    private static final Map<String, Object> INPUT = Map.of(SUBJECT, Map.of(SUBJECT_ID, "alice"));
+
+    @Test
+    public void testTimeoutPrecedenceAndDeadline() {
+        var properties = new OPAProperties.Timeout();
+        properties.setDefaultTimeout(Duration.ofSeconds(2));
+        properties.setPathTimeouts(Map.of("policy/slow", Duration.ofSeconds(5)));
+        properties.setDeadlineHeader("X-Request-Timeout");
+        var route = new OPAProperties.Route();
+        route.setTimeout(Duration.ofSeconds(1));
+        var request = new MockHttpServletRequest();
+
+        var opaTimeouts = new OPATimeouts(properties, lastKnownDecisions());
+        assertEquals(Duration.ofSeconds(2), opaTimeouts.timeout("policy/main", null, request));
+        assertEquals(Duration.ofSeconds(2), opaTimeouts.timeout(null, null, null));
+        assertEquals(Duration.ofSeconds(5), opaTimeouts.timeout("policy/slow", null, request));
+        assertEquals(Duration.ofSeconds(1), opaTimeouts.timeout("policy/slow", route, request));
+
+        request.addHeader("X-Request-Timeout", "1500");
+        assertEquals(Duration.ofMillis(1500), opaTimeouts.timeout("policy/slow", null, request));
+        assertEquals(Duration.ofSeconds(1), opaTimeouts.timeout("policy/slow", route, request));
+        request.removeHeader("X-Request-Timeout");
+        request.addHeader("X-Request-Timeout", "0ms");
+        assertTrue(opaTimeouts.timeout("policy/main", null, request).isZero());
+        assertEquals(1, opaTimeouts.getExpiredDeadlineCount());
+        request.removeHeader("X-Request-Timeout");
+        request.addHeader("X-Request-Timeout", "soon");
+        assertEquals(Duration.ofSeconds(2), opaTimeouts.timeout("policy/main", null, request));
+
+        var withoutTimeouts = new OPATimeouts(new OPAProperties.Timeout(), lastKnownDecisions());
+        assertNull(withoutTimeouts.timeout("policy/main", null, request));
+    }
+
+    @Test
+    public void testTimeoutDecisions() {
+        var properties = new OPAProperties.Timeout();
+        properties.setPathDecisions(Map.of("policy/public", Decision.ALLOW, "policy/orders", Decision.CACHED));
+
+        var opaTimeouts = new OPATimeouts(properties, lastKnownDecisions());
+        assertFalse(opaTimeouts.timeoutResponse("policy/main", INPUT, Duration.ofSeconds(1)).getDecision());
+        assertTrue(opaTimeouts.timeoutResponse("policy/public", INPUT, Duration.ofSeconds(1)).getDecision());
+        assertEquals(String.format(OPATimeouts.TIMEOUT_REASON_FORMAT, Duration.ofSeconds(1)),
+            opaTimeouts.timeoutResponse("policy/orders", INPUT, Duration.ofSeconds(1)).getReasonForDecision("en"));
+
+        opaTimeouts.recordResponse("policy/orders", INPUT, new OPAResponse(true, null));
+        OPAResponse opaResponse = opaTimeouts.timeoutResponse("policy/orders", INPUT, Duration.ofSeconds(1));
+        assertInstanceOf(OPATimeoutResponse.class, opaResponse);
+        assertTrue(opaResponse.getDecision());
+        assertEquals(4, opaTimeouts.getTimeoutCount());
+
+        // inputs which could not be serialized have no key, so they are neither remembered nor looked up
+        Map<String, Object> unserializable = Map.of(SUBJECT, new Object());
+        opaTimeouts.recordResponse("policy/orders", unserializable, new OPAResponse(true, null));
+        assertFalse(opaTimeouts.timeoutResponse("policy/orders", unserializable, Duration.ofSeconds(1)).getDecision());
+    }
+
+    /**
+     * Make sure that cached timeout decisions fall back to deny without last known decisions (i.e. without Caffeine).
+     */
+    @Test
+    public void testCachedTimeoutDecisionWithoutLastKnownDecisions() {
+        var properties = new OPAProperties.Timeout();
+        properties.setDecision(Decision.CACHED);
+
+        var opaTimeouts = new OPATimeouts(properties, null);
+        opaTimeouts.recordResponse("policy/orders", INPUT, new OPAResponse(true, null));
+        OPAResponse opaResponse = opaTimeouts.timeoutResponse("policy/orders", INPUT, Duration.ofSeconds(1));
+        assertInstanceOf(OPATimeoutResponse.class, opaResponse);
+        assertFalse(opaResponse.getDecision());
+        assertEquals(String.format(OPATimeouts.TIMEOUT_REASON_FORMAT, Duration.ofSeconds(1)),
+            opaResponse.getReasonForDecision("en"));
+    }
+
+    /**
+     * Make sure that a stuck (blocking) {@link OPAClient} does not hold the request thread beyond the timeout, and that
+     * requests whose deadline passed are not sent to OPA.
+     */
+    @Test
+    public void testAuthorizationManagerTimesOut() throws Exception {
+        var opaClient = mock(OPAClient.class);
+        when(opaClient.evaluate(anyString(), any(), any(TypeReference.class))).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return new OPAResponse(true, null);
+        });
+        var properties = new OPAProperties.Timeout();
+        properties.setDefaultTimeout(Duration.ofMillis(50));
+        properties.setDeadlineHeader("X-Request-Timeout");
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, "policy/slow");
+        var opaTimeouts = new OPATimeouts(properties, lastKnownDecisions());
+        opaAuthorizationManager.setOpaTimeouts(opaTimeouts);
+
+        try (var opaEvaluationExecutor = new OPAEvaluationExecutor(new OPAProperties.Executor())) {
+            opaAuthorizationManager.setOpaEvaluationExecutor(opaEvaluationExecutor);
+            var request = new MockHttpServletRequest("GET", "/orders");
+            var context = new RequestAuthorizationContext(request);
+
+            long startNanos = System.nanoTime();
+            var opaResponse = opaAuthorizationManager.opaRequest(() -> new TestingAuthenticationToken("alice", null),
+                context);
+            assertTrue(Duration.ofNanos(System.nanoTime() - startNanos).compareTo(Duration.ofSeconds(2)) < 0);
+            assertInstanceOf(OPATimeoutResponse.class, opaResponse);
+            assertFalse(opaResponse.getDecision());
+
+            request.addHeader("X-Request-Timeout", "0");
+            assertFalse(opaAuthorizationManager.check(() -> null, context).isGranted());
+            assertEquals(2, opaTimeouts.getTimeoutCount());
+            assertEquals(1, opaTimeouts.getExpiredDeadlineCount());
+        }
+    }
+
+    /**
+     * Make sure that the {@link OPAReactiveAuthorizationManager} applies the same timeouts and timeout decisions,
+     * including the deadline of the request, and cancels evaluations which timed out.
+     */
+    @Test
+    public void testReactiveAuthorizationManagerTimesOut() {
+        var evaluation = new CompletableFuture<OPAResponse>();
+        var properties = new OPAProperties.Timeout();
+        properties.setDefaultTimeout(Duration.ofMillis(50));
+        properties.setDeadlineHeader("X-Request-Timeout");
+        properties.setDecision(Decision.ALLOW);
+        var opaReactiveAuthorizationManager = new OPAReactiveAuthorizationManager(mock(OPAAsyncClient.class),
+            "policy/slow");
+        opaReactiveAuthorizationManager.setOpaTransport((path, input) -> evaluation);
+        var opaTimeouts = new OPATimeouts(properties, lastKnownDecisions());
+        opaReactiveAuthorizationManager.setOpaTimeouts(opaTimeouts);
+
+        var context = new AuthorizationContext(MockServerWebExchange.from(MockServerHttpRequest.get("/orders")));
+        var opaResponse = opaReactiveAuthorizationManager.opaRequest(Mono.empty(), context).block();
+        assertInstanceOf(OPATimeoutResponse.class, opaResponse);
+        assertTrue(opaResponse.getDecision());
+        assertTrue(evaluation.isCancelled());
+
+        var expired = new AuthorizationContext(MockServerWebExchange.from(MockServerHttpRequest.get("/orders")
+            .header("X-Request-Timeout", "0")));
+        assertInstanceOf(OPATimeoutResponse.class, opaReactiveAuthorizationManager.opaRequest(Mono.empty(), expired)
+            .block());
+        assertEquals(2, opaTimeouts.getTimeoutCount());
+        assertEquals(1, opaTimeouts.getExpiredDeadlineCount());
+    }
+
+    /**
+     * Make sure that the timeout of a route applies to the blocking {@link OPAClient} without an {@link OPATimeouts}.
+     */
+    @Test
+    public void testRouteTimeoutWithoutTimeouts() {
+        var opaClient = mock(OPAClient.class);
+        when(opaClient.evaluate(anyString(), any(), any(TypeReference.class))).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return new OPAResponse(true, null);
+        });
+        var route = new OPAProperties.Route();
+        route.setPattern("/orders/**");
+        route.setTimeout(Duration.ofMillis(50));
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, "policy/slow");
+        opaAuthorizationManager.setOpaRouteTable(new OPARouteTable(List.of(route)));
+
+        try (var opaEvaluationExecutor = new OPAEvaluationExecutor(new OPAProperties.Executor())) {
+            opaAuthorizationManager.setOpaEvaluationExecutor(opaEvaluationExecutor);
+            var context = new RequestAuthorizationContext(new MockHttpServletRequest("GET", "/orders/1"));
+
+            long startNanos = System.nanoTime();
+            assertFalse(opaAuthorizationManager.check(() -> null, context).isGranted());
+            assertTrue(Duration.ofNanos(System.nanoTime() - startNanos).compareTo(Duration.ofSeconds(2)) < 0);
+        }
+    }
+
+    /**
+     * Make sure that stuck evaluations could only hold the bounded threads of the {@link OPAEvaluationExecutor}, and
+     * that evaluations over them are answered like timeouts, without waiting, and recorded as such.
+     */
+    @Test
+    public void testSaturatedExecutorIsAnsweredLikeATimeout() {
+        var release = new CountDownLatch(1);
+        var opaClient = mock(OPAClient.class);
+        when(opaClient.evaluate(anyString(), any(), any(TypeReference.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new OPAResponse(true, null);
+        });
+        var properties = new OPAProperties.Timeout();
+        properties.setDefaultTimeout(Duration.ofMillis(50));
+        properties.setDecision(Decision.ALLOW);
+        var opaAuthorizationManager = new OPAAuthorizationManager(opaClient, "policy/slow");
+        var opaTimeouts = new OPATimeouts(properties, lastKnownDecisions());
+        opaAuthorizationManager.setOpaTimeouts(opaTimeouts);
+        var meterRegistry = new SimpleMeterRegistry();
+        opaAuthorizationManager.setOpaMetricsRecorder(new MicrometerOPAMetricsRecorder(meterRegistry,
+            new OPAProperties.Metrics()));
+
+        try (var opaEvaluationExecutor = new OPAEvaluationExecutor(new OPAProperties.Executor(1, 1))) {
+            opaAuthorizationManager.setOpaEvaluationExecutor(opaEvaluationExecutor);
+            for (int i = 0; i < 3; i++) {
+                assertTrue(opaAuthorizationManager.opaRequest("policy/slow", Map.of()).getDecision());
+            }
+            assertEquals(1, opaEvaluationExecutor.getRejectedCount());
+            assertEquals(3, opaTimeouts.getTimeoutCount());
+            assertEquals(3, meterRegistry.get(DECISION_TIMER).tags("decision", "timeout", "outcome", "timeout").timers()
+                .stream().mapToLong(Timer::count).sum());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static OPALastKnownDecisions lastKnownDecisions() {
+        var properties = new OPAProperties.Cache();
+        return new OPALastKnownDecisions(properties, new OPADecisionKeyGenerator(properties));
+    }
+}
@@ -0,0 +1,143 @@
+package com.styra.opa.springboot.wasm;
+
+import com.styra.opa.OPAException;
+import com.styra.opa.springboot.OPAResponse;
+import com.styra.opa.springboot.autoconfigure.OPAProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uses a fake {@link OPAWasmPolicy} which allows access if the module of its bundle is {@code allow}, so that bundles
+ * do not need to be compiled.
+ */
+public class OPAWasmEvaluatorTest {
+
+    private static final int BLOCK_SIZE = 512;
+
+    @TempDir
+    private Path directory;
+
+    private CountDownLatch evaluationStarted;
+    private CountDownLatch releaseEvaluation;
+
+    @Test
+    public void testReadBundle() throws IOException {
+        Path bundlePath = writeBundle("allow", "{\"roles\":{}}");
+        OPAWasmBundle bundle = OPAWasmBundle.read(bundlePath);
+        assertEquals("allow", new String(bundle.getWasm(), StandardCharsets.UTF_8));
+        assertEquals("{\"roles\":{}}", bundle.getData());
+
+        Path modulePath = directory.resolve("policy.wasm");
+        Files.writeString(modulePath, "deny");
+        assertEquals("deny", new String(OPAWasmBundle.read(modulePath).getWasm(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEvaluate() throws IOException {
+        try (var evaluator = new OPAWasmEvaluator(properties(writeBundle("allow", null)), this::newPolicy)) {
+            assertTrue(evaluator.evaluate("/policy/allow/", Map.of()).join().getDecision());
+
+            var undefined = assertThrows(CompletionException.class,
+                () -> evaluator.evaluate("policy/undefined", Map.of()).join());
+            assertInstanceOf(OPAException.class, undefined.getCause());
+            var defaultDecision = assertThrows(CompletionException.class,
+                () -> evaluator.evaluate(null, Map.of()).join());
+            assertInstanceOf(OPAException.class, defaultDecision.getCause());
+        }
+    }
+
+    @Test
+    public void testReloadKeepsInFlightEvaluations() throws Exception {
+        Path bundlePath = writeBundle("allow", null);
+        try (var evaluator = new OPAWasmEvaluator(properties(bundlePath), this::newPolicy)) {
+            evaluationStarted = new CountDownLatch(1);
+            releaseEvaluation = new CountDownLatch(1);
+            CompletableFuture<OPAResponse> inFlight = CompletableFuture.supplyAsync(
+                () -> evaluator.evaluate("policy/allow", Map.of()).join());
+            assertTrue(evaluationStarted.await(5, TimeUnit.SECONDS));
+
+            writeBundle("deny", null);
+            evaluator.reload();
+            releaseEvaluation.countDown();
+
+            assertTrue(inFlight.get(5, TimeUnit.SECONDS).getDecision());
+            assertFalse(evaluator.evaluate("policy/allow", Map.of()).join().getDecision());
+            assertEquals(1, evaluator.getReloadCount());
+        }
+    }
+
+    private OPAProperties.Wasm properties(Path bundlePath) {
+        var properties = new OPAProperties.Wasm();
+        properties.setBundle(bundlePath.toString());
+        properties.setPoolSize(1);
+        properties.setReloadInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private OPAWasmPolicy newPolicy(OPAWasmBundle bundle) {
+        boolean allow = "allow".equals(new String(bundle.getWasm(), StandardCharsets.UTF_8));
+        return (entrypoint, input) -> {
+            if (evaluationStarted != null && evaluationStarted.getCount() > 0) {
+                evaluationStarted.countDown();
+                try {
+                    releaseEvaluation.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "policy/allow".equals(entrypoint) ? "[{\"result\":{\"decision\":" + allow + "}}]" : "[]";
+        };
+    }
+
+    private Path writeBundle(String wasm, String data) throws IOException {
+        Path bundlePath = directory.resolve("bundle.tar.gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(bundlePath))) {
+            writeEntry(outputStream, "/policy.wasm", wasm);
+            if (data != null) {
+                writeEntry(outputStream, "/data.json", data);
+            }
+            outputStream.write(new byte[2 * BLOCK_SIZE]);
+        }
+        return bundlePath;
+    }
+
+    private static void writeEntry(OutputStream outputStream, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[BLOCK_SIZE];
+        put(header, 0, name);
+        put(header, 100, "0000644");
+        put(header, 124, String.format("%011o", bytes.length));
+        header[156] = '0';
+        put(header, 257, "ustar");
+        var padded = new ByteArrayOutputStream();
+        padded.write(bytes);
+        padded.write(new byte[(BLOCK_SIZE - bytes.length % BLOCK_SIZE) % BLOCK_SIZE]);
+        outputStream.write(header);
+        outputStream.write(padded.toByteArray());
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}